@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.statistics;
+
+import org.wso2.carbon.metrics.core.Gauge;
+import org.wso2.carbon.metrics.core.Level;
+import org.wso2.carbon.metrics.core.MetricService;
+import org.wso2.carbon.transport.http.netty.common.BufferAllocatorConfiguration;
+import org.wso2.carbon.transport.http.netty.common.InstrumentedPooledByteBufAllocator;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the usage of the pooled buffer allocator of the transport as gauges.
+ */
+public class BufferAllocatorGauges {
+
+    private BufferAllocatorGauges() {
+    }
+
+    /**
+     * Register the buffer allocator gauges. The allocator is looked up whenever a gauge is read, so the gauges
+     * can be registered before the transport creates it.
+     *
+     * @param metricService metric service to register the gauges with
+     */
+    public static void register(MetricService metricService) {
+        metricService.gauge("gw.buffer.allocator.heap.allocations", Level.INFO,
+                longGauge(InstrumentedPooledByteBufAllocator::getHeapAllocations));
+        metricService.gauge("gw.buffer.allocator.direct.allocations", Level.INFO,
+                longGauge(InstrumentedPooledByteBufAllocator::getDirectAllocations));
+        metricService.gauge("gw.buffer.allocator.arena.allocations", Level.INFO,
+                longGauge(InstrumentedPooledByteBufAllocator::getArenaAllocations));
+        metricService.gauge("gw.buffer.allocator.heap.active.bytes", Level.INFO,
+                longGauge(InstrumentedPooledByteBufAllocator::getActiveHeapBytes));
+        metricService.gauge("gw.buffer.allocator.direct.active.bytes", Level.INFO,
+                longGauge(InstrumentedPooledByteBufAllocator::getActiveDirectBytes));
+        metricService.gauge("gw.buffer.allocator.heap.pooled.memory", Level.INFO,
+                longGauge(InstrumentedPooledByteBufAllocator::getPooledHeapMemory));
+        metricService.gauge("gw.buffer.allocator.direct.pooled.memory", Level.INFO,
+                longGauge(InstrumentedPooledByteBufAllocator::getPooledDirectMemory));
+        metricService.gauge("gw.buffer.allocator.thread.caches", Level.INFO,
+                longGauge(InstrumentedPooledByteBufAllocator::getNumThreadCaches));
+        metricService.gauge("gw.buffer.allocator.thread.cache.hit.ratio", Level.INFO, (Gauge<Double>) () -> {
+            InstrumentedPooledByteBufAllocator allocator = getPooledAllocator();
+            return allocator != null ? allocator.getThreadCacheHitRatio() : 0d;
+        });
+    }
+
+    private static Gauge<Long> longGauge(ToLongFunction<InstrumentedPooledByteBufAllocator> value) {
+        return () -> {
+            InstrumentedPooledByteBufAllocator allocator = getPooledAllocator();
+            return allocator != null ? value.applyAsLong(allocator) : 0L;
+        };
+    }
+
+    private static InstrumentedPooledByteBufAllocator getPooledAllocator() {
+        return BufferAllocatorConfiguration.getInstance().getPooledAllocator();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.statistics;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.metrics.core.Gauge;
+import org.wso2.carbon.metrics.core.Level;
+import org.wso2.carbon.metrics.core.MetricService;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolStatistics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the connection pools of the senders as gauges per route, e.g. gw.route.localhost-8080.pool.idle, with
+ * the pools of a route on all the event loops added together, and the pool management policy in effect as
+ * gw.pool.policy. The pools are looked up periodically, and the gauges of a route are registered once it has a pool.
+ * The number of routes with gauges is capped, the rest are only in {@link ConnectionManager#getPoolStatistics()}.
+ */
+public class ConnectionPoolGauges {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPoolGauges.class);
+
+    private static final String ROUTE_PREFIX = "gw.route.";
+    private static final long REFRESH_INTERVAL_SECONDS = 10;
+    private static final int MAX_ROUTES = 64;
+
+    private final MetricService metricService;
+
+    private volatile Map<String, PoolStatistics> routeStatistics = Collections.emptyMap();
+    private volatile Map<String, Double> creationRates = Collections.emptyMap();
+
+    // Only used by the refresh thread
+    private final Set<String> registeredRoutes = new HashSet<>();
+    private long lastRefreshedAt;
+
+    private ConnectionPoolGauges(MetricService metricService) {
+        this.metricService = metricService;
+    }
+
+    /**
+     * Register the pool policy gauge and start looking up the pools of the senders. The connection manager is
+     * looked up whenever the pools are, so the gauges can be registered before a sender creates it.
+     *
+     * @param metricService metric service to register the gauges with
+     */
+    public static void register(MetricService metricService) {
+        ConnectionPoolGauges connectionPoolGauges = new ConnectionPoolGauges(metricService);
+        metricService.gauge("gw.pool.policy", Level.INFO, (Gauge<String>) () -> {
+            ConnectionManager connectionManager = ConnectionManager.getInstance();
+            return connectionManager != null ? connectionManager.getPoolManagementPolicy().name() : "";
+        });
+        metricService.gauge("gw.pool.routes", Level.INFO,
+                (Gauge<Integer>) () -> connectionPoolGauges.routeStatistics.size());
+        Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("connection-pool-gauges", true))
+                .scheduleAtFixedRate(connectionPoolGauges::refresh, REFRESH_INTERVAL_SECONDS,
+                        REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void refresh() {
+        try {
+            ConnectionManager connectionManager = ConnectionManager.getInstance();
+            if (connectionManager == null) {
+                return;
+            }
+            Map<String, PoolStatistics> statistics = new HashMap<>();
+            for (PoolStatistics poolStatistics : connectionManager.getPoolStatistics()) {
+                PoolStatistics route = statistics.get(poolStatistics.getRoute());
+                if (route == null) {
+                    statistics.put(poolStatistics.getRoute(), poolStatistics);
+                } else {
+                    route.add(poolStatistics);
+                }
+            }
+            long now = System.nanoTime();
+            Map<String, Double> rates = new HashMap<>();
+            Map<String, PoolStatistics> previous = routeStatistics;
+            for (PoolStatistics route : statistics.values()) {
+                PoolStatistics last = previous.get(route.getRoute());
+                if (last != null && now > lastRefreshedAt) {
+                    rates.put(route.getRoute(), (route.getCreatedConnections() - last.getCreatedConnections())
+                            / ((now - lastRefreshedAt) / (double) TimeUnit.SECONDS.toNanos(1)));
+                }
+            }
+            lastRefreshedAt = now;
+            routeStatistics = statistics;
+            creationRates = rates;
+            for (String route : statistics.keySet()) {
+                if (!registeredRoutes.contains(route) && registeredRoutes.size() < MAX_ROUTES) {
+                    registerRoute(route);
+                    registeredRoutes.add(route);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep refreshing, the executor stops running a task which throws
+            log.error("Could not refresh the connection pool gauges", e);
+        }
+    }
+
+    private void registerRoute(String route) {
+        String prefix = ROUTE_PREFIX + route + ".pool.";
+        metricService.gauge(prefix + "active", Level.INFO, longGauge(route, PoolStatistics::getActiveConnections));
+        metricService.gauge(prefix + "idle", Level.INFO, longGauge(route, PoolStatistics::getIdleConnections));
+        metricService.gauge(prefix + "pending", Level.INFO, longGauge(route, PoolStatistics::getPendingAcquires));
+        metricService.gauge(prefix + "created", Level.INFO, longGauge(route, PoolStatistics::getCreatedConnections));
+        metricService.gauge(prefix + "closed", Level.INFO, longGauge(route, PoolStatistics::getClosedConnections));
+        metricService.gauge(prefix + "evicted", Level.INFO, longGauge(route, PoolStatistics::getEvictedConnections));
+        metricService.gauge(prefix + "validation.failures", Level.INFO,
+                longGauge(route, PoolStatistics::getValidationFailures));
+        metricService.gauge(prefix + "acquires", Level.INFO, longGauge(route, PoolStatistics::getAcquires));
+        metricService.gauge(prefix + "acquire.failures", Level.INFO,
+                longGauge(route, PoolStatistics::getAcquireFailures));
+        metricService.gauge(prefix + "acquire.waited", Level.INFO, longGauge(route, PoolStatistics::getWaitedAcquires));
+        metricService.gauge(prefix + "acquire.wait.mean", Level.INFO, gauge(route, statistics ->
+                statistics.getWaitedAcquires() > 0 ? statistics.getAcquireWaitNanos()
+                        / (double) statistics.getWaitedAcquires() / TimeUnit.MILLISECONDS.toNanos(1) : 0));
+        metricService.gauge(prefix + "creation.rate", Level.INFO,
+                (Gauge<Double>) () -> creationRates.getOrDefault(route, 0d));
+    }
+
+    private Gauge<Long> longGauge(String route, ToLongFunction<PoolStatistics> value) {
+        return () -> {
+            PoolStatistics statistics = routeStatistics.get(route);
+            return statistics != null ? value.applyAsLong(statistics) : 0L;
+        };
+    }
+
+    private Gauge<Double> gauge(String route, ToDoubleFunction<PoolStatistics> value) {
+        return () -> {
+            PoolStatistics statistics = routeStatistics.get(route);
+            return statistics != null ? value.applyAsDouble(statistics) : 0d;
+        };
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.statistics;
+
+import org.wso2.carbon.metrics.core.MetricService;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.LatencyListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the latencies of the transport per backend route and per listener interface, split by the status class
+ * of the response, e.g. gw.route.localhost-8080.ttfb.2xx.p99 or gw.listener.default.latency.5xx.p99. A route has
+ * the connect, pool acquire, time to first byte and response streaming latencies, a listener the latency of the
+ * requests it serves. Both have the lifetime of their connections.
+ * <p>
+ * The number of routes and listeners tracked is capped, beyond it the least recently used one is dropped along with
+ * its gauges. The recorders of a route or a listener are shared by the threads, to bound their memory.
+ */
+public class DimensionedLatencies implements LatencyListener {
+
+    private static final String ROUTE_PREFIX = "gw.route.";
+    private static final String LISTENER_PREFIX = "gw.listener.";
+
+    private static final String CONNECT = "connect";
+    private static final String ACQUIRE = "acquire";
+    private static final String CONNECTION = "connection";
+    private static final String[] TTFB = statusClassPhases("ttfb");
+    private static final String[] STREAMING = statusClassPhases("streaming");
+    private static final String[] LATENCY = statusClassPhases("latency");
+
+    private final MetricService metricService;
+
+    private final int maxDimensions;
+
+    private final Map<String, Dimension> dimensions = new ConcurrentHashMap<>();
+
+    /**
+     * @param metricService metric service to register the gauges with
+     * @param maxDimensions number of routes and listeners tracked at most
+     */
+    public DimensionedLatencies(MetricService metricService, int maxDimensions) {
+        this.metricService = metricService;
+        this.maxDimensions = maxDimensions;
+    }
+
+    @Override
+    public void targetConnected(HttpRoute httpRoute, long connectNanos) {
+        getRouteRecorder(httpRoute, CONNECT).record(connectNanos);
+    }
+
+    @Override
+    public void targetChannelAcquired(HttpRoute httpRoute, long waitNanos) {
+        getRouteRecorder(httpRoute, ACQUIRE).record(waitNanos);
+    }
+
+    @Override
+    public void targetResponseStarted(HttpRoute httpRoute, int statusCode, long timeToFirstByteNanos) {
+        getRouteRecorder(httpRoute, TTFB[statusClass(statusCode)]).record(timeToFirstByteNanos);
+    }
+
+    @Override
+    public void targetResponseCompleted(HttpRoute httpRoute, int statusCode, long streamingNanos) {
+        getRouteRecorder(httpRoute, STREAMING[statusClass(statusCode)]).record(streamingNanos);
+    }
+
+    @Override
+    public void sourceResponseCompleted(String listenerId, int statusCode, long latencyNanos) {
+        getDimension(LISTENER_PREFIX + listenerId).getRecorder(LATENCY[statusClass(statusCode)])
+                .record(latencyNanos);
+    }
+
+    @Override
+    public void targetConnectionClosed(HttpRoute httpRoute, long lifetimeNanos) {
+        getRouteRecorder(httpRoute, CONNECTION).record(lifetimeNanos);
+    }
+
+    @Override
+    public void sourceConnectionClosed(String listenerId, long lifetimeNanos) {
+        getDimension(LISTENER_PREFIX + listenerId).getRecorder(CONNECTION).record(lifetimeNanos);
+    }
+
+    /**
+     * Merge the latencies recorded since the previous snapshot into the interval reported by the gauges.
+     */
+    public void snapshot() {
+        for (Dimension dimension : dimensions.values()) {
+            for (LatencyRecorder recorder : dimension.recorders.values()) {
+                recorder.snapshot();
+            }
+        }
+    }
+
+    /**
+     * @return number of routes and listeners tracked
+     */
+    public int getDimensionCount() {
+        return dimensions.size();
+    }
+
+    private LatencyRecorder getRouteRecorder(HttpRoute httpRoute, String phase) {
+        return getDimension(ROUTE_PREFIX + httpRoute).getRecorder(phase);
+    }
+
+    private Dimension getDimension(String name) {
+        Dimension dimension = dimensions.get(name);
+        if (dimension == null) {
+            dimension = addDimension(name);
+        }
+        dimension.lastUsed = System.nanoTime();
+        return dimension;
+    }
+
+    private synchronized Dimension addDimension(String name) {
+        Dimension dimension = dimensions.get(name);
+        if (dimension == null) {
+            if (dimensions.size() >= maxDimensions) {
+                evictLeastRecentlyUsed();
+            }
+            dimension = new Dimension(name);
+            dimensions.put(name, dimension);
+        }
+        return dimension;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Dimension eldest = null;
+        for (Dimension dimension : dimensions.values()) {
+            if (eldest == null || dimension.lastUsed - eldest.lastUsed < 0) {
+                eldest = dimension;
+            }
+        }
+        if (eldest != null) {
+            dimensions.remove(eldest.name);
+            for (LatencyRecorder recorder : eldest.recorders.values()) {
+                recorder.unregisterGauges(metricService);
+            }
+        }
+    }
+
+    private static int statusClass(int statusCode) {
+        int statusClass = statusCode / 100;
+        return statusClass >= 1 && statusClass <= 5 ? statusClass : 0;
+    }
+
+    private static String[] statusClassPhases(String phase) {
+        String[] phases = new String[6];
+        phases[0] = phase + ".other";
+        for (int i = 1; i < phases.length; i++) {
+            phases[i] = phase + "." + i + "xx";
+        }
+        return phases;
+    }
+
+    /**
+     * The recorders of a route or a listener, created on first use.
+     */
+    private class Dimension {
+
+        private final String name;
+        private final Map<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+        private volatile long lastUsed;
+
+        private Dimension(String name) {
+            this.name = name;
+        }
+
+        private LatencyRecorder getRecorder(String phase) {
+            LatencyRecorder recorder = recorders.get(phase);
+            if (recorder == null) {
+                recorder = recorders.computeIfAbsent(phase, key -> {
+                    LatencyRecorder newRecorder = new LatencyRecorder(name + "." + key, false);
+                    newRecorder.registerGauges(metricService);
+                    return newRecorder;
+                });
+            }
+            return recorder;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.statistics;
+
+import org.wso2.carbon.metrics.core.Gauge;
+import org.wso2.carbon.metrics.core.Level;
+import org.wso2.carbon.metrics.core.MetricService;
+import org.wso2.carbon.transport.http.netty.sender.channel.DnsCache;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the hits and misses of the DNS cache of the senders as gauges.
+ */
+public class DnsCacheGauges {
+
+    private DnsCacheGauges() {
+    }
+
+    /**
+     * Register the DNS cache gauges. The cache is looked up whenever a gauge is read, so the gauges can be
+     * registered before a sender creates it.
+     *
+     * @param metricService metric service to register the gauges with
+     */
+    public static void register(MetricService metricService) {
+        metricService.gauge("gw.dns.cache.hits", Level.INFO, longGauge(DnsCache::getHits));
+        metricService.gauge("gw.dns.cache.misses", Level.INFO, longGauge(DnsCache::getMisses));
+        metricService.gauge("gw.dns.cache.refreshes", Level.INFO, longGauge(DnsCache::getRefreshes));
+        metricService.gauge("gw.dns.cache.failures", Level.INFO, longGauge(DnsCache::getFailures));
+        metricService.gauge("gw.dns.cache.size", Level.INFO, longGauge(DnsCache::getSize));
+    }
+
+    private static Gauge<Long> longGauge(ToLongFunction<DnsCache> value) {
+        return () -> value.applyAsLong(DnsCache.getInstance());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.statistics;
+
+import org.wso2.carbon.metrics.core.Gauge;
+import org.wso2.carbon.metrics.core.Level;
+import org.wso2.carbon.metrics.core.MetricService;
+import org.wso2.carbon.transport.http.netty.common.EventLoopHealth;
+import org.wso2.carbon.transport.http.netty.common.EventLoopMonitor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the health of the boss, worker and sender event loops as gauges, per group of loops, e.g.
+ * gw.eventloop.worker.task.delay.max. Delays are in milliseconds, and are those of the worst loop of the group.
+ */
+public class EventLoopGauges {
+
+    private static final String PREFIX = "gw.eventloop.";
+
+    private static final String[] GROUPS = { EventLoopMonitor.BOSS_GROUP, EventLoopMonitor.WORKER_GROUP,
+            EventLoopMonitor.SENDER_GROUP };
+
+    private EventLoopGauges() {
+    }
+
+    /**
+     * Register the event loop gauges. The loops are looked up whenever a gauge is read, so the gauges can be
+     * registered before the transport creates them.
+     *
+     * @param metricService metric service to register the gauges with
+     */
+    public static void register(MetricService metricService) {
+        for (String group : GROUPS) {
+            String prefix = PREFIX + group + ".";
+            metricService.gauge(prefix + "task.delay.max", Level.INFO,
+                    maxGauge(group, health -> toMillis(health.getTaskDelayNanos())));
+            metricService.gauge(prefix + "scheduled.task.delay.max", Level.INFO,
+                    maxGauge(group, health -> toMillis(health.getScheduledTaskDelayNanos())));
+            metricService.gauge(prefix + "busy.ratio.max", Level.INFO,
+                    maxGauge(group, EventLoopHealth::getBusyRatio));
+            metricService.gauge(prefix + "io.ratio", Level.INFO, maxGauge(group, EventLoopHealth::getIoRatio));
+            metricService.gauge(prefix + "pending.tasks", Level.INFO,
+                    sumGauge(group, EventLoopHealth::getPendingTasks));
+            metricService.gauge(prefix + "blocked", Level.INFO,
+                    sumGauge(group, health -> health.isBlocked() ? 1 : 0));
+            metricService.gauge(prefix + "blocked.count", Level.INFO,
+                    sumGauge(group, EventLoopHealth::getBlockedCount));
+        }
+    }
+
+    private static Gauge<Double> maxGauge(String group, ToDoubleFunction<EventLoopHealth> value) {
+        return () -> {
+            double max = 0;
+            for (EventLoopHealth health : EventLoopMonitor.getInstance().getEventLoopHealth(group)) {
+                max = Math.max(max, value.applyAsDouble(health));
+            }
+            return max;
+        };
+    }
+
+    private static Gauge<Long> sumGauge(String group, ToLongFunction<EventLoopHealth> value) {
+        return () -> {
+            long sum = 0;
+            for (EventLoopHealth health : EventLoopMonitor.getInstance().getEventLoopHealth(group)) {
+                sum += value.applyAsLong(health);
+            }
+            return sum;
+        };
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.statistics;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.wso2.carbon.metrics.core.Gauge;
+import org.wso2.carbon.metrics.core.Level;
+import org.wso2.carbon.metrics.core.MetricService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records latencies into a histogram per recording thread, which is written without locks and without allocation.
+ * The histograms of the threads are merged into the histogram of an interval when a snapshot is taken, and the
+ * gauges of the recorder report the snapshot of the last interval. A recorder of a rarely used metric can instead
+ * record into one histogram shared by the threads, which is written without locks as well but takes less memory.
+ * <p>
+ * Latencies are tracked from a microsecond up to an hour, with 2 significant digits, so that the memory of a
+ * recording thread is bounded. Longer latencies are recorded as an hour.
+ */
+public class LatencyRecorder {
+
+    private static final long LOWEST_DISCERNIBLE_VALUE = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private static final double[] PERCENTILES = { 50, 75, 95, 99, 99.9, 99.99 };
+    private static final String[] PERCENTILE_NAMES = { "p50", "p75", "p95", "p99", "p999", "p9999" };
+
+    private final String name;
+
+    // Null unless the threads share a histogram
+    private final Recorder sharedRecorder;
+    private Histogram sharedInterval;
+
+    private final List<String> gaugeNames = new ArrayList<>();
+
+    private final List<ThreadRecorder> threadRecorders = new CopyOnWriteArrayList<>();
+
+    private final FastThreadLocal<ThreadRecorder> threadRecorder = new FastThreadLocal<ThreadRecorder>() {
+        @Override
+        protected ThreadRecorder initialValue() {
+            ThreadRecorder recorder = new ThreadRecorder();
+            threadRecorders.add(recorder);
+            return recorder;
+        }
+    };
+
+    private volatile Histogram lastInterval = newHistogram();
+    private volatile long totalCount;
+
+    /**
+     * @param name name of the recorder, which prefixes the names of its gauges
+     */
+    public LatencyRecorder(String name) {
+        this(name, true);
+    }
+
+    /**
+     * @param name      name of the recorder, which prefixes the names of its gauges
+     * @param perThread whether each thread records into its own histogram, rather than into a shared one
+     */
+    public LatencyRecorder(String name, boolean perThread) {
+        this.name = name;
+        this.sharedRecorder = perThread ?
+                null :
+                new Recorder(LOWEST_DISCERNIBLE_VALUE, HIGHEST_TRACKABLE_VALUE, SIGNIFICANT_DIGITS);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record the time elapsed since a {@link System#nanoTime()} stamp.
+     *
+     * @param startNanos nanoTime at which the measured phase started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param latencyNanos latency in nanoseconds
+     */
+    public void record(long latencyNanos) {
+        long value = Math.min(Math.max(latencyNanos, 0), HIGHEST_TRACKABLE_VALUE);
+        if (sharedRecorder != null) {
+            sharedRecorder.recordValue(value);
+        } else {
+            threadRecorder.get().recorder.recordValue(value);
+        }
+    }
+
+    /**
+     * Merge the latencies recorded by all threads since the previous snapshot into the histogram of a new interval.
+     * The histograms of threads which have terminated are dropped once their latencies are merged.
+     *
+     * @return histogram of the interval, in nanoseconds
+     */
+    public synchronized Histogram snapshot() {
+        Histogram interval = newHistogram();
+        if (sharedRecorder != null) {
+            sharedInterval = sharedRecorder.getIntervalHistogram(sharedInterval);
+            interval.add(sharedInterval);
+        }
+        List<ThreadRecorder> deadRecorders = null;
+        for (ThreadRecorder recorder : threadRecorders) {
+            recorder.intervalHistogram = recorder.recorder.getIntervalHistogram(recorder.intervalHistogram);
+            interval.add(recorder.intervalHistogram);
+            if (!recorder.thread.isAlive()) {
+                // Its last latencies are in this interval, and it records no more
+                if (deadRecorders == null) {
+                    deadRecorders = new ArrayList<>();
+                }
+                deadRecorders.add(recorder);
+            }
+        }
+        if (deadRecorders != null) {
+            threadRecorders.removeAll(deadRecorders);
+        }
+        totalCount += interval.getTotalCount();
+        lastInterval = interval;
+        return interval;
+    }
+
+    /**
+     * @return histogram of the last interval, in nanoseconds
+     */
+    public Histogram getLastInterval() {
+        return lastInterval;
+    }
+
+    /**
+     * @return number of latencies recorded up to the last snapshot
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Register the gauges of the last interval, in milliseconds, under the name of the recorder, e.g. name.p99, and
+     * the number of recorded latencies as name.count.
+     *
+     * @param metricService metric service to register the gauges with
+     */
+    public void registerGauges(MetricService metricService) {
+        registerGauge(metricService, "count", this::getCount);
+        registerGauge(metricService, "mean", () -> toMillis(lastInterval.getMean()));
+        registerGauge(metricService, "max", () -> toMillis(lastInterval.getMaxValue()));
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            double percentile = PERCENTILES[i];
+            registerGauge(metricService, PERCENTILE_NAMES[i],
+                    () -> toMillis(lastInterval.getValueAtPercentile(percentile)));
+        }
+    }
+
+    /**
+     * Remove the gauges registered by {@link #registerGauges(MetricService)}.
+     *
+     * @param metricService metric service the gauges are registered with
+     */
+    public void unregisterGauges(MetricService metricService) {
+        for (String gaugeName : gaugeNames) {
+            metricService.remove(gaugeName);
+        }
+        gaugeNames.clear();
+    }
+
+    private <T> void registerGauge(MetricService metricService, String suffix, Gauge<T> gauge) {
+        String gaugeName = name + "." + suffix;
+        metricService.gauge(gaugeName, Level.INFO, gauge);
+        gaugeNames.add(gaugeName);
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(LOWEST_DISCERNIBLE_VALUE, HIGHEST_TRACKABLE_VALUE, SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * The recorder of a thread, with the histogram of its last interval, which is recycled by the next snapshot.
+     */
+    private static class ThreadRecorder {
+
+        // Created by the thread recording into it
+        private final Thread thread = Thread.currentThread();
+
+        private final SingleWriterRecorder recorder = new SingleWriterRecorder(LOWEST_DISCERNIBLE_VALUE,
+                HIGHEST_TRACKABLE_VALUE, SIGNIFICANT_DIGITS);
+
+        private Histogram intervalHistogram;
+    }
+}
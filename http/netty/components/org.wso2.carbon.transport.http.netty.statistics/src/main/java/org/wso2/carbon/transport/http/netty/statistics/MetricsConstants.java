@@ -19,16 +19,16 @@
 package org.wso2.carbon.transport.http.netty.statistics;
 
 /**
- * Latency Metrics parameters.
+ * Latency Metrics parameters. The message properties hold the {@link System#nanoTime()} at which a phase started.
  */
 public class MetricsConstants {
 
-    public static final String SOURCE_REQUEST_METRICS_HOLDER = "SOURCE_REQUEST_METRICS_HOLDER";
+    public static final String SOURCE_REQUEST_START = "SOURCE_REQUEST_START";
 
-    public static final String TARGET_REQUEST_METRICS_HOLDER = "TARGET_REQUEST_METRICS_HOLDER";
+    public static final String TARGET_REQUEST_START = "TARGET_REQUEST_START";
 
-    public static final String TARGET_RESPONSE_METRICS_HOLDER = "TARGET_RESPONSE_METRICS_HOLDER";
+    public static final String TARGET_RESPONSE_START = "TARGET_RESPONSE_START";
 
-    public static final String SOURCE_RESPONSE_METRICS_HOLDER = "SOURCE_RESPONSE_METRICS_HOLDER";
+    public static final String SOURCE_RESPONSE_START = "SOURCE_RESPONSE_START";
 
 }
@@ -21,24 +21,20 @@ package org.wso2.carbon.transport.http.netty.statistics;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.handler.MessagingHandler;
-import org.wso2.carbon.transport.http.netty.statistics.holders.MetricsStaticsHolder;
-import org.wso2.carbon.transport.http.netty.statistics.holders.SourceConnectionStaticsHolder;
-import org.wso2.carbon.transport.http.netty.statistics.holders.SourceRequestStaticsHolder;
-import org.wso2.carbon.transport.http.netty.statistics.holders.SourceResponseStaticsHolder;
-import org.wso2.carbon.transport.http.netty.statistics.holders.TargetConnectionStaticsHolder;
-import org.wso2.carbon.transport.http.netty.statistics.holders.TargetRequestStaticsHolder;
-import org.wso2.carbon.transport.http.netty.statistics.holders.TargetResponseStaticsHolder;
-
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.LatencyListener;
 
 /**
- * Implementation of MessagingHandler.
+ * Implementation of MessagingHandler. The start of each phase is stamped with {@link System#nanoTime()} and its
+ * latency is recorded by the recorder of the phase when it ends.
+ * <p>
+ * The lifetime of the connections is not correlated by the keys of the connection events. The transport keeps the
+ * time a connection was opened on its channel and reports the lifetime through {@link LatencyListener} when it
+ * closes, along with the other latencies, which are passed on to the latencies per route and per listener.
  */
-public class StatisticsHandler implements MessagingHandler {
+public class StatisticsHandler implements MessagingHandler, LatencyListener {
 
     private final TimerHolder timerHolder;
-    private Map<String, MetricsStaticsHolder> messageCorrelation = new ConcurrentHashMap<>();
 
     public StatisticsHandler(TimerHolder timerHolder) {
         // Initialize the timerHolder
@@ -53,92 +49,99 @@ public class StatisticsHandler implements MessagingHandler {
 
     @Override
     public void invokeAtSourceConnectionInitiation(String key) {
-        MetricsStaticsHolder sourceConnectionMetricsHolder = new SourceConnectionStaticsHolder(timerHolder);
-        sourceConnectionMetricsHolder.startTimer();
-        messageCorrelation.put(key, sourceConnectionMetricsHolder);
     }
 
     @Override
     public void invokeAtSourceConnectionTermination(String key) {
-        messageCorrelation.remove(key).stopTimer();
     }
 
     @Override
     public void invokeAtSourceRequestReceiving(CarbonMessage carbonMessage) {
-        SourceRequestStaticsHolder requestMetricsStaticsHolder = new SourceRequestStaticsHolder(timerHolder);
-        requestMetricsStaticsHolder.startTimer();
-        carbonMessage.setProperty(MetricsConstants.SOURCE_REQUEST_METRICS_HOLDER, requestMetricsStaticsHolder);
+        carbonMessage.setProperty(MetricsConstants.SOURCE_REQUEST_START, System.nanoTime());
     }
 
     @Override
     public void invokeAtSourceRequestSending(CarbonMessage carbonMessage) {
-        SourceRequestStaticsHolder requestMetricsStaticsHolder = (SourceRequestStaticsHolder) carbonMessage
-                .getProperty(MetricsConstants.SOURCE_REQUEST_METRICS_HOLDER);
-        if (requestMetricsStaticsHolder != null) {
-            requestMetricsStaticsHolder.stopTimer();
-        }
-
+        recordSince(carbonMessage.getProperty(MetricsConstants.SOURCE_REQUEST_START),
+                timerHolder.getSourceRequestRecorder());
     }
 
     @Override
     public void invokeAtTargetRequestReceiving(CarbonMessage carbonMessage) {
-        TargetRequestStaticsHolder requestMetricsStaticsHolder = new TargetRequestStaticsHolder(timerHolder);
-        requestMetricsStaticsHolder.startTimer();
-        carbonMessage.setProperty(MetricsConstants.TARGET_REQUEST_METRICS_HOLDER, requestMetricsStaticsHolder);
+        carbonMessage.setProperty(MetricsConstants.TARGET_REQUEST_START, System.nanoTime());
     }
 
     @Override
     public void invokeAtTargetRequestSending(CarbonMessage carbonMessage) {
-        TargetRequestStaticsHolder requestMetricsStaticsHolder = (TargetRequestStaticsHolder) carbonMessage
-                .getProperty(MetricsConstants.TARGET_REQUEST_METRICS_HOLDER);
-        if (requestMetricsStaticsHolder != null) {
-            requestMetricsStaticsHolder.stopTimer();
-        }
+        recordSince(carbonMessage.getProperty(MetricsConstants.TARGET_REQUEST_START),
+                timerHolder.getTargetRequestRecorder());
     }
 
     @Override
     public void invokeAtTargetResponseReceiving(CarbonMessage carbonMessage) {
-        TargetResponseStaticsHolder responseMetricsStaticsHolder = new TargetResponseStaticsHolder(timerHolder);
-        responseMetricsStaticsHolder.startTimer();
-        carbonMessage.setProperty(MetricsConstants.TARGET_RESPONSE_METRICS_HOLDER, responseMetricsStaticsHolder);
+        carbonMessage.setProperty(MetricsConstants.TARGET_RESPONSE_START, System.nanoTime());
     }
 
     @Override
     public void invokeAtTargetResponseSending(CarbonMessage carbonMessage) {
-        TargetResponseStaticsHolder responseMetricsStaticsHolder = (TargetResponseStaticsHolder) carbonMessage
-                .getProperty(MetricsConstants.TARGET_RESPONSE_METRICS_HOLDER);
-        if (responseMetricsStaticsHolder != null) {
-            responseMetricsStaticsHolder.stopTimer();
-        }
-
+        recordSince(carbonMessage.getProperty(MetricsConstants.TARGET_RESPONSE_START),
+                timerHolder.getTargetResponseRecorder());
     }
 
     @Override
     public void invokeAtSourceResponseReceiving(CarbonMessage carbonMessage) {
-        SourceResponseStaticsHolder responseMetricsStaticsHolder = new SourceResponseStaticsHolder(timerHolder);
-        responseMetricsStaticsHolder.startTimer();
-        carbonMessage.setProperty(MetricsConstants.SOURCE_RESPONSE_METRICS_HOLDER, responseMetricsStaticsHolder);
+        carbonMessage.setProperty(MetricsConstants.SOURCE_RESPONSE_START, System.nanoTime());
     }
 
     @Override
     public void invokeAtSourceResponseSending(CarbonMessage carbonMessage) {
-        SourceResponseStaticsHolder responseMetricsStaticsHolder = (SourceResponseStaticsHolder) carbonMessage
-                .getProperty(MetricsConstants.SOURCE_RESPONSE_METRICS_HOLDER);
-        if (responseMetricsStaticsHolder != null) {
-            responseMetricsStaticsHolder.stopTimer();
-        }
+        recordSince(carbonMessage.getProperty(MetricsConstants.SOURCE_RESPONSE_START),
+                timerHolder.getSourceResponseRecorder());
     }
 
     @Override
     public void invokeAtTargetConnectionInitiation(String key) {
-        MetricsStaticsHolder targetConnectionMetricsHolder = new TargetConnectionStaticsHolder(timerHolder);
-        targetConnectionMetricsHolder.startTimer();
-        messageCorrelation.put(key, targetConnectionMetricsHolder);
     }
 
     @Override
     public void invokeAtTargetConnectionTermination(String key) {
-        messageCorrelation.remove(key).stopTimer();
+    }
+
+    @Override
+    public void targetConnected(HttpRoute httpRoute, long connectNanos) {
+        timerHolder.getDimensionedLatencies().targetConnected(httpRoute, connectNanos);
+    }
+
+    @Override
+    public void targetChannelAcquired(HttpRoute httpRoute, long waitNanos) {
+        timerHolder.getDimensionedLatencies().targetChannelAcquired(httpRoute, waitNanos);
+    }
+
+    @Override
+    public void targetResponseStarted(HttpRoute httpRoute, int statusCode, long timeToFirstByteNanos) {
+        timerHolder.getDimensionedLatencies().targetResponseStarted(httpRoute, statusCode, timeToFirstByteNanos);
+    }
+
+    @Override
+    public void targetResponseCompleted(HttpRoute httpRoute, int statusCode, long streamingNanos) {
+        timerHolder.getDimensionedLatencies().targetResponseCompleted(httpRoute, statusCode, streamingNanos);
+    }
+
+    @Override
+    public void sourceResponseCompleted(String listenerId, int statusCode, long latencyNanos) {
+        timerHolder.getDimensionedLatencies().sourceResponseCompleted(listenerId, statusCode, latencyNanos);
+    }
+
+    @Override
+    public void targetConnectionClosed(HttpRoute httpRoute, long lifetimeNanos) {
+        timerHolder.getTargetConnectionRecorder().record(lifetimeNanos);
+        timerHolder.getDimensionedLatencies().targetConnectionClosed(httpRoute, lifetimeNanos);
+    }
+
+    @Override
+    public void sourceConnectionClosed(String listenerId, long lifetimeNanos) {
+        timerHolder.getSourceConnectionRecorder().record(lifetimeNanos);
+        timerHolder.getDimensionedLatencies().sourceConnectionClosed(listenerId, lifetimeNanos);
     }
 
     @Override
@@ -146,4 +149,10 @@ public class StatisticsHandler implements MessagingHandler {
         return "StatisticsHandler";
     }
 
+    private static void recordSince(Object start, LatencyRecorder recorder) {
+        if (start instanceof Long) {
+            recorder.recordSince((Long) start);
+        }
+    }
+
 }
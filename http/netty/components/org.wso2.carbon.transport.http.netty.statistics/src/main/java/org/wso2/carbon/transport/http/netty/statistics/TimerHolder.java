@@ -18,56 +18,100 @@
 
 package org.wso2.carbon.transport.http.netty.statistics;
 
-import org.wso2.carbon.metrics.core.Level;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.wso2.carbon.metrics.core.MetricService;
-import org.wso2.carbon.metrics.core.Timer;
 import org.wso2.carbon.transport.http.netty.statistics.internal.DataHolder;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
- * Initialize all the timers.
+ * Initialize all the latency recorders. The recorders keep the names of the former timers, and their percentiles,
+ * mean, maximum and count are published as gauges derived from those names, e.g. gw.source.request.timer.p99.
  */
 public class TimerHolder {
 
+    private static final Logger log = LoggerFactory.getLogger(TimerHolder.class);
+
+    // Interval of the histograms reported by the gauges
+    private static final long SNAPSHOT_INTERVAL_SECONDS = 60;
+    // Routes and listeners whose latencies are tracked at most
+    private static final int MAX_DIMENSIONS = 64;
+
     private final MetricService metricService = DataHolder.getInstance().getMetricService();
 
-    private final Timer sourceConnectionTimer = metricService.timer("gw.source.connection.timer", Level.INFO);
-    private final Timer targetConnectionTimer = metricService.timer("gw.target.connection.timer", Level.INFO);
-    private final Timer sourceRequestTimer = metricService.timer("gw.source.request.timer", Level.INFO);
-    private final Timer targetRequestTimer = metricService.timer("gw.target.request.timer", Level.INFO);
-    private final Timer targetResponseTimer = metricService.timer("gw.target.response.timer", Level.INFO);
-    private final Timer sourceResponseTimer = metricService.timer("gw.source.response.timer", Level.INFO);
+    private final LatencyRecorder sourceConnectionRecorder = new LatencyRecorder("gw.source.connection.timer");
+    private final LatencyRecorder targetConnectionRecorder = new LatencyRecorder("gw.target.connection.timer");
+    private final LatencyRecorder sourceRequestRecorder = new LatencyRecorder("gw.source.request.timer");
+    private final LatencyRecorder targetRequestRecorder = new LatencyRecorder("gw.target.request.timer");
+    private final LatencyRecorder targetResponseRecorder = new LatencyRecorder("gw.target.response.timer");
+    private final LatencyRecorder sourceResponseRecorder = new LatencyRecorder("gw.source.response.timer");
+
+    private final LatencyRecorder[] recorders = { sourceConnectionRecorder, targetConnectionRecorder,
+            sourceRequestRecorder, targetRequestRecorder, targetResponseRecorder, sourceResponseRecorder };
+
+    private final DimensionedLatencies dimensionedLatencies = new DimensionedLatencies(metricService,
+            MAX_DIMENSIONS);
 
     private static volatile TimerHolder timerHolder = new TimerHolder();
 
     private TimerHolder() {
-
+        for (LatencyRecorder recorder : recorders) {
+            recorder.registerGauges(metricService);
+        }
+        ScheduledExecutorService snapshotExecutor = Executors
+                .newSingleThreadScheduledExecutor(new DefaultThreadFactory("latency-snapshot", true));
+        snapshotExecutor.scheduleAtFixedRate(this::snapshot, SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
     }
 
     public static TimerHolder getInstance() {
         return timerHolder;
     }
 
-    public Timer getSourceConnectionTimer() {
-        return sourceConnectionTimer;
+    private void snapshot() {
+        try {
+            for (LatencyRecorder recorder : recorders) {
+                recorder.snapshot();
+            }
+            dimensionedLatencies.snapshot();
+        } catch (RuntimeException e) {
+            // Keep taking snapshots, the executor stops running a task which throws
+            log.error("Could not take a snapshot of the latencies", e);
+        }
+    }
+
+    public LatencyRecorder getSourceConnectionRecorder() {
+        return sourceConnectionRecorder;
+    }
+
+    public LatencyRecorder getTargetConnectionRecorder() {
+        return targetConnectionRecorder;
     }
 
-    public Timer getTargetConnectionTimer() {
-        return targetConnectionTimer;
+    public LatencyRecorder getSourceRequestRecorder() {
+        return sourceRequestRecorder;
     }
 
-    public Timer getSourceRequestTimer() {
-        return sourceRequestTimer;
+    public LatencyRecorder getTargetRequestRecorder() {
+        return targetRequestRecorder;
     }
 
-    public Timer getTargetRequestTimer() {
-        return targetRequestTimer;
+    public LatencyRecorder getTargetResponseRecorder() {
+        return targetResponseRecorder;
     }
 
-    public Timer getTargetResponseTimer() {
-        return targetResponseTimer;
+    public LatencyRecorder getSourceResponseRecorder() {
+        return sourceResponseRecorder;
     }
 
-    public Timer getSourceResponseTimer() {
-        return sourceResponseTimer;
+    /**
+     * @return latencies per route and per listener
+     */
+    public DimensionedLatencies getDimensionedLatencies() {
+        return dimensionedLatencies;
     }
 }
@@ -28,8 +28,13 @@ import org.osgi.service.component.annotations.ReferencePolicy;
 import org.wso2.carbon.messaging.handler.MessagingHandler;
 import org.wso2.carbon.metrics.core.MetricManagementService;
 import org.wso2.carbon.metrics.core.MetricService;
+import org.wso2.carbon.transport.http.netty.common.LatencyListener;
 import org.wso2.carbon.transport.http.netty.config.TransportProperty;
 import org.wso2.carbon.transport.http.netty.config.YAMLTransportConfigurationBuilder;
+import org.wso2.carbon.transport.http.netty.statistics.BufferAllocatorGauges;
+import org.wso2.carbon.transport.http.netty.statistics.ConnectionPoolGauges;
+import org.wso2.carbon.transport.http.netty.statistics.DnsCacheGauges;
+import org.wso2.carbon.transport.http.netty.statistics.EventLoopGauges;
 import org.wso2.carbon.transport.http.netty.statistics.StatisticsHandler;
 import org.wso2.carbon.transport.http.netty.statistics.TimerHolder;
 
@@ -96,14 +101,19 @@ public class StatisticsServiceComponent {
     @Activate
     public void activate(BundleContext bundleContext) {
         if (getMetricsStatus()) {
-            bundleContext
-                    .registerService(MessagingHandler.class, new StatisticsHandler(TimerHolder.getInstance()), null);
+            StatisticsHandler statisticsHandler = new StatisticsHandler(TimerHolder.getInstance());
+            bundleContext.registerService(MessagingHandler.class, statisticsHandler, null);
+            BufferAllocatorGauges.register(DataHolder.getInstance().getMetricService());
+            DnsCacheGauges.register(DataHolder.getInstance().getMetricService());
+            EventLoopGauges.register(DataHolder.getInstance().getMetricService());
+            ConnectionPoolGauges.register(DataHolder.getInstance().getMetricService());
+            LatencyListener.setInstance(statisticsHandler);
         }
     }
 
     @Deactivate
     public void deactivate(BundleContext bundleContext) {
-
+        LatencyListener.setInstance(null);
     }
 
     private boolean getMetricsStatus() {
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.common;
+
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.RecvByteBufAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.config.TransportProperty;
+
+import java.util.Set;
+
+/**
+ * A class represents the buffer allocator used by listener and sender channels and for the content the response
+ * writers copy before writing it. Listeners and senders share one allocator, so that their buffers come from the same pool.
+ */
+public class BufferAllocatorConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(BufferAllocatorConfiguration.class);
+
+    private static volatile BufferAllocatorConfiguration bufferAllocatorConfig;
+
+    private boolean pooled = true;
+
+    private boolean preferDirect = true;
+
+    private int heapArenas = PooledByteBufAllocator.defaultNumHeapArena();
+
+    private int directArenas = PooledByteBufAllocator.defaultNumDirectArena();
+
+    private int pageSize = PooledByteBufAllocator.defaultPageSize();
+
+    private int maxOrder = PooledByteBufAllocator.defaultMaxOrder();
+
+    private int receiveBufferMinimumSize = 64;
+
+    private int receiveBufferInitialSize = 1024;
+
+    private int receiveBufferMaximumSize = 65536;
+
+    private final ByteBufAllocator allocator;
+
+    private final RecvByteBufAllocator recvByteBufAllocator;
+
+    private BufferAllocatorConfiguration(Set<TransportProperty> properties) {
+        if (properties != null) {
+            for (TransportProperty property : properties) {
+                if (Constants.BUFFER_ALLOCATOR_POOLED.equals(property.getName())) {
+                    pooled = (Boolean) property.getValue();
+                } else if (Constants.BUFFER_ALLOCATOR_PREFER_DIRECT.equals(property.getName())) {
+                    preferDirect = (Boolean) property.getValue();
+                } else if (Constants.BUFFER_ALLOCATOR_HEAP_ARENAS.equals(property.getName())) {
+                    heapArenas = (Integer) property.getValue();
+                } else if (Constants.BUFFER_ALLOCATOR_DIRECT_ARENAS.equals(property.getName())) {
+                    directArenas = (Integer) property.getValue();
+                } else if (Constants.BUFFER_ALLOCATOR_PAGE_SIZE.equals(property.getName())) {
+                    pageSize = (Integer) property.getValue();
+                } else if (Constants.BUFFER_ALLOCATOR_MAX_ORDER.equals(property.getName())) {
+                    maxOrder = (Integer) property.getValue();
+                } else if (Constants.RECEIVE_BUFFER_MINIMUM_SIZE.equals(property.getName())) {
+                    receiveBufferMinimumSize = (Integer) property.getValue();
+                } else if (Constants.RECEIVE_BUFFER_INITIAL_SIZE.equals(property.getName())) {
+                    receiveBufferInitialSize = (Integer) property.getValue();
+                } else if (Constants.RECEIVE_BUFFER_MAXIMUM_SIZE.equals(property.getName())) {
+                    receiveBufferMaximumSize = (Integer) property.getValue();
+                }
+            }
+        }
+        log.debug(Constants.BUFFER_ALLOCATOR_POOLED + ": " + pooled);
+        log.debug(Constants.BUFFER_ALLOCATOR_PREFER_DIRECT + ": " + preferDirect);
+        log.debug(Constants.BUFFER_ALLOCATOR_HEAP_ARENAS + ": " + heapArenas);
+        log.debug(Constants.BUFFER_ALLOCATOR_DIRECT_ARENAS + ": " + directArenas);
+        log.debug(Constants.BUFFER_ALLOCATOR_PAGE_SIZE + ": " + pageSize);
+        log.debug(Constants.BUFFER_ALLOCATOR_MAX_ORDER + ": " + maxOrder);
+        log.debug(Constants.RECEIVE_BUFFER_MINIMUM_SIZE + ": " + receiveBufferMinimumSize);
+        log.debug(Constants.RECEIVE_BUFFER_INITIAL_SIZE + ": " + receiveBufferInitialSize);
+        log.debug(Constants.RECEIVE_BUFFER_MAXIMUM_SIZE + ": " + receiveBufferMaximumSize);
+
+        if (pooled) {
+            allocator = new InstrumentedPooledByteBufAllocator(preferDirect, heapArenas, directArenas, pageSize,
+                    maxOrder);
+        } else {
+            allocator = new UnpooledByteBufAllocator(preferDirect);
+        }
+        recvByteBufAllocator = new AdaptiveRecvByteBufAllocator(receiveBufferMinimumSize, receiveBufferInitialSize,
+                receiveBufferMaximumSize);
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public boolean isPreferDirect() {
+        return preferDirect;
+    }
+
+    public int getChunkSize() {
+        return pageSize << maxOrder;
+    }
+
+    public ByteBufAllocator getAllocator() {
+        return allocator;
+    }
+
+    public RecvByteBufAllocator getRecvByteBufAllocator() {
+        return recvByteBufAllocator;
+    }
+
+    /**
+     * @return usage of the pooled allocator, or null if buffers are not pooled
+     */
+    public InstrumentedPooledByteBufAllocator getPooledAllocator() {
+        return pooled ? (InstrumentedPooledByteBufAllocator) allocator : null;
+    }
+
+    /**
+     * Use the allocators for the server channel and the channels it accepts.
+     *
+     * @param serverBootstrap bootstrap of the listener
+     */
+    public void configureServerBootstrap(ServerBootstrap serverBootstrap) {
+        serverBootstrap.option(ChannelOption.ALLOCATOR, allocator);
+        serverBootstrap.childOption(ChannelOption.ALLOCATOR, allocator);
+        serverBootstrap.childOption(ChannelOption.RCVBUF_ALLOCATOR, recvByteBufAllocator);
+    }
+
+    /**
+     * Use the allocators for a client channel.
+     *
+     * @param bootstrap bootstrap of the client channel
+     */
+    public void configureBootstrap(AbstractBootstrap<?, ?> bootstrap) {
+        bootstrap.option(ChannelOption.ALLOCATOR, allocator);
+        bootstrap.option(ChannelOption.RCVBUF_ALLOCATOR, recvByteBufAllocator);
+    }
+
+    /**
+     * @return buffer allocator configuration, created with the default settings if it is not created yet
+     */
+    public static BufferAllocatorConfiguration getInstance() {
+        if (bufferAllocatorConfig == null) {
+            createBufferAllocatorConfiguration(null);
+        }
+        return bufferAllocatorConfig;
+    }
+
+    /**
+     * Create the buffer allocator from the transport properties, unless the listener or the sender has already
+     * created it.
+     *
+     * @param properties transport properties
+     */
+    public static synchronized void createBufferAllocatorConfiguration(Set<TransportProperty> properties) {
+        if (bufferAllocatorConfig == null) {
+            bufferAllocatorConfig = new BufferAllocatorConfiguration(properties);
+        }
+    }
+}
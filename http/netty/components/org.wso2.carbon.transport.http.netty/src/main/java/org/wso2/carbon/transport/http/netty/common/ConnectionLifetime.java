@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.common;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import org.wso2.carbon.messaging.handler.HandlerExecutor;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+
+/**
+ * Tracks the lifetime of the inbound and outbound connections. The time a connection was opened is kept as an
+ * attribute of its channel, and the messaging handlers are told about the connection with the id of the channel as
+ * its key, which is unique and computed only once per channel.
+ */
+public class ConnectionLifetime {
+
+    private static final AttributeKey<Long> OPENED_AT = AttributeKey.valueOf("ConnectionLifetime.openedAt");
+
+    private ConnectionLifetime() {
+    }
+
+    /**
+     * Report an inbound connection as opened. A connection which is already open, e.g. one upgraded to HTTP/2,
+     * is not reported again.
+     *
+     * @param channel channel of the connection
+     */
+    public static void sourceOpened(Channel channel) {
+        if (!opened(channel)) {
+            return;
+        }
+        HandlerExecutor handlerExecutor = HTTPTransportContextHolder.getInstance().getHandlerExecutor();
+        if (handlerExecutor != null) {
+            handlerExecutor.executeAtSourceConnectionInitiation(channel.id().asLongText());
+        }
+    }
+
+    /**
+     * Report an inbound connection as closed, unless it was already reported.
+     *
+     * @param channel    channel of the connection
+     * @param listenerId id of the listener interface the connection was accepted on
+     */
+    public static void sourceClosed(Channel channel, String listenerId) {
+        Long openedAt = channel.attr(OPENED_AT).getAndSet(null);
+        if (openedAt == null) {
+            return;
+        }
+        HandlerExecutor handlerExecutor = HTTPTransportContextHolder.getInstance().getHandlerExecutor();
+        if (handlerExecutor != null) {
+            handlerExecutor.executeAtSourceConnectionTermination(channel.id().asLongText());
+        }
+        LatencyListener latencyListener = LatencyListener.getInstance();
+        if (latencyListener != null) {
+            latencyListener.sourceConnectionClosed(listenerId, System.nanoTime() - openedAt);
+        }
+    }
+
+    /**
+     * Report an outbound connection as opened, unless it was already reported.
+     *
+     * @param channel channel of the connection
+     */
+    public static void targetOpened(Channel channel) {
+        if (!opened(channel)) {
+            return;
+        }
+        HandlerExecutor handlerExecutor = HTTPTransportContextHolder.getInstance().getHandlerExecutor();
+        if (handlerExecutor != null) {
+            handlerExecutor.executeAtTargetConnectionInitiation(channel.id().asLongText());
+        }
+    }
+
+    /**
+     * Report an outbound connection as closed, unless it was already reported.
+     *
+     * @param channel   channel of the connection
+     * @param httpRoute route of the connection, or null if it is not known
+     */
+    public static void targetClosed(Channel channel, HttpRoute httpRoute) {
+        Long openedAt = channel.attr(OPENED_AT).getAndSet(null);
+        if (openedAt == null) {
+            return;
+        }
+        HandlerExecutor handlerExecutor = HTTPTransportContextHolder.getInstance().getHandlerExecutor();
+        if (handlerExecutor != null) {
+            handlerExecutor.executeAtTargetConnectionTermination(channel.id().asLongText());
+        }
+        LatencyListener latencyListener = LatencyListener.getInstance();
+        if (latencyListener != null && httpRoute != null) {
+            latencyListener.targetConnectionClosed(httpRoute, System.nanoTime() - openedAt);
+        }
+    }
+
+    private static boolean opened(Channel channel) {
+        return channel.attr(OPENED_AT).setIfAbsent(System.nanoTime()) == null;
+    }
+}
@@ -42,10 +42,20 @@ public final class Constants {
 
     public static final String CLINET_BOOTSTRAP_SO_TIMEOUT = "client.bootstrap.socket.timeout";
 
+    // Unconsumed response content above which reading from the target channel is paused, and resumed at the low mark
+    public static final String CLIENT_BOOTSTRAP_CONTENT_HIGH_WATER_MARK = "client.bootstrap.content.high.water.mark";
+
+    public static final String CLIENT_BOOTSTRAP_CONTENT_LOW_WATER_MARK = "client.bootstrap.content.low.water.mark";
+
     //Server side SSL Parameters
     public static final String CLIENT_SUPPORT_CIPHERS = "client.ssl.ciphers";
     public static final String CLIENT_SUPPORT_HTTPS_PROTOCOLS = "client.ssl.http.protocols";
     public static final String CLIENT_ENABLE_SESSION_CREATION = "client.enable.session.creation";
+    // SSL provider of the sender, jdk or openssl, i.e. netty-tcnative, which falls back to jdk if not available
+    public static final String CLIENT_SSL_PROVIDER = "client.ssl.provider";
+    public static final String CLIENT_SSL_SESSION_CACHE_SIZE = "client.ssl.session.cache.size";
+    // Seconds
+    public static final String CLIENT_SSL_SESSION_TIMEOUT = "client.ssl.session.timeout";
 
     // Server Bootstrap related
     public static final String SERVER_BOOTSTRAP_TCP_NO_DELY = "server.bootstrap.nodelay";
@@ -64,12 +74,78 @@ public final class Constants {
 
     public static final String SERVER_BOOTSTRAP_SO_TIMEOUT = "server.bootstrap.socket.timeout";
 
+    // Unconsumed request content above which reading from the source channel is paused, and resumed at the low mark
+    public static final String SERVER_BOOTSTRAP_CONTENT_HIGH_WATER_MARK = "server.bootstrap.content.high.water.mark";
+
+    public static final String SERVER_BOOTSTRAP_CONTENT_LOW_WATER_MARK = "server.bootstrap.content.low.water.mark";
+
+    // Number of server channels bound to each listener port with SO_REUSEPORT, needs the native epoll transport
+    public static final String SERVER_BOOTSTRAP_SO_REUSEPORT_ACCEPTORS = "server.bootstrap.socket.reuseport.acceptors";
+
     // Boss group size of the server bootstrap
     public static final String SERVER_BOOTSTRAP_BOSS_GROUP_SIZE = "server.bootstrap.boss.group.size";
 
     //Worker group size of the server bootstrap
     public static final String SERVER_BOOTSTRAP_WORKER_GROUP_SIZE = "server.bootstrap.worker.group.size";
 
+    // Native epoll transport for listener and sender channels, NIO is used if it is not available
+    public static final String NATIVE_TRANSPORT_EPOLL = "transport.native.epoll";
+
+    public static final String NATIVE_TRANSPORT_EPOLL_EDGE_TRIGGERED = "transport.native.epoll.edge.triggered";
+
+    public static final String NATIVE_TRANSPORT_TCP_CORK = "transport.native.tcp.cork";
+
+    public static final String NATIVE_TRANSPORT_TCP_QUICKACK = "transport.native.tcp.quickack";
+
+    // Buffer allocator of listener and sender channels, pooled and preferring direct buffers by default
+    public static final String BUFFER_ALLOCATOR_POOLED = "buffer.allocator.pooled";
+
+    public static final String BUFFER_ALLOCATOR_PREFER_DIRECT = "buffer.allocator.prefer.direct";
+
+    public static final String BUFFER_ALLOCATOR_HEAP_ARENAS = "buffer.allocator.heap.arenas";
+
+    public static final String BUFFER_ALLOCATOR_DIRECT_ARENAS = "buffer.allocator.direct.arenas";
+
+    // Chunk size of the pooled allocator is page size << max order
+    public static final String BUFFER_ALLOCATOR_PAGE_SIZE = "buffer.allocator.page.size";
+
+    public static final String BUFFER_ALLOCATOR_MAX_ORDER = "buffer.allocator.max.order";
+
+    // Bounds of the adaptive size of the buffers channels read into
+    public static final String RECEIVE_BUFFER_MINIMUM_SIZE = "buffer.receive.minimum.size";
+
+    public static final String RECEIVE_BUFFER_INITIAL_SIZE = "buffer.receive.initial.size";
+
+    public static final String RECEIVE_BUFFER_MAXIMUM_SIZE = "buffer.receive.maximum.size";
+
+    // Resolution of BE hosts, cached and done off the event loops, TTLs are in seconds
+    public static final String CLIENT_DNS_CACHE_ENABLED = "client.dns.cache.enabled";
+
+    public static final String CLIENT_DNS_CACHE_TTL = "client.dns.cache.ttl";
+
+    public static final String CLIENT_DNS_CACHE_NEGATIVE_TTL = "client.dns.cache.negative.ttl";
+
+    // A cached address used within this many seconds of its expiry is resolved again in the background
+    public static final String CLIENT_DNS_CACHE_REFRESH_BEFORE_EXPIRY = "client.dns.cache.refresh.before.expiry";
+
+    // Hosts cached at most, those expiring first are removed to make room for new ones
+    public static final String CLIENT_DNS_CACHE_MAX_ENTRIES = "client.dns.cache.max.entries";
+
+    public static final String CLIENT_DNS_RESOLVER_THREADS = "client.dns.resolver.threads";
+
+    // Hosts file, e.g. /etc/hosts, whose entries are used instead of DNS
+    public static final String CLIENT_DNS_HOSTS_FILE = "client.dns.hosts.file";
+
+    // Health of the listener and sender event loops, intervals and thresholds are in milliseconds
+    public static final String EVENT_LOOP_MONITOR_ENABLED = "eventloop.monitor.enabled";
+
+    public static final String EVENT_LOOP_MONITOR_INTERVAL = "eventloop.monitor.interval";
+
+    // A loop which does not run a task for this long is reported as blocked, with a sample of its stack
+    public static final String EVENT_LOOP_BLOCKED_THRESHOLD = "eventloop.monitor.blocked.threshold";
+
+    public static final String EVENT_LOOP_BLOCKED_WARNING_INTERVAL = "eventloop.monitor.blocked.warning.interval";
+
     public static final String LISTENER_INTERFACE_ID = "listener.interface.id";
 
     //Server side SSL Parameters
@@ -79,6 +155,13 @@ public final class Constants {
     public static final String SERVER_SUPPORTED_SERVER_NAMES = "server.suported.server.names";
     public static final String SERVER_SUPPORTED_SNIMATCHERS = "server.supported.snimatchers";
     public static final String SSL_VERIFY_CLIENT = "ssl.verify.client";
+    // SSL provider of the listener, jdk or openssl, i.e. netty-tcnative, which falls back to jdk if not available
+    public static final String SERVER_SSL_PROVIDER = "server.ssl.provider";
+    public static final String SERVER_SSL_SESSION_CACHE_SIZE = "server.ssl.session.cache.size";
+    // Seconds
+    public static final String SERVER_SSL_SESSION_TIMEOUT = "server.ssl.session.timeout";
+    // Seconds after which a new session ticket key is used, 0 keeps the key of the SSL provider
+    public static final String SERVER_SSL_SESSION_TICKET_KEY_ROTATION = "server.ssl.session.ticket.key.rotation";
 
     public static final String IS_SECURED_CONNECTION = "IS_SECURED_CONNECTION";
 
@@ -95,6 +178,14 @@ public final class Constants {
 
     public static final String ENABLE_GLOBAL_CONNECTION_POOLING = "enable.global.client.connection.pooling";
 
+    public static final String POOL_EXHAUSTED_ACTION = "client.pool.exhausted.action";
+
+    public static final String MAX_PENDING_ACQUIRES_PER_POOL = "client.max.pending.acquires.per.pool";
+
+    public static final String POOL_ACQUIRE_TIMEOUT = "client.pool.acquire.timeout";
+
+    public static final String CLIENT_PIPELINING_DEPTH = "client.pipelining.depth";
+
     public static final String NO_THREADS_IN_EXECUTOR_SERVICE = "sender.thread.count";
 
 
@@ -125,6 +216,8 @@ public final class Constants {
 
     public static final String HTTP_VERSION = "HTTP_VERSION";
 
+    public static final String HTTP_VERSION_2_0 = "2.0";
+
     public static final String HTTP_METHOD = "HTTP_METHOD";
 
     public static final String HTTP_CONTENT_TYPE = "Content-Type";
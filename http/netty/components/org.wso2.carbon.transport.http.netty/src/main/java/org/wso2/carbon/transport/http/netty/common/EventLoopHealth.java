@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.common;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.nio.NioEventLoop;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Health of an event loop, as last measured by the {@link EventLoopMonitor}. The monitor submits a probe task to
+ * the loop and keeps a probe scheduled on it, the time they wait to run is the delay of the tasks and of the
+ * scheduled tasks of the loop.
+ */
+public class EventLoopHealth {
+
+    // I/O ratio of the loops whose ratio cannot be read, the default of Netty
+    private static final int DEFAULT_IO_RATIO = 50;
+
+    private final String group;
+    private final String name;
+    private final EventLoop eventLoop;
+
+    private final Runnable taskProbe = this::taskProbeRan;
+    private final Runnable scheduledProbe = this::scheduledProbeRan;
+
+    private volatile Thread thread;
+
+    private volatile boolean taskProbePending;
+    private volatile long taskProbeSubmittedAt;
+    private volatile long taskDelayNanos;
+
+    private volatile long scheduledProbeInterval;
+    private volatile long scheduledProbeDeadline;
+    private volatile long scheduledTaskDelayNanos;
+    private volatile ScheduledFuture<?> scheduledProbeFuture;
+    private volatile boolean scheduledProbeStopped;
+
+    private volatile int pendingTasks;
+    private volatile double busyRatio;
+
+    private volatile boolean blocked;
+    private volatile long blockedCount;
+
+    // Only used by the monitor thread
+    private long lastCpuTime = -1;
+    private long lastSampledAt;
+    private long lastWarningAt;
+    private boolean warned;
+
+    EventLoopHealth(String group, String name, EventLoop eventLoop) {
+        this.group = group;
+        this.name = name;
+        this.eventLoop = eventLoop;
+    }
+
+    /**
+     * @return name of the group of the loop, e.g. {@link EventLoopMonitor#WORKER_GROUP}
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public EventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * @return time the last probe task waited to run, or the time the pending one has waited if it is longer
+     */
+    public long getTaskDelayNanos() {
+        long delay = taskDelayNanos;
+        if (taskProbePending) {
+            delay = Math.max(delay, System.nanoTime() - taskProbeSubmittedAt);
+        }
+        return delay;
+    }
+
+    /**
+     * @return time the last scheduled probe ran after its deadline
+     */
+    public long getScheduledTaskDelayNanos() {
+        return scheduledTaskDelayNanos;
+    }
+
+    /**
+     * @return tasks waiting to run on the loop when the last probe task ran
+     */
+    public int getPendingTasks() {
+        return pendingTasks;
+    }
+
+    /**
+     * @return share of the loop thread's time spent on the CPU over the last interval, I/O and tasks together
+     */
+    public double getBusyRatio() {
+        return busyRatio;
+    }
+
+    /**
+     * @return percentage of the time of the loop it aims to spend on I/O, the rest is for its tasks
+     */
+    public int getIoRatio() {
+        return eventLoop instanceof NioEventLoop ? ((NioEventLoop) eventLoop).getIoRatio() : DEFAULT_IO_RATIO;
+    }
+
+    /**
+     * @return whether the loop has not run a task for longer than the blocked threshold
+     */
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    /**
+     * @return number of times the loop has been blocked
+     */
+    public long getBlockedCount() {
+        return blockedCount;
+    }
+
+    Thread getThread() {
+        return thread;
+    }
+
+    boolean isTaskProbePending() {
+        return taskProbePending;
+    }
+
+    long getTaskProbeSubmittedAt() {
+        return taskProbeSubmittedAt;
+    }
+
+    void submitTaskProbe(long now) {
+        taskProbeSubmittedAt = now;
+        taskProbePending = true;
+        try {
+            eventLoop.execute(taskProbe);
+        } catch (RejectedExecutionException e) {
+            // The loop is shutting down
+            taskProbePending = false;
+        }
+    }
+
+    void startScheduledProbe(long intervalNanos) {
+        scheduledProbeInterval = intervalNanos;
+        scheduleProbe();
+    }
+
+    /**
+     * Cancel the scheduled probe once the loop is no longer monitored, as it would otherwise keep rescheduling
+     * itself for as long as the loop runs.
+     */
+    void stopScheduledProbe() {
+        scheduledProbeStopped = true;
+        ScheduledFuture<?> future = scheduledProbeFuture;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    void sampleBusyRatio(ThreadMXBean threadMXBean, long now) {
+        Thread loopThread = thread;
+        if (loopThread == null) {
+            return;
+        }
+        long cpuTime = threadMXBean.getThreadCpuTime(loopThread.getId());
+        if (cpuTime < 0) {
+            return;
+        }
+        if (lastCpuTime >= 0 && now > lastSampledAt) {
+            busyRatio = Math.min(1d, (double) (cpuTime - lastCpuTime) / (now - lastSampledAt));
+        }
+        lastCpuTime = cpuTime;
+        lastSampledAt = now;
+    }
+
+    /**
+     * Mark the loop as blocked.
+     *
+     * @param now                  current {@link System#nanoTime()}
+     * @param warningIntervalNanos minimum time between two warnings of the loop
+     * @return whether a warning is due
+     */
+    boolean blocked(long now, long warningIntervalNanos) {
+        if (!blocked) {
+            blocked = true;
+            blockedCount++;
+        }
+        if (warned && now - lastWarningAt < warningIntervalNanos) {
+            return false;
+        }
+        warned = true;
+        lastWarningAt = now;
+        return true;
+    }
+
+    private void taskProbeRan() {
+        if (thread == null) {
+            thread = Thread.currentThread();
+        }
+        if (eventLoop instanceof SingleThreadEventExecutor) {
+            // Read on the loop, as the task queue of NIO loops may only be sized by the loop itself
+            pendingTasks = ((SingleThreadEventExecutor) eventLoop).pendingTasks();
+        }
+        taskDelayNanos = System.nanoTime() - taskProbeSubmittedAt;
+        blocked = false;
+        taskProbePending = false;
+    }
+
+    private void scheduledProbeRan() {
+        scheduledTaskDelayNanos = Math.max(0, System.nanoTime() - scheduledProbeDeadline);
+        if (!scheduledProbeStopped && !eventLoop.isShuttingDown()) {
+            scheduleProbe();
+        }
+    }
+
+    private void scheduleProbe() {
+        scheduledProbeDeadline = System.nanoTime() + scheduledProbeInterval;
+        try {
+            scheduledProbeFuture = eventLoop.schedule(scheduledProbe, scheduledProbeInterval, TimeUnit.NANOSECONDS);
+            if (scheduledProbeStopped) {
+                // Stopped while the probe was being rescheduled
+                scheduledProbeFuture.cancel(false);
+            }
+        } catch (RejectedExecutionException e) {
+            // The loop is shutting down
+        }
+    }
+}
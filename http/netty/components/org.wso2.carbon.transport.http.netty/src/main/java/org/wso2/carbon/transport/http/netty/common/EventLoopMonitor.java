@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.common;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.config.TransportProperty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the health of the listener and sender event loops: the delay of their tasks and scheduled tasks, the
+ * number of tasks pending and how busy their threads are. A loop which does not run a task for longer than the
+ * blocked threshold, e.g. because it waits on a latch, a DNS lookup or a keystore load, is reported with a warning
+ * carrying a sample of its stack. Warnings of a loop which stays blocked are repeated at most once per warning
+ * interval.
+ * <p>
+ * The loops are probed from a single daemon thread, the probes themselves run on the loops. The thread is stopped
+ * once no group is monitored any more, and started again when a group is monitored.
+ */
+public class EventLoopMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(EventLoopMonitor.class);
+
+    public static final String BOSS_GROUP = "boss";
+
+    public static final String WORKER_GROUP = "worker";
+
+    public static final String SENDER_GROUP = "sender";
+
+    private static volatile EventLoopMonitor eventLoopMonitor;
+
+    private boolean enabled = true;
+
+    private long intervalMillis = 1000;
+
+    private long blockedThresholdMillis = 2000;
+
+    private long warningIntervalMillis = 60000;
+
+    private final Map<EventExecutor, EventLoopHealth> eventLoops = new ConcurrentHashMap<>();
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    // Guarded by this monitor, as is the executor
+    private final Set<EventLoopGroup> groups = new HashSet<>();
+
+    private ScheduledExecutorService monitorExecutor;
+
+    /**
+     * Create a monitor of its own. Listeners and senders share the one created with
+     * {@link #createEventLoopMonitor(Set)}.
+     *
+     * @param properties transport properties
+     */
+    public EventLoopMonitor(Set<TransportProperty> properties) {
+        if (properties != null) {
+            for (TransportProperty property : properties) {
+                if (Constants.EVENT_LOOP_MONITOR_ENABLED.equals(property.getName())) {
+                    enabled = (Boolean) property.getValue();
+                } else if (Constants.EVENT_LOOP_MONITOR_INTERVAL.equals(property.getName())) {
+                    intervalMillis = ((Number) property.getValue()).longValue();
+                } else if (Constants.EVENT_LOOP_BLOCKED_THRESHOLD.equals(property.getName())) {
+                    blockedThresholdMillis = ((Number) property.getValue()).longValue();
+                } else if (Constants.EVENT_LOOP_BLOCKED_WARNING_INTERVAL.equals(property.getName())) {
+                    warningIntervalMillis = ((Number) property.getValue()).longValue();
+                }
+            }
+        }
+        log.debug(Constants.EVENT_LOOP_MONITOR_ENABLED + ": " + enabled);
+        log.debug(Constants.EVENT_LOOP_MONITOR_INTERVAL + ": " + intervalMillis);
+        log.debug(Constants.EVENT_LOOP_BLOCKED_THRESHOLD + ": " + blockedThresholdMillis);
+        log.debug(Constants.EVENT_LOOP_BLOCKED_WARNING_INTERVAL + ": " + warningIntervalMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true while at least one group is monitored and the loops are probed
+     */
+    public synchronized boolean isMonitoring() {
+        return monitorExecutor != null;
+    }
+
+    /**
+     * Monitor the loops of a group until the group is terminated.
+     *
+     * @param group          name of the group, e.g. {@link #WORKER_GROUP}
+     * @param eventLoopGroup loops to monitor
+     */
+    public void monitor(String group, EventLoopGroup eventLoopGroup) {
+        if (!enabled || !startMonitoring(eventLoopGroup)) {
+            return;
+        }
+        int index = 0;
+        for (EventExecutor executor : eventLoopGroup) {
+            if (executor instanceof EventLoop) {
+                EventLoopHealth health = new EventLoopHealth(group, group + "-" + index++, (EventLoop) executor);
+                eventLoops.put(executor, health);
+                health.startScheduledProbe(TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+            }
+        }
+        eventLoopGroup.terminationFuture().addListener(future -> unmonitor(eventLoopGroup));
+    }
+
+    /**
+     * Stop monitoring the loops of a group, e.g. before the group is shut down so that loops which are shutting down
+     * are not reported. Groups are also unmonitored once they are terminated.
+     *
+     * @param eventLoopGroup loops which are monitored
+     */
+    public synchronized void unmonitor(EventLoopGroup eventLoopGroup) {
+        if (!groups.remove(eventLoopGroup)) {
+            return;
+        }
+        for (EventExecutor executor : eventLoopGroup) {
+            EventLoopHealth health = eventLoops.remove(executor);
+            if (health != null) {
+                health.stopScheduledProbe();
+            }
+        }
+        if (groups.isEmpty()) {
+            stopMonitoring();
+        }
+    }
+
+    /**
+     * @return health of the loops monitored
+     */
+    public List<EventLoopHealth> getEventLoopHealth() {
+        return new ArrayList<>(eventLoops.values());
+    }
+
+    /**
+     * @param group name of the group, e.g. {@link #WORKER_GROUP}
+     * @return health of the loops of the groups with the given name
+     */
+    public List<EventLoopHealth> getEventLoopHealth(String group) {
+        List<EventLoopHealth> groupHealth = new ArrayList<>();
+        for (EventLoopHealth health : eventLoops.values()) {
+            if (health.getGroup().equals(group)) {
+                groupHealth.add(health);
+            }
+        }
+        return groupHealth;
+    }
+
+    /**
+     * Stop monitoring the loops of all the groups.
+     */
+    public synchronized void close() {
+        groups.clear();
+        for (EventLoopHealth health : eventLoops.values()) {
+            health.stopScheduledProbe();
+        }
+        eventLoops.clear();
+        stopMonitoring();
+    }
+
+    /**
+     * @return false if the group is already monitored
+     */
+    private synchronized boolean startMonitoring(EventLoopGroup eventLoopGroup) {
+        if (!groups.add(eventLoopGroup)) {
+            return false;
+        }
+        if (monitorExecutor == null) {
+            monitorExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new DefaultThreadFactory("event-loop-monitor", true));
+            monitorExecutor.scheduleWithFixedDelay(this::probe, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private synchronized void stopMonitoring() {
+        if (monitorExecutor != null) {
+            monitorExecutor.shutdownNow();
+            monitorExecutor = null;
+        }
+    }
+
+    private void probe() {
+        try {
+            long now = System.nanoTime();
+            boolean cpuTimeSupported = threadMXBean.isThreadCpuTimeSupported();
+            for (EventLoopHealth health : eventLoops.values()) {
+                if (health.getEventLoop().isShuttingDown()) {
+                    continue;
+                }
+                if (cpuTimeSupported) {
+                    health.sampleBusyRatio(threadMXBean, now);
+                }
+                if (!health.isTaskProbePending()) {
+                    health.submitTaskProbe(now);
+                } else if (now - health.getTaskProbeSubmittedAt() >= TimeUnit.MILLISECONDS
+                        .toNanos(blockedThresholdMillis)) {
+                    if (health.blocked(now, TimeUnit.MILLISECONDS.toNanos(warningIntervalMillis))) {
+                        warnBlocked(health, now);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep probing, the executor stops running a task which throws
+            log.error("Could not probe the event loops", e);
+        }
+    }
+
+    private void warnBlocked(EventLoopHealth health, long now) {
+        Thread thread = health.getThread();
+        long blockedMillis = TimeUnit.NANOSECONDS.toMillis(now - health.getTaskProbeSubmittedAt());
+        if (thread == null) {
+            log.warn("Event loop " + health.getName() + " has been blocked for " + blockedMillis + " ms");
+            return;
+        }
+        Exception stackTrace = new Exception("Stack trace of " + thread.getName());
+        stackTrace.setStackTrace(thread.getStackTrace());
+        log.warn("Event loop " + health.getName() + " running on " + thread.getName() + " has been blocked for "
+                + blockedMillis + " ms", stackTrace);
+    }
+
+    /**
+     * @return event loop monitor, created with the default settings if it is not created yet
+     */
+    public static EventLoopMonitor getInstance() {
+        if (eventLoopMonitor == null) {
+            createEventLoopMonitor(null);
+        }
+        return eventLoopMonitor;
+    }
+
+    /**
+     * Create the event loop monitor from the transport properties, unless a listener or a sender has already
+     * created it.
+     *
+     * @param properties transport properties
+     */
+    public static synchronized void createEventLoopMonitor(Set<TransportProperty> properties) {
+        if (eventLoopMonitor == null) {
+            eventLoopMonitor = new EventLoopMonitor(properties);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pooled buffer allocator which reports how its arenas are used and how many allocations its thread caches
+ * serve. Allocations which are not served by a thread cache are counted by the arena serving them, the rest were
+ * thread cache hits.
+ */
+public class InstrumentedPooledByteBufAllocator extends PooledByteBufAllocator {
+
+    private final LongAdder heapAllocations = new LongAdder();
+    private final LongAdder directAllocations = new LongAdder();
+
+    public InstrumentedPooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize,
+            int maxOrder) {
+        super(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder);
+    }
+
+    @Override
+    protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+        heapAllocations.increment();
+        return super.newHeapBuffer(initialCapacity, maxCapacity);
+    }
+
+    @Override
+    protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+        directAllocations.increment();
+        return super.newDirectBuffer(initialCapacity, maxCapacity);
+    }
+
+    public long getHeapAllocations() {
+        return heapAllocations.sum();
+    }
+
+    public long getDirectAllocations() {
+        return directAllocations.sum();
+    }
+
+    /**
+     * @return allocations which had to be served by an arena since no thread cache had a matching buffer
+     */
+    public long getArenaAllocations() {
+        return numAllocations(heapArenas()) + numAllocations(directArenas());
+    }
+
+    /**
+     * @return share of the allocations served by thread caches, between 0 and 1
+     */
+    public double getThreadCacheHitRatio() {
+        long allocations = getHeapAllocations() + getDirectAllocations();
+        if (allocations == 0) {
+            return 0;
+        }
+        long hits = allocations - getArenaAllocations();
+        return hits > 0 ? (double) hits / allocations : 0;
+    }
+
+    /**
+     * @return bytes of the heap buffers which are allocated and not released yet
+     */
+    public long getActiveHeapBytes() {
+        return numActiveBytes(heapArenas());
+    }
+
+    /**
+     * @return bytes of the direct buffers which are allocated and not released yet
+     */
+    public long getActiveDirectBytes() {
+        return numActiveBytes(directArenas());
+    }
+
+    /**
+     * @return heap memory held by the chunks of the heap arenas
+     */
+    public long getPooledHeapMemory() {
+        return chunkMemory(heapArenas());
+    }
+
+    /**
+     * @return direct memory held by the chunks of the direct arenas
+     */
+    public long getPooledDirectMemory() {
+        return chunkMemory(directArenas());
+    }
+
+    public int getNumThreadCaches() {
+        int threadCaches = 0;
+        for (PoolArenaMetric arena : heapArenas()) {
+            threadCaches += arena.numThreadCaches();
+        }
+        for (PoolArenaMetric arena : directArenas()) {
+            threadCaches += arena.numThreadCaches();
+        }
+        return threadCaches;
+    }
+
+    private static long numAllocations(List<PoolArenaMetric> arenas) {
+        long allocations = 0;
+        for (PoolArenaMetric arena : arenas) {
+            allocations += arena.numAllocations();
+        }
+        return allocations;
+    }
+
+    private static long numActiveBytes(List<PoolArenaMetric> arenas) {
+        long activeBytes = 0;
+        for (PoolArenaMetric arena : arenas) {
+            activeBytes += arena.numActiveBytes();
+        }
+        return activeBytes;
+    }
+
+    private static long chunkMemory(List<PoolArenaMetric> arenas) {
+        long memory = 0;
+        for (PoolArenaMetric arena : arenas) {
+            for (PoolChunkListMetric chunkList : arena.chunkLists()) {
+                for (PoolChunkMetric chunk : chunkList) {
+                    memory += chunk.chunkSize();
+                }
+            }
+        }
+        return memory;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.common;
+
+/**
+ * Receives the latency of each phase of the outbound connections and requests, with the route they belong to, and
+ * the latency of each served request, with the listener interface it was received on. The lifetime of the
+ * connections is reported the same way when they close. The listener is set with
+ * {@link #setInstance(LatencyListener)}, e.g. by the statistics bundle, and is called on the event loops, so it
+ * must not block.
+ */
+public interface LatencyListener {
+
+    /**
+     * @param httpRoute    route of the connection
+     * @param connectNanos time taken to open the connection
+     */
+    void targetConnected(HttpRoute httpRoute, long connectNanos);
+
+    /**
+     * @param httpRoute route of the pool
+     * @param waitNanos time waited for a connection of the pool
+     */
+    void targetChannelAcquired(HttpRoute httpRoute, long waitNanos);
+
+    /**
+     * @param httpRoute            route of the request
+     * @param statusCode           status code of the response
+     * @param timeToFirstByteNanos time from writing the request to receiving the response head
+     */
+    void targetResponseStarted(HttpRoute httpRoute, int statusCode, long timeToFirstByteNanos);
+
+    /**
+     * @param httpRoute      route of the request
+     * @param statusCode     status code of the response
+     * @param streamingNanos time from receiving the response head to receiving its last content
+     */
+    void targetResponseCompleted(HttpRoute httpRoute, int statusCode, long streamingNanos);
+
+    /**
+     * @param listenerId   id of the listener interface the request was received on
+     * @param statusCode   status code of the response
+     * @param latencyNanos time from receiving the request to writing the last content of its response
+     */
+    void sourceResponseCompleted(String listenerId, int statusCode, long latencyNanos);
+
+    /**
+     * @param httpRoute     route of the connection
+     * @param lifetimeNanos time from opening the connection to its close
+     */
+    void targetConnectionClosed(HttpRoute httpRoute, long lifetimeNanos);
+
+    /**
+     * @param listenerId    id of the listener interface the connection was accepted on
+     * @param lifetimeNanos time from accepting the connection to its close
+     */
+    void sourceConnectionClosed(String listenerId, long lifetimeNanos);
+
+    /**
+     * @return the registered listener, or null if latencies are not collected
+     */
+    static LatencyListener getInstance() {
+        return Holder.latencyListener;
+    }
+
+    /**
+     * @param latencyListener listener to register, or null to stop collecting latencies
+     */
+    static void setInstance(LatencyListener latencyListener) {
+        Holder.latencyListener = latencyListener;
+    }
+
+    /**
+     * Holds the registered listener.
+     */
+    final class Holder {
+
+        private static volatile LatencyListener latencyListener;
+
+        private Holder() {
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.common;
+
+import org.wso2.carbon.transport.http.netty.message.LazyProperty;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Host name of a connection end point, which is only looked up when a processor reads it. Looking up the host
+ * name of an address may need a blocking reverse DNS lookup, which must not happen on an event loop for every
+ * request. The name is looked up at most once per connection.
+ */
+public class LazyHostName implements LazyProperty {
+
+    private final InetSocketAddress address;
+    private volatile String hostName;
+
+    public LazyHostName(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    @Override
+    public Object getValue() {
+        String name = hostName;
+        if (name == null) {
+            name = address.getHostName();
+            hostName = name;
+        }
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return address.getHostString();
+    }
+}
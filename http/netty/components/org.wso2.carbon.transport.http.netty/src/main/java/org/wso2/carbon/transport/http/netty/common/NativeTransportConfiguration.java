@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.common;
+
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.config.TransportProperty;
+
+import java.util.Set;
+
+/**
+ * A class represents the socket transport used by listener and sender channels. The Linux native epoll transport
+ * is used when it is enabled and its native library can be loaded, NIO otherwise.
+ */
+public class NativeTransportConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(NativeTransportConfiguration.class);
+
+    private static NativeTransportConfiguration nativeTransportConfig;
+
+    private boolean epoll = false;
+
+    private boolean edgeTriggered = true;
+
+    private boolean tcpCork = false;
+
+    private boolean tcpQuickAck = false;
+
+    private NativeTransportConfiguration(Set<TransportProperty> properties) {
+        boolean epollEnabled = false;
+        if (properties != null) {
+            for (TransportProperty property : properties) {
+                if (Constants.NATIVE_TRANSPORT_EPOLL.equals(property.getName())) {
+                    epollEnabled = (Boolean) property.getValue();
+                } else if (Constants.NATIVE_TRANSPORT_EPOLL_EDGE_TRIGGERED.equals(property.getName())) {
+                    edgeTriggered = (Boolean) property.getValue();
+                } else if (Constants.NATIVE_TRANSPORT_TCP_CORK.equals(property.getName())) {
+                    tcpCork = (Boolean) property.getValue();
+                } else if (Constants.NATIVE_TRANSPORT_TCP_QUICKACK.equals(property.getName())) {
+                    tcpQuickAck = (Boolean) property.getValue();
+                }
+            }
+        }
+        if (epollEnabled) {
+            epoll = isEpollAvailable();
+        }
+        log.debug(Constants.NATIVE_TRANSPORT_EPOLL + ": " + epoll);
+        log.debug(Constants.NATIVE_TRANSPORT_EPOLL_EDGE_TRIGGERED + ": " + edgeTriggered);
+        log.debug(Constants.NATIVE_TRANSPORT_TCP_CORK + ": " + tcpCork);
+        log.debug(Constants.NATIVE_TRANSPORT_TCP_QUICKACK + ": " + tcpQuickAck);
+    }
+
+    private static boolean isEpollAvailable() {
+        try {
+            if (Epoll.isAvailable()) {
+                return true;
+            }
+            log.warn("Native epoll transport is not available hence using NIO", Epoll.unavailabilityCause());
+        } catch (Throwable e) {
+            // The native transport bundle is optional
+            log.warn("Native epoll transport is not available hence using NIO", e);
+        }
+        return false;
+    }
+
+    public boolean isEpoll() {
+        return epoll;
+    }
+
+    public boolean isEdgeTriggered() {
+        return edgeTriggered;
+    }
+
+    public boolean isTcpCork() {
+        return tcpCork;
+    }
+
+    public boolean isTcpQuickAck() {
+        return tcpQuickAck;
+    }
+
+    /**
+     * @param nThreads number of event loops of the group
+     * @return event loop group of the selected transport
+     */
+    public EventLoopGroup createEventLoopGroup(int nThreads) {
+        return epoll ? new EpollEventLoopGroup(nThreads) : new NioEventLoopGroup(nThreads);
+    }
+
+    public Class<? extends ServerChannel> getServerChannelClass() {
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public Class<? extends SocketChannel> getSocketChannelClass() {
+        return epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * Set the native socket options on the server channel and the channels it accepts.
+     *
+     * @param serverBootstrap bootstrap of the listener
+     */
+    public void configureServerBootstrap(ServerBootstrap serverBootstrap) {
+        if (!epoll) {
+            return;
+        }
+        serverBootstrap.option(EpollChannelOption.EPOLL_MODE, getEpollMode());
+        serverBootstrap.childOption(EpollChannelOption.EPOLL_MODE, getEpollMode());
+        serverBootstrap.childOption(EpollChannelOption.TCP_CORK, tcpCork);
+        serverBootstrap.childOption(EpollChannelOption.TCP_QUICKACK, tcpQuickAck);
+    }
+
+    /**
+     * Allow several server channels to bind to the same port so that the kernel spreads accepted connections
+     * across them.
+     *
+     * @param serverBootstrap bootstrap of the listener
+     */
+    public void enableReusePort(ServerBootstrap serverBootstrap) {
+        if (epoll) {
+            serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+    }
+
+    /**
+     * Set the native socket options on a client channel. Client channels inherit the class of the channel whose
+     * event loop they use, so the options are only applied if that is an epoll channel.
+     *
+     * @param bootstrap    bootstrap of the client channel
+     * @param channelClass channel class of the bootstrap
+     */
+    public void configureBootstrap(AbstractBootstrap<?, ?> bootstrap, Class channelClass) {
+        if (!epoll || !EpollSocketChannel.class.isAssignableFrom(channelClass)) {
+            return;
+        }
+        bootstrap.option(EpollChannelOption.EPOLL_MODE, getEpollMode());
+        bootstrap.option(EpollChannelOption.TCP_CORK, tcpCork);
+        bootstrap.option(EpollChannelOption.TCP_QUICKACK, tcpQuickAck);
+    }
+
+    private EpollMode getEpollMode() {
+        return edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+    }
+
+    /**
+     * @return native transport configuration, NIO if the configuration is not created yet
+     */
+    public static NativeTransportConfiguration getInstance() {
+        if (nativeTransportConfig == null) {
+            return new NativeTransportConfiguration(null);
+        }
+        return nativeTransportConfig;
+    }
+
+    /**
+     * Select the transport from the transport properties.
+     *
+     * @param properties transport properties
+     */
+    public static void createNativeTransportConfiguration(Set<TransportProperty> properties) {
+        nativeTransportConfig = new NativeTransportConfiguration(properties);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.common;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stops reading from a channel while the content read from it cannot be passed on, and resumes reading once it
+ * can. Reading is paused while too much content of the current message is queued, or while the channel the content
+ * is written to is not writable. It resumes only when neither is the case.
+ */
+public class ReadThrottle {
+
+    private static final int CONTENT_QUEUED = 1;
+    private static final int PEER_UNWRITABLE = 1 << 1;
+
+    // Throttles waiting for a channel they write to to become writable again
+    private static final AttributeKey<Queue<ReadThrottle>> WRITABILITY_WAITERS =
+            AttributeKey.valueOf("ReadThrottle.writabilityWaiters");
+
+    private final Channel channel;
+    private final long highWaterMark;
+    private final long lowWaterMark;
+    private final AtomicInteger pauseReasons = new AtomicInteger();
+
+    /**
+     * @param channel       channel whose reads are throttled
+     * @param highWaterMark queued bytes of a message above which reading is paused
+     * @param lowWaterMark  queued bytes of a message at or below which reading is resumed
+     */
+    public ReadThrottle(Channel channel, long highWaterMark, long lowWaterMark) {
+        this.channel = channel;
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = Math.min(lowWaterMark, highWaterMark);
+    }
+
+    /**
+     * Pause or resume reading according to the bytes of the current message which are not consumed yet.
+     *
+     * @param queuedBytes bytes of the message read from the channel and not consumed yet
+     */
+    public void queuedBytesChanged(long queuedBytes) {
+        if (queuedBytes > highWaterMark) {
+            pause(CONTENT_QUEUED);
+        } else if (queuedBytes <= lowWaterMark) {
+            resume(CONTENT_QUEUED);
+        }
+    }
+
+    /**
+     * Pause reading until the given channel, which the content read from the throttled channel is written to,
+     * becomes writable again or is closed.
+     *
+     * @param peer channel the content is written to
+     */
+    public void pauseUntilWritable(Channel peer) {
+        pause(PEER_UNWRITABLE);
+        Queue<ReadThrottle> waiters = peer.attr(WRITABILITY_WAITERS).get();
+        if (waiters == null) {
+            Queue<ReadThrottle> newWaiters = new ConcurrentLinkedQueue<>();
+            waiters = peer.attr(WRITABILITY_WAITERS).setIfAbsent(newWaiters);
+            if (waiters == null) {
+                waiters = newWaiters;
+            }
+        }
+        waiters.add(this);
+        // The peer may have become writable before this throttle was registered
+        writabilityChanged(peer);
+    }
+
+    /**
+     * Resume reading of the channels which wait for the given channel, if it is writable or closed. Called by the
+     * handlers of a channel on writability changes and when it becomes inactive.
+     *
+     * @param peer channel whose writability changed
+     */
+    public static void writabilityChanged(Channel peer) {
+        Queue<ReadThrottle> waiters = peer.attr(WRITABILITY_WAITERS).get();
+        if (waiters == null) {
+            return;
+        }
+        ReadThrottle readThrottle;
+        while ((peer.isWritable() || !peer.isActive()) && (readThrottle = waiters.poll()) != null) {
+            readThrottle.resume(PEER_UNWRITABLE);
+        }
+    }
+
+    /**
+     * Stop throttling because of queued content, e.g. when nobody is going to consume the rest of the message.
+     */
+    public void releaseQueuedContent() {
+        resume(CONTENT_QUEUED);
+    }
+
+    public boolean isPaused() {
+        return pauseReasons.get() != 0;
+    }
+
+    private void pause(int reason) {
+        int reasons;
+        do {
+            reasons = pauseReasons.get();
+            if ((reasons & reason) != 0) {
+                return;
+            }
+        } while (!pauseReasons.compareAndSet(reasons, reasons | reason));
+        if (reasons == 0) {
+            updateAutoRead();
+        }
+    }
+
+    private void resume(int reason) {
+        int reasons;
+        do {
+            reasons = pauseReasons.get();
+            if ((reasons & reason) == 0) {
+                return;
+            }
+        } while (!pauseReasons.compareAndSet(reasons, reasons & ~reason));
+        if (reasons == reason) {
+            updateAutoRead();
+        }
+    }
+
+    private void updateAutoRead() {
+        // Applied on the event loop in submission order, each update applies the latest state
+        if (channel.eventLoop().inEventLoop()) {
+            channel.config().setAutoRead(pauseReasons.get() == 0);
+        } else {
+            channel.eventLoop().execute(() -> channel.config().setAutoRead(pauseReasons.get() == 0));
+        }
+    }
+}
@@ -15,6 +15,9 @@
 
 package org.wso2.carbon.transport.http.netty.common;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -24,13 +27,25 @@ import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
 import org.wso2.carbon.messaging.Header;
 import org.wso2.carbon.messaging.Headers;
+import org.wso2.carbon.messaging.MessageDataSource;
+import org.wso2.carbon.messaging.exceptions.MessagingException;
 import org.wso2.carbon.transport.http.netty.common.ssl.SSLConfig;
 import org.wso2.carbon.transport.http.netty.config.Parameter;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +57,8 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
  */
 public class Util {
 
+    private static final Logger log = LoggerFactory.getLogger(Util.class);
+
     private static final String DEFAULT_HTTP_METHOD_POST = "POST";
     private static final String DEFAULT_VERSION_HTTP_1_1 = "HTTP/1.1";
 
@@ -90,6 +107,11 @@ public class Util {
         HttpResponseStatus httpResponseStatus = new HttpResponseStatus(statusCode,
                 HttpResponseStatus.valueOf(statusCode).reasonPhrase());
 
+        HttpHeaders httpHeaders = getHttpHeaders(msg);
+        if (httpHeaders != null) {
+            return new DefaultHttpResponse(httpVersion, httpResponseStatus, httpHeaders);
+        }
+
         DefaultHttpResponse outgoingResponse = new DefaultHttpResponse(httpVersion, httpResponseStatus, false);
 
         Headers headers = msg.getHeaders();
@@ -116,6 +138,11 @@ public class Util {
         if ((String) msg.getProperty(Constants.TO) == null) {
             msg.setProperty(Constants.TO, "/");
         }
+        HttpHeaders httpHeaders = getHttpHeaders(msg);
+        if (httpHeaders != null) {
+            return new DefaultHttpRequest(httpVersion, httpMethod, (String) msg.getProperty(Constants.TO),
+                    httpHeaders);
+        }
         HttpRequest outgoingRequest = new DefaultHttpRequest(httpVersion, httpMethod,
                 (String) msg.getProperty(Constants.TO), false);
         Headers headers = msg.getHeaders();
@@ -123,6 +150,104 @@ public class Util {
         return outgoingRequest;
     }
 
+    /**
+     * Get the Netty headers a message has been received with, if they have not been converted into carbon headers,
+     * so that they can be sent on without converting them back.
+     *
+     * @param msg message to be sent
+     * @return Netty headers of the message or null if its carbon headers have to be used
+     */
+    private static HttpHeaders getHttpHeaders(CarbonMessage msg) {
+        if (msg instanceof HTTPCarbonMessage) {
+            return ((HTTPCarbonMessage) msg).shareHttpHeaders();
+        }
+        return null;
+    }
+
+    /**
+     * Convert a request into the headers of an HTTP/2 stream. The headers of the request may be shared with the
+     * message it was created from, so the scheme is set on a copy of them instead of the request itself.
+     *
+     * @param httpRequest request to be sent
+     * @param scheme      scheme of the connection the request is sent on
+     * @return HTTP/2 headers of the request
+     */
+    public static Http2Headers createHttp2Headers(HttpRequest httpRequest, String scheme) {
+        HttpHeaders httpHeaders = new DefaultHttpHeaders(false).set(httpRequest.headers())
+                .set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), scheme);
+        return HttpConversionUtil.toHttp2Headers(new DefaultHttpRequest(httpRequest.protocolVersion(),
+                httpRequest.method(), httpRequest.uri(), httpHeaders), true);
+    }
+
+    /**
+     * Create the response delivered to a sender callback when the BE could not produce a response.
+     *
+     * @param payload            error payload
+     * @param callback           callback of the failed request
+     * @param statusCode         HTTP status code of the error response
+     * @param messagingException cause of the failure
+     * @return error response message
+     */
+    public static CarbonMessage createErrorMessage(String payload, CarbonCallback callback, int statusCode,
+            MessagingException messagingException) {
+        DefaultCarbonMessage response = new DefaultCarbonMessage();
+
+        response.setStringMessageBody(payload);
+        byte[] errorMessageBytes = payload.getBytes(Charset.defaultCharset());
+
+        Map<String, String> transportHeaders = new HashMap<>();
+        transportHeaders.put(Constants.HTTP_CONNECTION, Constants.KEEP_ALIVE);
+        transportHeaders.put(Constants.HTTP_CONTENT_ENCODING, Constants.GZIP);
+        transportHeaders.put(Constants.HTTP_CONTENT_TYPE, Constants.TEXT_XML);
+        transportHeaders.put(Constants.HTTP_CONTENT_LENGTH, (String.valueOf(errorMessageBytes.length)));
+
+        response.setHeaders(transportHeaders);
+
+        response.setProperty(Constants.HTTP_STATUS_CODE, statusCode);
+        response.setProperty(org.wso2.carbon.messaging.Constants.DIRECTION,
+                org.wso2.carbon.messaging.Constants.DIRECTION_RESPONSE);
+        response.setProperty(org.wso2.carbon.messaging.Constants.CALL_BACK, callback);
+        response.setMessagingException(messagingException);
+        return response;
+    }
+
+    /**
+     * Serialize a message which has been built by a message processor and set the content length of a response
+     * which has neither a content length nor a transfer encoding.
+     *
+     * @param cMsg response message
+     */
+    public static void handleResponsesWithoutContentLength(CarbonMessage cMsg) {
+        if (cMsg.isAlreadyRead()) {
+            MessageDataSource messageDataSource = cMsg.getMessageDataSource();
+            if (messageDataSource != null) {
+                messageDataSource.serializeData();
+                cMsg.setEndOfMsgAdded(true);
+                cMsg.getHeaders().remove(Constants.HTTP_CONTENT_LENGTH);
+            } else {
+                log.error("Message is already built but cannot find the MessageDataSource");
+            }
+        }
+        if (cMsg.getHeader(Constants.HTTP_TRANSFER_ENCODING) == null
+                && cMsg.getHeader(Constants.HTTP_CONTENT_LENGTH) == null) {
+            cMsg.setHeader(Constants.HTTP_CONTENT_LENGTH, String.valueOf(cMsg.getFullMessageLength()));
+
+        }
+    }
+
+    /**
+     * Copy the remaining bytes of a buffer into a buffer of the given allocator, without changing its position.
+     *
+     * @param allocator  allocator of the copy
+     * @param byteBuffer buffer to copy
+     * @return copy of the buffer, which the caller has to release
+     */
+    public static ByteBuf copyBuffer(ByteBufAllocator allocator, ByteBuffer byteBuffer) {
+        ByteBuf buf = allocator.buffer(byteBuffer.remaining());
+        buf.writeBytes(byteBuffer.duplicate());
+        return buf;
+    }
+
     public static SSLConfig getSSLConfigForListener(String certPass, String keyStorePass, String keyStoreFile,
             String trustStoreFile, String trustStorePass, List<Parameter> parametersList) {
         if (certPass == null) {
@@ -156,6 +281,18 @@ public class Util {
             } else if (parameter.getName()
                     .equals(Constants.SSL_VERIFY_CLIENT)) {
                 sslConfig.setNeedClientAuth(Boolean.parseBoolean(parameter.getValue()));
+            } else if (parameter.getName()
+                    .equals(Constants.SERVER_SSL_PROVIDER)) {
+                sslConfig.setSslProvider(parameter.getValue());
+            } else if (parameter.getName()
+                    .equals(Constants.SERVER_SSL_SESSION_CACHE_SIZE)) {
+                sslConfig.setSessionCacheSize(Integer.parseInt(parameter.getValue()));
+            } else if (parameter.getName()
+                    .equals(Constants.SERVER_SSL_SESSION_TIMEOUT)) {
+                sslConfig.setSessionTimeout(Integer.parseInt(parameter.getValue()));
+            } else if (parameter.getName()
+                    .equals(Constants.SERVER_SSL_SESSION_TICKET_KEY_ROTATION)) {
+                sslConfig.setSessionTicketKeyRotation(Integer.parseInt(parameter.getValue()));
             }
         }
         if (trustStoreFile != null) {
@@ -203,6 +340,15 @@ public class Util {
             } else if (parameter.getName()
                     .equals(Constants.CLIENT_ENABLE_SESSION_CREATION)) {
                 sslConfig.setEnableSessionCreation(Boolean.parseBoolean(parameter.getValue()));
+            } else if (parameter.getName()
+                    .equals(Constants.CLIENT_SSL_PROVIDER)) {
+                sslConfig.setSslProvider(parameter.getValue());
+            } else if (parameter.getName()
+                    .equals(Constants.CLIENT_SSL_SESSION_CACHE_SIZE)) {
+                sslConfig.setSessionCacheSize(Integer.parseInt(parameter.getValue()));
+            } else if (parameter.getName()
+                    .equals(Constants.CLIENT_SSL_SESSION_TIMEOUT)) {
+                sslConfig.setSessionTimeout(Integer.parseInt(parameter.getValue()));
             }
         }
         return sslConfig;
@@ -49,6 +49,15 @@ public class SSLConfig {
 
     private boolean clientMode;
 
+    private String sslProvider;
+    // 0 uses the default of the SSL provider
+    private int sessionCacheSize;
+    private int sessionTimeout;
+    private int sessionTicketKeyRotation = 3600;
+
+    // SSL context of this configuration, shared by the connections using it
+    private volatile SSLHandlerFactory sslHandlerFactory;
+
     public SSLConfig(File keyStore, String keyStorePass) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Using key store" + keyStore);
@@ -179,4 +188,53 @@ public class SSLConfig {
     public void setClientMode(boolean clientMode) {
         this.clientMode = clientMode;
     }
+
+    public String getSslProvider() {
+        return sslProvider;
+    }
+
+    public void setSslProvider(String sslProvider) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Using SSL provider" + sslProvider);
+        }
+        this.sslProvider = sslProvider;
+    }
+
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    public void setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    /**
+     * @return timeout of the cached sessions in seconds
+     */
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    public void setSessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    /**
+     * @return seconds after which a new session ticket key is used, or 0 to keep the key of the SSL provider
+     */
+    public int getSessionTicketKeyRotation() {
+        return sessionTicketKeyRotation;
+    }
+
+    public void setSessionTicketKeyRotation(int sessionTicketKeyRotation) {
+        this.sessionTicketKeyRotation = sessionTicketKeyRotation;
+    }
+
+    SSLHandlerFactory getSslHandlerFactory() {
+        return sslHandlerFactory;
+    }
+
+    void setSslHandlerFactory(SSLHandlerFactory sslHandlerFactory) {
+        this.sslHandlerFactory = sslHandlerFactory;
+    }
 }
@@ -18,44 +18,247 @@
  */
 package org.wso2.carbon.transport.http.netty.common.ssl;
 
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.JdkSslContext;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslServerSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
-
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.security.Security;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 
 /**
- * A class that encapsulates SSL Certificate Information.
+ * A class that encapsulates SSL Certificate Information. The SSL context of a configuration is built once and
+ * shared by all its connections, and built again when its key store or trust store file changes. The files are
+ * checked by a background thread, so the event loops creating handlers only read the current context.
+ * <p>
+ * The engines are created by the JDK provider, or by OpenSSL, i.e. netty-tcnative, if the configuration asks for it
+ * and it is available. Outbound engines are created for the host and port of the route, so that the sessions of a
+ * route are resumed by the client session cache.
  */
 public class SSLHandlerFactory {
 
+    private static final Logger log = LoggerFactory.getLogger(SSLHandlerFactory.class);
+
     private static final String protocol = "TLS";
-    private final SSLContext serverContext;
+    private static final String OPENSSL_PROVIDER = "openssl";
+    // Key store files are checked for changes, and session ticket keys for rotation, this often
+    private static final long RELOAD_CHECK_INTERVAL_SECONDS = 10;
+    private static ScheduledThreadPoolExecutor keyStoreWatcher;
+
+    private volatile Contexts contexts;
     private SSLConfig sslConfig;
     private boolean needClientAuth;
-
+    private volatile SslContext http2ClientContext;
+    private volatile SslContext http2ServerContext;
+    private volatile long keyStoreVersion;
+    // The first key encrypts new tickets, the previous one still decrypts the tickets issued before the rotation
+    private volatile OpenSslSessionTicketKey[] ticketKeys;
+    private volatile long lastTicketKeyRotation;
 
     public SSLHandlerFactory(SSLConfig sslConfig) {
         this.sslConfig = sslConfig;
+        this.needClientAuth = sslConfig.getTrustStore() != null;
+        this.keyStoreVersion = getKeyStoreVersion(sslConfig);
+        this.contexts = createContexts(sslConfig, needClientAuth);
+        if (usesTicketKeys()) {
+            rotateSessionTicketKeys();
+        }
+        watch(this);
+    }
+
+    /**
+     * Provides the factory of an SSL configuration, which is created once per configuration instance, e.g. once
+     * per listener interface or sender.
+     *
+     * @param sslConfig SSL configuration
+     * @return SSLHandlerFactory of the configuration
+     */
+    public static SSLHandlerFactory getInstance(SSLConfig sslConfig) {
+        SSLHandlerFactory sslHandlerFactory = sslConfig.getSslHandlerFactory();
+        if (sslHandlerFactory == null) {
+            synchronized (sslConfig) {
+                sslHandlerFactory = sslConfig.getSslHandlerFactory();
+                if (sslHandlerFactory == null) {
+                    sslHandlerFactory = new SSLHandlerFactory(sslConfig);
+                    sslConfig.setSslHandlerFactory(sslHandlerFactory);
+                }
+            }
+        }
+        return sslHandlerFactory;
+    }
+
+    /**
+     * Check the key stores of a factory periodically until it is no longer used. The task holds the factory weakly,
+     * so that it ends with the configuration the factory belongs to, and the watcher thread ends once no factory
+     * is left to check.
+     */
+    private static synchronized void watch(SSLHandlerFactory sslHandlerFactory) {
+        if (keyStoreWatcher == null) {
+            keyStoreWatcher = new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("ssl-key-store-watcher",
+                    true));
+            keyStoreWatcher.setRemoveOnCancelPolicy(true);
+            keyStoreWatcher.setKeepAliveTime(RELOAD_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            keyStoreWatcher.allowCoreThreadTimeOut(true);
+        }
+        WeakReference<SSLHandlerFactory> factoryReference = new WeakReference<>(sslHandlerFactory);
+        AtomicReference<ScheduledFuture<?>> watch = new AtomicReference<>();
+        watch.set(keyStoreWatcher.scheduleWithFixedDelay(() -> {
+            SSLHandlerFactory factory = factoryReference.get();
+            if (factory == null) {
+                watch.get().cancel(false);
+                return;
+            }
+            try {
+                factory.reloadIfModified();
+                factory.rotateSessionTicketKeysIfDue();
+            } catch (RuntimeException e) {
+                log.error("Failed to check the key stores of " + factory.sslConfig.getKeyStore(), e);
+            }
+        }, RELOAD_CHECK_INTERVAL_SECONDS, RELOAD_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Build the SSL context again if the key store or the trust store file has changed since it was built. If the
+     * changed files cannot be loaded, e.g. while they are being replaced, the current context is kept.
+     *
+     * @return true if the SSL context has been built again
+     */
+    public synchronized boolean reloadIfModified() {
+        long version = getKeyStoreVersion(sslConfig);
+        if (version == keyStoreVersion) {
+            return false;
+        }
+        Contexts reloaded;
+        try {
+            reloaded = createContexts(sslConfig, needClientAuth);
+        } catch (IllegalArgumentException e) {
+            log.error("Failed to reload the changed key stores, the current SSL context is used", e);
+            return false;
+        }
+        // Tickets issued with the current keys are still accepted
+        setTicketKeys(reloaded.openSslContext);
+        // HTTP/2 contexts in use are built here as well, instead of by the first connection using them
+        SslContext http2Client = http2ClientContext != null ? newHttp2TLSContext(reloaded, true) : null;
+        SslContext http2Server = http2ServerContext != null ? newHttp2TLSContext(reloaded, false) : null;
+        setTicketKeys(http2Server);
+        contexts = reloaded;
+        keyStoreVersion = version;
+        http2ClientContext = http2Client;
+        http2ServerContext = http2Server;
+        log.info("Reloaded the SSL context of the changed key store " + sslConfig.getKeyStore());
+        return true;
+    }
+
+    /**
+     * @return the JDK SSL context of the configuration
+     */
+    public SSLContext getSSLContext() {
+        return contexts.sslContext;
+    }
+
+    /**
+     * @return the provider creating the engines, which is JDK if OpenSSL was asked for but is not available
+     */
+    public SslProvider getSslProvider() {
+        return contexts.openSslContext != null ? SslProvider.OPENSSL : SslProvider.JDK;
+    }
+
+    /**
+     * Replace the key encrypting the session tickets of the OpenSSL engines. The replaced key is kept to decrypt the
+     * tickets issued before, until the next rotation.
+     */
+    public synchronized void rotateSessionTicketKeys() {
+        OpenSslSessionTicketKey[] currentKeys = ticketKeys;
+        OpenSslSessionTicketKey newKey = newTicketKey();
+        ticketKeys = currentKeys == null ?
+                new OpenSslSessionTicketKey[] { newKey } :
+                new OpenSslSessionTicketKey[] { newKey, currentKeys[0] };
+        lastTicketKeyRotation = System.nanoTime();
+        setTicketKeys(contexts.openSslContext);
+        setTicketKeys(http2ServerContext);
+    }
+
+    private boolean usesTicketKeys() {
+        return contexts.openSslContext != null && !sslConfig.isClientMode()
+                && sslConfig.getSessionTicketKeyRotation() > 0;
+    }
+
+    private void rotateSessionTicketKeysIfDue() {
+        if (usesTicketKeys() && System.nanoTime() - lastTicketKeyRotation > TimeUnit.SECONDS
+                .toNanos(sslConfig.getSessionTicketKeyRotation())) {
+            synchronized (this) {
+                if (System.nanoTime() - lastTicketKeyRotation > TimeUnit.SECONDS
+                        .toNanos(sslConfig.getSessionTicketKeyRotation())) {
+                    rotateSessionTicketKeys();
+                }
+            }
+        }
+    }
+
+    private void setTicketKeys(SslContext sslContext) {
+        OpenSslSessionTicketKey[] keys = ticketKeys;
+        if (sslContext == null || keys == null) {
+            return;
+        }
+        SSLSessionContext sessionContext = sslContext.sessionContext();
+        if (sessionContext instanceof OpenSslServerSessionContext) {
+            ((OpenSslServerSessionContext) sessionContext).setTicketKeys(keys);
+        }
+    }
+
+    private static OpenSslSessionTicketKey newTicketKey() {
+        SecureRandom random = new SecureRandom();
+        byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+        byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+        byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+        return new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+    }
+
+    private static Contexts createContexts(SSLConfig sslConfig, boolean needClientAuth) {
         String algorithm = Security.getProperty("ssl.KeyManagerFactory.algorithm");
         if (algorithm == null) {
             algorithm = "SunX509";
@@ -63,31 +266,92 @@ public class SSLHandlerFactory {
         try {
             KeyStore ks = getKeyStore(sslConfig.getKeyStore(), sslConfig.getKeyStorePass());
             // Set up key manager factory to use our key store
-            KeyManagerFactory kmf = KeyManagerFactory.getInstance(algorithm);
+            KeyManagerFactory kmf = null;
             KeyManager[] keyManagers = null;
             if (ks != null) {
+                kmf = KeyManagerFactory.getInstance(algorithm);
                 kmf.init(ks, sslConfig.getCertPass() != null ?
                         sslConfig.getCertPass().toCharArray() :
                         sslConfig.getKeyStorePass().toCharArray());
                 keyManagers = kmf.getKeyManagers();
             }
+            TrustManagerFactory tmf = null;
             TrustManager[] trustManagers = null;
             if (sslConfig.getTrustStore() != null) {
-                this.needClientAuth = true;
                 KeyStore tks = getKeyStore(sslConfig.getTrustStore(), sslConfig.getTrustStorePass());
-                TrustManagerFactory tmf = TrustManagerFactory.getInstance(algorithm);
+                tmf = TrustManagerFactory.getInstance(algorithm);
                 tmf.init(tks);
                 trustManagers = tmf.getTrustManagers();
             }
-            serverContext = SSLContext.getInstance(protocol);
-            serverContext.init(keyManagers, trustManagers, null);
-
+            SSLContext sslContext = SSLContext.getInstance(protocol);
+            sslContext.init(keyManagers, trustManagers, null);
+            SSLSessionContext sessionContext = sslConfig.isClientMode() ?
+                    sslContext.getClientSessionContext() :
+                    sslContext.getServerSessionContext();
+            if (sslConfig.getSessionCacheSize() > 0) {
+                sessionContext.setSessionCacheSize(sslConfig.getSessionCacheSize());
+            }
+            if (sslConfig.getSessionTimeout() > 0) {
+                sessionContext.setSessionTimeout(sslConfig.getSessionTimeout());
+            }
+            SslContext openSslContext = null;
+            if (OPENSSL_PROVIDER.equalsIgnoreCase(sslConfig.getSslProvider())) {
+                openSslContext = createOpenSslContext(sslConfig, kmf, tmf, needClientAuth);
+            }
+            return new Contexts(sslContext, openSslContext, kmf, tmf);
         } catch (UnrecoverableKeyException | KeyManagementException |
                 NoSuchAlgorithmException | KeyStoreException | IOException e) {
             throw new IllegalArgumentException("Failed to initialize the server-side SSLContext", e);
         }
     }
 
+    /**
+     * @return OpenSSL context of the configuration, or null if OpenSSL cannot be used and the JDK provider is used
+     * instead
+     */
+    private static SslContext createOpenSslContext(SSLConfig sslConfig, KeyManagerFactory kmf,
+            TrustManagerFactory tmf, boolean needClientAuth) {
+        if (!OpenSsl.isAvailable()) {
+            log.warn("OpenSSL is not available, the JDK SSL provider is used", OpenSsl.unavailabilityCause());
+            return null;
+        }
+        try {
+            return newOpenSslContextBuilder(sslConfig, kmf, tmf, sslConfig.isClientMode(), needClientAuth)
+                    .build();
+        } catch (SSLException | RuntimeException e) {
+            log.warn("Failed to initialize the OpenSSL context, the JDK SSL provider is used", e);
+            return null;
+        }
+    }
+
+    private static SslContextBuilder newOpenSslContextBuilder(SSLConfig sslConfig, KeyManagerFactory kmf,
+            TrustManagerFactory tmf, boolean isClient, boolean needClientAuth) {
+        SslContextBuilder builder;
+        if (isClient) {
+            builder = SslContextBuilder.forClient().keyManager(kmf);
+        } else {
+            builder = SslContextBuilder.forServer(kmf)
+                    .clientAuth(needClientAuth ? ClientAuth.REQUIRE : ClientAuth.NONE);
+        }
+        return builder.trustManager(tmf).sslProvider(SslProvider.OPENSSL)
+                .sessionCacheSize(sslConfig.getSessionCacheSize())
+                .sessionTimeout(sslConfig.getSessionTimeout());
+    }
+
+    /**
+     * A key store file is considered changed if its modification time or its length changes.
+     */
+    private static long getKeyStoreVersion(SSLConfig sslConfig) {
+        long version = 17;
+        for (File file : new File[] { sslConfig.getKeyStore(), sslConfig.getTrustStore() }) {
+            if (file != null) {
+                version = 31 * version + file.lastModified();
+                version = 31 * version + file.length();
+            }
+        }
+        return version;
+    }
+
     private static KeyStore getKeyStore(File keyStore, String keyStorePassword) throws IOException {
         KeyStore ks = null;
         if (keyStore != null && keyStorePassword != null) {
@@ -105,18 +369,44 @@ public class SSLHandlerFactory {
      * @return instance of {@code SslHandler}
      */
     public SslHandler create() {
-        SSLEngine engine = serverContext.createSSLEngine();
+        return create(ByteBufAllocator.DEFAULT, null, -1);
+    }
+
+    /**
+     * Create the handler of an outbound connection. Its session is resumed from the sessions of the route, if the
+     * SSL provider supports it.
+     *
+     * @param allocator allocator of the channel
+     * @param httpRoute route of the connection
+     * @return instance of {@code SslHandler}
+     */
+    public SslHandler create(ByteBufAllocator allocator, HttpRoute httpRoute) {
+        return create(allocator, httpRoute.getHost(), httpRoute.getPort());
+    }
+
+    private SslHandler create(ByteBufAllocator allocator, String peerHost, int peerPort) {
+        Contexts current = contexts;
+        SSLEngine engine;
+        if (current.openSslContext != null) {
+            // The mode of the engine is the mode of its context
+            engine = peerHost != null ?
+                    current.openSslContext.newEngine(allocator, peerHost, peerPort) :
+                    current.openSslContext.newEngine(allocator);
+        } else {
+            engine = peerHost != null ?
+                    current.sslContext.createSSLEngine(peerHost, peerPort) :
+                    current.sslContext.createSSLEngine();
+            engine.setUseClientMode(sslConfig.isClientMode());
+            if (sslConfig.isEnableSessionCreation()) {
+                engine.setEnableSessionCreation(true);
+            }
+        }
         engine.setNeedClientAuth(needClientAuth);
-        engine.setUseClientMode(sslConfig.isClientMode());
         if (sslConfig.getCipherSuites() != null && sslConfig.getCipherSuites().length > 0) {
             engine.setEnabledCipherSuites(sslConfig.getCipherSuites());
         }
         if (sslConfig.getEnableProtocols() != null && sslConfig.getEnableProtocols().length > 0) {
-            engine.setEnabledCipherSuites(sslConfig.getEnableProtocols());
-
-        }
-        if (sslConfig.isEnableSessionCreation()) {
-            engine.setEnableSessionCreation(true);
+            engine.setEnabledProtocols(sslConfig.getEnableProtocols());
 
         }
         if (sslConfig.getServerNames() != null && sslConfig.getServerNames().length > 0) {
@@ -129,4 +419,74 @@ public class SSLHandlerFactory {
         }
         return new SslHandler(engine);
     }
+
+    /**
+     * Create a context which negotiates HTTP/2 through ALPN, falling back to HTTP/1.1. The context is shared until
+     * the key stores are reloaded.
+     *
+     * @param isClient whether the context is used for outbound connections
+     * @return instance of {@code SslContext}
+     */
+    public SslContext createHttp2TLSContext(boolean isClient) {
+        SslContext sslContext = isClient ? http2ClientContext : http2ServerContext;
+        if (sslContext == null) {
+            Contexts current = contexts;
+            sslContext = newHttp2TLSContext(current, isClient);
+            // Not kept if the key stores have been reloaded in the meantime
+            synchronized (this) {
+                if (current == contexts) {
+                    if (isClient) {
+                        http2ClientContext = sslContext;
+                    } else {
+                        setTicketKeys(sslContext);
+                        http2ServerContext = sslContext;
+                    }
+                }
+            }
+        }
+        return sslContext;
+    }
+
+    private SslContext newHttp2TLSContext(Contexts current, boolean isClient) {
+        ApplicationProtocolConfig protocolConfig = new ApplicationProtocolConfig(
+                ApplicationProtocolConfig.Protocol.ALPN,
+                ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1);
+        Iterable<String> ciphers = Http2SecurityUtil.CIPHERS;
+        if (sslConfig.getCipherSuites() != null && sslConfig.getCipherSuites().length > 0) {
+            ciphers = Arrays.asList(sslConfig.getCipherSuites());
+        }
+        if (current.openSslContext != null) {
+            try {
+                return newOpenSslContextBuilder(sslConfig, current.keyManagerFactory, current.trustManagerFactory,
+                        isClient, needClientAuth).ciphers(ciphers, SupportedCipherSuiteFilter.INSTANCE)
+                        .applicationProtocolConfig(protocolConfig).build();
+            } catch (SSLException | RuntimeException e) {
+                log.warn("Failed to initialize the OpenSSL HTTP/2 context, the JDK SSL provider is used", e);
+            }
+        }
+        return new JdkSslContext(current.sslContext, isClient, ciphers, SupportedCipherSuiteFilter.INSTANCE,
+                protocolConfig, needClientAuth ? ClientAuth.REQUIRE : ClientAuth.NONE);
+    }
+
+    /**
+     * The contexts built from the key stores, which are replaced together when the key stores change.
+     */
+    private static class Contexts {
+
+        private final SSLContext sslContext;
+        // Null unless OpenSSL is used
+        private final SslContext openSslContext;
+        private final KeyManagerFactory keyManagerFactory;
+        private final TrustManagerFactory trustManagerFactory;
+
+        private Contexts(SSLContext sslContext, SslContext openSslContext, KeyManagerFactory keyManagerFactory,
+                TrustManagerFactory trustManagerFactory) {
+            this.sslContext = sslContext;
+            this.openSslContext = openSslContext;
+            this.keyManagerFactory = keyManagerFactory;
+            this.trustManagerFactory = trustManagerFactory;
+        }
+    }
 }
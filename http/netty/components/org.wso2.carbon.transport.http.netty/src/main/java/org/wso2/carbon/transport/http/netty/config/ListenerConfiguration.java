@@ -56,6 +56,9 @@ public class ListenerConfiguration {
     @XmlAttribute
     private String scheme = "http";
 
+    @XmlAttribute
+    private String httpVersion = "1.1";
+
     @XmlAttribute
     private String keyStoreFile;
 
@@ -140,6 +143,14 @@ public class ListenerConfiguration {
         this.scheme = scheme;
     }
 
+    public String getHttpVersion() {
+        return httpVersion;
+    }
+
+    public void setHttpVersion(String httpVersion) {
+        this.httpVersion = httpVersion;
+    }
+
     public List<Parameter> getParameters() {
         return parameters;
     }
@@ -53,6 +53,9 @@ public class SenderConfiguration {
     @XmlAttribute
     private String scheme = "http";
 
+    @XmlAttribute
+    private String httpVersion = "1.1";
+
     @XmlAttribute
     private String keyStoreFile;
 
@@ -128,6 +131,14 @@ public class SenderConfiguration {
         this.scheme = scheme;
     }
 
+    public String getHttpVersion() {
+        return httpVersion;
+    }
+
+    public void setHttpVersion(String httpVersion) {
+        this.httpVersion = httpVersion;
+    }
+
     public List<Parameter> getParameters() {
         return parameters;
     }
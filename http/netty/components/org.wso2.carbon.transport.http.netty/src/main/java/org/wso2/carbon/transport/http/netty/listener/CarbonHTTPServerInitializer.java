@@ -15,14 +15,25 @@
 
 package org.wso2.carbon.transport.http.netty.listener;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.AsciiString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.BufferFactory;
@@ -32,8 +43,11 @@ import org.wso2.carbon.transport.http.netty.common.ssl.SSLConfig;
 import org.wso2.carbon.transport.http.netty.common.ssl.SSLHandlerFactory;
 import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
 import org.wso2.carbon.transport.http.netty.config.TransportProperty;
+import org.wso2.carbon.transport.http.netty.listener.http2.Http2SourceHandlerBuilder;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
 
+import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -44,6 +58,10 @@ public class CarbonHTTPServerInitializer extends ChannelInitializer<SocketChanne
         implements CarbonTransportInitializer {
 
     private static final Logger log = LoggerFactory.getLogger(CarbonHTTPServerInitializer.class);
+    private static final String HTTP2_HANDLER = "http2-handler";
+    private static final String[] HTTP1_HANDLERS = {
+            "encoder", "decoder", "custom-aggregator", "compressor", "chunkWriter", "handler" };
+    private static final int MAX_UPGRADE_REQUEST_LENGTH = 64 * 1024;
     private ConnectionManager connectionManager;
 
     private Map<String, ListenerConfiguration> listenerConfigurationMap;
@@ -76,24 +94,74 @@ public class CarbonHTTPServerInitializer extends ChannelInitializer<SocketChanne
         }
     }
 
+    /**
+     * Listener configurations are keyed by their configured host and port. The local address of a connection is
+     * matched numerically first, so that accepting it needs no reverse DNS lookup, which is only done for
+     * listeners configured with a host name.
+     */
+    private String getListenerKey(InetSocketAddress localAddress) {
+        int port = localAddress.getPort();
+        String id = localAddress.getAddress().getHostAddress() + ":" + port;
+        if (listenerConfigurationMap.containsKey(id)) {
+            return id;
+        }
+        id = Constants.DEFAULT_ADDRESS + ":" + port;
+        if (listenerConfigurationMap.containsKey(id)) {
+            return id;
+        }
+        return localAddress.getHostName() + ":" + port;
+    }
+
     @Override
     public void initChannel(SocketChannel ch) throws Exception {
         if (log.isDebugEnabled()) {
             log.debug("Initializing source channel pipeline");
         }
-        String host = ch.localAddress().getHostName();
-        int port = ch.localAddress().getPort();
-
-        String id = host + ":" + port;
+        String id = getListenerKey(ch.localAddress());
         ListenerConfiguration listenerConfiguration = listenerConfigurationMap.get(id);
-        if (sslConfigMap.get(id) != null) {
-            SslHandler sslHandler = new SSLHandlerFactory(sslConfigMap.get(id)).create();
-            ch.pipeline().addLast("ssl", sslHandler);
-        } else if (sslConfig != null) {
-            SslHandler sslHandler = new SSLHandlerFactory(sslConfig).create();
-            ch.pipeline().addLast("ssl", sslHandler);
+        SSLConfig listenerSslConfig = sslConfigMap.get(id) != null ? sslConfigMap.get(id) : sslConfig;
+        configurePipeline(ch.pipeline(), listenerConfiguration, listenerSslConfig);
+    }
+
+    /**
+     * Add the handlers of a connection accepted by a listener. HTTP/2 listeners decide between HTTP/2 and HTTP/1.1
+     * through ALPN when secured, and otherwise from the first bytes the client sends.
+     *
+     * @param p                     pipeline of the accepted connection
+     * @param listenerConfiguration configuration of the listener which accepted the connection
+     * @param listenerSslConfig     SSL configuration of the listener, or null for cleartext connections
+     * @throws Exception if the SSL handler cannot be created
+     */
+    public void configurePipeline(ChannelPipeline p, ListenerConfiguration listenerConfiguration,
+            SSLConfig listenerSslConfig) throws Exception {
+        if (!Constants.HTTP_VERSION_2_0.equals(listenerConfiguration.getHttpVersion())) {
+            if (listenerSslConfig != null) {
+                SslHandler sslHandler = SSLHandlerFactory.getInstance(listenerSslConfig).create();
+                p.addLast("ssl", sslHandler);
+            }
+            configureHttp1Pipeline(p, listenerConfiguration);
+        } else if (listenerSslConfig != null) {
+            // h2 is negotiated through ALPN, clients without it are served over HTTP/1.1
+            SslContext sslContext = SSLHandlerFactory.getInstance(listenerSslConfig).createHttp2TLSContext(false);
+            p.addLast("ssl", sslContext.newHandler(p.channel().alloc()));
+            p.addLast("alpn", new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                @Override
+                protected void configurePipeline(ChannelHandlerContext ctx, String protocol) throws Exception {
+                    if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                        ctx.pipeline().addLast(HTTP2_HANDLER,
+                                new Http2SourceHandlerBuilder(connectionManager, listenerConfiguration).build());
+                    } else {
+                        configureHttp1Pipeline(ctx.pipeline(), listenerConfiguration);
+                    }
+                }
+            });
+        } else {
+            // h2c is accepted with prior knowledge or through an upgrade of an HTTP/1.1 request
+            p.addLast("h2c-detector", new CleartextHttp2Detector(listenerConfiguration));
         }
-        ChannelPipeline p = ch.pipeline();
+    }
+
+    private void configureHttp1Pipeline(ChannelPipeline p, ListenerConfiguration listenerConfiguration) {
         p.addLast("encoder", new HttpResponseEncoder());
         if (RequestSizeValidationConfiguration.getInstance().isHeaderSizeValidation()) {
             p.addLast("decoder", new CustomHttpRequestDecoder());
@@ -114,6 +182,57 @@ public class CarbonHTTPServerInitializer extends ChannelInitializer<SocketChanne
         }
     }
 
+    private void configureUpgradeHandler(ChannelPipeline p, ListenerConfiguration listenerConfiguration) {
+        HttpServerUpgradeHandler.SourceCodec sourceCodec = ctx -> {
+            for (String name : HTTP1_HANDLERS) {
+                if (ctx.pipeline().get(name) != null) {
+                    ctx.pipeline().remove(name);
+                }
+            }
+        };
+        HttpServerUpgradeHandler.UpgradeCodecFactory upgradeCodecFactory = protocol -> {
+            if (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+                return new Http2ServerUpgradeCodec(HTTP2_HANDLER,
+                        new Http2SourceHandlerBuilder(connectionManager, listenerConfiguration).build());
+            }
+            return null;
+        };
+        p.addAfter("decoder", "upgrade", new HttpServerUpgradeHandler(sourceCodec, upgradeCodecFactory,
+                MAX_UPGRADE_REQUEST_LENGTH));
+    }
+
+    /**
+     * Decides whether a cleartext connection speaks HTTP/2 with prior knowledge by matching the connection preface,
+     * and replaces itself with the HTTP/2 handler or the HTTP/1.1 pipeline accordingly.
+     */
+    private class CleartextHttp2Detector extends ByteToMessageDecoder {
+
+        private final ListenerConfiguration listenerConfiguration;
+
+        CleartextHttp2Detector(ListenerConfiguration listenerConfiguration) {
+            this.listenerConfiguration = listenerConfiguration;
+        }
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+            ByteBuf preface = Http2CodecUtil.connectionPrefaceBuf();
+            try {
+                int length = Math.min(in.readableBytes(), preface.readableBytes());
+                if (!ByteBufUtil.equals(preface, preface.readerIndex(), in, in.readerIndex(), length)) {
+                    configureHttp1Pipeline(ctx.pipeline(), listenerConfiguration);
+                    configureUpgradeHandler(ctx.pipeline(), listenerConfiguration);
+                    ctx.pipeline().remove(this);
+                } else if (length == preface.readableBytes()) {
+                    ctx.pipeline().addLast(HTTP2_HANDLER,
+                            new Http2SourceHandlerBuilder(connectionManager, listenerConfiguration).build());
+                    ctx.pipeline().remove(this);
+                }
+            } finally {
+                preface.release();
+            }
+        }
+    }
+
     @Override
     public boolean isServerInitializer() {
         return true;
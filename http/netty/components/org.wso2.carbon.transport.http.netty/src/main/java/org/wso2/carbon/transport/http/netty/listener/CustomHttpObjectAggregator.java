@@ -23,6 +23,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpObject;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -52,34 +53,44 @@ public class CustomHttpObjectAggregator extends HttpObjectAggregator {
         try {
             super.decode(ctx, msg, out);
         } catch (Exception e) {
-            log.warn("Message length validation failed");
+            rejectOversizedMessage(ctx);
+        }
+    }
 
-            Iterator<Map.Entry<String, ChannelHandler>> iterator = ctx.pipeline().iterator();
+    @Override
+    protected void handleOversizedMessage(ChannelHandlerContext ctx, HttpMessage oversized) throws Exception {
+        // Netty 4.1 reports an oversized message through this callback instead of failing the decode
+        rejectOversizedMessage(ctx);
+    }
 
-            boolean canRemove = false;
-            while (iterator.hasNext()) {
-                Map.Entry<String, ChannelHandler> channelHandlerEntry = iterator.next();
-                if (channelHandlerEntry.getKey().equalsIgnoreCase(ctx.name())) {
-                    canRemove = true;
-                }
-                if (canRemove && !channelHandlerEntry.getKey().equalsIgnoreCase(ctx.name())) {
-                    ctx.pipeline().remove(channelHandlerEntry.getKey());
-                }
-            }
+    private void rejectOversizedMessage(ChannelHandlerContext ctx) {
+        log.warn("Message length validation failed");
 
-            String rejectMessage = RequestSizeValidationConfiguration.getInstance().getRequestRejectMessage();
-            byte[] errorMessageBytes = rejectMessage.getBytes(Charset.defaultCharset());
-            ByteBuf content = Unpooled.wrappedBuffer(errorMessageBytes);
-            DefaultFullHttpResponse rejectResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
-                    HttpResponseStatus
-                            .valueOf(RequestSizeValidationConfiguration.getInstance().getRequestRejectStatusCode()),
-                    content);
-            rejectResponse.headers().set(Constants.HTTP_CONTENT_LENGTH, errorMessageBytes.length);
-            rejectResponse.headers().set(Constants.HTTP_CONTENT_TYPE,
-                    RequestSizeValidationConfiguration.getInstance().getRequestRejectMsgContentType());
+        Iterator<Map.Entry<String, ChannelHandler>> iterator = ctx.pipeline().iterator();
 
-            ctx.writeAndFlush(rejectResponse);
+        boolean canRemove = false;
+        while (iterator.hasNext()) {
+            Map.Entry<String, ChannelHandler> channelHandlerEntry = iterator.next();
+            if (channelHandlerEntry.getKey().equalsIgnoreCase(ctx.name())) {
+                canRemove = true;
+            }
+            if (canRemove && !channelHandlerEntry.getKey().equalsIgnoreCase(ctx.name())) {
+                ctx.pipeline().remove(channelHandlerEntry.getKey());
+            }
         }
+
+        String rejectMessage = RequestSizeValidationConfiguration.getInstance().getRequestRejectMessage();
+        byte[] errorMessageBytes = rejectMessage.getBytes(Charset.defaultCharset());
+        ByteBuf content = Unpooled.wrappedBuffer(errorMessageBytes);
+        DefaultFullHttpResponse rejectResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus
+                        .valueOf(RequestSizeValidationConfiguration.getInstance().getRequestRejectStatusCode()),
+                content);
+        rejectResponse.headers().set(Constants.HTTP_CONTENT_LENGTH, errorMessageBytes.length);
+        rejectResponse.headers().set(Constants.HTTP_CONTENT_TYPE,
+                RequestSizeValidationConfiguration.getInstance().getRequestRejectMsgContentType());
+
+        ctx.writeAndFlush(rejectResponse);
     }
 
 }
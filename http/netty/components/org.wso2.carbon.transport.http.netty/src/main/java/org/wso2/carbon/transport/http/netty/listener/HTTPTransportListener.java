@@ -21,21 +21,24 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonMessageProcessor;
 import org.wso2.carbon.messaging.TransportListener;
 import org.wso2.carbon.messaging.TransportListenerManager;
 import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.BufferAllocatorConfiguration;
+import org.wso2.carbon.transport.http.netty.common.EventLoopMonitor;
+import org.wso2.carbon.transport.http.netty.common.NativeTransportConfiguration;
 import org.wso2.carbon.transport.http.netty.common.ssl.SSLConfig;
+import org.wso2.carbon.transport.http.netty.common.ssl.SSLHandlerFactory;
 import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
 import org.wso2.carbon.transport.http.netty.config.Parameter;
 import org.wso2.carbon.transport.http.netty.config.TransportProperty;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -56,9 +59,12 @@ public class HTTPTransportListener extends TransportListener {
     private int bossGroupSize;
     private int workerGroupSize;
 
+    // Number of server channels bound to each port, more than one only with SO_REUSEPORT
+    private int acceptorCount = 1;
+
     private ServerBootstrap bootstrap;
     private ListenerConfiguration defaultListenerConfig;
-    private Map<Integer, ChannelFuture> channelFutureMap = new ConcurrentHashMap<>();
+    private Map<Integer, List<ChannelFuture>> channelFutureMap = new ConcurrentHashMap<>();
     //Map used for cache listener configurations
     private Map<String, ListenerConfiguration> listenerConfigurationMap = new HashMap<>();
     //Map used for  map listener configurations with host and post as key for used in channel initializer
@@ -119,19 +125,39 @@ public class HTTPTransportListener extends TransportListener {
         //Create Bootstrap Configuration from listener parameters
         ServerBootstrapConfiguration.createBootStrapConfiguration(transportProperties);
         ServerBootstrapConfiguration serverBootstrapConfiguration = ServerBootstrapConfiguration.getInstance();
-        //boss group is for accepting channels
-        bossGroup = new NioEventLoopGroup(
-                bossGroupSize != 0 ? bossGroupSize : Runtime.getRuntime().availableProcessors());
+        NativeTransportConfiguration.createNativeTransportConfiguration(transportProperties);
+        NativeTransportConfiguration nativeTransportConfiguration = NativeTransportConfiguration.getInstance();
+        BufferAllocatorConfiguration.createBufferAllocatorConfiguration(transportProperties);
+        EventLoopMonitor.createEventLoopMonitor(transportProperties);
+        acceptorCount = serverBootstrapConfiguration.getReusePortAcceptors();
+        if (acceptorCount > 1 && !nativeTransportConfiguration.isEpoll()) {
+            log.warn(Constants.SERVER_BOOTSTRAP_SO_REUSEPORT_ACCEPTORS + " requires the native epoll transport "
+                    + "hence binding a single server channel per port");
+            acceptorCount = 1;
+        }
+        //boss group is for accepting channels, each acceptor of a port gets its own event loop
+        bossGroup = nativeTransportConfiguration.createEventLoopGroup(Math.max(acceptorCount,
+                bossGroupSize != 0 ? bossGroupSize : Runtime.getRuntime().availableProcessors()));
         //worker group is for processing IO
-        workerGroup = new NioEventLoopGroup(
+        workerGroup = nativeTransportConfiguration.createEventLoopGroup(
                 workerGroupSize != 0 ? workerGroupSize : Runtime.getRuntime().availableProcessors() * 2);
+        EventLoopMonitor.getInstance().monitor(EventLoopMonitor.BOSS_GROUP, bossGroup);
+        EventLoopMonitor.getInstance().monitor(EventLoopMonitor.WORKER_GROUP, workerGroup);
         log.debug("Netty Boss group size " + bossGroup);
         log.debug("Netty Worker group Size" + workerGroup);
         bootstrap = new ServerBootstrap();
         bootstrap.option(ChannelOption.SO_BACKLOG, serverBootstrapConfiguration.getSoBackLog());
         log.debug("Netty Server Socket BACKLOG " + serverBootstrapConfiguration.getSoBackLog());
 
-        bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class);
+        bootstrap.group(bossGroup, workerGroup).channel(nativeTransportConfiguration.getServerChannelClass());
+        nativeTransportConfiguration.configureServerBootstrap(bootstrap);
+        if (acceptorCount > 1) {
+            nativeTransportConfiguration.enableReusePort(bootstrap);
+        }
+        log.debug("Netty Server Socket acceptors per port " + acceptorCount);
+        log.debug("Netty Server Socket native epoll transport " + nativeTransportConfiguration.isEpoll());
+        BufferAllocatorConfiguration.getInstance().configureServerBootstrap(bootstrap);
+        log.debug("Netty Server Socket pooled buffers " + BufferAllocatorConfiguration.getInstance().isPooled());
 
         addChannelInitializer();
 
@@ -152,10 +178,9 @@ public class HTTPTransportListener extends TransportListener {
         log.debug("Netty Server Socket SO_SNDBUF " + serverBootstrapConfiguration.getSendBufferSize());
 
         try {
-            ChannelFuture future = bootstrap
-                    .bind(new InetSocketAddress(defaultListenerConfig.getHost(), defaultListenerConfig.getPort()))
-                    .sync();
-            if (future.isSuccess()) {
+            List<ChannelFuture> futures = bindAcceptors(defaultListenerConfig.getHost(),
+                    defaultListenerConfig.getPort());
+            if (isBound(futures)) {
                 TransportListenerManager artifactDeployer = HTTPTransportContextHolder.getInstance().getManager();
                 if (artifactDeployer != null) {
                     artifactDeployer.registerTransportListener(this);
@@ -174,9 +199,29 @@ public class HTTPTransportListener extends TransportListener {
         }
     }
 
+    //Binds the server channels of a port, the kernel spreads accepts across them when there are several
+    private List<ChannelFuture> bindAcceptors(String host, int port) throws InterruptedException {
+        List<ChannelFuture> futures = new ArrayList<>(acceptorCount);
+        for (int i = 0; i < acceptorCount; i++) {
+            futures.add(bootstrap.bind(new InetSocketAddress(host, port)).sync());
+        }
+        return futures;
+    }
+
+    private boolean isBound(List<ChannelFuture> futures) {
+        if (futures.stream().allMatch(ChannelFuture::isSuccess)) {
+            return true;
+        }
+        futures.forEach(future -> future.channel().close());
+        return false;
+    }
+
     //Channel Initializer is responsible for create channel pipeline
     private void addChannelInitializer() {
         CarbonHTTPServerInitializer handler = new CarbonHTTPServerInitializer(listenerConfigMapWithHostPort);
+        if (defaultListenerConfig.getSslConfig() != null) {
+            SSLHandlerFactory.getInstance(defaultListenerConfig.getSslConfig());
+        }
         handler.setSslConfig(defaultListenerConfig.getSslConfig());
         handler.setSslConfigMap(sslConfigMap);
         List<Parameter> parameters = defaultListenerConfig.getParameters();
@@ -207,14 +252,14 @@ public class HTTPTransportListener extends TransportListener {
     public void endMaintenance() {
         log.info("Ending maintenance mode for HTTP transport " + id + " running on port " + defaultListenerConfig
                 .getPort());
-        bossGroup = new NioEventLoopGroup(
-                bossGroupSize != 0 ? bossGroupSize : Runtime.getRuntime().availableProcessors());
-        workerGroup = new NioEventLoopGroup(
-                workerGroupSize != 0 ? workerGroupSize : Runtime.getRuntime().availableProcessors());
+        // Event loop groups are created again by startTransport
         startTransport();
     }
 
     private void shutdownEventLoops() {
+        // The monitor stops probing, and its thread stops once no other transport has loops to monitor
+        EventLoopMonitor.getInstance().unmonitor(bossGroup);
+        EventLoopMonitor.getInstance().unmonitor(workerGroup);
         try {
             bossGroup.shutdownGracefully().sync();
             workerGroup.shutdownGracefully().sync();
@@ -241,6 +286,8 @@ public class HTTPTransportListener extends TransportListener {
 
                 SSLConfig sslConfig = listenerConfiguration.getSslConfig();
                 if (sslConfig != null) {
+                    // Key stores are loaded here instead of by the first connection on an event loop
+                    SSLHandlerFactory.getInstance(sslConfig);
                     sslConfigMap.put(id, sslConfig);
                     if (listenerConfiguration.getHost().equals(Constants.DEFAULT_ADDRESS) || listenerConfiguration
                             .getHost().equals(Constants.LOCALHOST) || listenerConfiguration.getHost()
@@ -256,10 +303,10 @@ public class HTTPTransportListener extends TransportListener {
                 }
 
                 if (!interfaceId.equals(defaultListenerConfig.getId())) {
-                    ChannelFuture future = bootstrap.bind(new InetSocketAddress(listenerConfiguration.getHost(),
-                            listenerConfiguration.getPort())).sync();
-                    if (future.isSuccess()) {
-                        channelFutureMap.put(listenerConfiguration.getPort(), future);
+                    List<ChannelFuture> futures = bindAcceptors(listenerConfiguration.getHost(),
+                            listenerConfiguration.getPort());
+                    if (isBound(futures)) {
+                        channelFutureMap.put(listenerConfiguration.getPort(), futures);
                         if (listenerConfiguration.getSslConfig() == null) {
                             log.info("HTTP Interface " + interfaceId + " starting on host  " + listenerConfiguration
                                     .getHost() + " and port " + listenerConfiguration.getPort());
@@ -291,12 +338,12 @@ public class HTTPTransportListener extends TransportListener {
         if (listenerConfiguration != null && !defaultListenerConfig.getId().equals(listenerConfiguration.getId())) {
             String id = listenerConfiguration.getHost() + ":" + listenerConfiguration.getPort();
             //Remove cached channels and close them.
-            ChannelFuture future = channelFutureMap.remove(listenerConfiguration.getPort());
-            if (future != null) {
+            List<ChannelFuture> futures = channelFutureMap.remove(listenerConfiguration.getPort());
+            if (futures != null) {
                 if (sslConfigMap.get(id) != null) {
                     sslConfigMap.remove(id);
                 }
-                future.channel().close();
+                futures.forEach(future -> future.channel().close());
                 if (listenerConfiguration.getSslConfig() == null) {
                     log.info("HTTP Listener stopped on listening interface " + interfaceId + " attached to   host  "
                             + listenerConfiguration.getHost() + " and port " + listenerConfiguration.getPort());
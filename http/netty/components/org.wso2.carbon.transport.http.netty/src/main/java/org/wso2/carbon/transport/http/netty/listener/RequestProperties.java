@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener;
+
+import io.netty.handler.codec.http.HttpRequest;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.message.PropertyProvider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Properties of an incoming request, derived from its request line when they are read, and the properties of the
+ * connection it was received on.
+ */
+public class RequestProperties implements PropertyProvider {
+
+    private static final Set<String> REQUEST_PROPERTY_NAMES = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList(Constants.TO, Constants.REQUEST_URL, Constants.HTTP_VERSION, Constants.HTTP_METHOD,
+                    org.wso2.carbon.messaging.Constants.PROTOCOL)));
+
+    private final HttpRequest httpRequest;
+    private final PropertyProvider connectionProperties;
+
+    public RequestProperties(HttpRequest httpRequest, PropertyProvider connectionProperties) {
+        this.httpRequest = httpRequest;
+        this.connectionProperties = connectionProperties;
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        if (Constants.TO.equals(key) || Constants.REQUEST_URL.equals(key)) {
+            return httpRequest.uri();
+        } else if (Constants.HTTP_VERSION.equals(key)) {
+            return httpRequest.protocolVersion().text();
+        } else if (Constants.HTTP_METHOD.equals(key)) {
+            return httpRequest.method().name();
+        } else if (org.wso2.carbon.messaging.Constants.PROTOCOL.equals(key)) {
+            return httpRequest.protocolVersion().protocolName();
+        }
+        return connectionProperties.getProperty(key);
+    }
+
+    @Override
+    public Set<String> getPropertyNames() {
+        Set<String> names = new HashSet<>(connectionProperties.getPropertyNames());
+        names.addAll(REQUEST_PROPERTY_NAMES);
+        return names;
+    }
+}
@@ -21,16 +21,14 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultHttpContent;
-import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.LastHttpContent;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.DefaultCarbonMessage;
-import org.wso2.carbon.messaging.MessageDataSource;
 import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.LatencyListener;
+import org.wso2.carbon.transport.http.netty.common.ReadThrottle;
 import org.wso2.carbon.transport.http.netty.common.Util;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
@@ -44,15 +42,25 @@ public class ResponseCallback implements CarbonCallback {
 
     private ChannelHandlerContext ctx;
 
-    private static final Logger logger = LoggerFactory.getLogger(ResponseCallback.class);
+    // Request this is the response of, nobody reads the rest of it once the response is sent
+    private HTTPCarbonMessage requestMsg;
+
     private static final String HTTP_CONNECTION_CLOSE = "close";
 
+    // The callback is created when the request has been received
+    private final long requestStart = System.nanoTime();
+
     public ResponseCallback(ChannelHandlerContext channelHandlerContext) {
         this.ctx = channelHandlerContext;
     }
 
+    public ResponseCallback(ChannelHandlerContext channelHandlerContext, HTTPCarbonMessage requestMsg) {
+        this.ctx = channelHandlerContext;
+        this.requestMsg = requestMsg;
+    }
+
     public void done(CarbonMessage cMsg) {
-        handleResponsesWithoutContentLength(cMsg);
+        Util.handleResponsesWithoutContentLength(cMsg);
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceResponseReceiving(cMsg);
         }
@@ -64,23 +72,33 @@ public class ResponseCallback implements CarbonCallback {
         } else {
 
             if (cMsg instanceof HTTPCarbonMessage) {
+                // Content is written as it arrives, no thread waits for the rest of the response
                 HTTPCarbonMessage nettyCMsg = (HTTPCarbonMessage) cMsg;
-                while (true) {
-                    if (nettyCMsg.isEndOfMsgAdded() && nettyCMsg.isEmpty()) {
-                        ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
-                        break;
-                    }
-                    HttpContent httpContent = nettyCMsg.getHttpContent();
+                nettyCMsg.setContentListener(httpContent -> {
                     if (httpContent instanceof LastHttpContent) {
-                        ctx.writeAndFlush(httpContent);
+                        ChannelFuture future = ctx.writeAndFlush(httpContent);
+                        if (nettyCMsg.getMessagingException() != null) {
+                            // The response ended early, the client can only tell by the connection being closed
+                            future.addListener(ChannelFutureListener.CLOSE);
+                        }
+                        responseCompleted(response);
+                        if (requestMsg != null) {
+                            requestMsg.releaseReadThrottle();
+                        }
                         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
                             HTTPTransportContextHolder.getInstance().getHandlerExecutor().
                                     executeAtSourceResponseSending(cMsg);
                         }
-                        break;
+                    } else {
+                        ctx.write(httpContent);
+                        ReadThrottle readThrottle = nettyCMsg.getReadThrottle();
+                        if (readThrottle != null && !ctx.channel().isWritable()) {
+                            // Stop reading the response until the client has taken what is written so far
+                            ctx.flush();
+                            readThrottle.pauseUntilWritable(ctx.channel());
+                        }
                     }
-                    ctx.write(httpContent);
-                }
+                });
             } else if (cMsg instanceof DefaultCarbonMessage) {
                 DefaultCarbonMessage defaultCMsg = (DefaultCarbonMessage) cMsg;
                 while (true) {
@@ -90,10 +108,14 @@ public class ResponseCallback implements CarbonCallback {
                     ctx.write(httpContent);
                     if (defaultCMsg.isEndOfMsgAdded() && defaultCMsg.isEmpty()) {
                         ChannelFuture future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+                        responseCompleted(response);
                         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
                             HTTPTransportContextHolder.getInstance().getHandlerExecutor().
                                     executeAtSourceResponseSending(cMsg);
                         }
+                        if (requestMsg != null) {
+                            requestMsg.releaseReadThrottle();
+                        }
                         String connection = cMsg.getHeader(Constants.HTTP_CONNECTION);
                         if (connection != null && HTTP_CONNECTION_CLOSE.equalsIgnoreCase(connection)) {
                             future.addListener(ChannelFutureListener.CLOSE);
@@ -105,21 +127,13 @@ public class ResponseCallback implements CarbonCallback {
         }
     }
 
-    private void handleResponsesWithoutContentLength(CarbonMessage cMsg) {
-        if (cMsg.isAlreadyRead()) {
-            MessageDataSource messageDataSource = cMsg.getMessageDataSource();
-            if (messageDataSource != null) {
-                messageDataSource.serializeData();
-                cMsg.setEndOfMsgAdded(true);
-                cMsg.getHeaders().remove(Constants.HTTP_CONTENT_LENGTH);
-            } else {
-                logger.error("Message is already built but cannot find the MessageDataSource");
-            }
-        }
-        if (cMsg.getHeader(Constants.HTTP_TRANSFER_ENCODING) == null
-                && cMsg.getHeader(Constants.HTTP_CONTENT_LENGTH) == null) {
-            cMsg.setHeader(Constants.HTTP_CONTENT_LENGTH, String.valueOf(cMsg.getFullMessageLength()));
-
+    private void responseCompleted(HttpResponse response) {
+        LatencyListener latencyListener = LatencyListener.getInstance();
+        if (latencyListener != null && requestMsg != null) {
+            String listenerId = (String) requestMsg
+                    .getProperty(org.wso2.carbon.messaging.Constants.LISTENER_INTERFACE_ID);
+            latencyListener.sourceResponseCompleted(listenerId, response.status().code(),
+                    System.nanoTime() - requestStart);
         }
     }
 }
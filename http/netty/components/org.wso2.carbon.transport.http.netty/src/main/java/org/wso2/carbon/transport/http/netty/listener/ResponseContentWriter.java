@@ -19,7 +19,6 @@
 package org.wso2.carbon.transport.http.netty.listener;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -28,6 +27,7 @@ import io.netty.handler.codec.http.LastHttpContent;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.Writer;
 import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.Util;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 
 import java.nio.ByteBuffer;
@@ -47,7 +47,7 @@ public class ResponseContentWriter implements Writer {
 
     @Override
     public void write(ByteBuffer byteBuffer) {
-        ByteBuf bbuf = Unpooled.copiedBuffer(byteBuffer);
+        ByteBuf bbuf = Util.copyBuffer(channelHandlerContext.alloc(), byteBuffer);
         DefaultHttpContent httpContent = new DefaultHttpContent(bbuf);
         this.channelHandlerContext.write(httpContent);
     }
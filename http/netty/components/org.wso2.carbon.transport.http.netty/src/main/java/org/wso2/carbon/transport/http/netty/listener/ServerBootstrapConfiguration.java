@@ -43,6 +43,12 @@ public class ServerBootstrapConfiguration {
 
     private int socketTimeOut = 15;
 
+    private int reusePortAcceptors = 1;
+
+    private int contentHighWaterMark = 65536;
+
+    private int contentLowWaterMark = 32768;
+
     private ServerBootstrapConfiguration(Set<TransportProperty> properties) {
 
         if (properties != null) {
@@ -63,6 +69,12 @@ public class ServerBootstrapConfiguration {
                     soBackLog = (Integer) (parameter.getValue());
                 } else if (Constants.SERVER_BOOTSTRAP_SO_TIMEOUT.equals(parameter.getName())) {
                     socketTimeOut = (Integer) (parameter.getValue());
+                } else if (Constants.SERVER_BOOTSTRAP_SO_REUSEPORT_ACCEPTORS.equals(parameter.getName())) {
+                    reusePortAcceptors = (Integer) (parameter.getValue());
+                } else if (Constants.SERVER_BOOTSTRAP_CONTENT_HIGH_WATER_MARK.equals(parameter.getName())) {
+                    contentHighWaterMark = (Integer) (parameter.getValue());
+                } else if (Constants.SERVER_BOOTSTRAP_CONTENT_LOW_WATER_MARK.equals(parameter.getName())) {
+                    contentLowWaterMark = (Integer) (parameter.getValue());
                 }
             });
         }
@@ -104,6 +116,18 @@ public class ServerBootstrapConfiguration {
         return socketTimeOut;
     }
 
+    public int getReusePortAcceptors() {
+        return reusePortAcceptors;
+    }
+
+    public int getContentHighWaterMark() {
+        return contentHighWaterMark;
+    }
+
+    public int getContentLowWaterMark() {
+        return contentLowWaterMark;
+    }
+
     /**
      * configure transport level properties such as socket timeouts, tcp no delay
      *
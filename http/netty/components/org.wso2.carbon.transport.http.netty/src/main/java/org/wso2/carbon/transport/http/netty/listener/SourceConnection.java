@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener;
+
+import io.netty.channel.ChannelHandlerContext;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.LazyHostName;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.message.PropertyProvider;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Metadata of an incoming connection, computed once when the connection becomes active and shared by all the
+ * requests received on it. Only numeric addresses are used, host names are looked up lazily. The connection level
+ * properties of its requests are provided from here instead of being set on each of them.
+ */
+public class SourceConnection implements PropertyProvider {
+
+    private final InetSocketAddress localAddress;
+    private final InetSocketAddress remoteAddress;
+    private final LazyHostName localHostName;
+    private final LazyHostName remoteHostName;
+    private final String listenerId;
+    private final boolean secured;
+    private final Map<String, Object> properties;
+
+    public SourceConnection(ChannelHandlerContext ctx, SourceHandler sourceHandler,
+            ListenerConfiguration listenerConfiguration) {
+        this(ctx, sourceHandler, listenerConfiguration, (InetSocketAddress) ctx.channel().localAddress(),
+                (InetSocketAddress) ctx.channel().remoteAddress());
+    }
+
+    public SourceConnection(ChannelHandlerContext ctx, SourceHandler sourceHandler,
+            ListenerConfiguration listenerConfiguration, InetSocketAddress localAddress,
+            InetSocketAddress remoteAddress) {
+        this.localAddress = localAddress;
+        this.remoteAddress = remoteAddress;
+        this.localHostName = new LazyHostName(localAddress);
+        this.remoteHostName = new LazyHostName(remoteAddress);
+        this.listenerId = listenerConfiguration.getId();
+        this.secured = listenerConfiguration.getSslConfig() != null;
+
+        Map<String, Object> connectionProperties = new HashMap<>();
+        connectionProperties.put(Constants.PORT, remoteAddress.getPort());
+        connectionProperties.put(Constants.HOST, remoteHostName);
+        if (ctx != null) {
+            connectionProperties.put(Constants.CHNL_HNDLR_CTX, ctx);
+        }
+        if (sourceHandler != null) {
+            connectionProperties.put(Constants.SRC_HNDLR, sourceHandler);
+        }
+        connectionProperties.put(org.wso2.carbon.messaging.Constants.LISTENER_PORT, localAddress.getPort());
+        connectionProperties.put(org.wso2.carbon.messaging.Constants.LISTENER_INTERFACE_ID, listenerId);
+        connectionProperties.put(Constants.IS_SECURED_CONNECTION, secured);
+        connectionProperties.put(Constants.LOCAL_ADDRESS, localAddress);
+        connectionProperties.put(Constants.LOCAL_NAME, localHostName);
+        connectionProperties.put(Constants.REMOTE_ADDRESS, remoteAddress);
+        connectionProperties.put(Constants.REMOTE_HOST, remoteHostName);
+        connectionProperties.put(Constants.REMOTE_PORT, remoteAddress.getPort());
+        connectionProperties.put(Constants.CHANNEL_ID, listenerId);
+        this.properties = Collections.unmodifiableMap(connectionProperties);
+    }
+
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    public InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public LazyHostName getLocalHostName() {
+        return localHostName;
+    }
+
+    public LazyHostName getRemoteHostName() {
+        return remoteHostName;
+    }
+
+    public String getListenerId() {
+        return listenerId;
+    }
+
+    public boolean isSecured() {
+        return secured;
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        return properties.get(key);
+    }
+
+    @Override
+    public Set<String> getPropertyNames() {
+        return properties.keySet();
+    }
+}
@@ -18,7 +18,6 @@ package org.wso2.carbon.transport.http.netty.listener;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.DefaultLastHttpContent;
@@ -26,22 +25,22 @@ import io.netty.handler.codec.http.FullHttpMessage;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.LastHttpContent;
-import org.apache.commons.pool.impl.GenericObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.transport.http.netty.common.ConnectionLifetime;
 import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
-import org.wso2.carbon.transport.http.netty.common.Util;
+import org.wso2.carbon.transport.http.netty.common.ReadThrottle;
 import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.TargetChannelPool;
 
-import java.net.InetSocketAddress;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,8 +54,10 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
     protected HTTPCarbonMessage cMsg;
     protected ConnectionManager connectionManager;
     private Map<String, TargetChannel> channelFutureMap = new HashMap<>();
-    protected Map<String, GenericObjectPool> targetChannelPool;
+    protected Map<String, TargetChannelPool> targetChannelPool;
     protected ListenerConfiguration listenerConfiguration;
+    protected ReadThrottle readThrottle;
+    protected SourceConnection sourceConnection;
 
     public ListenerConfiguration getListenerConfiguration() {
         return listenerConfiguration;
@@ -70,17 +71,29 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelActive(final ChannelHandlerContext ctx) throws Exception {
-        // Start the server connection Timer
-
-        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
-
-            HTTPTransportContextHolder.getInstance().getHandlerExecutor()
-                    .executeAtSourceConnectionInitiation(Integer.toString(ctx.hashCode()));
+        if (this.ctx != null) {
+            // Already initialized when the handler was added to the active channel
+            return;
         }
+        ConnectionLifetime.sourceOpened(ctx.channel());
 
         this.ctx = ctx;
-        this.targetChannelPool = connectionManager.getTargetChannelPool();
+        this.targetChannelPool = connectionManager.getTargetChannelPool(ctx.channel().eventLoop());
+        this.sourceConnection = new SourceConnection(ctx, this, listenerConfiguration);
+        ServerBootstrapConfiguration serverBootstrapConfiguration = ServerBootstrapConfiguration.getInstance();
+        if (serverBootstrapConfiguration != null) {
+            this.readThrottle = new ReadThrottle(ctx.channel(), serverBootstrapConfiguration.getContentHighWaterMark(),
+                    serverBootstrapConfiguration.getContentLowWaterMark());
+        }
+    }
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isActive()) {
+            // Accepted channels are active before their pipeline is set up, and HTTP/1.1 may also be chosen
+            // later on an already active connection, e.g. after ALPN
+            channelActive(ctx);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -109,6 +122,8 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
                     cMsg.addHttpContent(httpContent);
                     if (msg instanceof LastHttpContent) {
                         cMsg.setEndOfMsgAdded(true);
+                        // Reading goes on with the next request, which is not held back by this one
+                        cMsg.releaseReadThrottle();
                         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
 
                             HTTPTransportContextHolder.getInstance().getHandlerExecutor().
@@ -147,7 +162,7 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
                     .getMessageProcessor();
             if (carbonMessageProcessor != null) {
                 try {
-                    carbonMessageProcessor.receive(cMsg, new ResponseCallback(this.ctx));
+                    carbonMessageProcessor.receive(cMsg, new ResponseCallback(this.ctx, cMsg));
                 } catch (Exception e) {
                     log.error("Error while submitting CarbonMessage to CarbonMessageProcessor", e);
                 }
@@ -158,15 +173,18 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
 
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // Resume reading the responses written to this channel
+        ReadThrottle.writabilityChanged(ctx.channel());
+        ctx.fireChannelWritabilityChanged();
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        // Stop the connector timer
+        ReadThrottle.writabilityChanged(ctx.channel());
         ctx.close();
-        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
-            HTTPTransportContextHolder.getInstance().getHandlerExecutor()
-                    .executeAtSourceConnectionTermination(Integer.toString(ctx.hashCode()));
-        }
-        connectionManager.notifyChannelInactive();
+        ConnectionLifetime.sourceClosed(ctx.channel(), listenerConfiguration.getId());
     }
 
     public void addTargetChannel(HttpRoute route, TargetChannel targetChannel) {
@@ -182,7 +200,7 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
         return channelFutureMap.get(route.toString());
     }
 
-    public Map<String, GenericObjectPool> getTargetChannelPool() {
+    public Map<String, TargetChannelPool> getTargetChannelPool() {
         return targetChannelPool;
     }
 
@@ -190,6 +208,18 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
         return ctx;
     }
 
+    public SourceConnection getSourceConnection() {
+        return sourceConnection;
+    }
+
+    /**
+     * @return true if requests of several streams of the incoming connection are processed concurrently, in which
+     * case they cannot share a target channel cached for the connection
+     */
+    public boolean isMultiplexed() {
+        return false;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         if (ctx != null && ctx.channel().isActive()) {
@@ -199,39 +229,15 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
 
     protected CarbonMessage setupCarbonMessage(Object msg) {
         cMsg = new HTTPCarbonMessage();
+        cMsg.setReadThrottle(readThrottle);
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceRequestReceiving(cMsg);
         }
-        cMsg.setProperty(Constants.PORT, ((InetSocketAddress) ctx.channel().remoteAddress()).getPort());
-        cMsg.setProperty(Constants.HOST, ((InetSocketAddress) ctx.channel().remoteAddress()).getHostName());
-
         HttpRequest httpRequest = (HttpRequest) msg;
+        // Connection level properties are shared, request level ones are derived when they are read
+        cMsg.setPropertyProvider(new RequestProperties(httpRequest, sourceConnection));
 
-        cMsg.setProperty(Constants.TO, httpRequest.getUri());
-        cMsg.setProperty(Constants.CHNL_HNDLR_CTX, this.ctx);
-        cMsg.setProperty(Constants.SRC_HNDLR, this);
-        cMsg.setProperty(Constants.HTTP_VERSION, httpRequest.getProtocolVersion().text());
-        cMsg.setProperty(Constants.HTTP_METHOD, httpRequest.getMethod().name());
-        cMsg.setProperty(org.wso2.carbon.messaging.Constants.LISTENER_PORT,
-                ((InetSocketAddress) ctx.channel().localAddress()).getPort());
-        cMsg.setProperty(org.wso2.carbon.messaging.Constants.LISTENER_INTERFACE_ID, listenerConfiguration.getId());
-        cMsg.setProperty(org.wso2.carbon.messaging.Constants.PROTOCOL, httpRequest.getProtocolVersion().protocolName());
-        if (listenerConfiguration.getSslConfig() != null) {
-            cMsg.setProperty(Constants.IS_SECURED_CONNECTION, true);
-        } else {
-            cMsg.setProperty(Constants.IS_SECURED_CONNECTION, false);
-        }
-        cMsg.setProperty(Constants.LOCAL_ADDRESS, ctx.channel().localAddress());
-        cMsg.setProperty(Constants.LOCAL_NAME, ((InetSocketAddress) ctx.channel().localAddress()).getHostName());
-        cMsg.setProperty(Constants.REMOTE_ADDRESS, ctx.channel().remoteAddress());
-        cMsg.setProperty(Constants.REMOTE_HOST, ((InetSocketAddress) ctx.channel().remoteAddress()).getHostName());
-        cMsg.setProperty(Constants.REMOTE_PORT, ((InetSocketAddress) ctx.channel().remoteAddress()).getPort());
-        cMsg.setProperty(Constants.REQUEST_URL, httpRequest.getUri());
-        ChannelHandler handler = ctx.handler();
-
-        cMsg.setProperty(Constants.CHANNEL_ID, ((SourceHandler) handler).getListenerConfiguration().getId());
-
-        cMsg.setHeaders(Util.getHeaders(httpRequest).getAll());
+        cMsg.setHttpHeaders(httpRequest.headers());
         return cMsg;
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.Util;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A Class responsible for writing the response of a request received on an HTTP/2 stream.
+ */
+public class Http2ResponseCallback implements CarbonCallback {
+
+    private final Http2SourceHandler sourceHandler;
+    private final int streamId;
+
+    public Http2ResponseCallback(Http2SourceHandler sourceHandler, int streamId) {
+        this.sourceHandler = sourceHandler;
+        this.streamId = streamId;
+    }
+
+    public void done(CarbonMessage cMsg) {
+        Util.handleResponsesWithoutContentLength(cMsg);
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceResponseReceiving(cMsg);
+        }
+        final HttpResponse response = Util.createHttpResponse(cMsg);
+        sourceHandler.writeHeaders(streamId, response, false);
+
+        if (!cMsg.isBufferContent()) {
+            cMsg.setWriter(new Http2ResponseContentWriter(sourceHandler, streamId));
+        } else {
+
+            if (cMsg instanceof HTTPCarbonMessage) {
+                HTTPCarbonMessage nettyCMsg = (HTTPCarbonMessage) cMsg;
+                nettyCMsg.setContentListener(httpContent -> {
+                    if (httpContent instanceof LastHttpContent) {
+                        writeLastContent(cMsg, httpContent.content());
+                    } else {
+                        sourceHandler.writeData(streamId, httpContent.content(), false);
+                    }
+                });
+            } else if (cMsg instanceof DefaultCarbonMessage) {
+                DefaultCarbonMessage defaultCMsg = (DefaultCarbonMessage) cMsg;
+                while (true) {
+                    ByteBuffer byteBuffer = defaultCMsg.getMessageBody();
+                    ByteBuf bbuf = Unpooled.wrappedBuffer(byteBuffer);
+                    if (defaultCMsg.isEndOfMsgAdded() && defaultCMsg.isEmpty()) {
+                        writeLastContent(cMsg, bbuf);
+                        break;
+                    }
+                    sourceHandler.writeData(streamId, bbuf, false);
+                }
+            }
+        }
+    }
+
+    private void writeLastContent(CarbonMessage cMsg, ByteBuf content) {
+        sourceHandler.writeData(streamId, content, true);
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceResponseSending(cMsg);
+        }
+    }
+}
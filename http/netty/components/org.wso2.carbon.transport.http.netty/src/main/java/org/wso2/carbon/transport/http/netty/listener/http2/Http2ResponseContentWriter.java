@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+import io.netty.buffer.Unpooled;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.Writer;
+import org.wso2.carbon.transport.http.netty.common.BufferAllocatorConfiguration;
+import org.wso2.carbon.transport.http.netty.common.Util;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A class which writes streamed response content to the HTTP/2 stream of its request.
+ */
+public class Http2ResponseContentWriter implements Writer {
+
+    private final Http2SourceHandler sourceHandler;
+    private final int streamId;
+
+    public Http2ResponseContentWriter(Http2SourceHandler sourceHandler, int streamId) {
+        this.sourceHandler = sourceHandler;
+        this.streamId = streamId;
+    }
+
+    @Override
+    public void write(ByteBuffer byteBuffer) {
+        sourceHandler.writeData(streamId,
+                Util.copyBuffer(BufferAllocatorConfiguration.getInstance().getAllocator(), byteBuffer), false);
+    }
+
+    @Override
+    public void writeLastContent(CarbonMessage carbonMessage) {
+        sourceHandler.writeData(streamId, Unpooled.EMPTY_BUFFER, true);
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().
+                    executeAtSourceResponseSending(carbonMessage);
+        }
+    }
+}
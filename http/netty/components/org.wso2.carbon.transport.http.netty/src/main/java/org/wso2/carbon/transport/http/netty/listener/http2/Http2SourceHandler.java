@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2ConnectionDecoder;
+import io.netty.handler.codec.http2.Http2ConnectionEncoder;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.common.ConnectionLifetime;
+import org.wso2.carbon.transport.http.netty.common.Util;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.listener.RequestProperties;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A class responsible for handling the requests of an incoming HTTP/2 connection. Each stream is published to the
+ * message processor as a separate request and its response is written back to the same stream. Stream state is
+ * only accessed from the event loop of the connection, writes made from other threads are handed over to it.
+ */
+public class Http2SourceHandler extends Http2ConnectionHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(Http2SourceHandler.class);
+
+    private final ConnectionManager connectionManager;
+    private final ListenerConfiguration listenerConfiguration;
+    // Requests of this connection whose content is not fully received yet
+    private final Map<Integer, HTTPCarbonMessage> requests = new HashMap<>();
+    private ChannelHandlerContext ctx;
+    private MultiplexedSourceHandler sourceHandler;
+
+    Http2SourceHandler(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder, Http2Settings initialSettings,
+            ConnectionManager connectionManager, ListenerConfiguration listenerConfiguration) {
+        super(decoder, encoder, initialSettings);
+        this.connectionManager = connectionManager;
+        this.listenerConfiguration = listenerConfiguration;
+        decoder.frameListener(new RequestListener());
+        connection().addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                streamClosed(stream.id());
+            }
+        });
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        super.handlerAdded(ctx);
+        if (ctx.channel().isActive()) {
+            // Added after ALPN, the h2c upgrade or the detection of the connection preface
+            connectionEstablished(ctx);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        super.channelActive(ctx);
+        connectionEstablished(ctx);
+    }
+
+    private void connectionEstablished(ChannelHandlerContext ctx) throws Exception {
+        if (sourceHandler != null) {
+            return;
+        }
+        // An upgraded connection keeps the lifetime it started with as HTTP/1.1
+        ConnectionLifetime.sourceOpened(ctx.channel());
+        sourceHandler = new MultiplexedSourceHandler(connectionManager, listenerConfiguration, ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // Closes the remaining streams, which completes their requests through onStreamClosed
+        super.channelInactive(ctx);
+        ConnectionLifetime.sourceClosed(ctx.channel(), listenerConfiguration.getId());
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof HttpServerUpgradeHandler.UpgradeEvent) {
+            // The request which carried the h2c upgrade is answered on the half closed stream 1
+            FullHttpRequest upgradeRequest = ((HttpServerUpgradeHandler.UpgradeEvent) evt).upgradeRequest();
+            HTTPCarbonMessage cMsg = setupCarbonMessage(Http2CodecUtil.HTTP_UPGRADE_STREAM_ID, upgradeRequest);
+            publishToMessageProcessor(Http2CodecUtil.HTTP_UPGRADE_STREAM_ID, cMsg);
+            addRequestContent(cMsg, new DefaultLastHttpContent(upgradeRequest.content().retain()), true);
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    /**
+     * Write the headers of the response to the stream of its request.
+     *
+     * @param streamId     stream of the request
+     * @param httpResponse response to be written
+     * @param endOfStream  true if the response has no content
+     */
+    public void writeHeaders(int streamId, HttpResponse httpResponse, boolean endOfStream) {
+        if (ctx.executor().inEventLoop()) {
+            writeHeaders0(streamId, httpResponse, endOfStream);
+        } else {
+            ctx.executor().execute(() -> writeHeaders0(streamId, httpResponse, endOfStream));
+        }
+    }
+
+    private void writeHeaders0(int streamId, HttpResponse httpResponse, boolean endOfStream) {
+        if (connection().stream(streamId) == null) {
+            log.debug("Stream " + streamId + " closed before the response headers were written");
+            return;
+        }
+        Http2Headers headers;
+        try {
+            headers = HttpConversionUtil.toHttp2Headers(httpResponse, true);
+        } catch (Exception e) {
+            log.error("Cannot convert response headers for HTTP/2", e);
+            resetStream(ctx, streamId, Http2Error.INTERNAL_ERROR.code(), ctx.newPromise());
+            ctx.flush();
+            return;
+        }
+        ChannelPromise promise = ctx.newPromise();
+        encoder().writeHeaders(ctx, streamId, headers, 0, endOfStream, promise);
+        promise.addListener(future -> {
+            if (!future.isSuccess()) {
+                log.error("Cannot write response headers to stream " + streamId, future.cause());
+            }
+        });
+        ctx.flush();
+    }
+
+    /**
+     * Write response content to the stream of its request. Content of a stream which has already been closed or
+     * reset by the client is discarded.
+     *
+     * @param streamId    stream of the request
+     * @param data        content to be written, released once written
+     * @param endOfStream true if this is the last content of the response
+     */
+    public void writeData(int streamId, ByteBuf data, boolean endOfStream) {
+        if (ctx.executor().inEventLoop()) {
+            writeData0(streamId, data, endOfStream);
+        } else {
+            ctx.executor().execute(() -> writeData0(streamId, data, endOfStream));
+        }
+    }
+
+    private void writeData0(int streamId, ByteBuf data, boolean endOfStream) {
+        if (connection().stream(streamId) == null) {
+            data.release();
+            return;
+        }
+        ChannelPromise promise = ctx.newPromise();
+        encoder().writeData(ctx, streamId, data, 0, endOfStream, promise);
+        promise.addListener(future -> {
+            if (!future.isSuccess()) {
+                log.error("Cannot write response content to stream " + streamId, future.cause());
+            }
+        });
+        ctx.flush();
+    }
+
+    private void streamClosed(int streamId) {
+        HTTPCarbonMessage cMsg = requests.remove(streamId);
+        if (cMsg != null && !cMsg.isEndOfMsgAdded()) {
+            log.warn("Stream " + streamId + " closed before the request was completed");
+            cMsg.setMessagingException(new MessagingException("Stream closed", 101507));
+            cMsg.addHttpContent(LastHttpContent.EMPTY_LAST_CONTENT);
+            cMsg.setEndOfMsgAdded(true);
+        }
+    }
+
+    //Carbon Message is published to registered message processor and Message Processor should return transport thread
+    //immediately
+    private void publishToMessageProcessor(int streamId, HTTPCarbonMessage cMsg) {
+        requests.put(streamId, cMsg);
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceRequestReceiving(cMsg);
+        }
+        CarbonCallback responseCallback = new Http2ResponseCallback(this, streamId);
+
+        boolean continueRequest = true;
+
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            continueRequest = HTTPTransportContextHolder.getInstance().getHandlerExecutor()
+                    .executeRequestContinuationValidator(cMsg, responseCallback::done);
+        }
+        if (continueRequest) {
+            CarbonMessageProcessor carbonMessageProcessor = HTTPTransportContextHolder.getInstance()
+                    .getMessageProcessor();
+            if (carbonMessageProcessor != null) {
+                try {
+                    carbonMessageProcessor.receive(cMsg, responseCallback);
+                } catch (Exception e) {
+                    log.error("Error while submitting CarbonMessage to CarbonMessageProcessor", e);
+                }
+            } else {
+                log.error("Cannot find registered MessageProcessor for forward the message");
+            }
+        }
+    }
+
+    private void addRequestContent(HTTPCarbonMessage cMsg, HttpContent httpContent, boolean endOfStream) {
+        cMsg.addHttpContent(httpContent);
+        if (endOfStream) {
+            cMsg.setEndOfMsgAdded(true);
+            if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+                HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceRequestSending(cMsg);
+            }
+        }
+    }
+
+    private HTTPCarbonMessage setupCarbonMessage(int streamId, HttpRequest httpRequest) {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        // The converted request carries HTTP/1.1, which is also the version used when the message is forwarded
+        cMsg.setPropertyProvider(new RequestProperties(httpRequest, sourceHandler.getSourceConnection()));
+
+        // Drop the headers the conversion adds to describe the HTTP/2 stream
+        for (HttpConversionUtil.ExtensionHeaderNames extensionHeader : HttpConversionUtil.ExtensionHeaderNames
+                .values()) {
+            httpRequest.headers().remove(extensionHeader.text());
+        }
+        cMsg.setHttpHeaders(httpRequest.headers());
+        if (log.isDebugEnabled()) {
+            log.debug("Received request on stream " + streamId);
+        }
+        return cMsg;
+    }
+
+    /**
+     * Listener which maps the frames received for each stream to the request published for it.
+     */
+    private class RequestListener extends Http2FrameAdapter {
+
+        @Override
+        public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers, int padding,
+                boolean endOfStream) throws Http2Exception {
+            HTTPCarbonMessage cMsg = requests.get(streamId);
+            if (cMsg == null) {
+                HttpRequest httpRequest = HttpConversionUtil.toHttpRequest(streamId, headers, true);
+                cMsg = setupCarbonMessage(streamId, httpRequest);
+                publishToMessageProcessor(streamId, cMsg);
+            }
+            if (endOfStream && !cMsg.isEndOfMsgAdded()) {
+                // Request without content, or trailers of a request with content
+                addRequestContent(cMsg, LastHttpContent.EMPTY_LAST_CONTENT, true);
+            }
+        }
+
+        @Override
+        public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers,
+                int streamDependency, short weight, boolean exclusive, int padding, boolean endOfStream)
+                throws Http2Exception {
+            onHeadersRead(ctx, streamId, headers, padding, endOfStream);
+        }
+
+        @Override
+        public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding,
+                boolean endOfStream) throws Http2Exception {
+            // The window is returned at once, so the content of a request is not throttled like on HTTP/1.1
+            int processed = data.readableBytes() + padding;
+            HTTPCarbonMessage cMsg = requests.get(streamId);
+            if (cMsg == null || cMsg.isEndOfMsgAdded()) {
+                return processed;
+            }
+            if (endOfStream) {
+                addRequestContent(cMsg, new DefaultLastHttpContent(data.retain()), true);
+            } else {
+                addRequestContent(cMsg, new DefaultHttpContent(data.retain()), false);
+            }
+            return processed;
+        }
+    }
+}
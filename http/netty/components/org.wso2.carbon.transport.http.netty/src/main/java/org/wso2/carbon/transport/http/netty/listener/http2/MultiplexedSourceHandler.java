@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+import io.netty.channel.ChannelHandlerContext;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.listener.SourceConnection;
+import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+
+/**
+ * Represents an incoming HTTP/2 connection to the sender. It is not part of the pipeline, it only exposes the
+ * connection and its target channel pools the same way {@link SourceHandler} does for HTTP/1.1 connections.
+ */
+public class MultiplexedSourceHandler extends SourceHandler {
+
+    public MultiplexedSourceHandler(ConnectionManager connectionManager, ListenerConfiguration listenerConfiguration,
+            ChannelHandlerContext ctx) throws Exception {
+        super(connectionManager, listenerConfiguration);
+        this.ctx = ctx;
+        this.targetChannelPool = connectionManager.getTargetChannelPool(ctx.channel().eventLoop());
+        this.sourceConnection = new SourceConnection(ctx, this, listenerConfiguration);
+    }
+
+    @Override
+    public boolean isMultiplexed() {
+        return true;
+    }
+}
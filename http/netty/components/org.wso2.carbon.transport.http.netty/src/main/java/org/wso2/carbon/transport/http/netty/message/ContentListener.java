@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.message;
+
+import io.netty.handler.codec.http.HttpContent;
+
+/**
+ * Receives the content of an {@link HTTPCarbonMessage} as it arrives, without a thread waiting for it.
+ */
+public interface ContentListener {
+
+    /**
+     * Called for each content of the message in arrival order, on the thread which added it or on the thread which
+     * registered the listener for content added before that. Calls are never concurrent. The content of the message
+     * always ends with exactly one {@link io.netty.handler.codec.http.LastHttpContent}, and the listener becomes
+     * responsible for releasing each content it receives.
+     * <p>
+     * Implementations must not block, since they commonly run on an IO thread.
+     *
+     * @param httpContent content of the message
+     */
+    void onContent(HttpContent httpContent);
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.message;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An unbounded single producer, single consumer queue for the content of a message. Elements are kept in an array
+ * ring which is linked to a new ring of the same size when it is full, so offering never blocks the IO thread and
+ * does not allocate while the consumer keeps up. A consumer waiting in {@link #take()} is parked until the next
+ * element is offered.
+ * <p>
+ * Only one thread may offer and one thread may poll at a time. Another thread can take over either role once the
+ * previous one is done, e.g. when content read by the consumer is offered back after the producer has finished.
+ *
+ * @param <E> type of the elements
+ */
+public class ContentQueue<E> {
+
+    private static final int DEFAULT_RING_SIZE = 16;
+    // Placed where the producer moved to the next ring, whose reference is stored after the last element slot
+    private static final Object JUMP = new Object();
+
+    private final int mask;
+    private final int nextRingOffset;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+    private AtomicReferenceArray<Object> producerRing;
+    private AtomicReferenceArray<Object> consumerRing;
+    private volatile Thread waiter;
+
+    public ContentQueue() {
+        this(DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * @param ringSize number of elements each ring holds, rounded up to a power of two
+     */
+    public ContentQueue(int ringSize) {
+        int capacity = Integer.highestOneBit(Math.max(ringSize, 2) - 1) << 1;
+        mask = capacity - 1;
+        nextRingOffset = capacity;
+        producerRing = new AtomicReferenceArray<>(capacity + 1);
+        consumerRing = producerRing;
+    }
+
+    /**
+     * Add an element to the tail of the queue and wake up the consumer if it is waiting.
+     *
+     * @param e element to add
+     */
+    public void offer(E e) {
+        if (e == null) {
+            throw new NullPointerException("element");
+        }
+        AtomicReferenceArray<Object> ring = producerRing;
+        long index = producerIndex.get();
+        int offset = (int) index & mask;
+        // Producer state is published before the element, so whoever takes over the producer role sees it
+        producerIndex.lazySet(index + 1);
+        if (ring.get((int) (index + 1) & mask) == null) {
+            ring.set(offset, e);
+        } else {
+            // Keep one free slot for the jump, the element continues at the same offset of a new ring
+            AtomicReferenceArray<Object> nextRing = new AtomicReferenceArray<>(nextRingOffset + 1);
+            producerRing = nextRing;
+            nextRing.lazySet(offset, e);
+            ring.lazySet(nextRingOffset, nextRing);
+            ring.set(offset, JUMP);
+        }
+        Thread consumer = waiter;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * @return element at the head of the queue, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        AtomicReferenceArray<Object> ring = consumerRing;
+        long index = consumerIndex.get();
+        int offset = (int) index & mask;
+        Object e = ring.get(offset);
+        if (e == null) {
+            return null;
+        }
+        if (e == JUMP) {
+            AtomicReferenceArray<Object> nextRing = (AtomicReferenceArray<Object>) ring.get(nextRingOffset);
+            // The drained ring is left to the garbage collector
+            consumerRing = nextRing;
+            ring = nextRing;
+            e = ring.get(offset);
+        }
+        ring.lazySet(offset, null);
+        consumerIndex.lazySet(index + 1);
+        return (E) e;
+    }
+
+    /**
+     * Retrieve the element at the head of the queue, parking the calling thread until one is available.
+     *
+     * @return element at the head of the queue
+     * @throws InterruptedException if the consumer is interrupted while waiting
+     */
+    public E take() throws InterruptedException {
+        E e = poll();
+        if (e != null) {
+            return e;
+        }
+        waiter = Thread.currentThread();
+        try {
+            // The element is offered with a volatile write before the waiter is read, so either the poll after
+            // registering sees it or the producer sees the waiter and unparks it
+            while ((e = poll()) == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return e;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    public boolean isEmpty() {
+        return producerIndex.get() == consumerIndex.get();
+    }
+
+    public int size() {
+        return (int) (producerIndex.get() - consumerIndex.get());
+    }
+}
@@ -21,17 +21,25 @@ package org.wso2.carbon.transport.http.netty.message;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.LastHttpContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.Header;
+import org.wso2.carbon.messaging.Headers;
+import org.wso2.carbon.transport.http.netty.common.ReadThrottle;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * HTTP based representation for CarbonMessage.
@@ -39,22 +47,188 @@ import java.util.concurrent.LinkedBlockingQueue;
 public class HTTPCarbonMessage extends CarbonMessage {
 
     private static final Logger LOG = LoggerFactory.getLogger(HTTPCarbonMessage.class);
+    private static final Runnable CONTENT_COMPLETED = () -> {
+    };
 
-    private BlockingQueue<HttpContent> httpContentQueue = new LinkedBlockingQueue<>();
-    private BlockingQueue<HttpContent> outContentQueue = new LinkedBlockingQueue<>();
-    private BlockingQueue<HttpContent> garbageCollected = new LinkedBlockingQueue<>();
+    // Filled by the IO thread and drained by a single consumer
+    private ContentQueue<HttpContent> httpContentQueue = new ContentQueue<>();
+    private ContentQueue<HttpContent> outContentQueue = new ContentQueue<>();
+    // Content handed out as ByteBuffers, released with the message
+    private List<HttpContent> garbageCollected = new ArrayList<>();
+
+    private volatile ContentListener contentListener;
+    // Serializes delivery to the content listener between the producer and the thread registering it
+    private final AtomicInteger deliveryWip = new AtomicInteger();
+    private boolean lastContentDelivered;
+    private final AtomicReference<Runnable> completionListener = new AtomicReference<>();
+
+    // Pauses reading from the channel this message comes from while its content is not consumed fast enough
+    private volatile ReadThrottle readThrottle;
+    private volatile boolean throttleQueuedContent = true;
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    // Properties which are not copied into the message unless all of its properties are requested
+    private volatile PropertyProvider propertyProvider;
+
+    // Headers of the Netty message this message was created from, used until the carbon headers are requested
+    private HttpHeaders httpHeaders;
+    // Set once the Netty headers are used by an outgoing message, they are copied before they are changed again
+    private boolean httpHeadersShared;
 
     public void addHttpContent(HttpContent httpContent) {
+        offerContent(httpContent);
+        if (httpContent instanceof LastHttpContent) {
+            contentCompleted();
+        }
+        if (contentListener != null) {
+            deliverContent();
+        }
+    }
+
+    /**
+     * Consume the content of this message as it arrives instead of reading it with the blocking getters. Content
+     * which has already arrived is delivered before this method returns, the rest from the thread adding it.
+     * A message has only one consumer, so the blocking getters must not be used once a listener is set.
+     *
+     * @param contentListener listener which receives each content of the message
+     */
+    public void setContentListener(ContentListener contentListener) {
+        this.contentListener = contentListener;
+        deliverContent();
+    }
+
+    /**
+     * Pass the body of this message on to another message without copying it, e.g. when a processor changes the
+     * headers of a message but not its body. Each content is handed over as it arrives, together with its
+     * reference, so it is released by whoever consumes the destination. The body of this message must not be
+     * consumed otherwise.
+     *
+     * @param destination message which receives the body of this message
+     */
+    public void passThroughContent(HTTPCarbonMessage destination) {
+        if (destination.getReadThrottle() == null) {
+            // Reading of this message is paused if the destination is not consumed fast enough
+            destination.setReadThrottle(readThrottle);
+        }
+        setContentListener(httpContent -> {
+            destination.addHttpContent(httpContent);
+            if (httpContent instanceof LastHttpContent) {
+                destination.setEndOfMsgAdded(true);
+            }
+        });
+    }
+
+    /**
+     * Get notified once the last content of this message has arrived, after which the blocking getters return
+     * without waiting. The listener runs on the thread which adds the last content, or immediately if it has
+     * already arrived. Only one listener can be set.
+     *
+     * @param listener listener to run once the full body is available
+     */
+    public void setContentCompletionListener(Runnable listener) {
+        // The full body is going to be buffered, pausing reads until it is consumed would never complete it
+        releaseReadThrottle();
+        if (!completionListener.compareAndSet(null, listener)) {
+            if (completionListener.get() != CONTENT_COMPLETED) {
+                throw new IllegalStateException("Content completion listener is already set");
+            }
+            listener.run();
+        }
+    }
+
+    /**
+     * Throttle reading from the channel this message is read from. Reading is paused while more content than the
+     * high water mark of the throttle is queued in this message, and the writers passing the content on pause it
+     * while their channel is not writable.
+     *
+     * @param readThrottle read throttle of the channel this message is read from
+     */
+    public void setReadThrottle(ReadThrottle readThrottle) {
+        this.readThrottle = readThrottle;
+    }
+
+    public ReadThrottle getReadThrottle() {
+        return readThrottle;
+    }
+
+    /**
+     * Stop pausing reads because of the content queued in this message, e.g. when the rest of the message is not
+     * going to be consumed.
+     */
+    public void releaseReadThrottle() {
+        throttleQueuedContent = false;
+        ReadThrottle throttle = readThrottle;
+        if (throttle != null) {
+            throttle.releaseQueuedContent();
+        }
+    }
+
+    private void offerContent(HttpContent httpContent) {
+        httpContentQueue.offer(httpContent);
+        queuedBytesChanged(httpContent.content().readableBytes());
+    }
+
+    private HttpContent pollContent() {
+        HttpContent httpContent = httpContentQueue.poll();
+        if (httpContent != null) {
+            queuedBytesChanged(-httpContent.content().readableBytes());
+        }
+        return httpContent;
+    }
+
+    private HttpContent takeContent() throws InterruptedException {
+        HttpContent httpContent = httpContentQueue.take();
+        queuedBytesChanged(-httpContent.content().readableBytes());
+        return httpContent;
+    }
+
+    private void queuedBytesChanged(int delta) {
+        long queued = queuedBytes.addAndGet(delta);
+        ReadThrottle throttle = readThrottle;
+        if (throttle != null && throttleQueuedContent) {
+            throttle.queuedBytesChanged(queued);
+        }
+    }
+
+    private void contentCompleted() {
+        Runnable listener = completionListener.getAndSet(CONTENT_COMPLETED);
+        if (listener != null && listener != CONTENT_COMPLETED) {
+            listener.run();
+        }
+    }
+
+    private void deliverContent() {
+        if (deliveryWip.getAndIncrement() != 0) {
+            // The thread which is delivering picks up the new content
+            return;
+        }
+        int missed = 1;
+        do {
+            HttpContent httpContent;
+            while (!lastContentDelivered && (httpContent = pollContent()) != null) {
+                lastContentDelivered = httpContent instanceof LastHttpContent;
+                notifyContentListener(httpContent);
+            }
+            if (!lastContentDelivered && isEndOfMsgAdded() && httpContentQueue.isEmpty()) {
+                // Content ended without a LastHttpContent, e.g. a message built through addMessageBody
+                lastContentDelivered = true;
+                notifyContentListener(LastHttpContent.EMPTY_LAST_CONTENT);
+            }
+            missed = deliveryWip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void notifyContentListener(HttpContent httpContent) {
         try {
-            httpContentQueue.put(httpContent);
-        } catch (InterruptedException e) {
-            LOG.error("Cannot put content to queue", e);
+            contentListener.onContent(httpContent);
+        } catch (RuntimeException e) {
+            LOG.error("Error while delivering http content to the content listener", e);
         }
     }
 
     public HttpContent getHttpContent() {
         try {
-            return httpContentQueue.take();
+            return takeContent();
         } catch (InterruptedException e) {
             LOG.error("Error while retrieving http content from queue.", e);
             return null;
@@ -64,7 +238,7 @@ public class HTTPCarbonMessage extends CarbonMessage {
     @Override
     public ByteBuffer getMessageBody() {
         try {
-            HttpContent httpContent = httpContentQueue.take();
+            HttpContent httpContent = takeContent();
             if (httpContent instanceof LastHttpContent) {
                 super.setEndOfMsgAdded(true);
             }
@@ -84,7 +258,7 @@ public class HTTPCarbonMessage extends CarbonMessage {
         boolean isEndOfMessageProcessed = false;
         while (!isEndOfMessageProcessed) {
             try {
-                HttpContent httpContent = httpContentQueue.take();
+                HttpContent httpContent = takeContent();
                 if (httpContent instanceof LastHttpContent) {
                     isEndOfMessageProcessed = true;
                 }
@@ -110,7 +284,7 @@ public class HTTPCarbonMessage extends CarbonMessage {
         boolean isEndOfMessageProcessed = false;
         while (!isEndOfMessageProcessed) {
             try {
-                HttpContent httpContent = httpContentQueue.take();
+                HttpContent httpContent = takeContent();
                 if ((httpContent instanceof LastHttpContent) || (isEndOfMsgAdded() && httpContentQueue.isEmpty())) {
                     isEndOfMessageProcessed = true;
                 }
@@ -123,12 +297,152 @@ public class HTTPCarbonMessage extends CarbonMessage {
         int size = 0;
         for (HttpContent httpContent : contentList) {
             size += httpContent.content().readableBytes();
-            httpContentQueue.add(httpContent);
+            offerContent(httpContent);
         }
 
         return size;
     }
 
+    /**
+     * Set the properties this message falls back to when a property is not set on the message itself, e.g. the
+     * properties of the connection it was received on. They are copied into the message only if all of its
+     * properties are requested or one of them is removed.
+     *
+     * @param propertyProvider provider of the properties
+     */
+    public void setPropertyProvider(PropertyProvider propertyProvider) {
+        this.propertyProvider = propertyProvider;
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        Object value = super.getProperty(key);
+        if (value == null) {
+            PropertyProvider provider = propertyProvider;
+            if (provider != null) {
+                value = provider.getProperty(key);
+            }
+        }
+        if (value instanceof LazyProperty) {
+            value = ((LazyProperty) value).getValue();
+            setProperty(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Map<String, Object> getProperties() {
+        copyProvidedProperties();
+        Map<String, Object> properties = super.getProperties();
+        if (properties != null) {
+            for (Map.Entry<String, Object> property : properties.entrySet()) {
+                if (property.getValue() instanceof LazyProperty) {
+                    property.setValue(((LazyProperty) property.getValue()).getValue());
+                }
+            }
+        }
+        return properties;
+    }
+
+    @Override
+    public void removeProperty(String key) {
+        copyProvidedProperties();
+        super.removeProperty(key);
+    }
+
+    private synchronized void copyProvidedProperties() {
+        PropertyProvider provider = propertyProvider;
+        if (provider == null) {
+            return;
+        }
+        for (String key : provider.getPropertyNames()) {
+            if (super.getProperty(key) == null) {
+                Object value = provider.getProperty(key);
+                if (value != null) {
+                    setProperty(key, value);
+                }
+            }
+        }
+        propertyProvider = null;
+    }
+
+    /**
+     * Use the headers of a Netty message as the headers of this message without converting them. They are
+     * converted into carbon headers only if the carbon headers of this message are requested or replaced, reading
+     * and setting single headers works on the Netty headers. Any carbon headers set before are discarded.
+     *
+     * @param httpHeaders headers of the Netty message this message is created from
+     */
+    public synchronized void setHttpHeaders(HttpHeaders httpHeaders) {
+        this.httpHeaders = httpHeaders;
+        this.httpHeadersShared = false;
+    }
+
+    /**
+     * Get the Netty headers of this message to be used by an outgoing Netty message as they are. The headers are
+     * copied before this message changes them again.
+     *
+     * @return Netty headers of this message, or null if they have been converted into carbon headers
+     */
+    public synchronized HttpHeaders shareHttpHeaders() {
+        if (httpHeaders != null) {
+            httpHeadersShared = true;
+        }
+        return httpHeaders;
+    }
+
+    @Override
+    public synchronized Headers getHeaders() {
+        copyHttpHeaders();
+        return super.getHeaders();
+    }
+
+    @Override
+    public synchronized String getHeader(String key) {
+        if (httpHeaders != null) {
+            return httpHeaders.get(key);
+        }
+        return super.getHeader(key);
+    }
+
+    @Override
+    public synchronized void setHeader(String key, String value) {
+        if (httpHeaders != null) {
+            if (httpHeadersShared) {
+                httpHeaders = new DefaultHttpHeaders(false).set(httpHeaders);
+                httpHeadersShared = false;
+            }
+            httpHeaders.set(key, value);
+            return;
+        }
+        super.setHeader(key, value);
+    }
+
+    @Override
+    public synchronized void setHeaders(Map<String, String> headerMap) {
+        copyHttpHeaders();
+        super.setHeaders(headerMap);
+    }
+
+    @Override
+    public synchronized void setHeaders(List<Header> headerList) {
+        copyHttpHeaders();
+        super.setHeaders(headerList);
+    }
+
+    private void copyHttpHeaders() {
+        HttpHeaders headers = httpHeaders;
+        if (headers == null) {
+            return;
+        }
+        httpHeaders = null;
+        List<Header> headerList = new LinkedList<>();
+        for (Map.Entry<String, String> header : headers) {
+            headerList.add(new Header(header.getKey(), header.getValue()));
+        }
+        super.setHeaders(headerList);
+    }
+
     @Override
     public boolean isEndOfMsgAdded() {
         return super.isEndOfMsgAdded();
@@ -137,30 +451,47 @@ public class HTTPCarbonMessage extends CarbonMessage {
     @Override
     public void addMessageBody(ByteBuffer msgBody) {
         if (isAlreadyRead()) {
-            outContentQueue.add(new DefaultHttpContent(Unpooled.copiedBuffer(msgBody)));
+            outContentQueue.offer(new DefaultHttpContent(copyBuffer(msgBody)));
         } else if (httpContentQueue.isEmpty()) {
-            httpContentQueue.add(new DefaultHttpContent(Unpooled.copiedBuffer(msgBody)));
+            addHttpContent(new DefaultHttpContent(copyBuffer(msgBody)));
         } else {
             LOG.error("Please don't add message body before reading existing values");
         }
 
     }
 
+    // A body built by a processor is often read back through the ByteBuffer getters, and the message is not
+    // released afterwards. It is copied into an unpooled heap buffer, which is reclaimed even if it is not released.
+    private static ByteBuf copyBuffer(ByteBuffer msgBody) {
+        return Unpooled.copiedBuffer(msgBody);
+    }
+
     @Override
     public void setEndOfMsgAdded(boolean endOfMsgAdded) {
-        super.setEndOfMsgAdded(endOfMsgAdded);
+        // Added content is moved first, so that consumers never see the end of the message before it
         if (isAlreadyRead()) {
-            outContentQueue.forEach(buffer -> {
-                httpContentQueue.add(buffer);
-            });
-            outContentQueue.clear();
+            HttpContent httpContent;
+            while ((httpContent = outContentQueue.poll()) != null) {
+                offerContent(httpContent);
+            }
+        }
+        super.setEndOfMsgAdded(endOfMsgAdded);
+        if (endOfMsgAdded) {
+            contentCompleted();
+            if (contentListener != null) {
+                deliverContent();
+            }
         }
-
     }
 
     @Override
     public void release() {
-        httpContentQueue.forEach(content -> content.release());
+        HttpContent httpContent;
+        while ((httpContent = pollContent()) != null) {
+            httpContent.release();
+        }
+        releaseReadThrottle();
         garbageCollected.forEach(content -> content.release());
+        garbageCollected.clear();
     }
 }
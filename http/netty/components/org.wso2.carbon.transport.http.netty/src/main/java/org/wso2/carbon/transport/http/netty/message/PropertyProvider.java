@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.message;
+
+import java.util.Set;
+
+/**
+ * Properties a message falls back to when they are not set on the message itself, e.g. the properties shared by
+ * all the messages of a connection. Values may be computed when they are read, and may be {@link LazyProperty}s.
+ */
+public interface PropertyProvider {
+
+    /**
+     * @param key name of the property
+     * @return value of the property, or null if this provider does not have it
+     */
+    Object getProperty(String key);
+
+    /**
+     * @return names of all the properties of this provider
+     */
+    Set<String> getPropertyNames();
+}
@@ -18,134 +18,129 @@ package org.wso2.carbon.transport.http.netty.sender;
 
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
-import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.handler.codec.http.HttpRequest;
-import org.apache.commons.pool.impl.GenericObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.exceptions.MessagingException;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
-import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
 import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
 import org.wso2.carbon.transport.http.netty.sender.channel.ChannelUtils;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
 
+import java.util.concurrent.ExecutorService;
+
 /**
- * Class Which handover incoming requests to be written to BE asynchronously.
+ * Class which writes an outgoing request to the BE once the connection of its TargetChannel is established.
+ * No thread waits for the connection, the request is written from the connect completion listener.
  */
-public class ClientRequestWorker implements Runnable {
+public class ClientRequestWorker implements ChannelFutureListener, Runnable {
 
     private static final Logger log = LoggerFactory.getLogger(ClientRequestWorker.class);
 
-    private ConnectionManager.PoolManagementPolicy poolManagementPolicy;
-
     private HttpRoute httpRoute;
     private SourceHandler sourceHandler;
-    private SenderConfiguration senderConfig;
     private CarbonMessage carbonMessage;
     private HttpRequest httpRequest;
     private CarbonCallback carbonCallback;
-    private GenericObjectPool genericObjectPool;
+    private TargetChannel targetChannel;
     private ConnectionManager connectionManager;
-    private EventLoopGroup eventLoopGroup;
-    private Class aClass;
+    private ExecutorService executorService;
 
-    public ClientRequestWorker(HttpRoute httpRoute, SourceHandler sourceHandler, SenderConfiguration senderConfig,
-            HttpRequest httpRequest, CarbonMessage carbonMessage, CarbonCallback carbonCallback,
-            ConnectionManager.PoolManagementPolicy poolManagementPolicy, GenericObjectPool genericObjectPool,
-            ConnectionManager connectionManager, EventLoopGroup eventLoopGroup, Class aClass) {
-        this.poolManagementPolicy = poolManagementPolicy;
+    public ClientRequestWorker(HttpRoute httpRoute, SourceHandler sourceHandler, HttpRequest httpRequest,
+            CarbonMessage carbonMessage, CarbonCallback carbonCallback, TargetChannel targetChannel,
+            ConnectionManager connectionManager, ExecutorService executorService) {
         this.httpRequest = httpRequest;
         this.sourceHandler = sourceHandler;
-        this.senderConfig = senderConfig;
         this.carbonCallback = carbonCallback;
         this.carbonMessage = carbonMessage;
         this.httpRoute = httpRoute;
-        this.genericObjectPool = genericObjectPool;
+        this.targetChannel = targetChannel;
         this.connectionManager = connectionManager;
-        this.eventLoopGroup = eventLoopGroup;
-        this.aClass = aClass;
+        this.executorService = executorService;
     }
 
-    @Override
-    public void run() {
-        Channel channel = null;
-        TargetChannel targetChannel = null;
-
-        if (poolManagementPolicy == ConnectionManager.PoolManagementPolicy.
-                PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING) {
-            targetChannel = new TargetChannel();
-            ChannelFuture future = ChannelUtils
-                    .getNewChannelFuture(targetChannel, eventLoopGroup, aClass, httpRoute, senderConfig);
-
-            try {
-                channel = ChannelUtils.openChannel(future, httpRoute);
-            } catch (Exception failedCause) {
-                String msg = "Error when creating channel for route " + httpRoute;
-                log.error(msg);
-                MessagingException messagingException = new MessagingException(msg, failedCause, 101503);
-                carbonMessage.setMessagingException(messagingException);
-                carbonCallback.done(carbonMessage);
-                return;
-            } finally {
-                if (channel != null) {
-                    targetChannel.setChannel(channel);
-                    targetChannel.setTargetHandler(targetChannel.getHTTPClientInitializer().getTargetHandler());
-                }
-            }
+    /**
+     * Write the request immediately if the channel is already connected, otherwise register this worker
+     * to be notified when the connection attempt completes.
+     */
+    public void writeWhenConnected() {
+        ChannelFuture channelFuture = targetChannel.getChannelFuture();
+        if (channelFuture == null || (channelFuture.isSuccess() && targetChannel.getChannel().isActive())) {
+            // Cached connection, write from the calling thread without an executor hop
+            write(targetChannel.getChannel());
         } else {
-            targetChannel = processThroughConnectionPool();
+            channelFuture.addListener(this);
+        }
+    }
 
+    @Override
+    public void operationComplete(ChannelFuture channelFuture) throws Exception {
+        if (!channelFuture.isSuccess()) {
+            connectionManager.invalidateTargetChannel(targetChannel);
+            String msg = "Error when creating channel for route " + httpRoute;
+            log.error(msg);
+            MessagingException messagingException = new MessagingException(msg,
+                    ChannelUtils.getConnectException(channelFuture, httpRoute), 101503);
+            carbonMessage.setMessagingException(messagingException);
+            carbonCallback.done(carbonMessage);
+            return;
         }
-        if (targetChannel != null) {
-            targetChannel.setHttpRoute(httpRoute);
-            if (targetChannel.getTargetHandler() != null) {
-                targetChannel.getTargetHandler().setCallback(carbonCallback);
-                targetChannel.getTargetHandler().setIncomingMsg(carbonMessage);
-                targetChannel.getTargetHandler().setTargetChannel(targetChannel);
-                targetChannel.getTargetHandler().setConnectionManager(connectionManager);
-            } else {
-                log.error("Cannot find registered TargetHandler probably connection creation is failed");
-                String msg = "Connection creation failed for ";
-                MessagingException messagingException = new MessagingException(msg, 101503);
-                carbonMessage.setMessagingException(messagingException);
-                carbonCallback.done(carbonMessage);
-                return;
-            }
+        write(channelFuture.channel());
+    }
 
-            boolean written = false;
-            if (targetChannel.getChannel() != null) {
-                written = ChannelUtils.writeContent(targetChannel.getChannel(), httpRequest, carbonMessage);
-            }
-            if (written) {
-                targetChannel.setRequestWritten(true);
-            }
-            if (sourceHandler != null) {
-                targetChannel.setCorrelatedSource(sourceHandler);
-                sourceHandler.addTargetChannel(httpRoute, targetChannel);
-            }
+    private void write(Channel channel) {
+        if (channel.eventLoop().inEventLoop() && !carbonMessage.isEndOfMsgAdded()
+                && !(carbonMessage instanceof HTTPCarbonMessage)) {
+            // Reading the body of other messages waits for the rest of it, which must not happen on the IO thread
+            executorService.execute(this);
+        } else {
+            run();
         }
     }
 
-    private TargetChannel processThroughConnectionPool() {
-        try {
-            Object obj = genericObjectPool.borrowObject();
-            if (obj != null) {
-                TargetChannel targetChannel = (TargetChannel) obj;
-                targetChannel.setTargetHandler(targetChannel.getHTTPClientInitializer().getTargetHandler());
-                return targetChannel;
-            }
-        } catch (Exception e) {
-            String msg = "Cannot borrow free channel from pool";
-            log.error(msg, e);
+    @Override
+    public void run() {
+        targetChannel.setHttpRoute(httpRoute);
+        if (targetChannel.getTargetHandler() == null && targetChannel.getHTTPClientInitializer() != null) {
+            targetChannel.setTargetHandler(targetChannel.getHTTPClientInitializer().getTargetHandler());
+        }
+        if (targetChannel.getTargetHandler() != null) {
+            targetChannel.setWritingRequest(true);
+            targetChannel.getTargetHandler().addPendingRequest(carbonCallback, carbonMessage);
+            targetChannel.getTargetHandler().setTargetChannel(targetChannel);
+            targetChannel.getTargetHandler().setConnectionManager(connectionManager);
+        } else {
+            log.error("Cannot find registered TargetHandler probably connection creation is failed");
+            String msg = "Connection creation failed for " + httpRoute;
             MessagingException messagingException = new MessagingException(msg, 101503);
             carbonMessage.setMessagingException(messagingException);
             carbonCallback.done(carbonMessage);
+            return;
+        }
+
+        if (sourceHandler != null) {
+            targetChannel.setCorrelatedSource(sourceHandler);
+            sourceHandler.addTargetChannel(httpRoute, targetChannel);
+        }
+        if (targetChannel.getChannel() != null) {
+            ChannelUtils.writeContent(targetChannel.getChannel(), httpRequest, carbonMessage, () -> {
+                targetChannel.setRequestWritten(true);
+                requestWritten();
+            });
+        } else {
+            requestWritten();
         }
-        return null;
+    }
+
+    private void requestWritten() {
+        targetChannel.setWritingRequest(false);
+        // Makes the channel available to pipeline further requests if the pipelining depth allows
+        connectionManager.returnChannel(targetChannel);
     }
 
 }
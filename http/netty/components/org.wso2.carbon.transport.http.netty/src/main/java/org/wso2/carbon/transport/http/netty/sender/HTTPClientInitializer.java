@@ -24,6 +24,7 @@ import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
 import org.wso2.carbon.transport.http.netty.common.ssl.SSLHandlerFactory;
 import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
 import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
@@ -40,19 +41,39 @@ public class HTTPClientInitializer extends ChannelInitializer<SocketChannel> {
     protected static final String HANDLER = "handler";
     private TargetHandler handler;
     private int soTimeOut;
+    private SSLHandlerFactory sslHandlerFactory;
+    private HttpRoute httpRoute;
 
     public HTTPClientInitializer(SenderConfiguration senderConfiguration) {
+        this(senderConfiguration, senderConfiguration.getSslConfig() != null ?
+                SSLHandlerFactory.getInstance(senderConfiguration.getSslConfig()) : null,
+                BootstrapConfiguration.getInstance().getSocketTimeout(), null);
+    }
+
+    /**
+     * @param senderConfiguration sender configuration
+     * @param sslHandlerFactory   factory of the SSL handler shared by the connections of the sender, or null if the
+     *                            sender does not use SSL
+     * @param soTimeOut           socket timeout of the connection
+     * @param httpRoute           route of the connection, whose SSL sessions are resumed, or null if not known
+     */
+    public HTTPClientInitializer(SenderConfiguration senderConfiguration, SSLHandlerFactory sslHandlerFactory,
+            int soTimeOut, HttpRoute httpRoute) {
         this.senderConfiguration = senderConfiguration;
-        soTimeOut = BootstrapConfiguration.getInstance().getSocketTimeout();
+        this.sslHandlerFactory = sslHandlerFactory;
+        this.soTimeOut = soTimeOut;
+        this.httpRoute = httpRoute;
     }
 
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
         // Add the generic handlers to the pipeline
         // e.g. SSL handler
-        if (senderConfiguration.getSslConfig() != null) {
+        if (sslHandlerFactory != null) {
             log.debug("adding ssl handler");
-            SslHandler sslHandler = new SSLHandlerFactory(senderConfiguration.getSslConfig()).create();
+            SslHandler sslHandler = httpRoute != null ?
+                    sslHandlerFactory.create(ch.alloc(), httpRoute) :
+                    sslHandlerFactory.create();
             sslHandler.engine().setUseClientMode(true);
             ch.pipeline().addLast("ssl", sslHandler);
         }
@@ -15,7 +15,6 @@
 
 package org.wso2.carbon.transport.http.netty.sender;
 
-import io.netty.channel.Channel;
 import io.netty.handler.codec.http.HttpRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,15 +24,18 @@ import org.wso2.carbon.messaging.MessageProcessorException;
 import org.wso2.carbon.messaging.TransportSender;
 import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.BufferAllocatorConfiguration;
+import org.wso2.carbon.transport.http.netty.common.EventLoopMonitor;
+import org.wso2.carbon.transport.http.netty.common.NativeTransportConfiguration;
 import org.wso2.carbon.transport.http.netty.common.Util;
 import org.wso2.carbon.transport.http.netty.common.ssl.SSLConfig;
 import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
 import org.wso2.carbon.transport.http.netty.config.TransportProperty;
 import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
 import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
-import org.wso2.carbon.transport.http.netty.sender.channel.ChannelUtils;
-import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
+import org.wso2.carbon.transport.http.netty.sender.channel.DnsCache;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.http2.Http2ConnectionManager;
 
 import java.util.Iterator;
 import java.util.Map;
@@ -49,6 +51,7 @@ public class HTTPSender implements TransportSender {
     private String id;
     private SenderConfiguration defaultSenderConfiguration;
     private ConnectionManager connectionManager;
+    private Http2ConnectionManager http2ConnectionManager;
     private Set<SenderConfiguration> senderConfiguration;
     private Map<String, SenderConfiguration> senderConfigurationMap;
     private Set<TransportProperty> transportProperties;
@@ -69,7 +72,14 @@ public class HTTPSender implements TransportSender {
         }
 
         BootstrapConfiguration.createBootStrapConfiguration(this.transportProperties);
+        NativeTransportConfiguration.createNativeTransportConfiguration(this.transportProperties);
+        BufferAllocatorConfiguration.createBufferAllocatorConfiguration(this.transportProperties);
+        DnsCache.createDnsCache(this.transportProperties);
+        EventLoopMonitor.createEventLoopMonitor(this.transportProperties);
         this.connectionManager = ConnectionManager.getInstance(this.transportProperties);
+        if (Constants.HTTP_VERSION_2_0.equals(defaultSenderConfiguration.getHttpVersion())) {
+            this.http2ConnectionManager = Http2ConnectionManager.getInstance(connectionManager);
+        }
     }
 
     @Override
@@ -102,20 +112,15 @@ public class HTTPSender implements TransportSender {
                     + "listener side please copy property SRC_HNDLR from incoming message");
         }
 
-        Channel outboundChannel = null;
         try {
-            TargetChannel targetChannel = connectionManager
-                    .getTargetChannel(route, srcHandler, defaultSenderConfiguration, httpRequest, msg, callback);
-            if (targetChannel != null) {
-                outboundChannel = targetChannel.getChannel();
-                targetChannel.getTargetHandler().setCallback(callback);
-                targetChannel.getTargetHandler().setIncomingMsg(msg);
-                targetChannel.getTargetHandler().setTargetChannel(targetChannel);
-                targetChannel.getTargetHandler().setConnectionManager(connectionManager);
-                boolean written = ChannelUtils.writeContent(outboundChannel, httpRequest, msg);
-                if (written) {
-                    targetChannel.setRequestWritten(true);
-                }
+            if (http2ConnectionManager != null) {
+                // The request is multiplexed as a stream over the HTTP/2 connections of the route
+                http2ConnectionManager.send(route, srcHandler, defaultSenderConfiguration, httpRequest, msg,
+                        callback);
+            } else {
+                // The request is written to the BE from the connection listener once the channel is connected
+                connectionManager.getTargetChannel(route, srcHandler, defaultSenderConfiguration, httpRequest, msg,
+                        callback);
             }
         } catch (Exception failedCause) {
             throw new MessageProcessorException(failedCause.getMessage(), failedCause);
@@ -20,29 +20,36 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.CarbonMessageProcessor;
-import org.wso2.carbon.messaging.DefaultCarbonMessage;
 import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.common.ConnectionLifetime;
 import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.LatencyListener;
+import org.wso2.carbon.transport.http.netty.common.ReadThrottle;
 import org.wso2.carbon.transport.http.netty.common.Util;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
 
 import java.net.InetSocketAddress;
-import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A class responsible for handling responses coming from BE.
+ * Requests written to the channel are queued in order, and each response is correlated with the oldest
+ * pending request, which allows several requests to be pipelined on one connection.
  */
 public class TargetHandler extends ReadTimeoutHandler {
     protected static final Logger LOG = LoggerFactory.getLogger(TargetHandler.class);
@@ -52,18 +59,34 @@ public class TargetHandler extends ReadTimeoutHandler {
     protected ConnectionManager connectionManager;
     protected TargetChannel targetChannel;
     protected CarbonMessage incomingMsg;
+    private final Queue<PendingRequest> pendingRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    protected ReadThrottle readThrottle;
+    // Status and head arrival of the response being received, for the latency listener
+    private int responseStatusCode;
+    private long responseStart;
+    // Set while an informational response is received, which is not the response of the pending request
+    private boolean interimResponse;
+    // Set when the read timeout expired while reading was paused by the throttle
+    private boolean readPausedAtTimeout;
 
     public TargetHandler(int timeoutSeconds) {
         super(timeoutSeconds);
     }
 
     @Override
-    public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
-            HTTPTransportContextHolder.getInstance().getHandlerExecutor()
-                    .executeAtTargetConnectionInitiation(Integer.toString(ctx.hashCode()));
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        BootstrapConfiguration bootstrapConfiguration = BootstrapConfiguration.getInstance();
+        if (bootstrapConfiguration != null) {
+            readThrottle = new ReadThrottle(ctx.channel(), bootstrapConfiguration.getContentHighWaterMark(),
+                    bootstrapConfiguration.getContentLowWaterMark());
         }
+        super.handlerAdded(ctx);
+    }
 
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        ConnectionLifetime.targetOpened(ctx.channel());
         super.channelActive(ctx);
     }
 
@@ -71,6 +94,29 @@ public class TargetHandler extends ReadTimeoutHandler {
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof HttpResponse) {
+            if (isInterimResponse((HttpResponse) msg)) {
+                // The final response follows, the request stays at the head of the queue until it arrives
+                interimResponse = true;
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Ignoring informational response " + ((HttpResponse) msg).status() + " from "
+                            + ctx.channel().remoteAddress());
+                }
+                return;
+            }
+            PendingRequest pendingRequest = pendingRequests.poll();
+            if (pendingRequest == null) {
+                LOG.error("Received a response from " + ctx.channel().remoteAddress() + " without a request");
+                return;
+            }
+            callback = pendingRequest.callback;
+            incomingMsg = pendingRequest.incomingMsg;
+            responseStart = System.nanoTime();
+            responseStatusCode = ((HttpResponse) msg).status().code();
+            LatencyListener latencyListener = LatencyListener.getInstance();
+            if (latencyListener != null) {
+                latencyListener.targetResponseStarted(targetChannel.getHttpRoute(), responseStatusCode,
+                        responseStart - pendingRequest.writeStart);
+            }
 
             cMsg = setUpCarbonMessage(ctx, msg);
             if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
@@ -89,17 +135,28 @@ public class TargetHandler extends ReadTimeoutHandler {
                 LOG.error("Cannot correlate callback with request callback is null ");
             }
 
+        } else if (interimResponse) {
+            // Content of an informational response, which has none other than the end of the response
+            interimResponse = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
         } else {
             if (cMsg != null) {
                 if (msg instanceof LastHttpContent) {
                     HttpContent httpContent = (LastHttpContent) msg;
                     ((HTTPCarbonMessage) cMsg).addHttpContent(httpContent);
                     cMsg.setEndOfMsgAdded(true);
+                    // The channel goes back to the pool, unconsumed content of this response must not block it
+                    ((HTTPCarbonMessage) cMsg).releaseReadThrottle();
+                    LatencyListener latencyListener = LatencyListener.getInstance();
+                    if (latencyListener != null) {
+                        latencyListener.targetResponseCompleted(targetChannel.getHttpRoute(), responseStatusCode,
+                                System.nanoTime() - responseStart);
+                    }
                     if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
                         HTTPTransportContextHolder.getInstance().getHandlerExecutor().
                                 executeAtTargetResponseSending(cMsg);
                     }
-                    targetChannel.setRequestWritten(false);
+                    targetChannel.setRequestWritten(inFlightRequests.decrementAndGet() > 0);
                     connectionManager.returnChannel(targetChannel);
                 } else {
                     HttpContent httpContent = (DefaultHttpContent) msg;
@@ -109,26 +166,45 @@ public class TargetHandler extends ReadTimeoutHandler {
         }
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // Resume reading the requests written to this channel
+        ReadThrottle.writabilityChanged(ctx.channel());
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        ReadThrottle.writabilityChanged(ctx.channel());
         ctx.close();
-        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
-            HTTPTransportContextHolder.getInstance().getHandlerExecutor()
-                    .executeAtTargetConnectionTermination(Integer.toString(ctx.hashCode()));
-        }
+        ConnectionLifetime.targetClosed(ctx.channel(), targetChannel != null ? targetChannel.getHttpRoute() : null);
         LOG.debug("Target channel closed.");
+        failStreamingResponse(new MessagingException("Connection closed", 101507));
+        failPendingRequests("Connection closed by endpoint ", 502,
+                new MessagingException("Connection closed", 101507));
     }
 
-    public void setCallback(CarbonCallback callback) {
-        this.callback = callback;
+    /**
+     * Register a request which is about to be written to this channel, its response is delivered to the given
+     * callback in the order the requests were registered.
+     *
+     * @param callback    callback of the request
+     * @param incomingMsg request message
+     */
+    public void addPendingRequest(CarbonCallback callback, CarbonMessage incomingMsg) {
+        inFlightRequests.incrementAndGet();
+        pendingRequests.add(new PendingRequest(callback, incomingMsg));
     }
 
-    public void setConnectionManager(ConnectionManager connectionManager) {
-        this.connectionManager = connectionManager;
+    /**
+     * @return number of requests written to this channel whose response is not fully received yet
+     */
+    public int getInFlightRequestCount() {
+        return inFlightRequests.get();
     }
 
-    public void setIncomingMsg(CarbonMessage incomingMsg) {
-        this.incomingMsg = incomingMsg;
+    public void setConnectionManager(ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
     }
 
     public void setTargetChannel(TargetChannel targetChannel) {
@@ -137,44 +213,91 @@ public class TargetHandler extends ReadTimeoutHandler {
 
     @Override
     protected void readTimedOut(ChannelHandlerContext ctx) {
+        if (readThrottle != null && readThrottle.isPaused()) {
+            // Nothing is read because a slow consumer holds back the response, not because the endpoint is slow
+            readPausedAtTimeout = true;
+            return;
+        }
+        if (readPausedAtTimeout) {
+            // The endpoint gets a full timeout from the first check after reading resumed
+            readPausedAtTimeout = false;
+            return;
+        }
 
         ctx.channel().close();
 
-        if (targetChannel.isRequestWritten()) {
-            String payload = "<errorMessage>" + "ReadTimeoutException occurred for endpoint " + targetChannel.
-                    getHttpRoute().toString() + "</errorMessage>";
+        if (inFlightRequests.get() > 0) {
+            failStreamingResponse(new MessagingException("Read Timeout", 101504));
+            // Requests whose response has not started yet
+            failPendingRequests("ReadTimeoutException occurred for endpoint ", 504,
+                    new MessagingException("Read Timeout", 101504));
+        }
 
-            CarbonMessageProcessor carbonMessageProcessor = HTTPTransportContextHolder.getInstance()
-                    .getMessageProcessor();
+    }
 
-            if (carbonMessageProcessor != null) {
-                try {
-                    HTTPTransportContextHolder.getInstance().getMessageProcessor()
-                            .receive(createErrorMessage(payload), callback);
-                } catch (Exception e) {
-                    LOG.error("Error while handover response to MessageProcessor ", e);
-                }
-            } else {
-                LOG.error("Cannot correlate callback with request callback is null ");
-            }
+    private static boolean isInterimResponse(HttpResponse httpResponse) {
+        int statusCode = httpResponse.status().code();
+        // A switching protocols response is the final response of an upgrade request
+        return statusCode >= 100 && statusCode < 200
+                && statusCode != HttpResponseStatus.SWITCHING_PROTOCOLS.code();
+    }
+
+    // End the response which is being received early. Its head has already been handed over to the processor with
+    // its callback, which must not be called again, so only the exception tells that the response is incomplete.
+    private void failStreamingResponse(MessagingException messagingException) {
+        if (cMsg == null || cMsg.isEndOfMsgAdded()) {
+            return;
         }
+        inFlightRequests.decrementAndGet();
+        HTTPCarbonMessage response = (HTTPCarbonMessage) cMsg;
+        // Consumers of the partial response are unblocked, and see why it ended early
+        response.setMessagingException(messagingException);
+        response.addHttpContent(LastHttpContent.EMPTY_LAST_CONTENT);
+        response.setEndOfMsgAdded(true);
+        response.releaseReadThrottle();
+    }
 
+    private void failPendingRequests(String reason, int statusCode, MessagingException messagingException) {
+        PendingRequest pendingRequest;
+        while ((pendingRequest = pendingRequests.poll()) != null) {
+            inFlightRequests.decrementAndGet();
+            String payload = "<errorMessage>" + reason + targetChannel.getHttpRoute() + "</errorMessage>";
+            deliverErrorMessage(createErrorMessage(payload, pendingRequest.callback, statusCode, messagingException),
+                    pendingRequest.callback);
+        }
+    }
+
+    private void deliverErrorMessage(CarbonMessage errorMessage, CarbonCallback callback) {
+        CarbonMessageProcessor carbonMessageProcessor = HTTPTransportContextHolder.getInstance()
+                .getMessageProcessor();
+
+        if (carbonMessageProcessor != null) {
+            try {
+                carbonMessageProcessor.receive(errorMessage, callback);
+            } catch (Exception e) {
+                LOG.error("Error while handover response to MessageProcessor ", e);
+            }
+        } else {
+            LOG.error("Cannot correlate callback with request callback is null ");
+        }
     }
 
     protected CarbonMessage setUpCarbonMessage(ChannelHandlerContext ctx, Object msg) {
         cMsg = new HTTPCarbonMessage();
+        ((HTTPCarbonMessage) cMsg).setReadThrottle(readThrottle);
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtTargetResponseReceiving(cMsg);
         }
         cMsg.setProperty(Constants.PORT, ((InetSocketAddress) ctx.channel().remoteAddress()).getPort());
-        cMsg.setProperty(Constants.HOST, ((InetSocketAddress) ctx.channel().remoteAddress()).getHostName());
+        // The address is created from the host of the route, so this needs no reverse lookup
+        cMsg.setProperty(Constants.HOST, ((InetSocketAddress) ctx.channel().remoteAddress()).getHostString());
         cMsg.setProperty(org.wso2.carbon.messaging.Constants.DIRECTION,
                 org.wso2.carbon.messaging.Constants.DIRECTION_RESPONSE);
         cMsg.setProperty(org.wso2.carbon.messaging.Constants.CALL_BACK, callback);
         HttpResponse httpResponse = (HttpResponse) msg;
 
         cMsg.setProperty(Constants.HTTP_STATUS_CODE, httpResponse.getStatus().code());
-        cMsg.setHeaders(Util.getHeaders(httpResponse).getAll());
+        cMsg.setHttpHeaders(httpResponse.headers());
 
         //copy required properties for service chaining from incoming carbon message to the response carbon message
         //copy shared worker pool
@@ -186,27 +309,12 @@ public class TargetHandler extends ReadTimeoutHandler {
     }
 
     protected CarbonMessage createErrorMessage(String payload) {
-        DefaultCarbonMessage response = new DefaultCarbonMessage();
-
-        response.setStringMessageBody(payload);
-        byte[] errorMessageBytes = payload.getBytes(Charset.defaultCharset());
-
-        Map<String, String> transportHeaders = new HashMap<>();
-        transportHeaders.put(Constants.HTTP_CONNECTION, Constants.KEEP_ALIVE);
-        transportHeaders.put(Constants.HTTP_CONTENT_ENCODING, Constants.GZIP);
-        transportHeaders.put(Constants.HTTP_CONTENT_TYPE, Constants.TEXT_XML);
-        transportHeaders.put(Constants.HTTP_CONTENT_LENGTH, (String.valueOf(errorMessageBytes.length)));
-
-        response.setHeaders(transportHeaders);
-
-        response.setProperty(Constants.HTTP_STATUS_CODE, 504);
-        response.setProperty(org.wso2.carbon.messaging.Constants.DIRECTION,
-                org.wso2.carbon.messaging.Constants.DIRECTION_RESPONSE);
-        response.setProperty(org.wso2.carbon.messaging.Constants.CALL_BACK, callback);
-        MessagingException messagingException = new MessagingException("Read Timeout", 101504);
-        response.setMessagingException(messagingException);
-        return response;
+        return createErrorMessage(payload, callback, 504, new MessagingException("Read Timeout", 101504));
+    }
 
+    protected CarbonMessage createErrorMessage(String payload, CarbonCallback callback, int statusCode,
+            MessagingException messagingException) {
+        return Util.createErrorMessage(payload, callback, statusCode, messagingException);
     }
 
     @Override
@@ -215,4 +323,19 @@ public class TargetHandler extends ReadTimeoutHandler {
             ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
         }
     }
+
+    /**
+     * Request written to the channel which is waiting for its response.
+     */
+    private static class PendingRequest {
+
+        private final CarbonCallback callback;
+        private final CarbonMessage incomingMsg;
+        private final long writeStart = System.nanoTime();
+
+        PendingRequest(CarbonCallback callback, CarbonMessage incomingMsg) {
+            this.callback = callback;
+            this.incomingMsg = incomingMsg;
+        }
+    }
 }
@@ -46,6 +46,10 @@ public class BootstrapConfiguration {
 
     private int socketTimeout = 15;
 
+    private int contentHighWaterMark = 65536;
+
+    private int contentLowWaterMark = 32768;
+
     private BootstrapConfiguration(Set<TransportProperty> transportPropertySet) {
 
         if (transportPropertySet != null && !transportPropertySet.isEmpty()) {
@@ -66,6 +70,10 @@ public class BootstrapConfiguration {
                     keepAlive = (Boolean) property.getValue();
                 } else if (property.getName().equals(Constants.CLINET_BOOTSTRAP_SO_REUSE)) {
                     socketReuse = (Boolean) property.getValue();
+                } else if (property.getName().equals(Constants.CLIENT_BOOTSTRAP_CONTENT_HIGH_WATER_MARK)) {
+                    contentHighWaterMark = (Integer) property.getValue();
+                } else if (property.getName().equals(Constants.CLIENT_BOOTSTRAP_CONTENT_LOW_WATER_MARK)) {
+                    contentLowWaterMark = (Integer) property.getValue();
                 }
             }
 
@@ -77,6 +85,8 @@ public class BootstrapConfiguration {
         logger.debug(Constants.CLINET_BOOTSTRAP_SO_TIMEOUT + ":" + socketTimeout);
         logger.debug(Constants.CLINET_BOOTSTRAP_KEEPALIVE + ":" + keepAlive);
         logger.debug(Constants.CLINET_BOOTSTRAP_SO_REUSE + ":" + socketReuse);
+        logger.debug(Constants.CLIENT_BOOTSTRAP_CONTENT_HIGH_WATER_MARK + ":" + contentHighWaterMark);
+        logger.debug(Constants.CLIENT_BOOTSTRAP_CONTENT_LOW_WATER_MARK + ":" + contentLowWaterMark);
     }
 
     public boolean isTcpNoDelay() {
@@ -107,6 +117,14 @@ public class BootstrapConfiguration {
         return socketTimeout;
     }
 
+    public int getContentHighWaterMark() {
+        return contentHighWaterMark;
+    }
+
+    public int getContentLowWaterMark() {
+        return contentLowWaterMark;
+    }
+
     public static BootstrapConfiguration getInstance() {
         return bootstrapConfig;
     }
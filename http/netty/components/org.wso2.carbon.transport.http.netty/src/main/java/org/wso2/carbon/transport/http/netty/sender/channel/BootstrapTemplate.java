@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.transport.http.netty.sender.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.ssl.SslContext;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.ssl.SSLConfig;
+import org.wso2.carbon.transport.http.netty.common.ssl.SSLHandlerFactory;
+import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.HTTPClientInitializer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The connection setup of a sender, built once and used for each new connection of the sender. It holds a
+ * configured client bootstrap per channel class, which is cloned for each connection, and the SSL configuration of
+ * the sender, whose SSL context is shared, so that opening a connection neither reads the configuration nor loads
+ * the key stores again.
+ */
+public class BootstrapTemplate {
+
+    private static final ConcurrentMap<SenderConfiguration, BootstrapTemplate> templates = new ConcurrentHashMap<>();
+
+    private final SenderConfiguration senderConfiguration;
+
+    private final BootstrapConfiguration bootstrapConfiguration;
+
+    private final SSLConfig sslConfig;
+
+    private final ConcurrentMap<Class, Bootstrap> bootstraps = new ConcurrentHashMap<>();
+
+    private BootstrapTemplate(SenderConfiguration senderConfiguration,
+            BootstrapConfiguration bootstrapConfiguration) {
+        this.senderConfiguration = senderConfiguration;
+        this.bootstrapConfiguration = bootstrapConfiguration;
+        this.sslConfig = senderConfiguration.getSslConfig();
+    }
+
+    /**
+     * Provides a bootstrap for a new connection, cloned from the configured bootstrap of the channel class.
+     *
+     * @param eventLoopGroup Event loop group of the connection
+     * @param eventLoopClass Channel class matching the event loop group
+     * @return Bootstrap without a channel handler
+     */
+    public Bootstrap newBootstrap(EventLoopGroup eventLoopGroup, Class eventLoopClass) {
+        return bootstraps.computeIfAbsent(eventLoopClass, ChannelUtils::createBootstrap).clone(eventLoopGroup);
+    }
+
+    /**
+     * @param httpRoute route of the connection
+     * @return pipeline initializer of a new HTTP/1.x connection, which owns the target handler of the connection
+     */
+    public HTTPClientInitializer newClientInitializer(HttpRoute httpRoute) {
+        return new HTTPClientInitializer(senderConfiguration, getSslHandlerFactory(),
+                bootstrapConfiguration.getSocketTimeout(), httpRoute);
+    }
+
+    /**
+     * @return SSL context of the HTTP/2 connections of the sender, or null if the sender does not use SSL
+     */
+    public SslContext getHttp2SslContext() {
+        SSLHandlerFactory sslHandlerFactory = getSslHandlerFactory();
+        return sslHandlerFactory != null ? sslHandlerFactory.createHttp2TLSContext(true) : null;
+    }
+
+    /**
+     * @return SSL handler factory of the sender, which reloads changed key stores, or null if the sender does not
+     * use SSL
+     */
+    public SSLHandlerFactory getSslHandlerFactory() {
+        return sslConfig != null ? SSLHandlerFactory.getInstance(sslConfig) : null;
+    }
+
+    /**
+     * Provides the template of a sender. The template is built again if the client bootstrap configuration has
+     * been replaced since it was built.
+     *
+     * @param senderConfiguration sender configuration
+     * @return BootstrapTemplate of the sender
+     */
+    public static BootstrapTemplate getInstance(SenderConfiguration senderConfiguration) {
+        BootstrapConfiguration bootstrapConfiguration = BootstrapConfiguration.getInstance();
+        BootstrapTemplate template = templates.get(senderConfiguration);
+        if (template == null || template.bootstrapConfiguration != bootstrapConfiguration) {
+            template = new BootstrapTemplate(senderConfiguration, bootstrapConfiguration);
+            templates.put(senderConfiguration, template);
+        }
+        return template;
+    }
+}
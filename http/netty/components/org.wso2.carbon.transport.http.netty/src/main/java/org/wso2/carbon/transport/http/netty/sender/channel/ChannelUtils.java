@@ -21,16 +21,20 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ConnectTimeoutException;
 import io.netty.channel.EventLoopGroup;
 import io.netty.handler.codec.http.DefaultHttpContent;
-import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.LastHttpContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.BufferAllocatorConfiguration;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.LatencyListener;
+import org.wso2.carbon.transport.http.netty.common.NativeTransportConfiguration;
+import org.wso2.carbon.transport.http.netty.common.ReadThrottle;
 import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
@@ -39,8 +43,6 @@ import org.wso2.carbon.transport.http.netty.sender.HTTPClientInitializer;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Utility class for Channel handling.
@@ -59,20 +61,13 @@ public class ChannelUtils {
      * @param senderConfiguration sender configuration
      * @return ChannelFuture
      */
-    @SuppressWarnings("unchecked")
     public static ChannelFuture getNewChannelFuture(TargetChannel targetChannel, EventLoopGroup eventLoopGroup,
             Class eventLoopClass, HttpRoute httpRoute, SenderConfiguration senderConfiguration) {
-        BootstrapConfiguration bootstrapConfiguration = BootstrapConfiguration.getInstance();
-        Bootstrap clientBootstrap = new Bootstrap();
-        clientBootstrap.channel(eventLoopClass);
-        clientBootstrap.group(eventLoopGroup);
-        clientBootstrap.option(ChannelOption.SO_KEEPALIVE, bootstrapConfiguration.isKeepAlive());
-        clientBootstrap.option(ChannelOption.TCP_NODELAY, bootstrapConfiguration.isTcpNoDelay());
-        clientBootstrap.option(ChannelOption.SO_REUSEADDR, bootstrapConfiguration.isSocketReuse());
-        clientBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, bootstrapConfiguration.getConnectTimeOut());
+        BootstrapTemplate bootstrapTemplate = BootstrapTemplate.getInstance(senderConfiguration);
+        Bootstrap clientBootstrap = bootstrapTemplate.newBootstrap(eventLoopGroup, eventLoopClass);
 
         // set the pipeline factory, which creates the pipeline for each newly created channels
-        HTTPClientInitializer httpClientInitializer = new HTTPClientInitializer(senderConfiguration);
+        HTTPClientInitializer httpClientInitializer = bootstrapTemplate.newClientInitializer(httpRoute);
         targetChannel.setHTTPClientInitializer(httpClientInitializer);
         clientBootstrap.handler(httpClientInitializer);
         if (log.isDebugEnabled()) {
@@ -80,74 +75,103 @@ public class ChannelUtils {
                     httpRoute.getPort(), clientBootstrap);
         }
 
-        return clientBootstrap.connect(new InetSocketAddress(httpRoute.getHost(), httpRoute.getPort()));
+        LatencyListener latencyListener = LatencyListener.getInstance();
+        if (latencyListener == null) {
+            return clientBootstrap.connect(getRemoteAddress(httpRoute));
+        }
+        long connectStart = System.nanoTime();
+        ChannelFuture channelFuture = clientBootstrap.connect(getRemoteAddress(httpRoute));
+        channelFuture.addListener(future -> {
+            if (future.isSuccess()) {
+                latencyListener.targetConnected(httpRoute, System.nanoTime() - connectStart);
+            }
+        });
+        return channelFuture;
     }
 
     /**
-     * Open Channel for BE.
+     * Provides the address to connect to for a route. Unless the DNS cache is disabled, the address is unresolved,
+     * so that the host is resolved by the resolver of the bootstrap without blocking the connecting thread.
      *
-     * @param channelFuture ChannelFuture Object
-     * @param httpRoute     HttpRoute represents host and port for BE
-     * @return Channel
-     * @throws Exception Exception to notify any errors occur during opening the channel
+     * @param httpRoute Http Route which represents BE connections
+     * @return InetSocketAddress of the BE
      */
-    public static Channel openChannel(ChannelFuture channelFuture, HttpRoute httpRoute) throws Exception {
-
-        BootstrapConfiguration bootstrapConfiguration = BootstrapConfiguration.getInstance();
-        // blocking for channel to be done
-        if (log.isTraceEnabled()) {
-            log.trace("Waiting for operation to complete {} for {} millis", channelFuture,
-                    bootstrapConfiguration.getConnectTimeOut());
+    public static InetSocketAddress getRemoteAddress(HttpRoute httpRoute) {
+        if (DnsCache.getInstance().isEnabled()) {
+            return InetSocketAddress.createUnresolved(httpRoute.getHost(), httpRoute.getPort());
         }
+        return new InetSocketAddress(httpRoute.getHost(), httpRoute.getPort());
+    }
 
-        // here we need to wait it in other thread
-        final CountDownLatch channelLatch = new CountDownLatch(1);
-        channelFuture.addListener(cf -> channelLatch.countDown());
+    /**
+     * Provides a client bootstrap with the configured socket options and without a channel handler.
+     *
+     * @param eventLoopGroup Event loop group of the connection
+     * @param eventLoopClass Channel class matching the event loop group
+     * @return Bootstrap
+     */
+    public static Bootstrap createBootstrap(EventLoopGroup eventLoopGroup, Class eventLoopClass) {
+        return createBootstrap(eventLoopClass).group(eventLoopGroup);
+    }
 
-        try {
-            boolean wait = channelLatch.await(bootstrapConfiguration.getConnectTimeOut(), TimeUnit.MILLISECONDS);
-            if (wait) {
-                log.debug("Waited for connection creation in Sender");
-            }
-        } catch (InterruptedException ex) {
-            throw new Exception("Interrupted while waiting for " + "connection to " + httpRoute.toString());
+    /**
+     * Provides a client bootstrap with the configured socket options and without an event loop group and a channel
+     * handler.
+     *
+     * @param eventLoopClass Channel class of the connections
+     * @return Bootstrap
+     */
+    @SuppressWarnings("unchecked")
+    public static Bootstrap createBootstrap(Class eventLoopClass) {
+        BootstrapConfiguration bootstrapConfiguration = BootstrapConfiguration.getInstance();
+        Bootstrap clientBootstrap = new Bootstrap();
+        clientBootstrap.channel(eventLoopClass);
+        clientBootstrap.option(ChannelOption.SO_KEEPALIVE, bootstrapConfiguration.isKeepAlive());
+        clientBootstrap.option(ChannelOption.TCP_NODELAY, bootstrapConfiguration.isTcpNoDelay());
+        clientBootstrap.option(ChannelOption.SO_REUSEADDR, bootstrapConfiguration.isSocketReuse());
+        clientBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, bootstrapConfiguration.getConnectTimeOut());
+        NativeTransportConfiguration.getInstance().configureBootstrap(clientBootstrap, eventLoopClass);
+        BufferAllocatorConfiguration.getInstance().configureBootstrap(clientBootstrap);
+        DnsCache dnsCache = DnsCache.getInstance();
+        if (dnsCache.isEnabled()) {
+            clientBootstrap.resolver(dnsCache.getResolverGroup());
         }
+        return clientBootstrap;
+    }
 
-        Channel channel = null;
-
-        if (channelFuture.isDone() && channelFuture.isSuccess()) {
-            channel = channelFuture.channel();
-            if (log.isDebugEnabled()) {
-                log.debug("Creating connector to address: {}", httpRoute.toString());
-            }
-        } else if (channelFuture.isDone() && channelFuture.isCancelled()) {
-            ConnectException cause = new ConnectException("Request Cancelled, " + httpRoute.toString());
-            if (channelFuture.cause() != null) {
-                cause.initCause(channelFuture.cause());
-            }
-            throw cause;
-        } else if (!channelFuture.isDone() && !channelFuture.isSuccess() &&
-                !channelFuture.isCancelled() && (channelFuture.cause() == null)) {
-            throw new ConnectException("Connection timeout, " + httpRoute.toString());
+    /**
+     * Provides the exception to be reported when a connection attempt to the BE did not succeed.
+     *
+     * @param channelFuture Completed ChannelFuture of the connection attempt
+     * @param httpRoute     HttpRoute represents host and port for BE
+     * @return ConnectException describing the failure
+     */
+    public static ConnectException getConnectException(ChannelFuture channelFuture, HttpRoute httpRoute) {
+        ConnectException cause;
+        if (channelFuture.isCancelled()) {
+            cause = new ConnectException("Request Cancelled, " + httpRoute.toString());
+        } else if (channelFuture.cause() instanceof ConnectTimeoutException) {
+            cause = new ConnectException("Connection timeout, " + httpRoute.toString());
         } else {
-            ConnectException cause = new ConnectException("Connection refused, " + httpRoute.toString());
-            if (channelFuture.cause() != null) {
-                cause.initCause(channelFuture.cause());
-            }
-            throw cause;
+            cause = new ConnectException("Connection refused, " + httpRoute.toString());
         }
-        return channel;
+        if (channelFuture.cause() != null) {
+            cause.initCause(channelFuture.cause());
+        }
+        return cause;
     }
 
     /**
-     * Method used to write content to outbound endpoint.
+     * Method used to write content to outbound endpoint. Content of an HTTPCarbonMessage is written as it arrives
+     * through a content listener, so the calling thread never waits for the rest of the incoming message.
      *
-     * @param channel       OutboundChanel
-     * @param httpRequest   HTTPRequest
-     * @param carbonMessage Carbon Message
-     * @return
+     * @param channel          OutboundChanel
+     * @param httpRequest      HTTPRequest
+     * @param carbonMessage    Carbon Message
+     * @param contentCompleted called once the last content of the request has been written to the channel
      */
-    public static boolean writeContent(Channel channel, HttpRequest httpRequest, CarbonMessage carbonMessage) {
+    public static void writeContent(Channel channel, HttpRequest httpRequest, CarbonMessage carbonMessage,
+            Runnable contentCompleted) {
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor().
                     executeAtTargetRequestReceiving(carbonMessage);
@@ -155,26 +179,29 @@ public class ChannelUtils {
         channel.write(httpRequest);
 
         if (carbonMessage instanceof HTTPCarbonMessage) {
-            while (true) {
-                HTTPCarbonMessage nettyCMsg = (HTTPCarbonMessage) carbonMessage;
-                if (nettyCMsg.isEndOfMsgAdded() && nettyCMsg.isEmpty()) {
-                    channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
-                    break;
-                }
-                HttpContent httpContent = nettyCMsg.getHttpContent();
-                if (httpContent instanceof LastHttpContent) {
+            HTTPCarbonMessage nettyCMsg = (HTTPCarbonMessage) carbonMessage;
+            nettyCMsg.setContentListener(httpContent -> {
+                if (httpContent instanceof LastHttpContent && nettyCMsg.getMessagingException() != null) {
+                    // The request was cut short by its client, the endpoint must not take the partial entity
+                    httpContent.release();
+                    channel.close().addListener(future -> contentCompleted.run());
+                } else if (httpContent instanceof LastHttpContent) {
                     channel.writeAndFlush(httpContent);
                     if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
                         HTTPTransportContextHolder.getInstance().getHandlerExecutor().
                                 executeAtTargetRequestSending(carbonMessage);
                     }
-                    break;
-                }
-                if (httpContent != null) {
+                    contentCompleted.run();
+                } else {
                     channel.write(httpContent);
+                    ReadThrottle readThrottle = nettyCMsg.getReadThrottle();
+                    if (readThrottle != null && !channel.isWritable()) {
+                        // Stop reading the request until the endpoint has taken what is written so far
+                        channel.flush();
+                        readThrottle.pauseUntilWritable(channel);
+                    }
                 }
-
-            }
+            });
         } else if (carbonMessage instanceof DefaultCarbonMessage) {
             DefaultCarbonMessage defaultCMsg = (DefaultCarbonMessage) carbonMessage;
             while (true) {
@@ -191,9 +218,10 @@ public class ChannelUtils {
                     break;
                 }
             }
+            contentCompleted.run();
+        } else {
+            contentCompleted.run();
         }
-
-        return true;
     }
 
 }
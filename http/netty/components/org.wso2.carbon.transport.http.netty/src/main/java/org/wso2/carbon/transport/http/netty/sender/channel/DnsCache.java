@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.transport.http.netty.sender.channel;
+
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.InetNameResolver;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.config.TransportProperty;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class represents the cache of the addresses of BE hosts. Host names are resolved on a dedicated thread pool,
+ * never on the event loop connecting to the host, and the result is kept for the configured TTL, or the negative
+ * TTL if the host could not be resolved. An address which is used shortly before it expires is resolved again in
+ * the background, so that connections to a busy route do not wait for DNS. Entries of a configured hosts file
+ * override DNS. Expired entries are removed when a lookup completes, and the cache holds at most the configured
+ * number of hosts.
+ */
+public class DnsCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DnsCache.class);
+
+    private static volatile DnsCache dnsCache;
+
+    private boolean enabled = true;
+
+    private int ttl = 30;
+
+    private int negativeTtl = 10;
+
+    private int refreshBeforeExpiry = 5;
+
+    private int maxEntries = 10000;
+
+    private int resolverThreads = 2;
+
+    private String hostsFile;
+
+    private final Map<String, InetAddress> hostsFileEntries;
+
+    private final ConcurrentMap<String, CacheEntry> entries = new ConcurrentHashMap<>();
+
+    // Lookups in progress, so that concurrent misses and refreshes of a host share one lookup
+    private final ConcurrentMap<String, CompletableFuture<InetAddress>> lookups = new ConcurrentHashMap<>();
+
+    private final ExecutorService resolverExecutor;
+
+    private final AddressResolverGroup<InetSocketAddress> resolverGroup;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private volatile long lastExpiryCheck = System.nanoTime();
+
+    /**
+     * Create a DNS cache of its own. Senders share the one created with {@link #createDnsCache(Set)}.
+     *
+     * @param properties transport properties
+     */
+    public DnsCache(Set<TransportProperty> properties) {
+        if (properties != null) {
+            for (TransportProperty property : properties) {
+                if (Constants.CLIENT_DNS_CACHE_ENABLED.equals(property.getName())) {
+                    enabled = (Boolean) property.getValue();
+                } else if (Constants.CLIENT_DNS_CACHE_TTL.equals(property.getName())) {
+                    ttl = (Integer) property.getValue();
+                } else if (Constants.CLIENT_DNS_CACHE_NEGATIVE_TTL.equals(property.getName())) {
+                    negativeTtl = (Integer) property.getValue();
+                } else if (Constants.CLIENT_DNS_CACHE_REFRESH_BEFORE_EXPIRY.equals(property.getName())) {
+                    refreshBeforeExpiry = (Integer) property.getValue();
+                } else if (Constants.CLIENT_DNS_CACHE_MAX_ENTRIES.equals(property.getName())) {
+                    maxEntries = (Integer) property.getValue();
+                } else if (Constants.CLIENT_DNS_RESOLVER_THREADS.equals(property.getName())) {
+                    resolverThreads = (Integer) property.getValue();
+                } else if (Constants.CLIENT_DNS_HOSTS_FILE.equals(property.getName())) {
+                    hostsFile = (String) property.getValue();
+                }
+            }
+        }
+        log.debug(Constants.CLIENT_DNS_CACHE_ENABLED + ": " + enabled);
+        log.debug(Constants.CLIENT_DNS_CACHE_TTL + ": " + ttl);
+        log.debug(Constants.CLIENT_DNS_CACHE_NEGATIVE_TTL + ": " + negativeTtl);
+        log.debug(Constants.CLIENT_DNS_CACHE_REFRESH_BEFORE_EXPIRY + ": " + refreshBeforeExpiry);
+        log.debug(Constants.CLIENT_DNS_CACHE_MAX_ENTRIES + ": " + maxEntries);
+        log.debug(Constants.CLIENT_DNS_RESOLVER_THREADS + ": " + resolverThreads);
+        log.debug(Constants.CLIENT_DNS_HOSTS_FILE + ": " + hostsFile);
+
+        hostsFileEntries = hostsFile != null ? parseHostsFile(hostsFile) : Collections.emptyMap();
+        resolverExecutor = Executors.newFixedThreadPool(resolverThreads,
+                new DefaultThreadFactory("http-client-dns-resolver", true));
+        resolverGroup = new AddressResolverGroup<InetSocketAddress>() {
+            @Override
+            protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+                return new CachingNameResolver(executor).asAddressResolver();
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return resolver group of the client bootstraps, which resolves the hosts of unresolved addresses from this
+     * cache
+     */
+    public AddressResolverGroup<InetSocketAddress> getResolverGroup() {
+        return resolverGroup;
+    }
+
+    /**
+     * Resolve a host name. The promise is completed immediately if the host is cached, otherwise from a resolver
+     * thread once it has been looked up.
+     *
+     * @param host    host name or IP address
+     * @param promise promise to complete with the address of the host
+     */
+    public void resolve(String host, Promise<InetAddress> promise) {
+        InetAddress address = getStaticAddress(host);
+        if (address != null) {
+            promise.trySuccess(address);
+            return;
+        }
+
+        CacheEntry entry = entries.get(host);
+        long now = System.nanoTime();
+        if (entry != null && entry.expiresAt - now > 0) {
+            hits.increment();
+            if (entry.address != null
+                    && entry.expiresAt - now < TimeUnit.SECONDS.toNanos(refreshBeforeExpiry)
+                    && !lookups.containsKey(host)) {
+                refreshes.increment();
+                lookup(host);
+            }
+            entry.complete(promise);
+            return;
+        }
+
+        if (entry != null) {
+            entries.remove(host, entry);
+        }
+        misses.increment();
+        lookup(host).whenComplete((resolved, cause) -> {
+            if (cause == null) {
+                promise.trySuccess(resolved);
+            } else {
+                promise.tryFailure(cause);
+            }
+        });
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Hosts file entries and IP addresses are never looked up.
+     */
+    private InetAddress getStaticAddress(String host) {
+        InetAddress address = hostsFileEntries.get(host.toLowerCase(Locale.ENGLISH));
+        if (address != null) {
+            return address;
+        }
+        byte[] ipAddress = NetUtil.createByteArrayFromIpAddressString(host);
+        if (ipAddress != null) {
+            try {
+                return InetAddress.getByAddress(host, ipAddress);
+            } catch (UnknownHostException e) {
+                // Cannot happen for an address of a valid length, the host is looked up instead
+                log.debug("Invalid IP address " + host, e);
+            }
+        }
+        return null;
+    }
+
+    private CompletableFuture<InetAddress> lookup(String host) {
+        CompletableFuture<InetAddress> lookup = new CompletableFuture<>();
+        CompletableFuture<InetAddress> inProgress = lookups.putIfAbsent(host, lookup);
+        if (inProgress != null) {
+            return inProgress;
+        }
+        try {
+            resolverExecutor.execute(() -> {
+                CacheEntry entry;
+                try {
+                    entry = new CacheEntry(InetAddress.getByName(host), null,
+                            System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl));
+                } catch (UnknownHostException e) {
+                    failures.increment();
+                    CacheEntry current = entries.get(host);
+                    if (current != null && current.address != null && current.expiresAt - System.nanoTime() > 0) {
+                        // A failed refresh keeps the address until it expires
+                        entry = current;
+                    } else {
+                        entry = new CacheEntry(null, e, System.nanoTime() + TimeUnit.SECONDS.toNanos(negativeTtl));
+                    }
+                }
+                removeExpiredEntries();
+                entries.put(host, entry);
+                lookups.remove(host);
+                entry.complete(lookup);
+            });
+        } catch (RejectedExecutionException e) {
+            lookups.remove(host, lookup);
+            lookup.completeExceptionally(e);
+        }
+        return lookup;
+    }
+
+    /**
+     * Runs on a resolver thread before the result of a lookup is cached. Expired entries are removed at most once
+     * per negative TTL, unless the cache is full, in which case the entries expiring first are removed as well.
+     */
+    private void removeExpiredEntries() {
+        long now = System.nanoTime();
+        if (entries.size() < maxEntries && now - lastExpiryCheck < TimeUnit.SECONDS.toNanos(negativeTtl)) {
+            return;
+        }
+        lastExpiryCheck = now;
+        entries.values().removeIf(entry -> entry.expiresAt - now <= 0);
+
+        int excess = entries.size() - maxEntries + 1;
+        if (excess > 0) {
+            entries.entrySet().stream()
+                    .sorted(Comparator.comparingLong(cached -> cached.getValue().expiresAt - now))
+                    .limit(excess)
+                    .forEach(cached -> entries.remove(cached.getKey(), cached.getValue()));
+        }
+    }
+
+    private static Map<String, InetAddress> parseHostsFile(String hostsFile) {
+        Map<String, InetAddress> hostsFileEntries = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(hostsFile), StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 2) {
+                    continue;
+                }
+                byte[] ipAddress = NetUtil.createByteArrayFromIpAddressString(fields[0]);
+                if (ipAddress == null) {
+                    log.warn("Ignoring the hosts file entry with the invalid address " + fields[0]);
+                    continue;
+                }
+                for (int i = 1; i < fields.length; i++) {
+                    String host = fields[i].toLowerCase(Locale.ENGLISH);
+                    // The first entry of a host is used, as the system resolver does
+                    if (!hostsFileEntries.containsKey(host)) {
+                        hostsFileEntries.put(host, InetAddress.getByAddress(fields[i], ipAddress));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error while reading the hosts file " + hostsFile + ", hosts are resolved with DNS only", e);
+        }
+        return hostsFileEntries;
+    }
+
+    /**
+     * @return DNS cache, created with the default settings if it is not created yet
+     */
+    public static DnsCache getInstance() {
+        if (dnsCache == null) {
+            createDnsCache(null);
+        }
+        return dnsCache;
+    }
+
+    /**
+     * Create the DNS cache from the transport properties, unless a sender has already created it.
+     *
+     * @param properties transport properties
+     */
+    public static synchronized void createDnsCache(Set<TransportProperty> properties) {
+        if (dnsCache == null) {
+            dnsCache = new DnsCache(properties);
+        }
+    }
+
+    private static final class CacheEntry {
+
+        private final InetAddress address;
+        private final UnknownHostException cause;
+        private final long expiresAt;
+
+        private CacheEntry(InetAddress address, UnknownHostException cause, long expiresAt) {
+            this.address = address;
+            this.cause = cause;
+            this.expiresAt = expiresAt;
+        }
+
+        private void complete(Promise<InetAddress> promise) {
+            if (address != null) {
+                promise.trySuccess(address);
+            } else {
+                promise.tryFailure(cause);
+            }
+        }
+
+        private void complete(CompletableFuture<InetAddress> future) {
+            if (address != null) {
+                future.complete(address);
+            } else {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Name resolver of an event loop, which resolves from the cache.
+     */
+    private final class CachingNameResolver extends InetNameResolver {
+
+        private CachingNameResolver(EventExecutor executor) {
+            super(executor);
+        }
+
+        @Override
+        protected void doResolve(String inetHost, Promise<InetAddress> promise) {
+            resolve(inetHost, promise);
+        }
+
+        @Override
+        protected void doResolveAll(String inetHost, Promise<List<InetAddress>> promise) {
+            Promise<InetAddress> address = executor().newPromise();
+            address.addListener((Future<InetAddress> future) -> {
+                if (future.isSuccess()) {
+                    promise.trySuccess(Collections.singletonList(future.getNow()));
+                } else {
+                    promise.tryFailure(future.cause());
+                }
+            });
+            resolve(inetHost, address);
+        }
+    }
+}
@@ -17,6 +17,7 @@ package org.wso2.carbon.transport.http.netty.sender.channel;
 
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
 import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
 import org.wso2.carbon.transport.http.netty.sender.HTTPClientInitializer;
@@ -30,6 +31,8 @@ public class TargetChannel {
 
     private Channel channel;
 
+    private ChannelFuture channelFuture;
+
     private TargetHandler targetHandler;
 
     private HTTPClientInitializer httpClientInitializer;
@@ -40,6 +43,8 @@ public class TargetChannel {
 
     private boolean isRequestWritten;
 
+    private volatile boolean isWritingRequest;
+
     public boolean isRequestWritten() {
         return isRequestWritten;
     }
@@ -53,6 +58,14 @@ public class TargetChannel {
         return this;
     }
 
+    public ChannelFuture getChannelFuture() {
+        return channelFuture;
+    }
+
+    public void setChannelFuture(ChannelFuture channelFuture) {
+        this.channelFuture = channelFuture;
+    }
+
     public TargetHandler getTargetHandler() {
         return targetHandler;
     }
@@ -88,4 +101,12 @@ public class TargetChannel {
     public void setRequestWritten(boolean isRequestWritten) {
         this.isRequestWritten = isRequestWritten;
     }
+
+    public boolean isWritingRequest() {
+        return isWritingRequest;
+    }
+
+    public void setWritingRequest(boolean isWritingRequest) {
+        this.isWritingRequest = isWritingRequest;
+    }
 }
@@ -15,24 +15,30 @@
 
 package org.wso2.carbon.transport.http.netty.sender.channel.pool;
 
-import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.HttpRequest;
-import org.apache.commons.pool.impl.GenericObjectPool;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FutureListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.common.EventLoopMonitor;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.LatencyListener;
+import org.wso2.carbon.transport.http.netty.common.NativeTransportConfiguration;
 import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
 import org.wso2.carbon.transport.http.netty.config.TransportProperty;
 import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
 import org.wso2.carbon.transport.http.netty.sender.ClientRequestWorker;
+import org.wso2.carbon.transport.http.netty.sender.channel.ChannelUtils;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
+import org.wso2.carbon.transport.http.netty.sender.http2.Http2ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.http2.Http2ConnectionPool;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,7 +47,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class which handles connection pool management.
@@ -54,53 +60,59 @@ public class ConnectionManager {
 
     private PoolConfiguration poolConfiguration;
 
-    private int poolCount;
+    //Connection pools of each route, kept per event loop which owns the pooled connections.
+    private final Map<EventLoop, Map<String, TargetChannelPool>> eventLoopPools;
 
-    private final List<Map<String, GenericObjectPool>> poolList;
+    //Active and pending limits of each route, shared by the pools of the route on the event loops.
+    private final Map<String, RouteConnectionLimits> routeLimits = new ConcurrentHashMap<>();
 
-    //Connection Pool to be used  when Carbon transport HTTP Listeners are not used.
-    private final Map<String, GenericObjectPool> localConnectionMap;
+    //Counts of the connections cached per inbound channel, per route, as they are not pooled.
+    private final Map<String, CachedChannelCounts> cachedChannelCounts = new ConcurrentHashMap<>();
 
     private PoolManagementPolicy poolManagementPolicy;
 
-    private AtomicInteger index = new AtomicInteger(1);
-
     private ExecutorService executorService;
 
+    //Event loop group used for connections when Carbon transport HTTP Listeners are not used.
+    private volatile EventLoopGroup clientEventLoopGroup;
+
     private ConnectionManager(PoolConfiguration poolConfiguration) {
         this.poolConfiguration = poolConfiguration;
-        this.poolCount = poolConfiguration.getNumberOfPools();
         this.executorService = Executors.newFixedThreadPool(poolConfiguration.getExecutorServiceThreads());
-        localConnectionMap = new ConcurrentHashMap<>();
+        this.eventLoopPools = new ConcurrentHashMap<>();
         if (poolConfiguration.getNumberOfPools() == 0) {
             this.poolManagementPolicy = PoolManagementPolicy.PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING;
         } else {
             this.poolManagementPolicy = PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING;
         }
-
-        poolList = new ArrayList<>();
-        for (int i = 0; i < poolCount; i++) {
-            Map<String, GenericObjectPool> map = new ConcurrentHashMap<>();
-            poolList.add(map);
-        }
-
     }
 
-    private GenericObjectPool createPoolForRoute(HttpRoute httpRoute, EventLoopGroup eventLoopGroup,
+    private TargetChannelPool createPoolForRoute(HttpRoute httpRoute, EventLoop eventLoop,
             Class eventLoopClass, SenderConfiguration senderConfiguration) {
-        GenericObjectPool.Config config = new GenericObjectPool.Config();
-        config.maxActive = poolConfiguration.getMaxActivePerPool();
-        config.maxIdle = poolConfiguration.getMaxIdlePerPool();
-        config.minIdle = poolConfiguration.getMinIdlePerPool();
-        config.testOnBorrow = poolConfiguration.isTestOnBorrow();
-        config.testWhileIdle = poolConfiguration.isTestWhileIdle();
-        config.timeBetweenEvictionRunsMillis = poolConfiguration.getTimeBetweenEvictionRuns();
-        config.minEvictableIdleTimeMillis = poolConfiguration.getMinEvictableIdleTime();
-        config.whenExhaustedAction = poolConfiguration.getExhaustedAction();
-        return new GenericObjectPool(
-                new PoolableTargetChannelFactory(httpRoute, eventLoopGroup, eventLoopClass, senderConfiguration),
-                config);
+        // The route has a pool on every loop of the group, each of them keeps its share of the idle connections
+        return new TargetChannelPool(eventLoop, httpRoute,
+                new PoolableTargetChannelFactory(httpRoute, eventLoop, eventLoopClass, senderConfiguration),
+                poolConfiguration.perEventLoop(getEventLoopCount(eventLoop)),
+                routeLimits.computeIfAbsent(httpRoute.toString(),
+                        route -> new RouteConnectionLimits(poolConfiguration)));
+    }
+
+    private static int getEventLoopCount(EventLoop eventLoop) {
+        EventLoopGroup eventLoopGroup = eventLoop.parent();
+        if (eventLoopGroup == null) {
+            return 1;
+        }
+        int eventLoops = 0;
+        for (EventExecutor ignored : eventLoopGroup) {
+            eventLoops++;
+        }
+        return Math.max(1, eventLoops);
+    }
 
+    private TargetChannelPool getPoolForRoute(Map<String, TargetChannelPool> routePools, HttpRoute httpRoute,
+            EventLoop eventLoop, Class eventLoopClass, SenderConfiguration senderConfiguration) {
+        return routePools.computeIfAbsent(httpRoute.toString(),
+                route -> createPoolForRoute(httpRoute, eventLoop, eventLoopClass, senderConfiguration));
     }
 
     public static ConnectionManager getInstance(Set<TransportProperty> transportPropertySet) {
@@ -121,7 +133,15 @@ public class ConnectionManager {
     }
 
     /**
-     * Provide target channel for given http route.
+     * @return connection manager, or null if no sender has created it yet
+     */
+    public static ConnectionManager getInstance() {
+        return connectionManager;
+    }
+
+    /**
+     * Provide target channel for given http route and write the request to it once it is connected.
+     * The calling thread never waits for the connection to be established.
      *
      * @param httpRoute           BE address
      * @param sourceHandler       Incoming channel
@@ -129,118 +149,148 @@ public class ConnectionManager {
      * @param httpRequest         http request
      * @param carbonMessage       carbon message
      * @param carbonCallback      carbon call back
-     * @return TargetChannel
      * @throws Exception to notify any errors occur during retrieving the target channel
      */
-    public TargetChannel getTargetChannel(HttpRoute httpRoute, SourceHandler sourceHandler,
+    public void getTargetChannel(HttpRoute httpRoute, SourceHandler sourceHandler,
             SenderConfiguration senderConfiguration, HttpRequest httpRequest, CarbonMessage carbonMessage,
             CarbonCallback carbonCallback) throws Exception {
-        TargetChannel targetChannel = null;
-
         Class cl = null;
-        EventLoopGroup group = null;
+        EventLoop eventLoop = null;
 
         if (sourceHandler != null) {
             ChannelHandlerContext ctx = sourceHandler.getInboundChannelContext();
-            group = ctx.channel().eventLoop();
+            eventLoop = ctx.channel().eventLoop();
             cl = ctx.channel().getClass();
         } else {
-            cl = NioSocketChannel.class;
-            group = new NioEventLoopGroup(Integer.parseInt(senderConfiguration.getSenderWorkerThreads()));
+            cl = NativeTransportConfiguration.getInstance().getSocketChannelClass();
+            eventLoop = getClientEventLoopGroup(senderConfiguration).next();
             poolManagementPolicy = PoolManagementPolicy.DEFAULT_POOLING;
         }
 
         // Take connections from Global connection pool
         if (poolManagementPolicy == PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING) {
-            Map<String, GenericObjectPool> objectPoolMap = sourceHandler.getTargetChannelPool();
-            GenericObjectPool pool = objectPoolMap.get(httpRoute.toString());
-            if (pool == null) {
-                pool = createPoolForRoute(httpRoute, group, cl, senderConfiguration);
-                objectPoolMap.put(httpRoute.toString(), pool);
-            }
-            try {
-                executorService.execute(
-                        new ClientRequestWorker(httpRoute, sourceHandler, senderConfiguration, httpRequest,
-                                carbonMessage, carbonCallback, PoolManagementPolicy.
-                                GLOBAL_ENDPOINT_CONNECTION_CACHING, pool, this, group, cl));
-            } catch (Exception e) {
-                String msg = "Cannot borrow free channel from pool ";
-                log.error(msg, e);
-                MessagingException messagingException = new MessagingException(msg, e, 101500);
-                carbonMessage.setMessagingException(messagingException);
-                carbonCallback.done(carbonMessage);
-            }
-        } else if (poolManagementPolicy == PoolManagementPolicy.PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING) {
+            TargetChannelPool pool = getPoolForRoute(sourceHandler.getTargetChannelPool(), httpRoute, eventLoop, cl,
+                    senderConfiguration);
+            acquireTargetChannel(pool, httpRoute, sourceHandler, httpRequest, carbonMessage, carbonCallback);
+        } else if (poolManagementPolicy == PoolManagementPolicy.PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING
+                && !sourceHandler.isMultiplexed()) {
             // manage connections according to per inbound channel caching method
-            if (!isRouteExists(httpRoute, sourceHandler)) {
-                executorService.
-                        execute(new ClientRequestWorker(httpRoute, sourceHandler, senderConfiguration, httpRequest,
-                                carbonMessage, carbonCallback, PoolManagementPolicy.
-                                PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING, null, this, group, cl));
-            } else {
+            TargetChannel targetChannel = null;
+            CachedChannelCounts counts = cachedChannelCounts.computeIfAbsent(httpRoute.toString(),
+                    route -> new CachedChannelCounts());
+            if (isRouteExists(httpRoute, sourceHandler)) {
                 targetChannel = sourceHandler.getChannel(httpRoute);
-                Channel tempc = targetChannel.getChannel();
-                if (!tempc.isActive()) {
-                    executorService.
-                            execute(new ClientRequestWorker(httpRoute, sourceHandler, senderConfiguration,
-
-                                    httpRequest, carbonMessage,
-
-                                    carbonCallback, PoolManagementPolicy.
-                                    PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING, null, this, group, cl));
+                if (!targetChannel.getChannel().isActive()) {
                     targetChannel = null;
                     sourceHandler.removeChannelFuture(httpRoute);
                 }
             }
-        } else if (poolManagementPolicy == PoolManagementPolicy.DEFAULT_POOLING) {
-            GenericObjectPool pool = localConnectionMap.get(httpRoute.toString());
-            if (pool == null) {
-                pool = createPoolForRoute(httpRoute, group, cl, senderConfiguration);
-                localConnectionMap.put(httpRoute.toString(), pool);
-            }
-            executorService.
-                    execute(new ClientRequestWorker(httpRoute, sourceHandler, senderConfiguration, httpRequest,
-                            carbonMessage, carbonCallback, PoolManagementPolicy.
-                            DEFAULT_POOLING, pool, this, group, cl));
-        }
-        if (targetChannel != null) {
-            targetChannel.setHttpRoute(httpRoute);
-            if (sourceHandler != null) {
-                targetChannel.setCorrelatedSource(sourceHandler);
+            if (targetChannel == null) {
+                targetChannel = new TargetChannel();
+                ChannelFuture channelFuture = ChannelUtils
+                        .getNewChannelFuture(targetChannel, eventLoop, cl, httpRoute, senderConfiguration);
+                targetChannel.setChannelFuture(channelFuture);
+                targetChannel.setChannel(channelFuture.channel());
+                counts.created.incrementAndGet();
+                channelFuture.channel().closeFuture().addListener(future -> counts.closed.incrementAndGet());
             }
+            counts.acquires.incrementAndGet();
+            writeRequest(targetChannel, httpRoute, sourceHandler, httpRequest, carbonMessage, carbonCallback);
+        } else {
+            // Default pooling, also used by multiplexed incoming connections whose streams cannot share a channel
+            TargetChannelPool pool = getPoolForRoute(getEventLoopPools(eventLoop), httpRoute, eventLoop, cl,
+                    senderConfiguration);
+            acquireTargetChannel(pool, httpRoute, sourceHandler, httpRequest, carbonMessage, carbonCallback);
         }
-
-        return targetChannel;
     }
 
-    //Add connection to Pool back
-    public void returnChannel(TargetChannel targetChannel) throws Exception {
-        if (poolManagementPolicy == PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING) {
-            Map<String, GenericObjectPool> objectPoolMap = targetChannel.getCorrelatedSource().getTargetChannelPool();
-            GenericObjectPool pool = objectPoolMap.get(targetChannel.getHttpRoute().toString());
-            try {
-                if (targetChannel.getChannel().isActive()) {
-                    pool.returnObject(targetChannel);
+    private void acquireTargetChannel(TargetChannelPool pool, HttpRoute httpRoute, SourceHandler sourceHandler,
+            HttpRequest httpRequest, CarbonMessage carbonMessage, CarbonCallback carbonCallback) {
+        long acquireStart = System.nanoTime();
+        pool.acquire().addListener((FutureListener<TargetChannel>) future -> {
+            if (future.isSuccess()) {
+                LatencyListener latencyListener = LatencyListener.getInstance();
+                if (latencyListener != null) {
+                    latencyListener.targetChannelAcquired(httpRoute, System.nanoTime() - acquireStart);
                 }
-            } catch (Exception e) {
-                String msg = "Cannot return channel to pool";
-                log.error(msg, e);
-                throw new Exception(msg, e);
+                writeRequest(future.getNow(), httpRoute, sourceHandler, httpRequest, carbonMessage, carbonCallback);
+            } else {
+                MessagingException messagingException;
+                if (future.cause() instanceof MessagingException) {
+                    // Pending queue of the route is full or the acquire timed out, fail fast with the pool's error
+                    messagingException = (MessagingException) future.cause();
+                    log.warn(messagingException.getMessage());
+                } else {
+                    String msg = "Cannot borrow free channel from pool ";
+                    log.error(msg, future.cause());
+                    messagingException = new MessagingException(msg, future.cause(), 101500);
+                }
+                carbonMessage.setMessagingException(messagingException);
+                carbonCallback.done(carbonMessage);
             }
+        });
+    }
+
+    private void writeRequest(TargetChannel targetChannel, HttpRoute httpRoute, SourceHandler sourceHandler,
+            HttpRequest httpRequest, CarbonMessage carbonMessage, CarbonCallback carbonCallback) {
+        targetChannel.setHttpRoute(httpRoute);
+        if (sourceHandler != null) {
+            targetChannel.setCorrelatedSource(sourceHandler);
+        }
+        new ClientRequestWorker(httpRoute, sourceHandler, httpRequest, carbonMessage, carbonCallback,
+                targetChannel, this, executorService).writeWhenConnected();
+    }
 
-        } else if (poolManagementPolicy == PoolManagementPolicy.DEFAULT_POOLING) {
-            HttpRoute httpRoute = targetChannel.getHttpRoute();
-            GenericObjectPool pool = localConnectionMap.get(httpRoute.toString());
-            try {
-                if (targetChannel.getChannel().isActive()) {
-                    pool.returnObject(targetChannel);
+    /**
+     * @param senderConfiguration sender configuration which decides the number of client IO threads
+     * @return event loop group used for connections when Carbon transport HTTP Listeners are not used
+     */
+    public EventLoopGroup getClientEventLoopGroup(SenderConfiguration senderConfiguration) {
+        if (clientEventLoopGroup == null) {
+            synchronized (this) {
+                if (clientEventLoopGroup == null) {
+                    clientEventLoopGroup = NativeTransportConfiguration.getInstance().createEventLoopGroup(
+                            Integer.parseInt(senderConfiguration.getSenderWorkerThreads()));
+                    EventLoopMonitor.getInstance().monitor(EventLoopMonitor.SENDER_GROUP, clientEventLoopGroup);
                 }
-            } catch (Exception e) {
-                String msg = "Cannot return channel to pool";
-                log.error(msg, e);
-                throw new Exception(msg, e);
             }
         }
+        return clientEventLoopGroup;
+    }
+
+    /**
+     * @return executor which writes request content that is still being received
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    private Map<String, TargetChannelPool> getEventLoopPools(EventLoop eventLoop) {
+        return eventLoopPools.computeIfAbsent(eventLoop, loop -> new ConcurrentHashMap<>());
+    }
+
+    private TargetChannelPool getPool(TargetChannel targetChannel) {
+        if (targetChannel.getHttpRoute() == null) {
+            return null;
+        }
+        Map<String, TargetChannelPool> routePools = eventLoopPools.get(targetChannel.getChannel().eventLoop());
+        return routePools != null ? routePools.get(targetChannel.getHttpRoute().toString()) : null;
+    }
+
+    //Add connection to Pool back
+    public void returnChannel(TargetChannel targetChannel) {
+        TargetChannelPool pool = getPool(targetChannel);
+        if (pool != null) {
+            pool.release(targetChannel);
+        }
+    }
+
+    //Remove a connection which could not be used from its pool
+    public void invalidateTargetChannel(TargetChannel targetChannel) {
+        TargetChannelPool pool = getPool(targetChannel);
+        if (pool != null) {
+            pool.invalidate(targetChannel);
+        }
     }
 
     private boolean isRouteExists(HttpRoute httpRoute, SourceHandler srcHandler) {
@@ -248,21 +298,87 @@ public class ConnectionManager {
     }
 
     /**
-     * Provide specific target channel map.
+     * Provide the target channel pools of the given event loop.
      *
+     * @param eventLoop event loop of the incoming channel
      * @return Map contains pools for each route
      */
-    public Map<String, GenericObjectPool> getTargetChannelPool() {
+    public Map<String, TargetChannelPool> getTargetChannelPool(EventLoop eventLoop) {
         if (poolManagementPolicy == PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING) {
-            int ind = index.getAndIncrement() % poolCount;
-            return poolList.get(ind);
+            return getEventLoopPools(eventLoop);
         }
         return null;
     }
 
-    public void notifyChannelInactive() {
-        if (poolManagementPolicy == PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING) {
-            index.getAndDecrement();
+    /**
+     * @return policy the connections are currently managed with
+     */
+    public PoolManagementPolicy getPoolManagementPolicy() {
+        return poolManagementPolicy;
+    }
+
+    /**
+     * Take the statistics of every pool, one per route and event loop, and of the connections cached per inbound
+     * channel, one per route, and of the HTTP/2 connections, one per route. The statistics of a pool are those last
+     * published by its event loop.
+     *
+     * @return statistics of the pools, of the cached connections and of the HTTP/2 connections
+     */
+    public List<PoolStatistics> getPoolStatistics() {
+        List<PoolStatistics> poolStatistics = new ArrayList<>();
+        PoolManagementPolicy pooledPolicy = poolManagementPolicy;
+        if (pooledPolicy != PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING) {
+            // Otherwise the pools are those of the default pooling, e.g. for multiplexed inbound channels
+            pooledPolicy = PoolManagementPolicy.DEFAULT_POOLING;
+        }
+        for (Map<String, TargetChannelPool> routePools : eventLoopPools.values()) {
+            for (TargetChannelPool pool : routePools.values()) {
+                poolStatistics.add(pool.getStatistics(pooledPolicy));
+            }
+        }
+        for (Map.Entry<String, CachedChannelCounts> entry : cachedChannelCounts.entrySet()) {
+            poolStatistics.add(entry.getValue().getStatistics(entry.getKey()));
+        }
+        Http2ConnectionManager http2ConnectionManager = Http2ConnectionManager.getInstance();
+        if (http2ConnectionManager != null) {
+            for (Http2ConnectionPool pool : http2ConnectionManager.getRoutePools().values()) {
+                poolStatistics.add(getStatistics(pool));
+            }
+        }
+        return poolStatistics;
+    }
+
+    private static PoolStatistics getStatistics(Http2ConnectionPool pool) {
+        PoolStatistics statistics = new PoolStatistics(pool.getHttpRoute().toString(),
+                PoolManagementPolicy.HTTP2_MULTIPLEXING);
+        // Connections carrying streams are the active ones, the others are idle until they are evicted
+        statistics.idleConnections = pool.getIdleConnectionCount();
+        statistics.activeConnections = Math.max(0, pool.getConnectionCount() - statistics.idleConnections);
+        statistics.createdConnections = pool.getCreatedConnections();
+        statistics.closedConnections = pool.getClosedConnections();
+        statistics.evictedConnections = pool.getEvictedConnections();
+        statistics.acquires = pool.getAcquires();
+        return statistics;
+    }
+
+    /**
+     * Counts of the connections of a route cached per inbound channel.
+     */
+    private static class CachedChannelCounts {
+
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong closed = new AtomicLong();
+        private final AtomicLong acquires = new AtomicLong();
+
+        private PoolStatistics getStatistics(String route) {
+            PoolStatistics statistics = new PoolStatistics(route,
+                    PoolManagementPolicy.PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING);
+            statistics.createdConnections = created.get();
+            statistics.closedConnections = closed.get();
+            statistics.activeConnections = (int) Math.max(0, statistics.createdConnections
+                    - statistics.closedConnections);
+            statistics.acquires = acquires.get();
+            return statistics;
         }
     }
 
@@ -272,7 +388,9 @@ public class ConnectionManager {
     public enum PoolManagementPolicy {
         PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING,
         GLOBAL_ENDPOINT_CONNECTION_CACHING,
-        DEFAULT_POOLING
+        DEFAULT_POOLING,
+        // Connections of a route shared by all the requests, each of them carried as a stream
+        HTTP2_MULTIPLEXING
     }
 
 }
@@ -15,17 +15,20 @@
 
 package org.wso2.carbon.transport.http.netty.sender.channel.pool;
 
-import org.apache.commons.pool.impl.GenericObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.config.TransportProperty;
 
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Set;
 
 /**
  * A class which represents connection pool specific parameters.
+ * The limits per pool are the limits of a route. A route has a pool on each event loop it is used from. The active and
+ * pending limits are enforced for the route as a whole by {@link RouteConnectionLimits}, while each of the pools gets
+ * an equal share of the idle limits, see {@link #perEventLoop(int)}.
  */
 public class PoolConfiguration {
 
@@ -47,13 +50,25 @@ public class PoolConfiguration {
 
     private long minEvictableIdleTime = 5 * 60 * 1000L;
 
-    private byte exhaustedAction = GenericObjectPool.WHEN_EXHAUSTED_GROW;
+    private ExhaustedAction exhaustedAction = ExhaustedAction.GROW;
+
+    private int maxPendingAcquiresPerPool = 1000;
+
+    private long acquireTimeout = 30 * 1000L;
+
+    private int pipeliningDepth = 1;
 
     private int numberOfPools = 0;
 
     private int executorServiceThreads = 20;
 
-    private PoolConfiguration(Set<TransportProperty> transportPropertySet) {
+    /**
+     * Create a pool configuration of its own. Connection managers share the one created with
+     * {@link #createPoolConfiguration(Set)}.
+     *
+     * @param transportPropertySet transport properties
+     */
+    public PoolConfiguration(Set<TransportProperty> transportPropertySet) {
 
         if (transportPropertySet != null && !transportPropertySet.isEmpty()) {
             Iterator iterator = transportPropertySet.iterator();
@@ -71,6 +86,15 @@ public class PoolConfiguration {
                     minEvictableIdleTime = (Integer) transportProperty.getValue();
                 } else if (transportProperty.getName().equals(Constants.NO_THREADS_IN_EXECUTOR_SERVICE)) {
                     executorServiceThreads = (Integer) transportProperty.getValue();
+                } else if (transportProperty.getName().equals(Constants.POOL_EXHAUSTED_ACTION)) {
+                    exhaustedAction = ExhaustedAction.valueOf(
+                            String.valueOf(transportProperty.getValue()).toUpperCase(Locale.ENGLISH));
+                } else if (transportProperty.getName().equals(Constants.MAX_PENDING_ACQUIRES_PER_POOL)) {
+                    maxPendingAcquiresPerPool = (Integer) transportProperty.getValue();
+                } else if (transportProperty.getName().equals(Constants.POOL_ACQUIRE_TIMEOUT)) {
+                    acquireTimeout = (Integer) transportProperty.getValue();
+                } else if (transportProperty.getName().equals(Constants.CLIENT_PIPELINING_DEPTH)) {
+                    pipeliningDepth = Math.max(1, (Integer) transportProperty.getValue());
                 }
             }
         }
@@ -82,7 +106,26 @@ public class PoolConfiguration {
         logger.debug(Constants.MIN_EVICTION_IDLE_TIME + ":" + minEvictableIdleTime);
         logger.debug(Constants.NO_THREADS_IN_EXECUTOR_SERVICE + ":" + executorServiceThreads);
         logger.debug("Time between Evictions Runs" + ":" + timeBetweenEvictionRuns);
-        logger.debug("Pool exhausted action" + ":" + exhaustedAction);
+        logger.debug(Constants.POOL_EXHAUSTED_ACTION + ":" + exhaustedAction);
+        logger.debug(Constants.MAX_PENDING_ACQUIRES_PER_POOL + ":" + maxPendingAcquiresPerPool);
+        logger.debug(Constants.POOL_ACQUIRE_TIMEOUT + ":" + acquireTimeout);
+        logger.debug(Constants.CLIENT_PIPELINING_DEPTH + ":" + pipeliningDepth);
+    }
+
+    private PoolConfiguration(PoolConfiguration poolConfiguration) {
+        this.maxActivePerPool = poolConfiguration.maxActivePerPool;
+        this.minIdlePerPool = poolConfiguration.minIdlePerPool;
+        this.maxIdlePerPool = poolConfiguration.maxIdlePerPool;
+        this.testOnBorrow = poolConfiguration.testOnBorrow;
+        this.testWhileIdle = poolConfiguration.testWhileIdle;
+        this.timeBetweenEvictionRuns = poolConfiguration.timeBetweenEvictionRuns;
+        this.minEvictableIdleTime = poolConfiguration.minEvictableIdleTime;
+        this.exhaustedAction = poolConfiguration.exhaustedAction;
+        this.maxPendingAcquiresPerPool = poolConfiguration.maxPendingAcquiresPerPool;
+        this.acquireTimeout = poolConfiguration.acquireTimeout;
+        this.pipeliningDepth = poolConfiguration.pipeliningDepth;
+        this.numberOfPools = poolConfiguration.numberOfPools;
+        this.executorServiceThreads = poolConfiguration.executorServiceThreads;
     }
 
     public static PoolConfiguration getInstance() {
@@ -94,6 +137,29 @@ public class PoolConfiguration {
         poolConfiguration = new PoolConfiguration(transportPropertySet);
     }
 
+    /**
+     * Provide the configuration of the pool a route has on one event loop. The idle limits of the route are divided
+     * by the number of event loops, rounded up, so that every loop may keep an idle connection. The active and
+     * pending limits are left as they are, since they are shared by the pools of the route. Unlimited values stay
+     * unlimited.
+     *
+     * @param eventLoops number of event loops which keep a pool for a route
+     * @return configuration with the idle limits of one event loop
+     */
+    public PoolConfiguration perEventLoop(int eventLoops) {
+        if (eventLoops <= 1) {
+            return this;
+        }
+        PoolConfiguration eventLoopConfiguration = new PoolConfiguration(this);
+        eventLoopConfiguration.minIdlePerPool = share(minIdlePerPool, eventLoops);
+        eventLoopConfiguration.maxIdlePerPool = share(maxIdlePerPool, eventLoops);
+        return eventLoopConfiguration;
+    }
+
+    private static int share(int limit, int eventLoops) {
+        return limit > 0 ? (limit + eventLoops - 1) / eventLoops : limit;
+    }
+
     public int getMaxActivePerPool() {
         return maxActivePerPool;
     }
@@ -122,10 +188,28 @@ public class PoolConfiguration {
         return minEvictableIdleTime;
     }
 
-    public byte getExhaustedAction() {
+    public ExhaustedAction getExhaustedAction() {
         return exhaustedAction;
     }
 
+    public int getMaxPendingAcquiresPerPool() {
+        return maxPendingAcquiresPerPool;
+    }
+
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * Maximum number of requests written to a pooled connection before their responses are received.
+     * A depth of 1, the default, disables pipelining.
+     *
+     * @return pipelining depth
+     */
+    public int getPipeliningDepth() {
+        return pipeliningDepth;
+    }
+
     public int getNumberOfPools() {
         return numberOfPools;
     }
@@ -133,4 +217,13 @@ public class PoolConfiguration {
     public int getExecutorServiceThreads() {
         return executorServiceThreads;
     }
+
+    /**
+     * Actions taken when a pool has reached the maximum number of active connections.
+     */
+    public enum ExhaustedAction {
+        FAIL,
+        GROW,
+        WAIT
+    }
 }
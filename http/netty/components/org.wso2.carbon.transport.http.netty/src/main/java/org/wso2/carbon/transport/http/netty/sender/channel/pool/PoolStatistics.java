@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.channel.pool;
+
+/**
+ * State of the connections of a route kept by one pool, at the time the statistics were taken. Counts of events
+ * are cumulative since the pool was created.
+ */
+public class PoolStatistics {
+
+    private final String route;
+    private final ConnectionManager.PoolManagementPolicy poolManagementPolicy;
+
+    int activeConnections;
+    int idleConnections;
+    int pendingAcquires;
+    long createdConnections;
+    long closedConnections;
+    long evictedConnections;
+    long validationFailures;
+    long acquires;
+    long acquireFailures;
+    long waitedAcquires;
+    long acquireWaitNanos;
+
+    PoolStatistics(String route, ConnectionManager.PoolManagementPolicy poolManagementPolicy) {
+        this.route = route;
+        this.poolManagementPolicy = poolManagementPolicy;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public ConnectionManager.PoolManagementPolicy getPoolManagementPolicy() {
+        return poolManagementPolicy;
+    }
+
+    /**
+     * @return connections borrowed from the pool
+     */
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    /**
+     * @return acquisitions waiting for a connection of the exhausted pool
+     */
+    public int getPendingAcquires() {
+        return pendingAcquires;
+    }
+
+    public long getCreatedConnections() {
+        return createdConnections;
+    }
+
+    /**
+     * @return connections removed from the pool and closed, including the evicted ones
+     */
+    public long getClosedConnections() {
+        return closedConnections;
+    }
+
+    /**
+     * @return idle connections closed because they were idle for too long
+     */
+    public long getEvictedConnections() {
+        return evictedConnections;
+    }
+
+    /**
+     * @return connections found unusable when borrowed or while idle
+     */
+    public long getValidationFailures() {
+        return validationFailures;
+    }
+
+    public long getAcquires() {
+        return acquires;
+    }
+
+    /**
+     * @return acquisitions failed because the pool was exhausted, its pending queue was full or they timed out
+     */
+    public long getAcquireFailures() {
+        return acquireFailures;
+    }
+
+    /**
+     * @return acquisitions which had to wait for a connection to be released
+     */
+    public long getWaitedAcquires() {
+        return waitedAcquires;
+    }
+
+    /**
+     * @return total time the waiting acquisitions waited for a connection
+     */
+    public long getAcquireWaitNanos() {
+        return acquireWaitNanos;
+    }
+
+    /**
+     * Add the state and the counts of another pool of the same route, e.g. the pool of another event loop.
+     *
+     * @param statistics statistics of the other pool
+     */
+    public void add(PoolStatistics statistics) {
+        activeConnections += statistics.activeConnections;
+        idleConnections += statistics.idleConnections;
+        pendingAcquires += statistics.pendingAcquires;
+        createdConnections += statistics.createdConnections;
+        closedConnections += statistics.closedConnections;
+        evictedConnections += statistics.evictedConnections;
+        validationFailures += statistics.validationFailures;
+        acquires += statistics.acquires;
+        acquireFailures += statistics.acquireFailures;
+        waitedAcquires += statistics.waitedAcquires;
+        acquireWaitNanos += statistics.acquireWaitNanos;
+    }
+
+    @Override
+    public String toString() {
+        return route + " [" + poolManagementPolicy + "] active=" + activeConnections + ", idle=" + idleConnections
+                + ", pending=" + pendingAcquires + ", created=" + createdConnections + ", closed="
+                + closedConnections + ", evicted=" + evictedConnections + ", validationFailures="
+                + validationFailures + ", acquires=" + acquires + ", acquireFailures=" + acquireFailures
+                + ", waitedAcquires=" + waitedAcquires;
+    }
+}
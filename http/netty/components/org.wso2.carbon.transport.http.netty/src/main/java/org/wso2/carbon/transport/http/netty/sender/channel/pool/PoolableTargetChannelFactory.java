@@ -19,7 +19,6 @@ package org.wso2.carbon.transport.http.netty.sender.channel.pool;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
-import org.apache.commons.pool.PoolableObjectFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
@@ -28,9 +27,9 @@ import org.wso2.carbon.transport.http.netty.sender.channel.ChannelUtils;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
 
 /**
- * A class which creates a TargetChannel pool for each route.
+ * A class which creates, validates and destroys the TargetChannels of a route's pool.
  */
-public class PoolableTargetChannelFactory implements PoolableObjectFactory {
+public class PoolableTargetChannelFactory {
 
     private static final Logger log = LoggerFactory.getLogger(PoolableTargetChannelFactory.class);
 
@@ -48,42 +47,32 @@ public class PoolableTargetChannelFactory implements PoolableObjectFactory {
     }
 
 
-    @Override
-    public Object makeObject() throws Exception {
+    public TargetChannel makeObject() throws Exception {
         TargetChannel targetChannel = new TargetChannel();
+        // Connection is not awaited here, the borrower writes the request once the channel future completes
         ChannelFuture channelFuture = ChannelUtils.getNewChannelFuture(targetChannel,
                 eventLoopGroup, eventLoopClass, httpRoute, senderConfiguration);
-        Channel channel = ChannelUtils.openChannel(channelFuture, httpRoute);
+        Channel channel = channelFuture.channel();
         log.debug("Created channel: {}", channel);
+        targetChannel.setChannelFuture(channelFuture);
         targetChannel.setChannel(channel);
         return targetChannel;
     }
 
-    @Override
-    public void destroyObject(Object o) throws Exception {
-        log.debug("Destroying channel: {}", o);
-        if (((TargetChannel) o).getChannel().isOpen()) {
-            ((TargetChannel) o).getChannel().close();
+    public void destroyObject(TargetChannel targetChannel) {
+        log.debug("Destroying channel: {}", targetChannel);
+        if (targetChannel.getChannel().isOpen()) {
+            targetChannel.getChannel().close();
 
         }
     }
 
-    @Override
-    public boolean validateObject(Object o) {
-        boolean answer = ((TargetChannel) o).getChannel().isActive();
-        log.debug("Validating channel: {} -> {}", o, answer);
+    public boolean validateObject(TargetChannel targetChannel) {
+        ChannelFuture channelFuture = targetChannel.getChannelFuture();
+        // A channel which is still connecting is handed out, its borrower waits on the channel future
+        boolean answer = targetChannel.getChannel().isActive() || (channelFuture != null && !channelFuture.isDone());
+        log.debug("Validating channel: {} -> {}", targetChannel, answer);
         return answer;
     }
 
-    @Override
-    public void activateObject(Object o) throws Exception {
-
-    }
-
-    @Override
-    public void passivateObject(Object o) throws Exception {
-
-    }
-
-
 }
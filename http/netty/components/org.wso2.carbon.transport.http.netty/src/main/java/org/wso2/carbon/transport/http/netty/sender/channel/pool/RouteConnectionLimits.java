@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.channel.pool;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Active and pending limits of one route, shared by the pools the route has on the event loops. A connection takes a
+ * slot before it is opened and gives it back once it is closed, so the connections of a route never exceed the
+ * maximum however its requests are spread across the loops. The acquisitions waiting for a connection of the route
+ * are limited in the same way.
+ */
+public class RouteConnectionLimits {
+
+    private final int maxConnections;
+    private final int maxPendingAcquires;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger pendingAcquires = new AtomicInteger();
+    private final List<TargetChannelPool> pools = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param poolConfiguration configuration whose active and pending limits are those of the route
+     */
+    public RouteConnectionLimits(PoolConfiguration poolConfiguration) {
+        this.maxConnections = poolConfiguration.getMaxActivePerPool();
+        this.maxPendingAcquires = poolConfiguration.getMaxPendingAcquiresPerPool();
+    }
+
+    void addPool(TargetChannelPool pool) {
+        pools.add(pool);
+    }
+
+    void removePool(TargetChannelPool pool) {
+        pools.remove(pool);
+    }
+
+    /**
+     * Take a slot for a new connection of the route.
+     *
+     * @param grow true if the connection is opened even if the route is at its limit
+     * @return false if the route already has as many connections as it may have
+     */
+    boolean tryOpenConnection(boolean grow) {
+        return tryIncrement(connections, grow ? -1 : maxConnections);
+    }
+
+    /**
+     * Give back the slot of a connection which is closed, or could not be opened. Pools with acquisitions waiting
+     * for a connection are told that they may open one.
+     */
+    void connectionClosed() {
+        connections.decrementAndGet();
+        for (TargetChannelPool pool : pools) {
+            pool.connectionSlotFreed();
+        }
+    }
+
+    boolean tryAddPendingAcquire() {
+        return tryIncrement(pendingAcquires, maxPendingAcquires);
+    }
+
+    void pendingAcquireRemoved() {
+        pendingAcquires.decrementAndGet();
+    }
+
+    /**
+     * Close an idle connection the route has on another loop, so that a pool at the limit of the route can open a
+     * connection of its own.
+     *
+     * @param requester pool which is waiting for a connection
+     */
+    void reclaimIdleConnection(TargetChannelPool requester) {
+        for (TargetChannelPool pool : pools) {
+            if (pool != requester && pool.getIdleCount() > 0) {
+                pool.closeIdleConnection();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return connections of the route which are open or being opened
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * @return acquisitions waiting for a connection of the route
+     */
+    public int getPendingAcquireCount() {
+        return pendingAcquires.get();
+    }
+
+    // A negative limit is no limit
+    private static boolean tryIncrement(AtomicInteger counter, int limit) {
+        if (limit < 0) {
+            counter.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int count = counter.get();
+            if (count >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.channel.pool;
+
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.sender.TargetHandler;
+import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of TargetChannels for one route which is owned by a single event loop.
+ * All the pool state is accessed only from the owning event loop, hence no locks are needed. Calls made from other
+ * threads are handed over to the event loop. The connections and the pending acquisitions of the route are limited
+ * by {@link RouteConnectionLimits} shared with the pools the route has on the other loops, the idle connections are
+ * limited per pool. When the route is at its limit and the pool is configured to wait, acquisitions are queued and
+ * failed if no channel becomes available within the acquire timeout.
+ * The sizes of the pool and the counts of its events are published for {@link #getStatistics}, which may be called
+ * from any thread.
+ */
+public class TargetChannelPool {
+
+    private static final Logger log = LoggerFactory.getLogger(TargetChannelPool.class);
+
+    private final EventLoop eventLoop;
+    private final HttpRoute httpRoute;
+    private final PoolableTargetChannelFactory targetChannelFactory;
+    private final PoolConfiguration poolConfiguration;
+    private final RouteConnectionLimits routeLimits;
+
+    // Most recently used channels are kept at the head
+    private final Deque<IdleTargetChannel> idleChannels = new ArrayDeque<>();
+    private final Set<TargetChannel> borrowedChannels = new HashSet<>();
+    private final Deque<PendingAcquire> pendingAcquires = new ArrayDeque<>();
+
+    private ScheduledFuture<?> evictionTask;
+
+    // Written only by the owning event loop
+    private volatile int activeCount;
+    private volatile int idleCount;
+    private volatile int pendingCount;
+    private volatile long createdCount;
+    private volatile long closedCount;
+    private volatile long evictedCount;
+    private volatile long validationFailureCount;
+    private volatile long acquireCount;
+    private volatile long acquireFailureCount;
+    private volatile long waitedAcquireCount;
+    private volatile long acquireWaitNanos;
+
+    public TargetChannelPool(EventLoop eventLoop, HttpRoute httpRoute,
+            PoolableTargetChannelFactory targetChannelFactory, PoolConfiguration poolConfiguration) {
+        this(eventLoop, httpRoute, targetChannelFactory, poolConfiguration,
+                new RouteConnectionLimits(poolConfiguration));
+    }
+
+    /**
+     * Create the pool of a route on one event loop.
+     *
+     * @param eventLoop            event loop which owns the pool
+     * @param httpRoute            route of the pooled channels
+     * @param targetChannelFactory factory of the pooled channels
+     * @param poolConfiguration    configuration of the pool, whose idle limits are those of this pool
+     * @param routeLimits          active and pending limits shared with the other pools of the route
+     */
+    public TargetChannelPool(EventLoop eventLoop, HttpRoute httpRoute,
+            PoolableTargetChannelFactory targetChannelFactory, PoolConfiguration poolConfiguration,
+            RouteConnectionLimits routeLimits) {
+        this.eventLoop = eventLoop;
+        this.httpRoute = httpRoute;
+        this.targetChannelFactory = targetChannelFactory;
+        this.poolConfiguration = poolConfiguration;
+        this.routeLimits = routeLimits;
+        routeLimits.addPool(this);
+        long evictionInterval = poolConfiguration.getTimeBetweenEvictionRuns();
+        if (evictionInterval > 0) {
+            evictionTask = eventLoop.scheduleAtFixedRate(this::evict, evictionInterval, evictionInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Acquire a channel from the pool. A new channel is created if there is no idle channel, in which case
+     * the returned channel may still be connecting. If the pool is exhausted the future either fails or, when
+     * waiting is configured, completes once a channel is released. A MessagingException is the failure cause when
+     * the pending queue is full or the acquire timeout expires.
+     *
+     * @return Future which is completed on the owning event loop with the acquired TargetChannel
+     */
+    public Future<TargetChannel> acquire() {
+        Promise<TargetChannel> promise = eventLoop.newPromise();
+        if (eventLoop.inEventLoop()) {
+            acquire0(promise);
+        } else {
+            eventLoop.execute(() -> acquire0(promise));
+        }
+        return promise;
+    }
+
+    private void acquire0(Promise<TargetChannel> promise) {
+        try {
+            TargetChannel targetChannel = tryAcquire();
+            if (targetChannel != null) {
+                if (promise.trySuccess(targetChannel)) {
+                    acquireCount++;
+                } else {
+                    release0(targetChannel);
+                }
+                return;
+            }
+            if (poolConfiguration.getExhaustedAction() != PoolConfiguration.ExhaustedAction.WAIT) {
+                acquireFailureCount++;
+                promise.setFailure(new NoSuchElementException("Pool exhausted for route " + httpRoute));
+            } else if (!routeLimits.tryAddPendingAcquire()) {
+                acquireFailureCount++;
+                promise.setFailure(new MessagingException(
+                        "Too many requests waiting for a connection to route " + httpRoute, 101505));
+            } else {
+                pendingAcquires.offerLast(new PendingAcquire(promise));
+                updateCounts();
+                routeLimits.reclaimIdleConnection(this);
+                // A connection of the route may have been closed on another loop before the acquisition was queued
+                runPendingAcquires();
+            }
+        } catch (Exception e) {
+            acquireFailureCount++;
+            promise.tryFailure(e);
+        } finally {
+            updateCounts();
+        }
+    }
+
+    /**
+     * Borrow an idle channel or create a new one if the route is allowed to.
+     *
+     * @return borrowed channel or null if the route is at its limit
+     */
+    private TargetChannel tryAcquire() throws Exception {
+        IdleTargetChannel idleTargetChannel;
+        while ((idleTargetChannel = idleChannels.pollFirst()) != null) {
+            TargetChannel targetChannel = idleTargetChannel.targetChannel;
+            if (!poolConfiguration.isTestOnBorrow() || targetChannelFactory.validateObject(targetChannel)) {
+                borrowedChannels.add(targetChannel);
+                return targetChannel;
+            }
+            validationFailureCount++;
+            destroy(targetChannel);
+        }
+        TargetChannel targetChannel = createTargetChannel(
+                poolConfiguration.getExhaustedAction() == PoolConfiguration.ExhaustedAction.GROW);
+        if (targetChannel != null) {
+            borrowedChannels.add(targetChannel);
+        }
+        return targetChannel;
+    }
+
+    private void runPendingAcquires() {
+        while (!pendingAcquires.isEmpty()) {
+            TargetChannel targetChannel;
+            try {
+                targetChannel = tryAcquire();
+            } catch (Exception e) {
+                log.warn("Cannot create channel for pending request to route " + httpRoute, e);
+                PendingAcquire pendingAcquire = pendingAcquires.pollFirst();
+                routeLimits.pendingAcquireRemoved();
+                pendingAcquire.cancelTimeout();
+                acquireFailureCount++;
+                pendingAcquire.promise.tryFailure(e);
+                continue;
+            }
+            if (targetChannel == null) {
+                return;
+            }
+            PendingAcquire pendingAcquire = pendingAcquires.pollFirst();
+            routeLimits.pendingAcquireRemoved();
+            pendingAcquire.cancelTimeout();
+            if (pendingAcquire.promise.trySuccess(targetChannel)) {
+                acquireCount++;
+                waitedAcquireCount++;
+                acquireWaitNanos += System.nanoTime() - pendingAcquire.queuedAt;
+            } else {
+                // Acquisition was cancelled by the caller, keep the channel for the next one
+                borrowedChannels.remove(targetChannel);
+                idleChannels.offerFirst(new IdleTargetChannel(targetChannel, System.nanoTime()));
+            }
+        }
+    }
+
+    /**
+     * Return a borrowed channel to the pool. Returning a channel which is not borrowed has no effect.
+     * A channel which is writing a request, or which has as many requests in flight as the pipelining depth,
+     * stays borrowed until it is returned again.
+     *
+     * @param targetChannel channel to be returned
+     */
+    public void release(TargetChannel targetChannel) {
+        if (eventLoop.inEventLoop()) {
+            release0(targetChannel);
+        } else {
+            eventLoop.execute(() -> release0(targetChannel));
+        }
+    }
+
+    private void release0(TargetChannel targetChannel) {
+        if (!borrowedChannels.contains(targetChannel)) {
+            return;
+        }
+        boolean active = targetChannel.getChannel().isActive();
+        int inFlightRequests = getInFlightRequestCount(targetChannel);
+        if (active && (targetChannel.isWritingRequest()
+                || inFlightRequests >= poolConfiguration.getPipeliningDepth())) {
+            // Channel is released again once the request is written or a response is received
+            return;
+        }
+        borrowedChannels.remove(targetChannel);
+        if (!active) {
+            destroy(targetChannel);
+        } else if (!pendingAcquires.isEmpty() || inFlightRequests > 0
+                || idleChannels.size() < poolConfiguration.getMaxIdlePerPool()) {
+            idleChannels.offerFirst(new IdleTargetChannel(targetChannel, System.nanoTime()));
+        } else {
+            destroy(targetChannel);
+        }
+        runPendingAcquires();
+        updateCounts();
+    }
+
+    /**
+     * Remove a channel from the pool, whether it is borrowed or idle, and close it.
+     *
+     * @param targetChannel channel to be removed
+     */
+    public void invalidate(TargetChannel targetChannel) {
+        if (eventLoop.inEventLoop()) {
+            invalidate0(targetChannel);
+        } else {
+            eventLoop.execute(() -> invalidate0(targetChannel));
+        }
+    }
+
+    private void invalidate0(TargetChannel targetChannel) {
+        if (borrowedChannels.remove(targetChannel)) {
+            destroy(targetChannel);
+            // A slot was freed, so a waiting request can open a new channel
+            runPendingAcquires();
+        } else if (idleChannels.removeIf(idleTargetChannel -> idleTargetChannel.targetChannel == targetChannel)) {
+            destroy(targetChannel);
+        } else {
+            // Already removed from the pool, e.g. closed by the eviction
+            targetChannelFactory.destroyObject(targetChannel);
+        }
+        updateCounts();
+    }
+
+    /**
+     * @param grow true if the channel is created even if the route is at its limit
+     * @return created channel, or null if the route already has as many connections as it may have
+     */
+    private TargetChannel createTargetChannel(boolean grow) throws Exception {
+        if (!routeLimits.tryOpenConnection(grow)) {
+            return null;
+        }
+        TargetChannel targetChannel;
+        try {
+            targetChannel = targetChannelFactory.makeObject();
+        } catch (Exception e) {
+            routeLimits.connectionClosed();
+            throw e;
+        }
+        createdCount++;
+        targetChannel.getChannel().closeFuture().addListener(future -> invalidate(targetChannel));
+        return targetChannel;
+    }
+
+    private void destroy(TargetChannel targetChannel) {
+        closedCount++;
+        targetChannelFactory.destroyObject(targetChannel);
+        routeLimits.connectionClosed();
+    }
+
+    /**
+     * Called by the route limits from any thread once a connection of the route is closed, so that the acquisitions
+     * waiting on this loop can open a connection.
+     */
+    void connectionSlotFreed() {
+        if (pendingCount > 0) {
+            // Always run later, the slot may be freed while this pool is running its pending acquisitions
+            eventLoop.execute(() -> {
+                runPendingAcquires();
+                updateCounts();
+            });
+        }
+    }
+
+    /**
+     * Close the least recently used idle channel which has no request in flight, to make room for a connection of
+     * the route on another loop.
+     */
+    void closeIdleConnection() {
+        eventLoop.execute(() -> {
+            Iterator<IdleTargetChannel> iterator = idleChannels.descendingIterator();
+            while (iterator.hasNext()) {
+                IdleTargetChannel idleTargetChannel = iterator.next();
+                if (getInFlightRequestCount(idleTargetChannel.targetChannel) == 0) {
+                    iterator.remove();
+                    evictedCount++;
+                    destroy(idleTargetChannel.targetChannel);
+                    break;
+                }
+            }
+            updateCounts();
+        });
+    }
+
+    int getIdleCount() {
+        return idleCount;
+    }
+
+    private void updateCounts() {
+        activeCount = borrowedChannels.size();
+        idleCount = idleChannels.size();
+        pendingCount = pendingAcquires.size();
+    }
+
+    private int getInFlightRequestCount(TargetChannel targetChannel) {
+        TargetHandler targetHandler = targetChannel.getTargetHandler();
+        return targetHandler != null ? targetHandler.getInFlightRequestCount() : 0;
+    }
+
+    private void evict() {
+        long minEvictableIdleTime = TimeUnit.MILLISECONDS.toNanos(poolConfiguration.getMinEvictableIdleTime());
+        long now = System.nanoTime();
+        List<TargetChannel> evicted = new ArrayList<>();
+        // Least recently used channels are at the tail
+        Iterator<IdleTargetChannel> iterator = idleChannels.descendingIterator();
+        while (iterator.hasNext()) {
+            IdleTargetChannel idleTargetChannel = iterator.next();
+            if (getInFlightRequestCount(idleTargetChannel.targetChannel) > 0) {
+                // Closing the channel would fail the pipelined requests waiting for their responses
+                continue;
+            }
+            boolean expired = minEvictableIdleTime > 0 && now - idleTargetChannel.idleSince > minEvictableIdleTime
+                    && idleChannels.size() > poolConfiguration.getMinIdlePerPool();
+            boolean invalid = poolConfiguration.isTestWhileIdle()
+                    && !targetChannelFactory.validateObject(idleTargetChannel.targetChannel);
+            if (expired || invalid) {
+                iterator.remove();
+                evicted.add(idleTargetChannel.targetChannel);
+                if (invalid) {
+                    validationFailureCount++;
+                } else {
+                    evictedCount++;
+                }
+            }
+        }
+        // Closing a channel invalidates it through its close listener, so destroy only after iterating
+        evicted.forEach(this::destroy);
+        ensureMinIdle();
+        updateCounts();
+    }
+
+    private void ensureMinIdle() {
+        while (idleChannels.size() < poolConfiguration.getMinIdlePerPool()) {
+            try {
+                TargetChannel targetChannel = createTargetChannel(false);
+                if (targetChannel == null) {
+                    return;
+                }
+                idleChannels.offerLast(new IdleTargetChannel(targetChannel, System.nanoTime()));
+            } catch (Exception e) {
+                log.warn("Cannot create idle channel for route " + httpRoute, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stop the eviction task and close all the idle channels.
+     */
+    public void close() {
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(this::close);
+            return;
+        }
+        if (evictionTask != null) {
+            evictionTask.cancel(false);
+        }
+        routeLimits.removePool(this);
+        PendingAcquire pendingAcquire;
+        while ((pendingAcquire = pendingAcquires.pollFirst()) != null) {
+            routeLimits.pendingAcquireRemoved();
+            pendingAcquire.cancelTimeout();
+            acquireFailureCount++;
+            pendingAcquire.promise.tryFailure(new IllegalStateException("Pool of route " + httpRoute + " is closed"));
+        }
+        IdleTargetChannel idleTargetChannel;
+        while ((idleTargetChannel = idleChannels.pollFirst()) != null) {
+            destroy(idleTargetChannel.targetChannel);
+        }
+        updateCounts();
+    }
+
+    /**
+     * @param poolManagementPolicy policy the pool is used with
+     * @return sizes of the pool and counts of its events, as last published by the owning event loop
+     */
+    public PoolStatistics getStatistics(ConnectionManager.PoolManagementPolicy poolManagementPolicy) {
+        PoolStatistics statistics = new PoolStatistics(httpRoute.toString(), poolManagementPolicy);
+        statistics.activeConnections = activeCount;
+        statistics.idleConnections = idleCount;
+        statistics.pendingAcquires = pendingCount;
+        statistics.createdConnections = createdCount;
+        statistics.closedConnections = closedCount;
+        statistics.evictedConnections = evictedCount;
+        statistics.validationFailures = validationFailureCount;
+        statistics.acquires = acquireCount;
+        statistics.acquireFailures = acquireFailureCount;
+        statistics.waitedAcquires = waitedAcquireCount;
+        statistics.acquireWaitNanos = acquireWaitNanos;
+        return statistics;
+    }
+
+    public EventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    public HttpRoute getHttpRoute() {
+        return httpRoute;
+    }
+
+    /**
+     * Idle channel with the time it was returned to the pool.
+     */
+    private static class IdleTargetChannel {
+
+        private final TargetChannel targetChannel;
+        private final long idleSince;
+
+        IdleTargetChannel(TargetChannel targetChannel, long idleSince) {
+            this.targetChannel = targetChannel;
+            this.idleSince = idleSince;
+        }
+    }
+
+    /**
+     * Acquisition waiting for a channel to be released, failed when the acquire timeout expires.
+     */
+    private class PendingAcquire {
+
+        private final Promise<TargetChannel> promise;
+        private final long queuedAt = System.nanoTime();
+        private ScheduledFuture<?> timeoutFuture;
+
+        PendingAcquire(Promise<TargetChannel> promise) {
+            this.promise = promise;
+            long acquireTimeout = poolConfiguration.getAcquireTimeout();
+            if (acquireTimeout > 0) {
+                timeoutFuture = eventLoop.schedule(this::timeout, acquireTimeout, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void timeout() {
+            if (!pendingAcquires.remove(this)) {
+                return;
+            }
+            routeLimits.pendingAcquireRemoved();
+            acquireFailureCount++;
+            updateCounts();
+            promise.tryFailure(new MessagingException("Timeout while waiting for a connection to route "
+                    + httpRoute, 101506));
+        }
+
+        private void cancelTimeout() {
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+
+/**
+ * A class that responsible for initialize the pipeline of an HTTP/2 target connection.
+ * h2 is negotiated through ALPN when TLS is used, otherwise h2c is spoken with prior knowledge.
+ */
+public class Http2ClientInitializer extends ChannelInitializer<SocketChannel> {
+
+    private static final Logger log = LoggerFactory.getLogger(Http2ClientInitializer.class);
+
+    protected static final String HANDLER = "http2-handler";
+
+    private final Http2TargetChannel targetChannel;
+    private final SslContext sslContext;
+
+    public Http2ClientInitializer(Http2TargetChannel targetChannel, SslContext sslContext) {
+        this.targetChannel = targetChannel;
+        this.sslContext = sslContext;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel ch) throws Exception {
+        if (sslContext != null) {
+            log.debug("adding ssl handler with ALPN");
+            HttpRoute httpRoute = targetChannel.getHttpRoute();
+            ch.pipeline().addLast("ssl", sslContext.newHandler(ch.alloc(), httpRoute.getHost(), httpRoute.getPort()));
+            ch.pipeline().addLast("alpn", new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                @Override
+                protected void configurePipeline(ChannelHandlerContext ctx, String protocol) throws Exception {
+                    if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                        addHttp2Handler(ctx.pipeline());
+                    } else {
+                        targetChannel.handlerFailed(new IllegalStateException(
+                                "Endpoint " + httpRoute + " does not support HTTP/2, negotiated " + protocol));
+                        ctx.close();
+                    }
+                }
+
+                @Override
+                protected void handshakeFailure(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+                    targetChannel.handlerFailed(cause);
+                    super.handshakeFailure(ctx, cause);
+                }
+            });
+        } else {
+            addHttp2Handler(ch.pipeline());
+        }
+    }
+
+    private void addHttp2Handler(ChannelPipeline pipeline) {
+        pipeline.addLast(HANDLER, new Http2TargetHandlerBuilder(targetChannel).build());
+    }
+}
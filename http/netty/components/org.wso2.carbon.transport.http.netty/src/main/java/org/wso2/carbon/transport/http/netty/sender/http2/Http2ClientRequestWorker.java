@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Class which writes an outgoing request as a new stream of an HTTP/2 connection once HTTP/2 is established on it.
+ * The request is written from the event loop unless its content is still being received.
+ */
+public class Http2ClientRequestWorker implements FutureListener<Http2TargetHandler>, Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(Http2ClientRequestWorker.class);
+
+    private Http2TargetChannel targetChannel;
+    private HttpRequest httpRequest;
+    private CarbonMessage carbonMessage;
+    private CarbonCallback carbonCallback;
+    private ExecutorService executorService;
+    private Http2TargetHandler targetHandler;
+
+    public Http2ClientRequestWorker(Http2TargetChannel targetChannel, HttpRequest httpRequest,
+            CarbonMessage carbonMessage, CarbonCallback carbonCallback, ExecutorService executorService) {
+        this.targetChannel = targetChannel;
+        this.httpRequest = httpRequest;
+        this.carbonMessage = carbonMessage;
+        this.carbonCallback = carbonCallback;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Register this worker to write the request once HTTP/2 is established on the connection.
+     */
+    public void writeWhenReady() {
+        targetChannel.getHandlerFuture().addListener(this);
+    }
+
+    @Override
+    public void operationComplete(Future<Http2TargetHandler> future) throws Exception {
+        if (!future.isSuccess()) {
+            targetChannel.releaseStream();
+            String msg = "Error when creating HTTP/2 connection for route " + targetChannel.getHttpRoute();
+            log.error(msg);
+            MessagingException messagingException = new MessagingException(msg, future.cause(), 101503);
+            carbonMessage.setMessagingException(messagingException);
+            carbonCallback.done(carbonMessage);
+            return;
+        }
+        targetHandler = future.getNow();
+        if (targetChannel.getChannel().eventLoop().inEventLoop() && !carbonMessage.isEndOfMsgAdded()
+                && !(carbonMessage instanceof HTTPCarbonMessage)) {
+            // Reading the body of other messages waits for the rest of it, which must not happen on the IO thread
+            executorService.execute(this);
+        } else {
+            run();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().
+                    executeAtTargetRequestReceiving(carbonMessage);
+        }
+        Http2ClientStream stream = new Http2ClientStream(carbonCallback, carbonMessage);
+        if (carbonMessage.isEndOfMsgAdded() && carbonMessage.isEmpty()) {
+            targetHandler.writeHeaders(stream, httpRequest, true);
+        } else {
+            targetHandler.writeHeaders(stream, httpRequest, false);
+            writeContent(stream);
+            return;
+        }
+        requestSent();
+    }
+
+    private void requestSent() {
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().
+                    executeAtTargetRequestSending(carbonMessage);
+        }
+    }
+
+    private void writeContent(Http2ClientStream stream) {
+        if (carbonMessage instanceof HTTPCarbonMessage) {
+            HTTPCarbonMessage nettyCMsg = (HTTPCarbonMessage) carbonMessage;
+            nettyCMsg.setContentListener(httpContent -> {
+                if (httpContent instanceof LastHttpContent && nettyCMsg.getMessagingException() != null) {
+                    // The request was cut short by its client, the endpoint must not take the partial entity
+                    httpContent.release();
+                    targetHandler.cancelStream(stream, nettyCMsg.getMessagingException());
+                } else if (httpContent instanceof LastHttpContent) {
+                    targetHandler.writeData(stream, httpContent.content(), true);
+                    requestSent();
+                } else {
+                    targetHandler.writeData(stream, httpContent.content(), false);
+                }
+            });
+        } else if (carbonMessage instanceof DefaultCarbonMessage) {
+            DefaultCarbonMessage defaultCMsg = (DefaultCarbonMessage) carbonMessage;
+            while (true) {
+                ByteBuf content = Unpooled.wrappedBuffer(defaultCMsg.getMessageBody());
+                boolean endOfStream = defaultCMsg.isEndOfMsgAdded() && defaultCMsg.isEmpty();
+                targetHandler.writeData(stream, content, endOfStream);
+                if (endOfStream) {
+                    break;
+                }
+            }
+            requestSent();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+
+/**
+ * A request exchanged with the BE as a single stream of a multiplexed HTTP/2 connection.
+ * The stream id is assigned on the event loop of the connection when the request headers are written.
+ */
+public class Http2ClientStream {
+
+    private final CarbonCallback callback;
+    private final CarbonMessage incomingMsg;
+    private int streamId;
+    private HTTPCarbonMessage responseMsg;
+
+    public Http2ClientStream(CarbonCallback callback, CarbonMessage incomingMsg) {
+        this.callback = callback;
+        this.incomingMsg = incomingMsg;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public void setStreamId(int streamId) {
+        this.streamId = streamId;
+    }
+
+    public CarbonCallback getCallback() {
+        return callback;
+    }
+
+    public CarbonMessage getIncomingMsg() {
+        return incomingMsg;
+    }
+
+    public HTTPCarbonMessage getResponseMsg() {
+        return responseMsg;
+    }
+
+    public void setResponseMsg(HTTPCarbonMessage responseMsg) {
+        this.responseMsg = responseMsg;
+    }
+
+    /**
+     * @return true if the last frame of the response has been received
+     */
+    public boolean isResponseCompleted() {
+        return responseMsg != null && responseMsg.isEndOfMsgAdded();
+    }
+}
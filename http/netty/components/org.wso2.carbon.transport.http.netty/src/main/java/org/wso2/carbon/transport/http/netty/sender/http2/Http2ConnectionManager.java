@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.HttpRequest;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.NativeTransportConfiguration;
+import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolConfiguration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A class which manages the HTTP/2 connections of each route. Unlike HTTP/1.1 connections, which are pooled per
+ * event loop, HTTP/2 connections of a route are shared by all requests since each of them carries many streams.
+ */
+public class Http2ConnectionManager {
+
+    private static volatile Http2ConnectionManager http2ConnectionManager;
+
+    private final ConnectionManager connectionManager;
+
+    private final Map<String, Http2ConnectionPool> routePools = new ConcurrentHashMap<>();
+
+    private Http2ConnectionManager(ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    public static Http2ConnectionManager getInstance(ConnectionManager connectionManager) {
+        if (http2ConnectionManager == null) {
+            synchronized (Http2ConnectionManager.class) {
+                if (http2ConnectionManager == null) {
+                    http2ConnectionManager = new Http2ConnectionManager(connectionManager);
+                }
+            }
+        }
+        return http2ConnectionManager;
+    }
+
+    /**
+     * @return HTTP/2 connection manager, or null if no sender uses HTTP/2
+     */
+    public static Http2ConnectionManager getInstance() {
+        return http2ConnectionManager;
+    }
+
+    /**
+     * Write the request as a new stream of an HTTP/2 connection to the given route.
+     * The calling thread never waits for a connection to be established.
+     *
+     * @param httpRoute           BE address
+     * @param sourceHandler       Incoming channel
+     * @param senderConfiguration netty sender config
+     * @param httpRequest         http request
+     * @param carbonMessage       carbon message
+     * @param carbonCallback      carbon call back
+     */
+    public void send(HttpRoute httpRoute, SourceHandler sourceHandler, SenderConfiguration senderConfiguration,
+            HttpRequest httpRequest, CarbonMessage carbonMessage, CarbonCallback carbonCallback) {
+        Class cl;
+        EventLoop eventLoop;
+        if (sourceHandler != null) {
+            ChannelHandlerContext ctx = sourceHandler.getInboundChannelContext();
+            eventLoop = ctx.channel().eventLoop();
+            cl = ctx.channel().getClass();
+        } else {
+            cl = NativeTransportConfiguration.getInstance().getSocketChannelClass();
+            eventLoop = connectionManager.getClientEventLoopGroup(senderConfiguration).next();
+        }
+
+        Http2ConnectionPool pool = routePools.computeIfAbsent(httpRoute.toString(),
+                route -> new Http2ConnectionPool(httpRoute, senderConfiguration, PoolConfiguration.getInstance()));
+        Http2TargetChannel targetChannel = pool.acquire(eventLoop, cl);
+        new Http2ClientRequestWorker(targetChannel, httpRequest, carbonMessage, carbonCallback,
+                connectionManager.getExecutorService()).writeWhenReady();
+    }
+
+    /**
+     * Provide the HTTP/2 connection pools of each route.
+     *
+     * @return Map contains pools for each route
+     */
+    public Map<String, Http2ConnectionPool> getRoutePools() {
+        return routePools;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapTemplate;
+import org.wso2.carbon.transport.http.netty.sender.channel.ChannelUtils;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolConfiguration;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP/2 connections of one route. Requests are multiplexed as streams over the existing connections, and a new
+ * connection is opened only when every connection already carries as many streams as its peer allows. Like the
+ * HTTP/1.1 pools, connections idle for longer than the minimum evictable idle time are closed by the eviction runs.
+ */
+public class Http2ConnectionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(Http2ConnectionPool.class);
+
+    private final HttpRoute httpRoute;
+    private final BootstrapTemplate bootstrapTemplate;
+    private final PoolConfiguration poolConfiguration;
+    private final List<Http2TargetChannel> connections = new CopyOnWriteArrayList<>();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder closedCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder acquireCount = new LongAdder();
+
+    public Http2ConnectionPool(HttpRoute httpRoute, SenderConfiguration senderConfiguration,
+            PoolConfiguration poolConfiguration) {
+        this.httpRoute = httpRoute;
+        this.bootstrapTemplate = BootstrapTemplate.getInstance(senderConfiguration);
+        this.poolConfiguration = poolConfiguration;
+    }
+
+    /**
+     * Reserve a stream for a request on a connection of this route, opening a new connection if all of them
+     * are at their concurrent stream limit. The returned connection may still be connecting.
+     *
+     * @param eventLoop      event loop used if a new connection is opened
+     * @param eventLoopClass channel class matching the event loop
+     * @return connection which has a stream reserved for the request
+     */
+    public Http2TargetChannel acquire(EventLoop eventLoop, Class eventLoopClass) {
+        acquireCount.increment();
+        Http2TargetChannel targetChannel = reserveStream();
+        if (targetChannel != null) {
+            return targetChannel;
+        }
+        synchronized (this) {
+            // Another request may have opened a connection in the meantime
+            targetChannel = reserveStream();
+            if (targetChannel == null) {
+                targetChannel = createConnection(eventLoop, eventLoopClass);
+                targetChannel.tryReserveStream();
+                connections.add(targetChannel);
+            }
+        }
+        return targetChannel;
+    }
+
+    private Http2TargetChannel reserveStream() {
+        for (Http2TargetChannel targetChannel : connections) {
+            if (targetChannel.isUsable() && targetChannel.tryReserveStream()) {
+                return targetChannel;
+            }
+        }
+        return null;
+    }
+
+    private Http2TargetChannel createConnection(EventLoop eventLoop, Class eventLoopClass) {
+        // The SSL context is shared by the routes of the sender
+        SslContext sslContext = bootstrapTemplate.getHttp2SslContext();
+        Http2TargetChannel targetChannel = new Http2TargetChannel(httpRoute, sslContext != null ? "https" : "http",
+                eventLoop);
+        Bootstrap clientBootstrap = bootstrapTemplate.newBootstrap(eventLoop, eventLoopClass);
+        clientBootstrap.handler(new Http2ClientInitializer(targetChannel, sslContext));
+        if (log.isDebugEnabled()) {
+            log.debug("Creating new HTTP/2 connection to {}:{}", httpRoute.getHost(), httpRoute.getPort());
+        }
+
+        ChannelFuture channelFuture = clientBootstrap.connect(ChannelUtils.getRemoteAddress(httpRoute));
+        targetChannel.setChannel(channelFuture.channel());
+        createdCount.increment();
+        ScheduledFuture<?> evictionTask = scheduleEviction(targetChannel, eventLoop);
+        channelFuture.addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                targetChannel.handlerFailed(ChannelUtils.getConnectException(future, httpRoute));
+            }
+        });
+        channelFuture.channel().closeFuture().addListener(future -> {
+            if (evictionTask != null) {
+                evictionTask.cancel(false);
+            }
+            closedCount.increment();
+            connections.remove(targetChannel);
+            // Fails the requests waiting for the connection if it is closed before HTTP/2 is established
+            targetChannel.handlerFailed(new ClosedChannelException());
+        });
+        return targetChannel;
+    }
+
+    private ScheduledFuture<?> scheduleEviction(Http2TargetChannel targetChannel, EventLoop eventLoop) {
+        long evictionInterval = poolConfiguration.getTimeBetweenEvictionRuns();
+        long minEvictableIdleTime = TimeUnit.MILLISECONDS.toNanos(poolConfiguration.getMinEvictableIdleTime());
+        if (evictionInterval <= 0 || minEvictableIdleTime <= 0) {
+            return null;
+        }
+        return eventLoop.scheduleAtFixedRate(() -> {
+            if (targetChannel.closeIfIdle(minEvictableIdleTime)) {
+                evictedCount.increment();
+                if (log.isDebugEnabled()) {
+                    log.debug("Closed idle HTTP/2 connection to {}:{}", httpRoute.getHost(), httpRoute.getPort());
+                }
+            }
+        }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Close all the connections of this route.
+     */
+    public void close() {
+        connections.forEach(targetChannel -> targetChannel.getChannel().close());
+    }
+
+    public HttpRoute getHttpRoute() {
+        return httpRoute;
+    }
+
+    /**
+     * @return number of open connections of this route
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return number of open connections of this route which carry no stream
+     */
+    public int getIdleConnectionCount() {
+        int idleConnections = 0;
+        for (Http2TargetChannel targetChannel : connections) {
+            if (targetChannel.getActiveStreamCount() == 0) {
+                idleConnections++;
+            }
+        }
+        return idleConnections;
+    }
+
+    public long getCreatedConnections() {
+        return createdCount.sum();
+    }
+
+    public long getClosedConnections() {
+        return closedCount.sum();
+    }
+
+    /**
+     * @return connections closed because they carried no stream for too long
+     */
+    public long getEvictedConnections() {
+        return evictedCount.sum();
+    }
+
+    /**
+     * @return requests assigned a stream of this route
+     */
+    public long getAcquires() {
+        return acquireCount.sum();
+    }
+}
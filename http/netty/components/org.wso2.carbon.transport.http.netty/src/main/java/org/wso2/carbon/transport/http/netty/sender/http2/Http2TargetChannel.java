@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A multiplexed HTTP/2 connection to a BE which carries one stream per outgoing request.
+ * Streams are reserved before the connection is ready, so that concurrent requests never exceed the
+ * SETTINGS_MAX_CONCURRENT_STREAMS advertised by the peer. A connection which carries no stream for the idle timeout of
+ * its route is closed.
+ */
+public class Http2TargetChannel {
+
+    // Used until the peer advertises its own limit, RFC 7540 recommends peers to allow at least 100 streams
+    private static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+
+    private final HttpRoute httpRoute;
+    private final String scheme;
+    private final Promise<Http2TargetHandler> handlerPromise;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private volatile int maxConcurrentStreams = DEFAULT_MAX_CONCURRENT_STREAMS;
+    private volatile boolean acceptingStreams = true;
+    private volatile long idleSince = System.nanoTime();
+    private volatile Channel channel;
+
+    public Http2TargetChannel(HttpRoute httpRoute, String scheme, EventLoop eventLoop) {
+        this.httpRoute = httpRoute;
+        this.scheme = scheme;
+        this.handlerPromise = eventLoop.newPromise();
+    }
+
+    /**
+     * Reserve a stream of this connection for a new request.
+     *
+     * @return true if the connection can take one more concurrent stream
+     */
+    public boolean tryReserveStream() {
+        while (acceptingStreams) {
+            int streams = activeStreams.get();
+            if (streams >= maxConcurrentStreams) {
+                return false;
+            }
+            if (activeStreams.compareAndSet(streams, streams + 1)) {
+                if (!acceptingStreams) {
+                    // The connection is being closed as idle, it must not be assigned the request
+                    releaseStream();
+                    return false;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Release a stream reserved through {@link #tryReserveStream()} once it is closed.
+     */
+    public void releaseStream() {
+        if (activeStreams.decrementAndGet() == 0) {
+            idleSince = System.nanoTime();
+        }
+    }
+
+    public int getActiveStreamCount() {
+        return activeStreams.get();
+    }
+
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Apply the SETTINGS_MAX_CONCURRENT_STREAMS value received from the peer.
+     *
+     * @param maxConcurrentStreams maximum number of concurrent streams the peer accepts
+     */
+    public void setMaxConcurrentStreams(long maxConcurrentStreams) {
+        this.maxConcurrentStreams = (int) Math.min(maxConcurrentStreams, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stop new requests from being assigned to this connection, e.g. when the peer sent a GOAWAY frame or the
+     * stream ids are exhausted. Streams which are already open are completed as usual.
+     */
+    public void stopAcceptingStreams() {
+        acceptingStreams = false;
+    }
+
+    /**
+     * Close this connection if it has carried no stream for the given time. New requests are refused before the
+     * connection is closed, so that none of them is assigned a stream of the closing connection.
+     *
+     * @param idleTimeNanos time the connection may stay idle
+     * @return true if the connection was closed
+     */
+    public boolean closeIfIdle(long idleTimeNanos) {
+        if (channel == null || activeStreams.get() > 0 || System.nanoTime() - idleSince <= idleTimeNanos) {
+            return false;
+        }
+        acceptingStreams = false;
+        if (activeStreams.get() > 0) {
+            // A request reserved a stream meanwhile, the connection is closed once it is idle again
+            return false;
+        }
+        channel.close();
+        return true;
+    }
+
+    /**
+     * @return true if new requests can be assigned to this connection
+     */
+    public boolean isUsable() {
+        return acceptingStreams && (channel == null || channel.isOpen());
+    }
+
+    /**
+     * @return Future completed with the handler once HTTP/2 is established on this connection
+     */
+    public Future<Http2TargetHandler> getHandlerFuture() {
+        return handlerPromise;
+    }
+
+    void handlerReady(Http2TargetHandler handler) {
+        handlerPromise.trySuccess(handler);
+    }
+
+    void handlerFailed(Throwable cause) {
+        acceptingStreams = false;
+        handlerPromise.tryFailure(cause);
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public void setChannel(Channel channel) {
+        this.channel = channel;
+    }
+
+    public HttpRoute getHttpRoute() {
+        return httpRoute;
+    }
+
+    public String getScheme() {
+        return scheme;
+    }
+}
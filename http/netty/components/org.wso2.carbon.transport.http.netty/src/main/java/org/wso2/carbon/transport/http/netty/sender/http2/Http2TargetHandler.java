@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2ConnectionDecoder;
+import io.netty.handler.codec.http2.Http2ConnectionEncoder;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.messaging.Header;
+import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.common.ConnectionLifetime;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.Util;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class responsible for exchanging requests and responses with the BE over a multiplexed HTTP/2 connection.
+ * Each request is written as a new stream and its response is correlated through the stream id. Stream state is
+ * only accessed from the event loop of the connection, writes made from other threads are handed over to it.
+ */
+public class Http2TargetHandler extends Http2ConnectionHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(Http2TargetHandler.class);
+
+    private final Http2TargetChannel targetChannel;
+    // Streams of this connection whose response is not fully received yet
+    private final Map<Integer, Http2ClientStream> streams = new HashMap<>();
+    private ChannelHandlerContext ctx;
+
+    Http2TargetHandler(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder, Http2Settings initialSettings,
+            Http2TargetChannel targetChannel) {
+        super(decoder, encoder, initialSettings);
+        this.targetChannel = targetChannel;
+        decoder.frameListener(new ResponseListener());
+        connection().addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                streamClosed(stream.id());
+            }
+
+            @Override
+            public void onGoAwayReceived(int lastStreamId, long errorCode, ByteBuf debugData) {
+                // Streams above lastStreamId are closed by the codec and failed through onStreamClosed
+                targetChannel.stopAcceptingStreams();
+            }
+        });
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        super.handlerAdded(ctx);
+        if (ctx.channel().isActive()) {
+            // Added after the TLS handshake negotiated h2 through ALPN
+            connectionEstablished(ctx);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        super.channelActive(ctx);
+        connectionEstablished(ctx);
+    }
+
+    private void connectionEstablished(ChannelHandlerContext ctx) {
+        ConnectionLifetime.targetOpened(ctx.channel());
+        targetChannel.handlerReady(this);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        targetChannel.stopAcceptingStreams();
+        // Closes the remaining streams, which fails their requests through onStreamClosed
+        super.channelInactive(ctx);
+        ConnectionLifetime.targetClosed(ctx.channel(), targetChannel.getHttpRoute());
+        log.debug("HTTP/2 target channel closed.");
+    }
+
+    /**
+     * Open a new stream for the request and write its headers.
+     *
+     * @param stream      stream which correlates the request with its response
+     * @param httpRequest request to be written
+     * @param endOfStream true if the request has no content
+     */
+    public void writeHeaders(Http2ClientStream stream, HttpRequest httpRequest, boolean endOfStream) {
+        if (ctx.executor().inEventLoop()) {
+            writeHeaders0(stream, httpRequest, endOfStream);
+        } else {
+            ctx.executor().execute(() -> writeHeaders0(stream, httpRequest, endOfStream));
+        }
+    }
+
+    private void writeHeaders0(Http2ClientStream stream, HttpRequest httpRequest, boolean endOfStream) {
+        int streamId = connection().local().incrementAndGetNextStreamId();
+        if (streamId < 0) {
+            targetChannel.stopAcceptingStreams();
+            failStream(stream, "Stream ids exhausted for connection to ", new MessagingException(
+                    "Stream ids exhausted", 101507));
+            return;
+        }
+        Http2Headers headers;
+        try {
+            headers = Util.createHttp2Headers(httpRequest, targetChannel.getScheme());
+        } catch (Exception e) {
+            log.error("Cannot convert request headers for HTTP/2", e);
+            failStream(stream, "Invalid request headers for endpoint ", new MessagingException(e.getMessage(), e,
+                    101500));
+            return;
+        }
+        if (headers.authority() == null) {
+            HttpRoute httpRoute = targetChannel.getHttpRoute();
+            headers.authority(httpRoute.getHost() + ":" + httpRoute.getPort());
+        }
+        stream.setStreamId(streamId);
+        streams.put(streamId, stream);
+        ChannelPromise promise = ctx.newPromise();
+        encoder().writeHeaders(ctx, streamId, headers, 0, endOfStream, promise);
+        promise.addListener(future -> {
+            if (!future.isSuccess()) {
+                writeFailed(stream, future.cause());
+            }
+        });
+        ctx.flush();
+    }
+
+    /**
+     * Write request content to the stream. Content of a stream which has already been reset is discarded.
+     *
+     * @param stream      stream of the request
+     * @param data        content to be written, released once written
+     * @param endOfStream true if this is the last content of the request
+     */
+    public void writeData(Http2ClientStream stream, ByteBuf data, boolean endOfStream) {
+        if (ctx.executor().inEventLoop()) {
+            writeData0(stream, data, endOfStream);
+        } else {
+            ctx.executor().execute(() -> writeData0(stream, data, endOfStream));
+        }
+    }
+
+    private void writeData0(Http2ClientStream stream, ByteBuf data, boolean endOfStream) {
+        if (streams.get(stream.getStreamId()) != stream) {
+            data.release();
+            return;
+        }
+        ChannelPromise promise = ctx.newPromise();
+        encoder().writeData(ctx, stream.getStreamId(), data, 0, endOfStream, promise);
+        promise.addListener(future -> {
+            if (!future.isSuccess()) {
+                writeFailed(stream, future.cause());
+            }
+        });
+        ctx.flush();
+    }
+
+    /**
+     * Reset the stream of a request which cannot be completed, so that the endpoint does not act on a partial entity.
+     * The request is answered with an error response unless a response has already been received.
+     *
+     * @param stream             stream of the request
+     * @param messagingException cause of the cancellation
+     */
+    public void cancelStream(Http2ClientStream stream, MessagingException messagingException) {
+        if (ctx.executor().inEventLoop()) {
+            cancelStream0(stream, messagingException);
+        } else {
+            ctx.executor().execute(() -> cancelStream0(stream, messagingException));
+        }
+    }
+
+    private void cancelStream0(Http2ClientStream stream, MessagingException messagingException) {
+        if (streams.get(stream.getStreamId()) != stream) {
+            return;
+        }
+        resetStream(ctx, stream.getStreamId(), Http2Error.CANCEL.code(), ctx.newPromise());
+        ctx.flush();
+        // Resetting closes the stream, which answers the request through streamClosed unless it was never opened
+        if (streams.remove(stream.getStreamId()) == stream) {
+            failStream(stream, "Request aborted before it was sent to ", messagingException);
+        }
+    }
+
+    private void writeFailed(Http2ClientStream stream, Throwable cause) {
+        if (streams.remove(stream.getStreamId()) == stream && stream.getResponseMsg() == null) {
+            log.error("Cannot write request to " + targetChannel.getHttpRoute(), cause);
+            failStream(stream, "Cannot write request to endpoint ",
+                    new MessagingException("Request write failed", cause, 101507));
+        }
+    }
+
+    private void streamClosed(int streamId) {
+        Http2ClientStream stream = streams.remove(streamId);
+        if (stream == null) {
+            return;
+        }
+        HTTPCarbonMessage responseMsg = stream.getResponseMsg();
+        if (responseMsg == null) {
+            failStream(stream, "Stream closed by endpoint ", new MessagingException("Stream closed", 101507));
+        } else {
+            if (!responseMsg.isEndOfMsgAdded()) {
+                log.warn("Stream " + streamId + " to " + targetChannel.getHttpRoute()
+                        + " closed before the response was completed");
+                // Consumers of the partial response see why it ended early, as for HTTP/1.1 responses
+                responseMsg.setMessagingException(new MessagingException("Stream closed", 101507));
+                responseMsg.addHttpContent(LastHttpContent.EMPTY_LAST_CONTENT);
+                responseMsg.setEndOfMsgAdded(true);
+            }
+            targetChannel.releaseStream();
+        }
+    }
+
+    private void failStream(Http2ClientStream stream, String reason, MessagingException messagingException) {
+        targetChannel.releaseStream();
+        String payload = "<errorMessage>" + reason + targetChannel.getHttpRoute() + "</errorMessage>";
+        CarbonMessage errorMessage = Util.createErrorMessage(payload, stream.getCallback(), 502,
+                messagingException);
+        deliverResponse(errorMessage, stream);
+    }
+
+    private void deliverResponse(CarbonMessage response, Http2ClientStream stream) {
+        CarbonMessageProcessor carbonMessageProcessor = HTTPTransportContextHolder.getInstance()
+                .getMessageProcessor();
+        if (carbonMessageProcessor != null) {
+            try {
+                carbonMessageProcessor.receive(response, stream.getCallback());
+            } catch (Exception e) {
+                log.error("Error while handover response to MessageProcessor ", e);
+            }
+        } else {
+            log.error("Cannot correlate callback with request callback is null ");
+        }
+    }
+
+    private HTTPCarbonMessage setUpCarbonMessage(Http2ClientStream stream, HttpResponseStatus status,
+            Http2Headers headers) {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtTargetResponseReceiving(cMsg);
+        }
+        InetSocketAddress remoteAddress = (InetSocketAddress) ctx.channel().remoteAddress();
+        cMsg.setProperty(Constants.PORT, remoteAddress.getPort());
+        cMsg.setProperty(Constants.HOST, remoteAddress.getHostString());
+        cMsg.setProperty(org.wso2.carbon.messaging.Constants.DIRECTION,
+                org.wso2.carbon.messaging.Constants.DIRECTION_RESPONSE);
+        cMsg.setProperty(org.wso2.carbon.messaging.Constants.CALL_BACK, stream.getCallback());
+        cMsg.setProperty(Constants.HTTP_STATUS_CODE, status.code());
+
+        List<Header> responseHeaders = new LinkedList<>();
+        for (Map.Entry<CharSequence, CharSequence> header : headers) {
+            if (!Http2Headers.PseudoHeaderName.isPseudoHeader(header.getKey())) {
+                responseHeaders.add(new Header(header.getKey().toString(), header.getValue().toString()));
+            }
+        }
+        cMsg.setHeaders(responseHeaders);
+
+        //copy shared worker pool
+        cMsg.setProperty(Constants.EXECUTOR_WORKER_POOL,
+                stream.getIncomingMsg().getProperty(Constants.EXECUTOR_WORKER_POOL));
+        return cMsg;
+    }
+
+    private void addResponseContent(Http2ClientStream stream, HttpContent httpContent, boolean endOfStream) {
+        HTTPCarbonMessage responseMsg = stream.getResponseMsg();
+        responseMsg.addHttpContent(httpContent);
+        if (endOfStream) {
+            responseMsg.setEndOfMsgAdded(true);
+            if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+                HTTPTransportContextHolder.getInstance().getHandlerExecutor()
+                        .executeAtTargetResponseSending(responseMsg);
+            }
+        }
+    }
+
+    /**
+     * Listener which maps the frames received for each stream to the response of its request.
+     */
+    private class ResponseListener extends Http2FrameAdapter {
+
+        @Override
+        public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers, int padding,
+                boolean endOfStream) throws Http2Exception {
+            Http2ClientStream stream = streams.get(streamId);
+            if (stream == null) {
+                return;
+            }
+            if (stream.getResponseMsg() == null) {
+                HttpResponseStatus status = HttpConversionUtil.parseStatus(headers.status());
+                if (status.codeClass() == HttpStatusClass.INFORMATIONAL) {
+                    // Interim response, the final response follows in another HEADERS frame
+                    return;
+                }
+                stream.setResponseMsg(setUpCarbonMessage(stream, status, headers));
+                deliverResponse(stream.getResponseMsg(), stream);
+            }
+            if (endOfStream) {
+                // Response without content, or trailers of a response with content
+                addResponseContent(stream, LastHttpContent.EMPTY_LAST_CONTENT, true);
+            }
+        }
+
+        @Override
+        public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers,
+                int streamDependency, short weight, boolean exclusive, int padding, boolean endOfStream)
+                throws Http2Exception {
+            onHeadersRead(ctx, streamId, headers, padding, endOfStream);
+        }
+
+        @Override
+        public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding,
+                boolean endOfStream) throws Http2Exception {
+            // The window is given back as soon as the data is queued, response bodies are not throttled by how
+            // fast they are consumed
+            int processed = data.readableBytes() + padding;
+            Http2ClientStream stream = streams.get(streamId);
+            if (stream == null || stream.getResponseMsg() == null) {
+                return processed;
+            }
+            if (endOfStream) {
+                addResponseContent(stream, new DefaultLastHttpContent(data.retain()), true);
+            } else {
+                addResponseContent(stream, new DefaultHttpContent(data.retain()), false);
+            }
+            return processed;
+        }
+
+        @Override
+        public void onSettingsRead(ChannelHandlerContext ctx, Http2Settings settings) throws Http2Exception {
+            Long maxConcurrentStreams = settings.maxConcurrentStreams();
+            if (maxConcurrentStreams != null) {
+                targetChannel.setMaxConcurrentStreams(maxConcurrentStreams);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.handler.codec.http2.AbstractHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2ConnectionDecoder;
+import io.netty.handler.codec.http2.Http2ConnectionEncoder;
+import io.netty.handler.codec.http2.Http2Settings;
+
+/**
+ * Builds the client side {@link Http2TargetHandler} of a connection.
+ */
+public class Http2TargetHandlerBuilder
+        extends AbstractHttp2ConnectionHandlerBuilder<Http2TargetHandler, Http2TargetHandlerBuilder> {
+
+    private final Http2TargetChannel targetChannel;
+
+    public Http2TargetHandlerBuilder(Http2TargetChannel targetChannel) {
+        this.targetChannel = targetChannel;
+        server(false);
+    }
+
+    @Override
+    public Http2TargetHandler build() {
+        return super.build();
+    }
+
+    @Override
+    protected Http2TargetHandler build(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder,
+            Http2Settings initialSettings) {
+        return new Http2TargetHandler(decoder, encoder, initialSettings, targetChannel);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.benchmark;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.HTTPClientInitializer;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapTemplate;
+import org.wso2.carbon.transport.http.netty.sender.channel.ChannelUtils;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building the bootstrap and the pipeline initializer of a new connection from the configuration with
+ * cloning them from the template of the sender. The connection itself is not opened, so that only the setup cost,
+ * which is paid for every connection while a pool grows, is measured. Run with the main method, it is not part of
+ * the test suite.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectSetupBenchmark {
+
+    private final SenderConfiguration senderConfiguration = new SenderConfiguration("bench");
+
+    private final HttpRoute httpRoute = new HttpRoute("localhost", 8080);
+
+    private EventLoopGroup eventLoopGroup;
+
+    @Setup
+    public void setUp() {
+        BootstrapConfiguration.createBootStrapConfiguration(new HashSet<>());
+        eventLoopGroup = new NioEventLoopGroup(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        eventLoopGroup.shutdownGracefully();
+    }
+
+    @Benchmark
+    public Bootstrap bootstrapPerConnection() {
+        Bootstrap clientBootstrap = ChannelUtils.createBootstrap(eventLoopGroup, NioSocketChannel.class);
+        clientBootstrap.handler(new HTTPClientInitializer(senderConfiguration));
+        return clientBootstrap;
+    }
+
+    @Benchmark
+    public Bootstrap bootstrapTemplate() {
+        BootstrapTemplate bootstrapTemplate = BootstrapTemplate.getInstance(senderConfiguration);
+        Bootstrap clientBootstrap = bootstrapTemplate.newBootstrap(eventLoopGroup, NioSocketChannel.class);
+        clientBootstrap.handler(bootstrapTemplate.newClientInitializer(httpRoute));
+        return clientBootstrap;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConnectSetupBenchmark.class.getSimpleName())
+                .addProfiler("gc").build()).run();
+    }
+}
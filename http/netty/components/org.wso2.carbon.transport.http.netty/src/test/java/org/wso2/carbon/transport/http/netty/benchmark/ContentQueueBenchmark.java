@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.benchmark;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.transport.http.netty.message.ContentQueue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per chunk overhead of the content queue of HTTPCarbonMessage with the LinkedBlockingQueue it
+ * replaced. Each invocation creates the queue of one message, adds its chunks and reads them back, which is what a
+ * passthrough message does. Run with the main method, it is not part of the test suite.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentQueueBenchmark {
+
+    private static final int CHUNKS = 8;
+
+    private final HttpContent content = new DefaultHttpContent(Unpooled.EMPTY_BUFFER);
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public HttpContent linkedBlockingQueue() throws InterruptedException {
+        BlockingQueue<HttpContent> queue = new LinkedBlockingQueue<>();
+        for (int i = 1; i < CHUNKS; i++) {
+            queue.put(content);
+        }
+        queue.put(LastHttpContent.EMPTY_LAST_CONTENT);
+        HttpContent last = null;
+        for (int i = 0; i < CHUNKS; i++) {
+            last = queue.take();
+        }
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public HttpContent contentQueue() throws InterruptedException {
+        ContentQueue<HttpContent> queue = new ContentQueue<>();
+        for (int i = 1; i < CHUNKS; i++) {
+            queue.offer(content);
+        }
+        queue.offer(LastHttpContent.EMPTY_LAST_CONTENT);
+        HttpContent last = null;
+        for (int i = 0; i < CHUNKS; i++) {
+            last = queue.take();
+        }
+        return last;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ContentQueueBenchmark.class.getSimpleName())
+                .addProfiler("gc").build()).run();
+    }
+}
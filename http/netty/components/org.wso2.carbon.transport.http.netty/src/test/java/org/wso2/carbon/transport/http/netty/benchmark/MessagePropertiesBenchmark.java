@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.benchmark;
+
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.listener.RequestProperties;
+import org.wso2.carbon.transport.http.netty.listener.SourceConnection;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of setting up the properties of a request message one by one with providing them from the
+ * connection. Each invocation creates the message of one request and reads the properties the processor usually
+ * reads. Run with the main method and compare gc.alloc.rate.norm for the bytes allocated per request, it is not part
+ * of the test suite.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagePropertiesBenchmark {
+
+    private final ListenerConfiguration listenerConfiguration = new ListenerConfiguration("bench", "localhost", 8080);
+
+    private final InetSocketAddress localAddress = new InetSocketAddress("127.0.0.1", 8080);
+
+    private final InetSocketAddress remoteAddress = new InetSocketAddress("127.0.0.1", 52314);
+
+    private final SourceConnection sourceConnection = new SourceConnection(null, null, listenerConfiguration,
+            localAddress, remoteAddress);
+
+    private final HttpRequest httpRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+            "/services/echo");
+
+    @Benchmark
+    public Object eagerProperties() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setProperty(Constants.PORT, remoteAddress.getPort());
+        cMsg.setProperty(Constants.HOST, remoteAddress.getHostString());
+        cMsg.setProperty(Constants.TO, httpRequest.uri());
+        cMsg.setProperty(Constants.HTTP_VERSION, httpRequest.protocolVersion().text());
+        cMsg.setProperty(Constants.HTTP_METHOD, httpRequest.method().name());
+        cMsg.setProperty(org.wso2.carbon.messaging.Constants.LISTENER_PORT, localAddress.getPort());
+        cMsg.setProperty(org.wso2.carbon.messaging.Constants.LISTENER_INTERFACE_ID, listenerConfiguration.getId());
+        cMsg.setProperty(org.wso2.carbon.messaging.Constants.PROTOCOL, httpRequest.protocolVersion().protocolName());
+        cMsg.setProperty(Constants.IS_SECURED_CONNECTION, listenerConfiguration.getSslConfig() != null);
+        cMsg.setProperty(Constants.LOCAL_ADDRESS, localAddress);
+        cMsg.setProperty(Constants.LOCAL_NAME, localAddress.getHostString());
+        cMsg.setProperty(Constants.REMOTE_ADDRESS, remoteAddress);
+        cMsg.setProperty(Constants.REMOTE_HOST, remoteAddress.getHostString());
+        cMsg.setProperty(Constants.REMOTE_PORT, remoteAddress.getPort());
+        cMsg.setProperty(Constants.REQUEST_URL, httpRequest.uri());
+        cMsg.setProperty(Constants.CHANNEL_ID, listenerConfiguration.getId());
+        return readProperties(cMsg);
+    }
+
+    @Benchmark
+    public Object providedProperties() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setPropertyProvider(new RequestProperties(httpRequest, sourceConnection));
+        return readProperties(cMsg);
+    }
+
+    private Object readProperties(HTTPCarbonMessage cMsg) {
+        cMsg.getProperty(Constants.HTTP_METHOD);
+        cMsg.getProperty(Constants.TO);
+        return cMsg.getProperty(org.wso2.carbon.messaging.Constants.LISTENER_PORT);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MessagePropertiesBenchmark.class.getSimpleName())
+                .addProfiler("gc").build()).run();
+    }
+}
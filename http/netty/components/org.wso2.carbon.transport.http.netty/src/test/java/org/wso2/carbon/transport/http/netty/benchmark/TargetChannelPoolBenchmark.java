@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.benchmark;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.commons.pool.BasePoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolableTargetChannelFactory;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.TargetChannelPool;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares acquiring and releasing a pooled connection with the event loop owned TargetChannelPool and with the
+ * commons-pool GenericObjectPool it replaced. Each benchmark thread plays an event loop: it has a TargetChannelPool
+ * of its own, as every loop has one per route, while all threads share one GenericObjectPool, as they did before.
+ * Connections are embedded channels, so that only the pool is measured. Run with the main method, it is not part
+ * of the test suite.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class TargetChannelPoolBenchmark {
+
+    private static final HttpRoute HTTP_ROUTE = new HttpRoute("localhost", 8080);
+
+    @Benchmark
+    public TargetChannel targetChannelPool(EventLoopPool state) {
+        TargetChannel targetChannel = state.pool.acquire().getNow();
+        state.pool.release(targetChannel);
+        return targetChannel;
+    }
+
+    @Benchmark
+    public TargetChannel genericObjectPool(SharedPool state) throws Exception {
+        TargetChannel targetChannel = (TargetChannel) state.pool.borrowObject();
+        state.pool.returnObject(targetChannel);
+        return targetChannel;
+    }
+
+    /**
+     * Pool of one event loop. The loop of an embedded channel runs everything on the calling thread, which is what
+     * a pool sees when it is used from its own loop.
+     */
+    @State(Scope.Thread)
+    public static class EventLoopPool {
+
+        private EmbeddedChannel eventLoopChannel;
+
+        private TargetChannelPool pool;
+
+        @Setup
+        public void setUp() {
+            if (PoolConfiguration.getInstance() == null) {
+                PoolConfiguration.createPoolConfiguration(new HashSet<>());
+            }
+            eventLoopChannel = new EmbeddedChannel();
+            pool = new TargetChannelPool(eventLoopChannel.eventLoop(), HTTP_ROUTE,
+                    new EmbeddedTargetChannelFactory(), PoolConfiguration.getInstance());
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.close();
+            eventLoopChannel.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * Pool shared by all the threads, configured as the pools of the transport were.
+     */
+    @State(Scope.Benchmark)
+    public static class SharedPool {
+
+        private GenericObjectPool pool;
+
+        @Setup
+        public void setUp() {
+            if (PoolConfiguration.getInstance() == null) {
+                PoolConfiguration.createPoolConfiguration(new HashSet<>());
+            }
+            PoolConfiguration poolConfiguration = PoolConfiguration.getInstance();
+            GenericObjectPool.Config config = new GenericObjectPool.Config();
+            config.maxActive = poolConfiguration.getMaxActivePerPool();
+            config.maxIdle = poolConfiguration.getMaxIdlePerPool();
+            config.minIdle = poolConfiguration.getMinIdlePerPool();
+            config.testOnBorrow = poolConfiguration.isTestOnBorrow();
+            config.whenExhaustedAction = GenericObjectPool.WHEN_EXHAUSTED_GROW;
+            EmbeddedTargetChannelFactory targetChannelFactory = new EmbeddedTargetChannelFactory();
+            pool = new GenericObjectPool(new BasePoolableObjectFactory() {
+                @Override
+                public Object makeObject() throws Exception {
+                    return targetChannelFactory.makeObject();
+                }
+
+                @Override
+                public boolean validateObject(Object targetChannel) {
+                    return targetChannelFactory.validateObject((TargetChannel) targetChannel);
+                }
+            }, config);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            pool.close();
+        }
+    }
+
+    /**
+     * Creates connections which are active without connecting anywhere.
+     */
+    private static class EmbeddedTargetChannelFactory extends PoolableTargetChannelFactory {
+
+        EmbeddedTargetChannelFactory() {
+            super(HTTP_ROUTE, null, EmbeddedChannel.class, null);
+        }
+
+        @Override
+        public TargetChannel makeObject() {
+            EmbeddedChannel channel = new EmbeddedChannel();
+            TargetChannel targetChannel = new TargetChannel();
+            targetChannel.setChannel(channel);
+            targetChannel.setChannelFuture(channel.newSucceededFuture());
+            return targetChannel;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TargetChannelPoolBenchmark.class.getSimpleName())
+                .addProfiler("gc").build()).run();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.benchmark;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.ssl.SSLConfig;
+import org.wso2.carbon.transport.http.netty.common.ssl.SSLHandlerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the TLS handshakes per second and the echo throughput of connections to a local TLS backend, with the
+ * JDK and the OpenSSL provider. The sender connections resume the sessions of the route, as the sender does. The
+ * OpenSSL runs fall back to the JDK provider unless netty-tcnative is on the class path. Run with the main method,
+ * it is not part of the test suite.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TlsHandshakeBenchmark {
+
+    private static final String PASSWORD = "wso2carbon";
+
+    private static final int PAYLOAD_SIZE = 64 * 1024;
+
+    @Param({ "jdk", "openssl" })
+    private String sslProvider;
+
+    private EventLoopGroup serverGroup;
+
+    private EventLoopGroup clientGroup;
+
+    private Bootstrap clientBootstrap;
+
+    private Channel serverChannel;
+
+    private Channel clientChannel;
+
+    private EchoReceiver echoReceiver;
+
+    private ByteBuf payload;
+
+    private HttpRoute httpRoute;
+
+    @Setup
+    public void setUp() throws Exception {
+        SelfSignedCertificate certificate = new SelfSignedCertificate();
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("wso2carbon", certificate.key(), PASSWORD.toCharArray(),
+                new Certificate[] { certificate.cert() });
+        KeyStore trustStore = KeyStore.getInstance("JKS");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("wso2carbon", certificate.cert());
+
+        SSLConfig serverConfig = new SSLConfig(writeKeyStore(keyStore), PASSWORD);
+        serverConfig.setSslProvider(sslProvider);
+        SSLConfig clientConfig = new SSLConfig(null, null).setTrustStore(writeKeyStore(trustStore))
+                .setTrustStorePass(PASSWORD);
+        clientConfig.setClientMode(true);
+        clientConfig.setSslProvider(sslProvider);
+        SSLHandlerFactory serverFactory = SSLHandlerFactory.getInstance(serverConfig);
+        SSLHandlerFactory clientFactory = SSLHandlerFactory.getInstance(clientConfig);
+
+        serverGroup = new NioEventLoopGroup(1);
+        clientGroup = new NioEventLoopGroup(1);
+        serverChannel = new ServerBootstrap().group(serverGroup).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(serverFactory.create(), new Echo());
+                    }
+                }).bind("localhost", 0).sync().channel();
+        httpRoute = new HttpRoute("localhost", ((InetSocketAddress) serverChannel.localAddress()).getPort());
+
+        clientBootstrap = new Bootstrap().group(clientGroup).channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(clientFactory.create(ch.alloc(), httpRoute), new EchoReceiver());
+                    }
+                });
+        clientChannel = connect();
+        echoReceiver = clientChannel.pipeline().get(EchoReceiver.class);
+        payload = Unpooled.directBuffer(PAYLOAD_SIZE).writeZero(PAYLOAD_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        clientChannel.close().sync();
+        serverChannel.close().sync();
+        payload.release();
+        clientGroup.shutdownGracefully();
+        serverGroup.shutdownGracefully();
+    }
+
+    @Benchmark
+    public void handshake() throws Exception {
+        connect().close().sync();
+    }
+
+    @Benchmark
+    public void echo() throws Exception {
+        CountDownLatch latch = echoReceiver.expect(PAYLOAD_SIZE);
+        clientChannel.writeAndFlush(payload.retainedDuplicate());
+        latch.await();
+    }
+
+    private Channel connect() throws Exception {
+        Channel channel = clientBootstrap.connect(httpRoute.getHost(), httpRoute.getPort()).sync().channel();
+        channel.pipeline().get(SslHandler.class).handshakeFuture().sync();
+        return channel;
+    }
+
+    private static File writeKeyStore(KeyStore keyStore) throws Exception {
+        File file = File.createTempFile("keystore", ".jks");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            keyStore.store(outputStream, PASSWORD.toCharArray());
+        }
+        return file;
+    }
+
+    private static class Echo extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.writeAndFlush(msg);
+        }
+    }
+
+    private static class EchoReceiver extends ChannelInboundHandlerAdapter {
+
+        private volatile int remaining;
+
+        private volatile CountDownLatch latch;
+
+        private CountDownLatch expect(int bytes) {
+            remaining = bytes;
+            latch = new CountDownLatch(1);
+            return latch;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            remaining -= buf.readableBytes();
+            buf.release();
+            if (remaining <= 0) {
+                latch.countDown();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TlsHandshakeBenchmark.class.getSimpleName())
+                .addProfiler("gc").build()).run();
+    }
+}
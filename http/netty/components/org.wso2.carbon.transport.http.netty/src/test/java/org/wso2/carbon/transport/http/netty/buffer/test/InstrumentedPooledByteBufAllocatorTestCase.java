@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.buffer.test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.InstrumentedPooledByteBufAllocator;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the allocation statistics of the pooled buffer allocator
+ */
+public class InstrumentedPooledByteBufAllocatorTestCase {
+
+    @Test(groups = "bufferAllocator")
+    public void allocationsCountedTestCase() {
+        InstrumentedPooledByteBufAllocator allocator = new InstrumentedPooledByteBufAllocator(true, 1, 1,
+                PooledByteBufAllocator.defaultPageSize(), PooledByteBufAllocator.defaultMaxOrder());
+
+        ByteBuf heap = allocator.heapBuffer(1024);
+        ByteBuf direct = allocator.directBuffer(1024);
+        assertEquals(1, allocator.getHeapAllocations());
+        assertEquals(1, allocator.getDirectAllocations());
+        assertTrue(allocator.getActiveDirectBytes() > 0);
+        assertTrue(allocator.getPooledDirectMemory() >= allocator.getActiveDirectBytes());
+        heap.release();
+        direct.release();
+    }
+
+    @Test(groups = "bufferAllocator")
+    public void threadCacheHitsCountedTestCase() {
+        InstrumentedPooledByteBufAllocator allocator = new InstrumentedPooledByteBufAllocator(true, 1, 1,
+                PooledByteBufAllocator.defaultPageSize(), PooledByteBufAllocator.defaultMaxOrder());
+
+        for (int i = 0; i < 10; i++) {
+            allocator.directBuffer(256).release();
+        }
+        assertEquals(10, allocator.getDirectAllocations());
+        assertTrue(allocator.getArenaAllocations() < 10);
+        assertTrue(allocator.getThreadCacheHitRatio() > 0);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.transport.http.netty.connectionpool.test;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapTemplate;
+import org.wso2.carbon.transport.http.netty.util.TestUtil;
+
+import java.util.HashSet;
+
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+
+/**
+ * A test class for the connection setup templates of senders
+ */
+public class BootstrapTemplateTestCase {
+
+    private EventLoopGroup eventLoopGroup;
+
+    @BeforeClass(groups = "connectionPool")
+    public void setUp() {
+        if (BootstrapConfiguration.getInstance() == null) {
+            BootstrapConfiguration.createBootStrapConfiguration(new HashSet<>());
+        }
+        eventLoopGroup = new NioEventLoopGroup(1);
+    }
+
+    @Test(groups = "connectionPool")
+    public void templateSharedBySenderTestCase() {
+        SenderConfiguration senderConfiguration = new SenderConfiguration("template-test-sender");
+        BootstrapTemplate bootstrapTemplate = BootstrapTemplate.getInstance(senderConfiguration);
+        assertSame(bootstrapTemplate, BootstrapTemplate.getInstance(senderConfiguration));
+        assertNotSame(bootstrapTemplate, BootstrapTemplate.getInstance(new SenderConfiguration("other-sender")));
+        assertNull(bootstrapTemplate.getHttp2SslContext());
+    }
+
+    @Test(groups = "connectionPool")
+    public void bootstrapClonedPerConnectionTestCase() {
+        BootstrapTemplate bootstrapTemplate = BootstrapTemplate
+                .getInstance(new SenderConfiguration("template-test-sender"));
+        Bootstrap bootstrap = bootstrapTemplate.newBootstrap(eventLoopGroup, NioSocketChannel.class);
+        Bootstrap other = bootstrapTemplate.newBootstrap(eventLoopGroup, NioSocketChannel.class);
+        assertNotSame(bootstrap, other);
+        assertSame(eventLoopGroup, bootstrap.config().group());
+        HttpRoute httpRoute = new HttpRoute(TestUtil.TEST_HOST, TestUtil.TEST_SERVER_PORT);
+        assertNotSame(bootstrapTemplate.newClientInitializer(httpRoute),
+                bootstrapTemplate.newClientInitializer(httpRoute));
+    }
+
+    @AfterClass(groups = "connectionPool")
+    public void cleanUp() {
+        eventLoopGroup.shutdownGracefully();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.connectionpool.test;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolStatistics;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolableTargetChannelFactory;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.TargetChannelPool;
+import org.wso2.carbon.transport.http.netty.util.TestUtil;
+import org.wso2.carbon.transport.http.netty.util.server.HTTPServer;
+
+import java.util.HashSet;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the event loop owned target channel pool
+ */
+public class TargetChannelPoolTestCase {
+
+    private HTTPServer httpServer;
+
+    private EventLoopGroup eventLoopGroup;
+
+    private TargetChannelPool targetChannelPool;
+
+    @BeforeClass(groups = "connectionPool")
+    public void setUp() {
+        if (BootstrapConfiguration.getInstance() == null) {
+            BootstrapConfiguration.createBootStrapConfiguration(new HashSet<>());
+        }
+        if (PoolConfiguration.getInstance() == null) {
+            PoolConfiguration.createPoolConfiguration(new HashSet<>());
+        }
+        httpServer = TestUtil.startHTTPServer(TestUtil.TEST_SERVER_PORT);
+        eventLoopGroup = new NioEventLoopGroup(1);
+        targetChannelPool = newPool();
+    }
+
+    @Test(groups = "connectionPool")
+    public void releasedChannelIsReusedTestCase() throws Exception {
+        TargetChannel targetChannel = acquireConnected();
+        targetChannelPool.release(targetChannel);
+        TargetChannel reused = acquireConnected();
+        assertSame(targetChannel, reused);
+        targetChannelPool.release(reused);
+    }
+
+    @Test(groups = "connectionPool", dependsOnMethods = "releasedChannelIsReusedTestCase")
+    public void invalidatedChannelIsClosedTestCase() throws Exception {
+        TargetChannel targetChannel = acquireConnected();
+        targetChannelPool.invalidate(targetChannel);
+        targetChannel.getChannel().closeFuture().sync();
+        assertFalse(targetChannel.getChannel().isOpen());
+        TargetChannel newChannel = acquireConnected();
+        assertNotSame(targetChannel, newChannel);
+        targetChannelPool.release(newChannel);
+    }
+
+    @Test(groups = "connectionPool", dependsOnMethods = "invalidatedChannelIsClosedTestCase")
+    public void closedIdleChannelIsNotBorrowedTestCase() throws Exception {
+        TargetChannel targetChannel = acquireConnected();
+        targetChannelPool.release(targetChannel);
+        targetChannel.getChannel().close().sync();
+        TargetChannel newChannel = acquireConnected();
+        assertNotSame(targetChannel, newChannel);
+        targetChannelPool.release(newChannel);
+    }
+
+    @Test(groups = "connectionPool")
+    public void statisticsCountPoolEventsTestCase() throws Exception {
+        TargetChannelPool pool = newPool();
+        try {
+            PoolStatistics before = getStatistics(pool);
+
+            TargetChannel targetChannel = acquireConnected(pool);
+            pool.release(targetChannel);
+            TargetChannel reused = acquireConnected(pool);
+            pool.invalidate(reused);
+            reused.getChannel().closeFuture().sync();
+            pool.release(acquireConnected(pool));
+
+            PoolStatistics after = getStatistics(pool);
+            assertEquals(0, after.getActiveConnections());
+            assertEquals(1, after.getIdleConnections());
+            assertEquals(0, after.getPendingAcquires());
+            assertEquals(2, after.getCreatedConnections() - before.getCreatedConnections());
+            assertEquals(1, after.getClosedConnections() - before.getClosedConnections());
+            assertEquals(3, after.getAcquires() - before.getAcquires());
+            assertEquals(0, after.getAcquireFailures() - before.getAcquireFailures());
+            assertEquals(0, after.getValidationFailures() - before.getValidationFailures());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test(groups = "connectionPool")
+    public void routeLimitsSharedByEventLoopsTestCase() {
+        PoolConfiguration poolConfiguration = PoolConfiguration.getInstance();
+        assertSame(poolConfiguration, poolConfiguration.perEventLoop(1));
+        PoolConfiguration eventLoopConfiguration = poolConfiguration.perEventLoop(3);
+        // Rounded up, so that every loop can keep an idle connection
+        assertEquals((poolConfiguration.getMaxIdlePerPool() + 2) / 3, eventLoopConfiguration.getMaxIdlePerPool());
+        // Enforced for the route as a whole, see TargetChannelPoolWaitTestCase
+        assertEquals(poolConfiguration.getMaxActivePerPool(), eventLoopConfiguration.getMaxActivePerPool());
+        assertEquals(poolConfiguration.getMaxPendingAcquiresPerPool(),
+                eventLoopConfiguration.getMaxPendingAcquiresPerPool());
+    }
+
+    private TargetChannelPool newPool() {
+        EventLoop eventLoop = eventLoopGroup.next();
+        HttpRoute httpRoute = new HttpRoute(TestUtil.TEST_HOST, TestUtil.TEST_SERVER_PORT);
+        return new TargetChannelPool(eventLoop, httpRoute,
+                new PoolableTargetChannelFactory(httpRoute, eventLoop, NioSocketChannel.class,
+                        new SenderConfiguration("pool-test-sender")), PoolConfiguration.getInstance());
+    }
+
+    private PoolStatistics getStatistics(TargetChannelPool pool) throws Exception {
+        // Statistics are published by the event loop once it has handled the releases
+        pool.getEventLoop().submit(() -> { }).sync();
+        return pool.getStatistics(ConnectionManager.PoolManagementPolicy.DEFAULT_POOLING);
+    }
+
+    private TargetChannel acquireConnected() throws Exception {
+        return acquireConnected(targetChannelPool);
+    }
+
+    private TargetChannel acquireConnected(TargetChannelPool pool) throws Exception {
+        TargetChannel targetChannel = pool.acquire().sync().getNow();
+        targetChannel.getChannelFuture().sync();
+        assertTrue(targetChannel.getChannel().isActive());
+        return targetChannel;
+    }
+
+    @AfterClass(groups = "connectionPool")
+    public void cleanUp() {
+        targetChannelPool.close();
+        eventLoopGroup.shutdownGracefully();
+        httpServer.shutdown();
+    }
+
+}
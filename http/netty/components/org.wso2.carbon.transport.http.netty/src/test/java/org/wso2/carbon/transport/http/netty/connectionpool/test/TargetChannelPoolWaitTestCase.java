@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.connectionpool.test;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Future;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.config.TransportProperty;
+import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolStatistics;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolableTargetChannelFactory;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.RouteConnectionLimits;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.TargetChannelPool;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the requests waiting for a channel of an exhausted target channel pool
+ */
+public class TargetChannelPoolWaitTestCase {
+
+    private static final HttpRoute HTTP_ROUTE = new HttpRoute("localhost", 9000);
+
+    private EventLoop eventLoop;
+
+    @BeforeClass(groups = "connectionPool")
+    public void setUp() {
+        eventLoop = new DefaultEventLoop();
+    }
+
+    @Test(groups = "connectionPool")
+    public void waiterCompletedWhenChannelReleasedTestCase() throws Exception {
+        TargetChannelPool pool = newWaitingPool(0);
+        TargetChannel targetChannel = pool.acquire().sync().getNow();
+        Future<TargetChannel> waiter = pool.acquire();
+        assertFalse(waiter.await(100, TimeUnit.MILLISECONDS));
+
+        pool.release(targetChannel);
+        assertTrue(waiter.await(5, TimeUnit.SECONDS));
+        assertSame(targetChannel, waiter.getNow());
+        assertEquals(1, getStatistics(pool).getWaitedAcquires());
+        pool.close();
+    }
+
+    @Test(groups = "connectionPool")
+    public void waiterCompletedWhenChannelInvalidatedTestCase() throws Exception {
+        TargetChannelPool pool = newWaitingPool(0);
+        TargetChannel targetChannel = pool.acquire().sync().getNow();
+        Future<TargetChannel> waiter = pool.acquire();
+        assertFalse(waiter.await(100, TimeUnit.MILLISECONDS));
+
+        // The slot of the invalidated channel is used to open a new one
+        pool.invalidate(targetChannel);
+        assertTrue(waiter.await(5, TimeUnit.SECONDS));
+        assertTrue(waiter.isSuccess());
+        assertNotSame(targetChannel, waiter.getNow());
+        assertFalse(targetChannel.getChannel().isOpen());
+        pool.close();
+    }
+
+    @Test(groups = "connectionPool")
+    public void fullPendingQueueFailsAcquireTestCase() throws Exception {
+        TargetChannelPool pool = newWaitingPool(0);
+        pool.acquire().sync();
+        Future<TargetChannel> waiter = pool.acquire();
+        Future<TargetChannel> rejected = pool.acquire();
+
+        assertTrue(rejected.await(5, TimeUnit.SECONDS));
+        assertTrue(rejected.cause() instanceof MessagingException);
+        assertEquals(101505, ((MessagingException) rejected.cause()).getErrorCode());
+        assertFalse(waiter.isDone());
+        assertEquals(1, getStatistics(pool).getPendingAcquires());
+        assertEquals(1, getStatistics(pool).getAcquireFailures());
+        pool.close();
+    }
+
+    @Test(groups = "connectionPool")
+    public void acquireTimesOutTestCase() throws Exception {
+        TargetChannelPool pool = newWaitingPool(100);
+        pool.acquire().sync();
+        Future<TargetChannel> waiter = pool.acquire();
+
+        assertTrue(waiter.await(5, TimeUnit.SECONDS));
+        assertTrue(waiter.cause() instanceof MessagingException);
+        assertEquals(101506, ((MessagingException) waiter.cause()).getErrorCode());
+        assertEquals(0, getStatistics(pool).getPendingAcquires());
+        assertEquals(1, getStatistics(pool).getAcquireFailures());
+        pool.close();
+    }
+
+    @Test(groups = "connectionPool")
+    public void routeLimitSharedByEventLoopsTestCase() throws Exception {
+        PoolConfiguration poolConfiguration = newWaitingConfiguration(2, 100, 0);
+        RouteConnectionLimits routeLimits = new RouteConnectionLimits(poolConfiguration);
+        EventLoopGroup eventLoopGroup = new DefaultEventLoopGroup(4);
+        try {
+            List<TargetChannelPool> pools = new ArrayList<>();
+            List<Future<TargetChannel>> acquisitions = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                TargetChannelPool pool = new TargetChannelPool(eventLoopGroup.next(), HTTP_ROUTE,
+                        new EmbeddedTargetChannelFactory(), poolConfiguration, routeLimits);
+                pools.add(pool);
+                for (int j = 0; j < 3; j++) {
+                    acquisitions.add(pool.acquire());
+                }
+            }
+
+            // Every acquisition gets a channel in turn, never more than two of them at a time
+            int acquired = 0;
+            while (acquired < acquisitions.size()) {
+                TargetChannel targetChannel = null;
+                TargetChannelPool pool = null;
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (targetChannel == null) {
+                    assertTrue(System.nanoTime() - deadline < 0);
+                    assertTrue(routeLimits.getConnectionCount() <= 2);
+                    for (int i = 0; i < acquisitions.size(); i++) {
+                        Future<TargetChannel> acquisition = acquisitions.get(i);
+                        if (acquisition != null && acquisition.isDone()) {
+                            assertTrue(acquisition.isSuccess());
+                            targetChannel = acquisition.getNow();
+                            pool = pools.get(i / 3);
+                            acquisitions.set(i, null);
+                            break;
+                        }
+                    }
+                    Thread.sleep(1);
+                }
+                acquired++;
+                // Closing the channel gives its slot to an acquisition of any loop
+                pool.invalidate(targetChannel);
+            }
+            assertTrue(routeLimits.getConnectionCount() <= 2);
+            assertEquals(0, routeLimits.getPendingAcquireCount());
+            pools.forEach(TargetChannelPool::close);
+        } finally {
+            eventLoopGroup.shutdownGracefully();
+        }
+    }
+
+    @Test(groups = "connectionPool")
+    public void idleChannelOfOtherLoopReclaimedTestCase() throws Exception {
+        PoolConfiguration poolConfiguration = newWaitingConfiguration(1, 1, 0);
+        RouteConnectionLimits routeLimits = new RouteConnectionLimits(poolConfiguration);
+        EventLoop otherEventLoop = new DefaultEventLoop();
+        try {
+            TargetChannelPool pool = new TargetChannelPool(eventLoop, HTTP_ROUTE, new EmbeddedTargetChannelFactory(),
+                    poolConfiguration, routeLimits);
+            TargetChannelPool otherPool = new TargetChannelPool(otherEventLoop, HTTP_ROUTE,
+                    new EmbeddedTargetChannelFactory(), poolConfiguration, routeLimits);
+            TargetChannel idle = otherPool.acquire().sync().getNow();
+            otherPool.release(idle);
+
+            Future<TargetChannel> acquisition = pool.acquire();
+            assertTrue(acquisition.await(5, TimeUnit.SECONDS));
+            assertTrue(acquisition.isSuccess());
+            assertFalse(idle.getChannel().isOpen());
+            assertEquals(1, routeLimits.getConnectionCount());
+            pool.close();
+            otherPool.close();
+        } finally {
+            otherEventLoop.shutdownGracefully();
+        }
+    }
+
+    @AfterClass(groups = "connectionPool")
+    public void cleanUp() {
+        eventLoop.shutdownGracefully();
+    }
+
+    /**
+     * Pool of one active channel, which queues one request while it is exhausted.
+     */
+    private TargetChannelPool newWaitingPool(int acquireTimeout) {
+        return new TargetChannelPool(eventLoop, HTTP_ROUTE, new EmbeddedTargetChannelFactory(),
+                newWaitingConfiguration(1, 1, acquireTimeout));
+    }
+
+    private static PoolConfiguration newWaitingConfiguration(int maxActive, int maxPending, int acquireTimeout) {
+        Set<TransportProperty> properties = new HashSet<>();
+        properties.add(transportProperty(Constants.MAX_ACTIVE_CONNECTIONS_PER_POOL, maxActive));
+        properties.add(transportProperty(Constants.POOL_EXHAUSTED_ACTION, "wait"));
+        properties.add(transportProperty(Constants.MAX_PENDING_ACQUIRES_PER_POOL, maxPending));
+        properties.add(transportProperty(Constants.POOL_ACQUIRE_TIMEOUT, acquireTimeout));
+        return new PoolConfiguration(properties);
+    }
+
+    private PoolStatistics getStatistics(TargetChannelPool pool) throws InterruptedException {
+        // Statistics are published by the event loop once it has handled the previous calls
+        eventLoop.submit(() -> { }).sync();
+        return pool.getStatistics(ConnectionManager.PoolManagementPolicy.DEFAULT_POOLING);
+    }
+
+    private static TransportProperty transportProperty(String name, Object value) {
+        TransportProperty transportProperty = new TransportProperty();
+        transportProperty.setName(name);
+        transportProperty.setValue(value);
+        return transportProperty;
+    }
+
+    /**
+     * Creates channels which are active without connecting anywhere.
+     */
+    private static class EmbeddedTargetChannelFactory extends PoolableTargetChannelFactory {
+
+        EmbeddedTargetChannelFactory() {
+            super(HTTP_ROUTE, null, EmbeddedChannel.class, null);
+        }
+
+        @Override
+        public TargetChannel makeObject() {
+            EmbeddedChannel channel = new EmbeddedChannel();
+            TargetChannel targetChannel = new TargetChannel();
+            targetChannel.setChannel(channel);
+            targetChannel.setChannelFuture(channel.newSucceededFuture());
+            return targetChannel;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.transport.http.netty.dns.test;
+
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.config.TransportProperty;
+import org.wso2.carbon.transport.http.netty.sender.channel.DnsCache;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the DNS cache of the senders
+ */
+public class DnsCacheTestCase {
+
+    @Test(groups = "dnsCache")
+    public void hostsFileEntryUsedInsteadOfDnsTestCase() throws Exception {
+        File hostsFile = File.createTempFile("hosts", null);
+        hostsFile.deleteOnExit();
+        Files.write(hostsFile.toPath(), Collections.singletonList("10.1.2.3 backend.example.test  # test BE"),
+                StandardCharsets.ISO_8859_1);
+        TransportProperty hostsFileProperty = new TransportProperty();
+        hostsFileProperty.setName(Constants.CLIENT_DNS_HOSTS_FILE);
+        hostsFileProperty.setValue(hostsFile.getAbsolutePath());
+        Set<TransportProperty> properties = new HashSet<>();
+        properties.add(hostsFileProperty);
+        DnsCache dnsCache = new DnsCache(properties);
+
+        Promise<InetAddress> promise = resolve(dnsCache, "Backend.Example.test");
+        assertEquals("10.1.2.3", promise.getNow().getHostAddress());
+        assertEquals(0, dnsCache.getMisses());
+    }
+
+    @Test(groups = "dnsCache")
+    public void resolvedAddressCachedTestCase() throws Exception {
+        DnsCache dnsCache = new DnsCache(null);
+
+        InetAddress address = resolve(dnsCache, "localhost").getNow();
+        assertEquals(address, resolve(dnsCache, "localhost").getNow());
+        assertEquals(1, dnsCache.getMisses());
+        assertEquals(1, dnsCache.getHits());
+
+        resolve(dnsCache, "127.0.0.1");
+        assertEquals(1, dnsCache.getMisses());
+    }
+
+    @Test(groups = "dnsCache")
+    public void unresolvableHostCachedTestCase() throws Exception {
+        DnsCache dnsCache = new DnsCache(null);
+
+        assertTrue(resolve(dnsCache, "backend.invalid").cause() instanceof UnknownHostException);
+        assertTrue(resolve(dnsCache, "backend.invalid").cause() instanceof UnknownHostException);
+        assertEquals(1, dnsCache.getMisses());
+        assertEquals(1, dnsCache.getHits());
+        assertEquals(1, dnsCache.getFailures());
+    }
+
+    @Test(groups = "dnsCache")
+    public void expiredEntryRemovedTestCase() throws Exception {
+        Set<TransportProperty> properties = new HashSet<>();
+        properties.add(createProperty(Constants.CLIENT_DNS_CACHE_NEGATIVE_TTL, 0));
+        DnsCache dnsCache = new DnsCache(properties);
+
+        resolve(dnsCache, "backend.invalid");
+        assertEquals(1, dnsCache.getSize());
+        resolve(dnsCache, "localhost");
+        assertEquals(1, dnsCache.getSize());
+    }
+
+    @Test(groups = "dnsCache")
+    public void cacheSizeLimitedTestCase() throws Exception {
+        Set<TransportProperty> properties = new HashSet<>();
+        properties.add(createProperty(Constants.CLIENT_DNS_CACHE_MAX_ENTRIES, 1));
+        DnsCache dnsCache = new DnsCache(properties);
+
+        resolve(dnsCache, "localhost");
+        resolve(dnsCache, "backend.invalid");
+        assertEquals(1, dnsCache.getSize());
+        resolve(dnsCache, "backend.invalid");
+        assertEquals(1, dnsCache.getHits());
+    }
+
+    private TransportProperty createProperty(String name, Object value) {
+        TransportProperty property = new TransportProperty();
+        property.setName(name);
+        property.setValue(value);
+        return property;
+    }
+
+    private Promise<InetAddress> resolve(DnsCache dnsCache, String host) throws InterruptedException {
+        Promise<InetAddress> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        dnsCache.resolve(host, promise);
+        assertTrue(promise.await(10, TimeUnit.SECONDS));
+        return promise;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.eventloop.test;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.EventLoopHealth;
+import org.wso2.carbon.transport.http.netty.common.EventLoopMonitor;
+import org.wso2.carbon.transport.http.netty.config.TransportProperty;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the health measured by the event loop monitor
+ */
+public class EventLoopMonitorTestCase {
+
+    private static final String GROUP = "test";
+
+    private EventLoopGroup eventLoopGroup;
+
+    private EventLoopMonitor eventLoopMonitor;
+
+    @BeforeClass(groups = "eventLoopMonitor")
+    public void setUp() {
+        Set<TransportProperty> properties = new HashSet<>();
+        properties.add(transportProperty(Constants.EVENT_LOOP_MONITOR_INTERVAL, 20));
+        properties.add(transportProperty(Constants.EVENT_LOOP_BLOCKED_THRESHOLD, 100));
+        eventLoopMonitor = new EventLoopMonitor(properties);
+        eventLoopGroup = new NioEventLoopGroup(1);
+        eventLoopMonitor.monitor(GROUP, eventLoopGroup);
+    }
+
+    @Test(groups = "eventLoopMonitor")
+    public void blockedLoopDetectedTestCase() throws Exception {
+        List<EventLoopHealth> health = eventLoopMonitor.getEventLoopHealth(GROUP);
+        assertEquals(1, health.size());
+        EventLoopHealth loopHealth = health.get(0);
+
+        CountDownLatch release = new CountDownLatch(1);
+        eventLoopGroup.execute(() -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(waitFor(loopHealth::isBlocked));
+        assertTrue(loopHealth.getTaskDelayNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        release.countDown();
+        assertTrue(waitFor(() -> !loopHealth.isBlocked()));
+        assertEquals(1, loopHealth.getBlockedCount());
+        assertTrue(waitFor(() -> loopHealth.getScheduledTaskDelayNanos() < TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+
+    @Test(groups = "eventLoopMonitor", dependsOnMethods = "blockedLoopDetectedTestCase")
+    public void terminatedLoopNotMonitoredTestCase() throws Exception {
+        EventLoopGroup terminated = new NioEventLoopGroup(1);
+        eventLoopMonitor.monitor(GROUP, terminated);
+        assertEquals(2, eventLoopMonitor.getEventLoopHealth(GROUP).size());
+        terminated.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        assertTrue(waitFor(() -> eventLoopMonitor.getEventLoopHealth(GROUP).size() == 1));
+        assertFalse(eventLoopMonitor.getEventLoopHealth(GROUP).get(0).isBlocked());
+    }
+
+    @Test(groups = "eventLoopMonitor")
+    public void monitoringStoppedWithLastGroupTestCase() throws Exception {
+        EventLoopMonitor monitor = new EventLoopMonitor(null);
+        EventLoopGroup first = new NioEventLoopGroup(1);
+        EventLoopGroup second = new NioEventLoopGroup(1);
+        try {
+            monitor.monitor(GROUP, first);
+            monitor.monitor(GROUP, second);
+            assertTrue(monitor.isMonitoring());
+
+            monitor.unmonitor(first);
+            assertEquals(1, monitor.getEventLoopHealth(GROUP).size());
+            assertTrue(monitor.isMonitoring());
+
+            second.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+            assertTrue(waitFor(() -> !monitor.isMonitoring()));
+            assertTrue(monitor.getEventLoopHealth().isEmpty());
+
+            monitor.monitor(GROUP, first);
+            assertTrue(monitor.isMonitoring());
+        } finally {
+            monitor.close();
+            first.shutdownGracefully();
+            second.shutdownGracefully();
+        }
+        assertFalse(monitor.isMonitoring());
+    }
+
+    @Test(groups = "eventLoopMonitor")
+    public void scheduledProbeCancelledWhenUnmonitoredTestCase() throws Exception {
+        Set<TransportProperty> properties = new HashSet<>();
+        properties.add(transportProperty(Constants.EVENT_LOOP_MONITOR_INTERVAL, 20));
+        EventLoopMonitor monitor = new EventLoopMonitor(properties);
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            monitor.monitor(GROUP, group);
+            EventLoopHealth loopHealth = monitor.getEventLoopHealth(GROUP).get(0);
+            monitor.unmonitor(group);
+            // Lets a probe which was running when the group was unmonitored finish
+            group.submit(() -> { }).sync();
+            long scheduledTaskDelay = loopHealth.getScheduledTaskDelayNanos();
+
+            // A probe still scheduled would run late once the loop is blocked and report the delay
+            group.submit(() -> {
+                Thread.sleep(200);
+                return null;
+            }).sync();
+            group.submit(() -> { }).sync();
+            assertEquals(scheduledTaskDelay, loopHealth.getScheduledTaskDelayNanos());
+        } finally {
+            monitor.close();
+            group.shutdownGracefully();
+        }
+    }
+
+    @AfterClass(groups = "eventLoopMonitor")
+    public void cleanUp() {
+        eventLoopMonitor.close();
+        eventLoopGroup.shutdownGracefully();
+    }
+
+    private static boolean waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.isMet()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static TransportProperty transportProperty(String name, Object value) {
+        TransportProperty transportProperty = new TransportProperty();
+        transportProperty.setName(name);
+        transportProperty.setValue(value);
+        return transportProperty;
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.flowcontrol.test;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.ReadThrottle;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+import org.wso2.carbon.transport.http.netty.sender.TargetHandler;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
+
+import java.util.HashSet;
+
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for pausing reads of a channel while its content cannot be passed on
+ */
+public class ReadThrottleTestCase {
+
+    @Test(groups = "flowControl")
+    public void queuedContentPausesReadingTestCase() {
+        EmbeddedChannel source = new EmbeddedChannel();
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setReadThrottle(new ReadThrottle(source, 16, 8));
+
+        cMsg.addHttpContent(content(10));
+        assertTrue(source.config().isAutoRead());
+        cMsg.addHttpContent(content(10));
+        assertFalse(source.config().isAutoRead());
+
+        // Still above the low water mark
+        cMsg.getHttpContent().release();
+        assertFalse(source.config().isAutoRead());
+        cMsg.getHttpContent().release();
+        assertTrue(source.config().isAutoRead());
+        source.finish();
+    }
+
+    @Test(groups = "flowControl")
+    public void releasedMessageResumesReadingTestCase() {
+        EmbeddedChannel source = new EmbeddedChannel();
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setReadThrottle(new ReadThrottle(source, 16, 8));
+
+        cMsg.addHttpContent(content(32));
+        assertFalse(source.config().isAutoRead());
+        cMsg.releaseReadThrottle();
+        assertTrue(source.config().isAutoRead());
+        cMsg.addHttpContent(content(32));
+        assertTrue(source.config().isAutoRead());
+        cMsg.release();
+        source.finish();
+    }
+
+    @Test(groups = "flowControl")
+    public void unwritablePeerPausesReadingTestCase() {
+        EmbeddedChannel source = new EmbeddedChannel();
+        EmbeddedChannel target = new EmbeddedChannel();
+        target.config().setOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(8, 16));
+        ReadThrottle readThrottle = new ReadThrottle(source, 1024, 512);
+
+        target.write(Unpooled.wrappedBuffer(new byte[32]));
+        assertFalse(target.isWritable());
+        readThrottle.pauseUntilWritable(target);
+        assertFalse(source.config().isAutoRead());
+
+        target.flush();
+        assertTrue(target.isWritable());
+        ReadThrottle.writabilityChanged(target);
+        assertTrue(source.config().isAutoRead());
+        target.finishAndReleaseAll();
+        source.finish();
+    }
+
+    @Test(groups = "flowControl")
+    public void closedPeerResumesReadingTestCase() {
+        EmbeddedChannel source = new EmbeddedChannel();
+        EmbeddedChannel target = new EmbeddedChannel();
+        target.config().setOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(8, 16));
+        ReadThrottle readThrottle = new ReadThrottle(source, 1024, 512);
+
+        target.write(Unpooled.wrappedBuffer(new byte[32]));
+        readThrottle.pauseUntilWritable(target);
+        assertFalse(source.config().isAutoRead());
+
+        target.close();
+        ReadThrottle.writabilityChanged(target);
+        assertTrue(source.config().isAutoRead());
+        source.finish();
+    }
+
+    @Test(groups = "flowControl")
+    public void pausedReadingDoesNotTimeOutTestCase() throws Exception {
+        if (BootstrapConfiguration.getInstance() == null) {
+            BootstrapConfiguration.createBootStrapConfiguration(new HashSet<>());
+        }
+        ThrottledTargetHandler targetHandler = new ThrottledTargetHandler(1);
+        EmbeddedChannel target = new EmbeddedChannel(targetHandler);
+        targetHandler.getReadThrottle().queuedBytesChanged(Long.MAX_VALUE);
+        assertFalse(target.config().isAutoRead());
+
+        // Paused for longer than the socket timeout
+        Thread.sleep(1200);
+        target.runScheduledPendingTasks();
+        assertTrue(target.isOpen());
+
+        targetHandler.getReadThrottle().releaseQueuedContent();
+        Thread.sleep(1200);
+        target.runScheduledPendingTasks();
+        assertTrue(target.isOpen());
+
+        // The endpoint sends nothing for a full timeout once reading has resumed
+        Thread.sleep(1200);
+        target.runScheduledPendingTasks();
+        assertFalse(target.isOpen());
+        target.finish();
+    }
+
+    private static HttpContent content(int length) {
+        return new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[length]));
+    }
+
+    /**
+     * Target handler whose read throttle is paused and resumed by the test.
+     */
+    private static class ThrottledTargetHandler extends TargetHandler {
+
+        ThrottledTargetHandler(int timeoutSeconds) {
+            super(timeoutSeconds);
+        }
+
+        ReadThrottle getReadThrottle() {
+            return readThrottle;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.http2.test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.CharsetUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.messaging.TransportSender;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.listener.CarbonHTTPServerInitializer;
+import org.wso2.carbon.transport.http.netty.listener.http2.Http2SourceHandler;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the way HTTP/2 listeners set up their connections and map the streams to requests
+ */
+public class Http2SourceHandlerTestCase {
+
+    private static final String UPGRADE_REQUEST = "GET /upgrade HTTP/1.1\r\nHost: localhost\r\n"
+            + "Connection: Upgrade, HTTP2-Settings\r\nUpgrade: h2c\r\nHTTP2-Settings: AAMAAABkAAQAAP__\r\n\r\n";
+
+    private final RecordingMessageProcessor messageProcessor = new RecordingMessageProcessor();
+
+    private CarbonMessageProcessor previousMessageProcessor;
+    private ListenerConfiguration listenerConfiguration;
+    private CarbonHTTPServerInitializer initializer;
+
+    @BeforeClass(groups = "http2")
+    public void setUp() {
+        listenerConfiguration = new ListenerConfiguration("h2c-test", "localhost", 9090);
+        listenerConfiguration.setHttpVersion(Constants.HTTP_VERSION_2_0);
+        Map<String, ListenerConfiguration> listenerConfigurations = new HashMap<>();
+        listenerConfigurations.put(listenerConfiguration.getId(), listenerConfiguration);
+        initializer = new CarbonHTTPServerInitializer(listenerConfigurations);
+        initializer.setup(new HashSet<>());
+        previousMessageProcessor = HTTPTransportContextHolder.getInstance().getMessageProcessor();
+        HTTPTransportContextHolder.getInstance().setMessageProcessor(messageProcessor);
+    }
+
+    @Test(groups = "http2")
+    public void connectionPrefaceSelectsHttp2TestCase() throws Exception {
+        EmbeddedChannel channel = newSourceChannel();
+        ByteBuf preface = Unpooled.copiedBuffer("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n", CharsetUtil.US_ASCII);
+
+        // A partial preface is not enough to decide on the protocol
+        channel.writeInbound(preface.readRetainedSlice(10));
+        assertNotNull(channel.pipeline().get("h2c-detector"));
+        channel.writeInbound(preface);
+        assertNull(channel.pipeline().get("h2c-detector"));
+        assertNotNull(channel.pipeline().get(Http2SourceHandler.class));
+        assertNull(channel.pipeline().get("decoder"));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test(groups = "http2")
+    public void http1RequestSelectsHttp1PipelineTestCase() throws Exception {
+        EmbeddedChannel channel = newSourceChannel();
+        messageProcessor.clear();
+
+        channel.writeInbound(Unpooled.copiedBuffer("GET /http1 HTTP/1.1\r\nHost: localhost\r\n\r\n",
+                CharsetUtil.US_ASCII));
+        assertNull(channel.pipeline().get("h2c-detector"));
+        assertNotNull(channel.pipeline().get("decoder"));
+        assertNotNull(channel.pipeline().get("upgrade"));
+        assertNull(channel.pipeline().get(Http2SourceHandler.class));
+        assertEquals(1, messageProcessor.messages.size());
+        assertEquals("/http1", messageProcessor.messages.get(0).getProperty(Constants.TO));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test(groups = "http2")
+    public void upgradedRequestAnsweredOnFirstStreamTestCase() throws Exception {
+        EmbeddedChannel channel = newSourceChannel();
+        messageProcessor.clear();
+
+        channel.writeInbound(Unpooled.copiedBuffer(UPGRADE_REQUEST, CharsetUtil.US_ASCII));
+        ByteBuf upgradeResponse = channel.readOutbound();
+        assertTrue(upgradeResponse.toString(CharsetUtil.US_ASCII).startsWith("HTTP/1.1 101"));
+        upgradeResponse.release();
+        assertNotNull(channel.pipeline().get(Http2SourceHandler.class));
+        assertNull(channel.pipeline().get("decoder"));
+        assertNull(channel.pipeline().get("handler"));
+
+        // The request which carried the upgrade is published from the upgrade event
+        assertEquals(1, messageProcessor.messages.size());
+        HTTPCarbonMessage request = (HTTPCarbonMessage) messageProcessor.messages.get(0);
+        assertEquals("/upgrade", request.getProperty(Constants.TO));
+        assertEquals("GET", request.getProperty(Constants.HTTP_METHOD));
+        assertTrue(request.isEndOfMsgAdded());
+        assertNull(request.getMessagingException());
+        request.release();
+        channel.finishAndReleaseAll();
+    }
+
+    @Test(groups = "http2")
+    public void streamResetDuringUploadFailsRequestTestCase() throws Exception {
+        EmbeddedChannel channel = newSourceChannel();
+        Http2ConnectionHandler clientHandler = new Http2ConnectionHandlerBuilder().server(false)
+                .frameListener(new Http2FrameAdapter()).build();
+        EmbeddedChannel client = new EmbeddedChannel(clientHandler);
+        ChannelHandlerContext clientCtx = client.pipeline().context(clientHandler);
+        transfer(client, channel);
+        transfer(channel, client);
+        messageProcessor.clear();
+
+        Http2Headers headers = new DefaultHttp2Headers().method("POST").path("/upload").scheme("http")
+                .authority("localhost:9090");
+        clientHandler.encoder().writeHeaders(clientCtx, 3, headers, 0, false, clientCtx.newPromise());
+        clientHandler.encoder().writeData(clientCtx, 3, Unpooled.copiedBuffer("part", CharsetUtil.US_ASCII), 0,
+                false, clientCtx.newPromise());
+        client.flush();
+        transfer(client, channel);
+        assertEquals(1, messageProcessor.messages.size());
+        HTTPCarbonMessage request = (HTTPCarbonMessage) messageProcessor.messages.get(0);
+        assertFalse(request.isEndOfMsgAdded());
+
+        clientHandler.resetStream(clientCtx, 3, Http2Error.CANCEL.code(), clientCtx.newPromise());
+        client.flush();
+        transfer(client, channel);
+        // The partial request is ended with the exception, so that it is not sent on as a complete entity
+        assertTrue(request.isEndOfMsgAdded());
+        assertNotNull(request.getMessagingException());
+        assertEquals("Stream closed", request.getMessagingException().getMessage());
+        request.release();
+        client.finishAndReleaseAll();
+        channel.finishAndReleaseAll();
+    }
+
+    @AfterClass(groups = "http2")
+    public void cleanUp() {
+        HTTPTransportContextHolder.getInstance().setMessageProcessor(previousMessageProcessor);
+    }
+
+    private EmbeddedChannel newSourceChannel() throws Exception {
+        EmbeddedChannel channel = new SocketEmbeddedChannel();
+        initializer.configurePipeline(channel.pipeline(), listenerConfiguration, null);
+        return channel;
+    }
+
+    // Hand the bytes written by one end of the connection to the other
+    private static void transfer(EmbeddedChannel from, EmbeddedChannel to) {
+        ByteBuf buf;
+        while ((buf = from.readOutbound()) != null) {
+            to.writeInbound(buf);
+        }
+    }
+
+    /**
+     * Embedded channel with the socket addresses of a client connection, which the requests are created from.
+     */
+    private static class SocketEmbeddedChannel extends EmbeddedChannel {
+
+        private static final InetSocketAddress LOCAL_ADDRESS = InetSocketAddress.createUnresolved("localhost", 9090);
+        private static final InetSocketAddress REMOTE_ADDRESS = InetSocketAddress.createUnresolved("localhost",
+                50000);
+
+        @Override
+        protected SocketAddress localAddress0() {
+            return LOCAL_ADDRESS;
+        }
+
+        @Override
+        protected SocketAddress remoteAddress0() {
+            return REMOTE_ADDRESS;
+        }
+    }
+
+    private static class RecordingMessageProcessor implements CarbonMessageProcessor {
+
+        private final List<CarbonMessage> messages = new ArrayList<>();
+
+        void clear() {
+            messages.clear();
+        }
+
+        @Override
+        public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) throws Exception {
+            messages.add(carbonMessage);
+            return true;
+        }
+
+        @Override
+        public void setTransportSender(TransportSender transportSender) {
+        }
+
+        @Override
+        public String getId() {
+            return "http2-test-processor";
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.http2.test;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.sender.http2.Http2TargetChannel;
+import org.wso2.carbon.transport.http.netty.util.TestUtil;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the stream accounting of multiplexed HTTP/2 target connections
+ */
+public class Http2TargetChannelTestCase {
+
+    private EventLoop eventLoop;
+
+    @BeforeClass(groups = "http2")
+    public void setUp() {
+        eventLoop = new DefaultEventLoop();
+    }
+
+    @Test(groups = "http2")
+    public void streamsLimitedByPeerSettingTestCase() {
+        Http2TargetChannel targetChannel = newTargetChannel();
+        targetChannel.setMaxConcurrentStreams(2);
+        assertTrue(targetChannel.tryReserveStream());
+        assertTrue(targetChannel.tryReserveStream());
+        assertFalse(targetChannel.tryReserveStream());
+
+        targetChannel.releaseStream();
+        assertTrue(targetChannel.tryReserveStream());
+        assertEquals(2, targetChannel.getActiveStreamCount());
+    }
+
+    @Test(groups = "http2")
+    public void noStreamsAfterGoAwayTestCase() {
+        Http2TargetChannel targetChannel = newTargetChannel();
+        assertTrue(targetChannel.tryReserveStream());
+        targetChannel.stopAcceptingStreams();
+        assertFalse(targetChannel.isUsable());
+        assertFalse(targetChannel.tryReserveStream());
+    }
+
+    @Test(groups = "http2")
+    public void idleConnectionClosedTestCase() throws Exception {
+        Http2TargetChannel targetChannel = newTargetChannel();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        targetChannel.setChannel(channel);
+        assertTrue(targetChannel.tryReserveStream());
+        Thread.sleep(10);
+        assertFalse(targetChannel.closeIfIdle(TimeUnit.MILLISECONDS.toNanos(1)));
+        assertTrue(channel.isOpen());
+
+        targetChannel.releaseStream();
+        assertFalse(targetChannel.closeIfIdle(TimeUnit.SECONDS.toNanos(10)));
+        Thread.sleep(10);
+        assertTrue(targetChannel.closeIfIdle(TimeUnit.MILLISECONDS.toNanos(1)));
+        assertFalse(channel.isOpen());
+        assertFalse(targetChannel.isUsable());
+        assertFalse(targetChannel.tryReserveStream());
+        assertEquals(0, targetChannel.getActiveStreamCount());
+    }
+
+    private Http2TargetChannel newTargetChannel() {
+        return new Http2TargetChannel(new HttpRoute(TestUtil.TEST_HOST, TestUtil.TEST_SERVER_PORT), "http",
+                eventLoop);
+    }
+
+    @AfterClass(groups = "http2")
+    public void cleanUp() {
+        eventLoop.shutdownGracefully();
+    }
+}
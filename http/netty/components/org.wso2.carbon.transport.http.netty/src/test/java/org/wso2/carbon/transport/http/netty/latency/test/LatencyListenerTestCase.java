@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.latency.test;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.ConnectionLifetime;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.LatencyListener;
+import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.ChannelUtils;
+import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
+import org.wso2.carbon.transport.http.netty.util.TestUtil;
+import org.wso2.carbon.transport.http.netty.util.server.HTTPServer;
+
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the latencies reported to the latency listener
+ */
+public class LatencyListenerTestCase {
+
+    private HTTPServer httpServer;
+
+    private EventLoopGroup eventLoopGroup;
+
+    private final RecordingLatencyListener latencyListener = new RecordingLatencyListener();
+
+    @BeforeClass(groups = "latency")
+    public void setUp() {
+        if (BootstrapConfiguration.getInstance() == null) {
+            BootstrapConfiguration.createBootStrapConfiguration(new HashSet<>());
+        }
+        httpServer = TestUtil.startHTTPServer(TestUtil.TEST_SERVER_PORT);
+        eventLoopGroup = new NioEventLoopGroup(1);
+        LatencyListener.setInstance(latencyListener);
+    }
+
+    @Test(groups = "latency")
+    public void connectLatencyReportedForRouteTestCase() throws Exception {
+        HttpRoute httpRoute = new HttpRoute(TestUtil.TEST_HOST, TestUtil.TEST_SERVER_PORT);
+        ChannelFuture channelFuture = ChannelUtils.getNewChannelFuture(new TargetChannel(), eventLoopGroup,
+                NioSocketChannel.class, httpRoute, new SenderConfiguration("latency-test-sender"));
+        channelFuture.sync();
+        assertTrue(latencyListener.connected.await(5, TimeUnit.SECONDS));
+        assertEquals(httpRoute.toString(), latencyListener.connectedRoute.toString());
+        assertTrue(latencyListener.connectNanos > 0);
+        channelFuture.channel().close().sync();
+    }
+
+    @Test(groups = "latency")
+    public void upgradedConnectionClosedOnceTestCase() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ConnectionLifetime.sourceOpened(channel);
+        // The HTTP/2 handler of an upgraded connection reports it as opened again
+        ConnectionLifetime.sourceOpened(channel);
+        ConnectionLifetime.sourceClosed(channel, "latency-test-listener");
+        ConnectionLifetime.sourceClosed(channel, "latency-test-listener");
+        assertEquals(1, latencyListener.sourceConnectionsClosed.get());
+        assertEquals("latency-test-listener", latencyListener.closedListenerId);
+        channel.finishAndReleaseAll();
+    }
+
+    @AfterClass(groups = "latency")
+    public void cleanUp() {
+        LatencyListener.setInstance(null);
+        eventLoopGroup.shutdownGracefully();
+        httpServer.shutdown();
+    }
+
+    private static class RecordingLatencyListener implements LatencyListener {
+
+        private final CountDownLatch connected = new CountDownLatch(1);
+        private volatile HttpRoute connectedRoute;
+        private volatile long connectNanos;
+        private final AtomicInteger sourceConnectionsClosed = new AtomicInteger();
+        private volatile String closedListenerId;
+
+        @Override
+        public void targetConnected(HttpRoute httpRoute, long connectNanos) {
+            this.connectedRoute = httpRoute;
+            this.connectNanos = connectNanos;
+            connected.countDown();
+        }
+
+        @Override
+        public void targetChannelAcquired(HttpRoute httpRoute, long waitNanos) {
+        }
+
+        @Override
+        public void targetResponseStarted(HttpRoute httpRoute, int statusCode, long timeToFirstByteNanos) {
+        }
+
+        @Override
+        public void targetResponseCompleted(HttpRoute httpRoute, int statusCode, long streamingNanos) {
+        }
+
+        @Override
+        public void sourceResponseCompleted(String listenerId, int statusCode, long latencyNanos) {
+        }
+
+        @Override
+        public void targetConnectionClosed(HttpRoute httpRoute, long lifetimeNanos) {
+        }
+
+        @Override
+        public void sourceConnectionClosed(String listenerId, long lifetimeNanos) {
+            this.closedListenerId = listenerId;
+            sourceConnectionsClosed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.message.test;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.message.ContentQueue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the single producer, single consumer content queue of HTTP carbon messages
+ */
+public class ContentQueueTestCase {
+
+    @Test(groups = "contentQueue")
+    public void orderKeptWhenRingsGrowTestCase() {
+        ContentQueue<Integer> queue = new ContentQueue<>(4);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        assertEquals(10, queue.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        for (int i = 10; i < 20; i++) {
+            queue.offer(i);
+        }
+        for (int i = 5; i < 20; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(groups = "contentQueue")
+    public void takeWaitsForProducerTestCase() throws Exception {
+        int count = 100000;
+        ContentQueue<Integer> queue = new ContentQueue<>();
+        ExecutorService consumer = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> sum = consumer.submit(() -> {
+                long total = 0;
+                for (int i = 0; i < count; i++) {
+                    total += queue.take();
+                }
+                return total;
+            });
+            for (int i = 0; i < count; i++) {
+                queue.offer(i);
+            }
+            assertEquals((long) count * (count - 1) / 2, sum.get(30, TimeUnit.SECONDS).longValue());
+            assertTrue(queue.isEmpty());
+        } finally {
+            consumer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.message.test;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the non blocking content consumption of HTTP carbon messages
+ */
+public class HTTPCarbonMessageContentTestCase {
+
+    @Test(groups = "contentQueue")
+    public void contentDeliveredInOrderTestCase() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        HttpContent first = new DefaultHttpContent(Unpooled.copiedBuffer(new byte[]{1}));
+        HttpContent second = new DefaultHttpContent(Unpooled.copiedBuffer(new byte[]{2}));
+        HttpContent last = new DefaultLastHttpContent(Unpooled.copiedBuffer(new byte[]{3}));
+        List<HttpContent> received = new ArrayList<>();
+
+        cMsg.addHttpContent(first);
+        cMsg.setContentListener(received::add);
+        cMsg.addHttpContent(second);
+        cMsg.addHttpContent(last);
+        cMsg.setEndOfMsgAdded(true);
+
+        assertEquals(3, received.size());
+        assertSame(first, received.get(0));
+        assertSame(second, received.get(1));
+        assertSame(last, received.get(2));
+        received.forEach(HttpContent::release);
+    }
+
+    @Test(groups = "contentQueue")
+    public void lastContentAddedAtEndOfMessageTestCase() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        List<HttpContent> received = new ArrayList<>();
+        cMsg.setContentListener(received::add);
+        cMsg.addMessageBody(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        cMsg.setEndOfMsgAdded(true);
+
+        assertEquals(2, received.size());
+        assertFalse(received.get(0) instanceof LastHttpContent);
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, received.get(1));
+        received.get(0).release();
+    }
+
+    @Test(groups = "contentQueue")
+    public void addedBodyNotPooledTestCase() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        ByteBuffer body = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        cMsg.addMessageBody(body);
+        cMsg.setEndOfMsgAdded(true);
+
+        // Read back without releasing the message, which must not hold on to pooled memory
+        HttpContent httpContent = cMsg.getHttpContent();
+        assertEquals(0, body.position());
+        assertEquals(3, httpContent.content().readableBytes());
+        assertTrue(httpContent.content().hasArray());
+        assertFalse(httpContent.content().alloc() instanceof PooledByteBufAllocator);
+    }
+
+    @Test(groups = "contentQueue")
+    public void contentPassedThroughWithoutCopyTestCase() {
+        HTTPCarbonMessage source = new HTTPCarbonMessage();
+        HTTPCarbonMessage destination = new HTTPCarbonMessage();
+        HttpContent first = new DefaultHttpContent(Unpooled.directBuffer().writeBytes(new byte[]{1, 2}));
+        HttpContent last = new DefaultLastHttpContent(Unpooled.directBuffer().writeBytes(new byte[]{3}));
+        List<HttpContent> received = new ArrayList<>();
+
+        source.addHttpContent(first);
+        source.passThroughContent(destination);
+        destination.setContentListener(received::add);
+        assertFalse(destination.isEndOfMsgAdded());
+        source.addHttpContent(last);
+        source.setEndOfMsgAdded(true);
+
+        assertTrue(destination.isEndOfMsgAdded());
+        assertEquals(2, received.size());
+        assertSame(first, received.get(0));
+        assertSame(last, received.get(1));
+        assertEquals(1, first.refCnt());
+        assertEquals(1, last.refCnt());
+        received.forEach(HttpContent::release);
+    }
+
+    @Test(groups = "contentQueue")
+    public void completionListenerNotifiedTestCase() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        AtomicBoolean completed = new AtomicBoolean();
+        cMsg.setContentCompletionListener(() -> completed.set(true));
+        cMsg.addHttpContent(new DefaultHttpContent(Unpooled.copiedBuffer(new byte[]{1})));
+        assertFalse(completed.get());
+        cMsg.addHttpContent(LastHttpContent.EMPTY_LAST_CONTENT);
+        assertTrue(completed.get());
+        assertEquals(2, cMsg.getFullMessageBody().size());
+        cMsg.release();
+
+        AtomicBoolean lateListener = new AtomicBoolean();
+        cMsg.setContentCompletionListener(() -> lateListener.set(true));
+        assertTrue(lateListener.get());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.transport.http.netty.message.test;
+
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.Util;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+
+/**
+ * A test class for the headers of HTTP carbon messages created from Netty messages
+ */
+public class HTTPCarbonMessageHeaderTestCase {
+
+    @Test(groups = "messageHeaders")
+    public void nettyHeadersSentWithoutConversionTestCase() {
+        HttpRequest incomingRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        incomingRequest.headers().set("Content-Type", "text/plain");
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setHttpHeaders(incomingRequest.headers());
+
+        assertEquals("text/plain", cMsg.getHeader("content-type"));
+        cMsg.setHeader("X-Forwarded-For", "127.0.0.1");
+
+        HttpRequest outgoingRequest = Util.createHttpRequest(cMsg);
+        assertSame(incomingRequest.headers(), outgoingRequest.headers());
+        assertEquals("127.0.0.1", outgoingRequest.headers().get("X-Forwarded-For"));
+    }
+
+    @Test(groups = "messageHeaders")
+    public void sharedHeadersCopiedWhenChangedTestCase() {
+        HttpRequest incomingRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        incomingRequest.headers().set("Content-Type", "text/plain");
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setHttpHeaders(incomingRequest.headers());
+        HttpHeaders sentHeaders = Util.createHttpRequest(cMsg).headers();
+
+        cMsg.setHeader("Content-Type", "application/json");
+        assertEquals("application/json", cMsg.getHeader("Content-Type"));
+        assertEquals("text/plain", sentHeaders.get("Content-Type"));
+    }
+
+    @Test(groups = "messageHeaders")
+    public void http2SchemeNotAddedToSharedHeadersTestCase() {
+        HttpRequest incomingRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        incomingRequest.headers().set("Content-Type", "text/plain");
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setHttpHeaders(incomingRequest.headers());
+
+        Http2Headers http2Headers = Util.createHttp2Headers(Util.createHttpRequest(cMsg), "https");
+        assertEquals("https", http2Headers.scheme().toString());
+        assertNull(cMsg.getHeader(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text().toString()));
+        assertNull(incomingRequest.headers().get(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text()));
+    }
+
+    @Test(groups = "messageHeaders")
+    public void nettyHeadersConvertedWhenRequestedTestCase() {
+        HttpRequest incomingRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+        incomingRequest.headers().set("Content-Type", "text/plain");
+        incomingRequest.headers().set(Constants.HTTP_CONTENT_LENGTH, "0");
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setHttpHeaders(incomingRequest.headers());
+
+        assertEquals(2, cMsg.getHeaders().getAll().size());
+        cMsg.getHeaders().remove(Constants.HTTP_CONTENT_LENGTH);
+
+        HttpRequest outgoingRequest = Util.createHttpRequest(cMsg);
+        assertEquals("text/plain", outgoingRequest.headers().get("Content-Type"));
+        assertNull(outgoingRequest.headers().get(Constants.HTTP_CONTENT_LENGTH));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.message.test;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+import org.wso2.carbon.transport.http.netty.message.LazyProperty;
+import org.wso2.carbon.transport.http.netty.message.PropertyProvider;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+/**
+ * A test class for the properties of HTTP carbon messages
+ */
+public class HTTPCarbonMessagePropertyTestCase {
+
+    @Test(groups = "messageProperties")
+    public void lazyPropertyComputedOnceWhenReadTestCase() {
+        AtomicInteger computed = new AtomicInteger();
+        LazyProperty hostName = () -> {
+            computed.incrementAndGet();
+            return "backend.example.com";
+        };
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setProperty("REMOTE_HOST", hostName);
+        assertEquals(0, computed.get());
+
+        assertEquals("backend.example.com", cMsg.getProperty("REMOTE_HOST"));
+        assertEquals("backend.example.com", cMsg.getProperty("REMOTE_HOST"));
+        assertEquals(1, computed.get());
+    }
+
+    @Test(groups = "messageProperties")
+    public void lazyPropertyComputedWhenPropertiesReadTestCase() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setProperty("LOCAL_NAME", (LazyProperty) () -> "localhost");
+        assertEquals("localhost", cMsg.getProperties().get("LOCAL_NAME"));
+    }
+
+    @Test(groups = "messageProperties")
+    public void providedPropertyReadWhenNotSetTestCase() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setPropertyProvider(new MapPropertyProvider("HTTP_METHOD", "GET", "HOST", "localhost"));
+        cMsg.setProperty("HOST", "example.com");
+
+        assertEquals("GET", cMsg.getProperty("HTTP_METHOD"));
+        assertEquals("example.com", cMsg.getProperty("HOST"));
+        assertNull(cMsg.getProperty("TO"));
+    }
+
+    @Test(groups = "messageProperties")
+    public void providedPropertiesCopiedWhenPropertiesReadTestCase() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setPropertyProvider(new MapPropertyProvider("HTTP_METHOD", "GET", "LOCAL_NAME",
+                (LazyProperty) () -> "localhost"));
+        cMsg.setProperty("HTTP_METHOD", "POST");
+
+        Map<String, Object> properties = cMsg.getProperties();
+        assertEquals("POST", properties.get("HTTP_METHOD"));
+        assertEquals("localhost", properties.get("LOCAL_NAME"));
+    }
+
+    @Test(groups = "messageProperties")
+    public void removedProvidedPropertyNotReadTestCase() {
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        cMsg.setPropertyProvider(new MapPropertyProvider("HTTP_METHOD", "GET", "HOST", "localhost"));
+        cMsg.removeProperty("HOST");
+
+        assertNull(cMsg.getProperty("HOST"));
+        assertEquals("GET", cMsg.getProperty("HTTP_METHOD"));
+    }
+
+    private static class MapPropertyProvider implements PropertyProvider {
+
+        private final Map<String, Object> properties = new HashMap<>();
+
+        MapPropertyProvider(Object... keysAndValues) {
+            for (int i = 0; i < keysAndValues.length; i += 2) {
+                properties.put((String) keysAndValues[i], keysAndValues[i + 1]);
+            }
+        }
+
+        @Override
+        public Object getProperty(String key) {
+            return properties.get(key);
+        }
+
+        @Override
+        public Set<String> getPropertyNames() {
+            return new HashSet<>(properties.keySet());
+        }
+    }
+}
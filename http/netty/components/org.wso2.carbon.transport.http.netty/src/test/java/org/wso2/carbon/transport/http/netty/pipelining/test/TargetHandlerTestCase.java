@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.pipelining.test;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpResponseDecoder;
+import io.netty.util.CharsetUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.messaging.TransportSender;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+import org.wso2.carbon.transport.http.netty.sender.TargetHandler;
+import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for correlating the responses of pipelined requests with their callbacks
+ */
+public class TargetHandlerTestCase {
+
+    private final RecordingMessageProcessor messageProcessor = new RecordingMessageProcessor();
+
+    private CarbonMessageProcessor previousMessageProcessor;
+
+    @BeforeClass(groups = "pipelining")
+    public void setUp() {
+        ConnectionManager.getInstance(new HashSet<>());
+        previousMessageProcessor = HTTPTransportContextHolder.getInstance().getMessageProcessor();
+        HTTPTransportContextHolder.getInstance().setMessageProcessor(messageProcessor);
+    }
+
+    @Test(groups = "pipelining")
+    public void responsesDeliveredInRequestOrderTestCase() {
+        TargetHandler targetHandler = new TargetHandler(0);
+        EmbeddedChannel channel = newTargetChannel(targetHandler);
+        CarbonCallback first = response -> { };
+        CarbonCallback second = response -> { };
+        targetHandler.addPendingRequest(first, new HTTPCarbonMessage());
+        targetHandler.addPendingRequest(second, new HTTPCarbonMessage());
+        messageProcessor.clear();
+
+        writeResponse(channel, "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nfirst");
+        assertEquals(1, targetHandler.getInFlightRequestCount());
+        writeResponse(channel, "HTTP/1.1 404 Not Found\r\nContent-Length: 6\r\n\r\nsecond");
+        assertEquals(0, targetHandler.getInFlightRequestCount());
+
+        assertEquals(2, messageProcessor.callbacks.size());
+        assertSame(first, messageProcessor.callbacks.get(0));
+        assertEquals(200, messageProcessor.messages.get(0).getProperty(Constants.HTTP_STATUS_CODE));
+        assertSame(second, messageProcessor.callbacks.get(1));
+        assertEquals(404, messageProcessor.messages.get(1).getProperty(Constants.HTTP_STATUS_CODE));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test(groups = "pipelining")
+    public void informationalResponseKeepsRequestPendingTestCase() {
+        TargetHandler targetHandler = new TargetHandler(0);
+        EmbeddedChannel channel = newTargetChannel(targetHandler);
+        CarbonCallback first = response -> { };
+        CarbonCallback second = response -> { };
+        targetHandler.addPendingRequest(first, new HTTPCarbonMessage());
+        targetHandler.addPendingRequest(second, new HTTPCarbonMessage());
+        messageProcessor.clear();
+
+        writeResponse(channel, "HTTP/1.1 100 Continue\r\n\r\n");
+        assertTrue(messageProcessor.callbacks.isEmpty());
+        assertEquals(2, targetHandler.getInFlightRequestCount());
+
+        writeResponse(channel, "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nfirst");
+        writeResponse(channel, "HTTP/1.1 201 Created\r\nContent-Length: 6\r\n\r\nsecond");
+        assertEquals(2, messageProcessor.callbacks.size());
+        assertSame(first, messageProcessor.callbacks.get(0));
+        assertEquals(200, messageProcessor.messages.get(0).getProperty(Constants.HTTP_STATUS_CODE));
+        assertSame(second, messageProcessor.callbacks.get(1));
+        assertEquals(0, targetHandler.getInFlightRequestCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test(groups = "pipelining")
+    public void connectionClosedMidResponseTestCase() {
+        TargetHandler targetHandler = new TargetHandler(0);
+        EmbeddedChannel channel = newTargetChannel(targetHandler);
+        CarbonCallback first = response -> { };
+        CarbonCallback second = response -> { };
+        targetHandler.addPendingRequest(first, new HTTPCarbonMessage());
+        targetHandler.addPendingRequest(second, new HTTPCarbonMessage());
+        messageProcessor.clear();
+
+        writeResponse(channel, "HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\npart");
+        HTTPCarbonMessage response = (HTTPCarbonMessage) messageProcessor.messages.get(0);
+        assertFalse(response.isEndOfMsgAdded());
+
+        channel.close();
+        // The streaming response is ended with the exception, only the request waiting for its response is failed
+        assertTrue(response.isEndOfMsgAdded());
+        assertNotNull(response.getMessagingException());
+        assertEquals("Connection closed", response.getMessagingException().getMessage());
+        assertEquals(2, messageProcessor.callbacks.size());
+        assertEquals(1, Collections.frequency(messageProcessor.callbacks, first));
+        assertSame(second, messageProcessor.callbacks.get(1));
+        assertEquals(502, messageProcessor.messages.get(1).getProperty(Constants.HTTP_STATUS_CODE));
+        assertEquals(0, targetHandler.getInFlightRequestCount());
+        response.release();
+        channel.finishAndReleaseAll();
+    }
+
+    @AfterClass(groups = "pipelining")
+    public void cleanUp() {
+        HTTPTransportContextHolder.getInstance().setMessageProcessor(previousMessageProcessor);
+    }
+
+    private static EmbeddedChannel newTargetChannel(TargetHandler targetHandler) {
+        EmbeddedChannel channel = new RemoteEmbeddedChannel();
+        TargetChannel targetChannel = new TargetChannel();
+        targetChannel.setChannel(channel);
+        targetChannel.setHttpRoute(new HttpRoute("localhost", 9000));
+        targetChannel.setTargetHandler(targetHandler);
+        targetHandler.setTargetChannel(targetChannel);
+        targetHandler.setConnectionManager(ConnectionManager.getInstance());
+        channel.pipeline().addLast(new HttpResponseDecoder(), targetHandler);
+        return channel;
+    }
+
+    private static void writeResponse(EmbeddedChannel channel, String response) {
+        channel.writeInbound(Unpooled.copiedBuffer(response, CharsetUtil.US_ASCII));
+    }
+
+    /**
+     * Embedded channel with the socket address of a backend, which the response messages are created from.
+     */
+    private static class RemoteEmbeddedChannel extends EmbeddedChannel {
+
+        private static final InetSocketAddress REMOTE_ADDRESS = InetSocketAddress.createUnresolved("localhost", 9000);
+
+        @Override
+        protected SocketAddress remoteAddress0() {
+            return REMOTE_ADDRESS;
+        }
+    }
+
+    private static class RecordingMessageProcessor implements CarbonMessageProcessor {
+
+        private final List<CarbonMessage> messages = new ArrayList<>();
+        private final List<CarbonCallback> callbacks = new ArrayList<>();
+
+        void clear() {
+            messages.clear();
+            callbacks.clear();
+        }
+
+        @Override
+        public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) throws Exception {
+            messages.add(carbonMessage);
+            callbacks.add(carbonCallback);
+            return true;
+        }
+
+        @Override
+        public void setTransportSender(TransportSender transportSender) {
+        }
+
+        @Override
+        public String getId() {
+            return "pipelining-test-processor";
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.transport.http.netty.ssl.test;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslProvider;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.ssl.SSLConfig;
+import org.wso2.carbon.transport.http.netty.common.ssl.SSLHandlerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.KeyStore;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * A test class for the SSL contexts shared by the connections of a configuration
+ */
+public class SSLHandlerFactoryTestCase {
+
+    private static final String PASSWORD = "wso2carbon";
+
+    private File keyStoreFile;
+
+    @BeforeClass(groups = "ssl")
+    public void setUp() throws Exception {
+        keyStoreFile = File.createTempFile("keystore", ".jks");
+        keyStoreFile.deleteOnExit();
+        writeKeyStore();
+    }
+
+    @Test(groups = "ssl")
+    public void sslContextSharedByConfigurationTestCase() {
+        SSLConfig sslConfig = new SSLConfig(keyStoreFile, PASSWORD);
+        SSLHandlerFactory sslHandlerFactory = SSLHandlerFactory.getInstance(sslConfig);
+        assertSame(sslHandlerFactory, SSLHandlerFactory.getInstance(sslConfig));
+        assertSame(sslHandlerFactory.getSSLContext(), SSLHandlerFactory.getInstance(sslConfig).getSSLContext());
+
+        SSLConfig otherConfig = new SSLConfig(keyStoreFile, PASSWORD);
+        assertNotSame(sslHandlerFactory, SSLHandlerFactory.getInstance(otherConfig));
+    }
+
+    @Test(groups = "ssl")
+    public void changedKeyStoreReloadedTestCase() throws Exception {
+        SSLHandlerFactory sslHandlerFactory = SSLHandlerFactory.getInstance(new SSLConfig(keyStoreFile, PASSWORD));
+        SSLContext sslContext = sslHandlerFactory.getSSLContext();
+        assertFalse(sslHandlerFactory.reloadIfModified());
+
+        writeKeyStore();
+        assertTrue(keyStoreFile.setLastModified(keyStoreFile.lastModified() + 2000));
+        assertTrue(sslHandlerFactory.reloadIfModified());
+        assertNotSame(sslContext, sslHandlerFactory.getSSLContext());
+    }
+
+    @Test(groups = "ssl")
+    public void sessionCacheConfiguredTestCase() {
+        SSLConfig sslConfig = new SSLConfig(keyStoreFile, PASSWORD);
+        sslConfig.setSessionCacheSize(100);
+        sslConfig.setSessionTimeout(300);
+        SSLSessionContext sessionContext = SSLHandlerFactory.getInstance(sslConfig).getSSLContext()
+                .getServerSessionContext();
+        assertEquals(100, sessionContext.getSessionCacheSize());
+        assertEquals(300, sessionContext.getSessionTimeout());
+    }
+
+    @Test(groups = "ssl")
+    public void clientEngineCreatedForRouteTestCase() {
+        SSLConfig sslConfig = new SSLConfig(keyStoreFile, PASSWORD);
+        sslConfig.setClientMode(true);
+        HttpRoute httpRoute = new HttpRoute("localhost", 9443);
+        SSLEngine engine = SSLHandlerFactory.getInstance(sslConfig).create(ByteBufAllocator.DEFAULT, httpRoute)
+                .engine();
+        assertTrue(engine.getUseClientMode());
+        assertEquals("localhost", engine.getPeerHost());
+        assertEquals(9443, engine.getPeerPort());
+    }
+
+    @Test(groups = "ssl")
+    public void unavailableProviderFallsBackToJdkTestCase() {
+        SSLConfig sslConfig = new SSLConfig(keyStoreFile, PASSWORD);
+        sslConfig.setClientMode(true);
+        sslConfig.setSslProvider("openssl");
+        SSLHandlerFactory sslHandlerFactory = SSLHandlerFactory.getInstance(sslConfig);
+        if (!OpenSsl.isAvailable()) {
+            assertEquals(SslProvider.JDK, sslHandlerFactory.getSslProvider());
+        }
+        assertTrue(sslHandlerFactory.create(ByteBufAllocator.DEFAULT, new HttpRoute("localhost", 9443)).engine()
+                .getUseClientMode());
+    }
+
+    private void writeKeyStore() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        try (OutputStream outputStream = new FileOutputStream(keyStoreFile)) {
+            keyStore.store(outputStream, PASSWORD.toCharArray());
+        }
+    }
+}